@@ -28,7 +28,6 @@ import org.jboss.resteasy.annotations.GZIP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.api.managers.AssignmentManager;
-import uk.ac.cam.cl.dtg.isaac.api.managers.DuplicateAssignmentException;
 import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
 import uk.ac.cam.cl.dtg.isaac.api.services.AssignmentService;
 import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
@@ -1009,6 +1008,8 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             }
 
             List<AssignmentStatusDTO> assigmentStatuses = new ArrayList<>();
+            List<AssignmentDTO> assignmentsToCreate = new ArrayList<>();
+            List<Integer> pendingStatusIndexes = new ArrayList<>();
             Map<String, GameboardDTO> gameboardMap = new HashMap<>();
             Map<Long, UserGroupDTO> groupMap = groupManager.getGroupsByIds(
                     assignmentDTOsFromClient.stream().map(AssignmentDTO::getGroupId).collect(Collectors.toList()),
@@ -1092,26 +1093,47 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                     assignmentDTO.setCreationDate(null);
                     assignmentDTO.setId(null);
 
-                    // modifies assignment passed in to include an id.
-                    AssignmentDTO assignmentWithID = this.assignmentManager.createAssignment(assignmentDTO);
-
-                    LinkedHashMap<String, Object> eventDetails = new LinkedHashMap<>();
-                    eventDetails.put(Constants.GAMEBOARD_ID_FKEY, assignmentWithID.getGameboardId());
-                    eventDetails.put(GROUP_FK, assignmentWithID.getGroupId());
-                    eventDetails.put(ASSIGNMENT_FK, assignmentWithID.getId());
-                    eventDetails.put(ASSIGNMENT_DUEDATE, assignmentWithID.getDueDate());
-                    eventDetails.put(ASSIGNMENT_SCHEDULED_START_DATE, assignmentWithID.getScheduledStartDate());
-                    this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.SET_NEW_ASSIGNMENT, eventDetails);
-
-                    // Assigning to this group was a success
-                    assigmentStatuses.add(new AssignmentStatusDTO(assignmentWithID.getGroupId(), assignmentWithID.getId()));
-                } catch (DuplicateAssignmentException e) {
-                    assigmentStatuses.add(new AssignmentStatusDTO(assignmentDTO.getGroupId(), e.getMessage()));
+                    // Hold this assignment's place in the response until the whole batch has been saved
+                    assignmentsToCreate.add(assignmentDTO);
+                    pendingStatusIndexes.add(assigmentStatuses.size());
+                    assigmentStatuses.add(null);
                 } catch (SegueDatabaseException e) {
                     log.error("Database error while trying to assign work", e);
                     assigmentStatuses.add(new AssignmentStatusDTO(assignmentDTO.getGroupId(), "Unknown database error."));
                 }
             }
+
+            try {
+                // modifies the assignments passed in to include an id, unless they turn out to be duplicates.
+                this.assignmentManager.createAssignments(assignmentsToCreate);
+            } catch (SegueDatabaseException e) {
+                log.error("Database error while trying to assign work", e);
+                for (int i = 0; i < assignmentsToCreate.size(); i++) {
+                    assigmentStatuses.set(pendingStatusIndexes.get(i),
+                            new AssignmentStatusDTO(assignmentsToCreate.get(i).getGroupId(), "Unknown database error."));
+                }
+                return Response.ok(assigmentStatuses).build();
+            }
+
+            for (int i = 0; i < assignmentsToCreate.size(); i++) {
+                AssignmentDTO assignment = assignmentsToCreate.get(i);
+                if (null == assignment.getId()) {
+                    assigmentStatuses.set(pendingStatusIndexes.get(i), new AssignmentStatusDTO(assignment.getGroupId(),
+                            "You cannot assign the same work to a group more than once."));
+                    continue;
+                }
+
+                LinkedHashMap<String, Object> eventDetails = new LinkedHashMap<>();
+                eventDetails.put(Constants.GAMEBOARD_ID_FKEY, assignment.getGameboardId());
+                eventDetails.put(GROUP_FK, assignment.getGroupId());
+                eventDetails.put(ASSIGNMENT_FK, assignment.getId());
+                eventDetails.put(ASSIGNMENT_DUEDATE, assignment.getDueDate());
+                eventDetails.put(ASSIGNMENT_SCHEDULED_START_DATE, assignment.getScheduledStartDate());
+                this.getLogManager().logEvent(currentlyLoggedInUser, request, IsaacServerLogType.SET_NEW_ASSIGNMENT, eventDetails);
+
+                // Assigning to this group was a success
+                assigmentStatuses.set(pendingStatusIndexes.get(i), new AssignmentStatusDTO(assignment.getGroupId(), assignment.getId()));
+            }
             return Response.ok(assigmentStatuses).build();
         } catch (NoUserLoggedInException e) {
             return SegueErrorResponse.getNotLoggedInResponse();
@@ -84,7 +84,9 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
@@ -543,13 +545,18 @@ public class EventsFacade extends AbstractIsaacFacade {
             List<String[]> resultRows = Lists.newArrayList();
             SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 
+            // Look up every booked user, and then their schools, at once rather than once per row:
+            Map<Long, RegisteredUserDTO> bookedUsers = this.userAccountManager.findUsers(eventBookings.stream()
+                    .map(booking -> booking.getUserBooked().getId()).collect(Collectors.toList()))
+                    .stream().collect(Collectors.toMap(RegisteredUserDTO::getId, Function.identity()));
+            Map<String, School> bookedUserSchools = schoolListReader.findSchoolsByIds(bookedUsers.values().stream()
+                    .map(RegisteredUserDTO::getSchoolId).filter(Objects::nonNull).collect(Collectors.toSet()));
+
             for (DetailedEventBookingDTO booking : eventBookings) {
                 ArrayList<String> resultRow = Lists.newArrayList();
                 UserSummaryDTO resultUser = booking.getUserBooked();
-                RegisteredUserDTO resultRegisteredUser;
-                try {
-                    resultRegisteredUser = this.userAccountManager.getUserDTOById(resultUser.getId());
-                } catch (NoUserException e) {
+                RegisteredUserDTO resultRegisteredUser = bookedUsers.get(resultUser.getId());
+                if (null == resultRegisteredUser) {
                     // Possibly a deleted user, silently skipping.
                     continue;
                 }
@@ -564,7 +571,7 @@ public class EventsFacade extends AbstractIsaacFacade {
                 resultRow.add(resultUser.getGivenName());
                 resultRow.add(resultRegisteredUser.getRole().toString());
                 if (schoolId != null) {
-                    School school = schoolListReader.findSchoolById(schoolId);
+                    School school = bookedUserSchools.get(schoolId);
                     if (null != school) {
                         resultRow.add(school.getSchoolName());
                     } else {
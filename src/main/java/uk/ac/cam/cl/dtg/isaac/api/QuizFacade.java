@@ -15,8 +15,8 @@
  */
 package uk.ac.cam.cl.dtg.isaac.api;
 
-import com.google.api.client.util.Lists;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.errorprone.annotations.DoNotCall;
 import com.google.inject.Inject;
 import com.opencsv.CSVWriter;
@@ -87,8 +87,12 @@ import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -125,6 +129,10 @@ public class QuizFacade extends AbstractIsaacFacade {
 
     private static final Logger log = LoggerFactory.getLogger(QuizFacade.class);
 
+    // The number of group members whose results are computed and written at a time in the CSV downloads.
+    // Large enough that batches of a large group are still marked in parallel.
+    private static final int CSV_EXPORT_USER_BATCH_SIZE = 2 * QuizQuestionManager.PARALLEL_GROUP_MARKING_THRESHOLD;
+
     /**
      * QuizFacade. For management of quizzes
      *
@@ -1275,9 +1283,6 @@ public class QuizFacade extends AbstractIsaacFacade {
             IsaacQuizDTO quiz = quizManager.findQuiz(assignment.getQuizId());
             List<RegisteredUserDTO> groupMembers = this.groupManager.getUsersInGroup(group);
 
-            List<String[]> rows = Lists.newArrayList();
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
             StringBuilder headerBuilder = new StringBuilder();
             if (null != formatMode && formatMode.equalsIgnoreCase("excel")) {
                 headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
@@ -1302,58 +1307,31 @@ public class QuizFacade extends AbstractIsaacFacade {
             }
             headerBuilder.append(String.join(",", questionTitles));
             headerBuilder.append("\n");
-
-            List<QuizUserFeedbackDTO> userFeedback = getUserFeedback(user, assignment, quiz, groupMembers);
-            for (QuizUserFeedbackDTO f : userFeedback) {
-                QuizFeedbackDTO feedback = f.getFeedback();
-                List<String> row;
-                if (includeUserIDs) {
-                    row = new ArrayList<>(Arrays.asList(f.getUser().getFamilyName(), f.getUser().getGivenName(), f.getUser().getId().toString()));
-                } else {
-                    row = new ArrayList<>(Arrays.asList(f.getUser().getFamilyName(), f.getUser().getGivenName()));
-                }
-
-                if (null == feedback) {
-                    row.add("This user has revoked their data sharing authorization.");
-                } else {
-                    row.add(feedback.isComplete() ? "yes" : "no");
-                    QuizFeedbackDTO.Mark summaryMark = new QuizFeedbackDTO.Mark();
-                    List<String> detailedMark = new ArrayList<>();
-                    for (String questionId : questionIds) {
-                        if (feedback.getQuestionMarks() != null) {
-                            QuizFeedbackDTO.Mark questionMark = feedback.getQuestionMarks().get(questionId);
-                            if (questionMark.notAttempted == 1) {
-                                detailedMark.add("Not Attempted");
-                                summaryMark.notAttempted += 1;
-                            } else if (questionMark.incorrect == 1) {
-                                detailedMark.add("Incorrect");
-                                summaryMark.incorrect += 1;
-                            } else if (questionMark.correct == 1) {
-                                detailedMark.add("Correct");
-                                summaryMark.correct += 1;
-                            } else {
-                                detailedMark.add("ERROR"); // This should not happen at this level
-                            }
-                        } else {
-                            // The front-end shows this as "Not completed" so I'm leaving this empty
-                            // because we already have a "Completed" column
-                            detailedMark.add("");
+            String header = headerBuilder.toString();
+
+            // The assignment-wide work is done before the response is committed, so most failures still get an error
+            // response. A database error part way through streaming can only truncate the CSV, and is logged.
+            QuizQuestionManager.AssignmentFeedbackMarker feedbackMarker =
+                    quizQuestionManager.getAssignmentFeedbackMarker(quiz, assignment);
+
+            // Rows are computed and written in batches of users, so large groups are never held in memory at once.
+            StreamingOutput csvOutput = outputStream -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                writer.write(header);
+                try (CSVWriter csvWriter = new CSVWriter(writer)) {
+                    for (List<RegisteredUserDTO> userBatch : Lists.partition(groupMembers, CSV_EXPORT_USER_BATCH_SIZE)) {
+                        for (QuizUserFeedbackDTO userFeedback : getUserFeedback(user, feedbackMarker, userBatch)) {
+                            csvWriter.writeNext(getQuizAssignmentCSVRow(userFeedback, questionIds, includeUserIDs));
                         }
+                        csvWriter.flush();
                     }
-                    row.add(String.format("%d", summaryMark.correct));
-                    row.add(String.format("%d", summaryMark.incorrect));
-                    row.add(String.format("%d", summaryMark.notAttempted));
-                    row.addAll(detailedMark);
+                } catch (SegueDatabaseException e) {
+                    log.error("Error whilst streaming test assignment CSV", e);
+                    throw new IOException("Unable to build test assignment CSV", e);
                 }
-                rows.add(row.toArray(new String[0]));
-            }
+            };
 
-            csvWriter.writeAll(rows);
-            csvWriter.close();
-
-            headerBuilder.append(stringWriter);
-            // get game manager completion information for this assignment.
-            return Response.ok(headerBuilder.toString())
+            return Response.ok(csvOutput)
                     .header("Content-Disposition", "attachment; filename=test_results.csv")
                     .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
         } catch (NoUserLoggedInException e) {
@@ -1367,11 +1345,61 @@ public class QuizFacade extends AbstractIsaacFacade {
         } catch (ContentManagerException e) {
             log.error("Content error whilst viewing test assignment", e);
             return SegueErrorResponse.getResourceNotFoundResponse("This test has become unavailable.");
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
+    /**
+     * Build a single user's row of a test assignment CSV.
+     *
+     * @param userFeedback   the user and their feedback, which is null if they have revoked access.
+     * @param questionIds    the ids of the questions in the test, in column order.
+     * @param includeUserIDs whether to include a user id column.
+     * @return the CSV row.
+     */
+    private String[] getQuizAssignmentCSVRow(QuizUserFeedbackDTO userFeedback, List<String> questionIds, boolean includeUserIDs) {
+        QuizFeedbackDTO feedback = userFeedback.getFeedback();
+        List<String> row;
+        if (includeUserIDs) {
+            row = new ArrayList<>(Arrays.asList(userFeedback.getUser().getFamilyName(), userFeedback.getUser().getGivenName(), userFeedback.getUser().getId().toString()));
+        } else {
+            row = new ArrayList<>(Arrays.asList(userFeedback.getUser().getFamilyName(), userFeedback.getUser().getGivenName()));
+        }
+
+        if (null == feedback) {
+            row.add("This user has revoked their data sharing authorization.");
+        } else {
+            row.add(feedback.isComplete() ? "yes" : "no");
+            QuizFeedbackDTO.Mark summaryMark = new QuizFeedbackDTO.Mark();
+            List<String> detailedMark = new ArrayList<>();
+            for (String questionId : questionIds) {
+                if (feedback.getQuestionMarks() != null) {
+                    QuizFeedbackDTO.Mark questionMark = feedback.getQuestionMarks().get(questionId);
+                    if (questionMark.notAttempted == 1) {
+                        detailedMark.add("Not Attempted");
+                        summaryMark.notAttempted += 1;
+                    } else if (questionMark.incorrect == 1) {
+                        detailedMark.add("Incorrect");
+                        summaryMark.incorrect += 1;
+                    } else if (questionMark.correct == 1) {
+                        detailedMark.add("Correct");
+                        summaryMark.correct += 1;
+                    } else {
+                        detailedMark.add("ERROR"); // This should not happen at this level
+                    }
+                } else {
+                    // The front-end shows this as "Not completed" so I'm leaving this empty
+                    // because we already have a "Completed" column
+                    detailedMark.add("");
+                }
+            }
+            row.add(String.format("%d", summaryMark.correct));
+            row.add(String.format("%d", summaryMark.incorrect));
+            row.add(String.format("%d", summaryMark.notAttempted));
+            row.addAll(detailedMark);
+        }
+        return row.toArray(new String[0]);
+    }
+
     @GET
     @Path("/group/{groupId}/download")
     @Produces("text/csv")
@@ -1401,9 +1429,6 @@ public class QuizFacade extends AbstractIsaacFacade {
                         "You can only retrieve results for groups you own or manage.").toResponse();
             }
 
-            List<List<String>> rows = new ArrayList<>();
-            StringWriter stringWriter = new StringWriter();
-            CSVWriter csvWriter = new CSVWriter(stringWriter);
             StringBuilder headerBuilder = new StringBuilder();
             if (null != formatMode && formatMode.equalsIgnoreCase("excel")) {
                 headerBuilder.append("\uFEFF");  // UTF-8 Byte Order Marker
@@ -1419,114 +1444,53 @@ public class QuizFacade extends AbstractIsaacFacade {
             List<String> questionTitles = new ArrayList<>();
 
             List<QuizAssignmentDTO> quizAssignments = this.quizAssignmentManager.getAssignmentsForGroups(Collections.singletonList(group));
-            Map<Long, List<QuizUserFeedbackDTO>> quizFeedbacks = new HashMap<>();
+            Map<Long, IsaacQuizDTO> quizzesByAssignmentId = new HashMap<>();
             for (QuizAssignmentDTO quizAssignment : quizAssignments) {
-                String quizId = quizAssignment.getQuizId();
-                IsaacQuizDTO quiz = this.quizManager.findQuiz(quizId);
+                IsaacQuizDTO quiz = this.quizManager.findQuiz(quizAssignment.getQuizId());
+                quizzesByAssignmentId.put(quizAssignment.getId(), quiz);
                 quizTitles.add(String.format("\"%s\"", quiz.getTitle()));
                 questionTitles.addAll(getQuizQuestionTitles(quiz));
-                // Precompute quiz feedbacks:
-                quizFeedbacks.put(quizAssignment.getId(), getUserFeedback(currentUser, quizAssignment, quiz, groupMembers));
             }
 
-            for (RegisteredUserDTO groupMember : groupMembers) {
-
-                List<String> row;
-                if (includeUserIDs) {
-                    row = new ArrayList<>(Arrays.asList(groupMember.getFamilyName(), groupMember.getGivenName(), groupMember.getId().toString()));
-                } else {
-                    row = new ArrayList<>(Arrays.asList(groupMember.getFamilyName(), groupMember.getGivenName()));
-                }
+            headerBuilder.append(String.join(",", quizTitles)).append(",");
+            headerBuilder.append(String.join(",", questionTitles));
+            headerBuilder.append("\n");
+            String header = headerBuilder.toString();
 
-                List<String> quizTotals = new ArrayList<>();
-                List<String> questionResults = new ArrayList<>();
-
-                for (QuizAssignmentDTO quizAssignment : quizAssignments) {
-                    String quizId = quizAssignment.getQuizId();
-                    IsaacQuizDTO quiz = this.quizManager.findQuiz(quizId);
-                    List<String> questionIds = getQuizQuestionIds(quiz);
-                    Optional<QuizUserFeedbackDTO> userFeedback = quizFeedbacks.getOrDefault(quizAssignment.getId(), Collections.emptyList()).stream()
-                            .filter(f -> f.getUser().getId().equals(groupMember.getId())).findFirst();
-                    if (!userFeedback.isPresent()) {
-                        // This looks like it should work but I can't test it as I don't know how to retrieve a
-                        // non-present user feedback. If everything is set up correctly with retrieving user
-                        // feedback, this branch should never happen -- so maybe we might as well forcibly unwrap
-                        // and deal with the exception because something has gone very wrong somewhere anyway.
-                        quizTotals.add(""); // We should probably write something here to make debugging easier...
-                        long questionCount = quiz.getChildren().stream()
-                                .filter(c -> c instanceof IsaacQuizSectionDTO)
-                                .map(s -> ((IsaacQuizSectionDTO) s).getChildren().stream().filter(t -> t instanceof IsaacQuestionBaseDTO).count())
-                                .reduce(0L, Long::sum);
-                        for (long i = 0L; i < questionCount; ++i) {
-                            questionResults.add("-");
-                        }
-                    } else {
-                        QuizFeedbackDTO feedback = userFeedback.get().getFeedback();
-                        if (feedback != null) {
-                            QuizFeedbackDTO.Mark overallMark = feedback.getOverallMark();
-                            if (overallMark != null) {
-                                // Add an apostrophe to the beginning of the score, so that the fraction isn't
-                                // interpreted as a date in excel
-                                quizTotals.add(String.format("'%d/%d", overallMark.correct, overallMark.correct + overallMark.incorrect + overallMark.notAttempted));
-                            } else {
-                                quizTotals.add("");
-                            }
-                        } else {
-                            // The user has revoked access to their data
-                            quizTotals.add("REVOKED");
+            // The assignment-wide work is done before the response is committed, so most failures still get an error
+            // response. A database error part way through streaming can only truncate the CSV, and is logged.
+            Map<Long, QuizQuestionManager.AssignmentFeedbackMarker> feedbackMarkersByAssignmentId = new HashMap<>();
+            for (QuizAssignmentDTO quizAssignment : quizAssignments) {
+                feedbackMarkersByAssignmentId.put(quizAssignment.getId(), quizQuestionManager.getAssignmentFeedbackMarker(
+                        quizzesByAssignmentId.get(quizAssignment.getId()), quizAssignment));
+            }
+
+            // Feedback is computed and written in batches of users, so large groups are never held in memory at once.
+            StreamingOutput csvOutput = outputStream -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                writer.write(header);
+                try (CSVWriter csvWriter = new CSVWriter(writer)) {
+                    for (List<RegisteredUserDTO> userBatch : Lists.partition(groupMembers, CSV_EXPORT_USER_BATCH_SIZE)) {
+                        Map<Long, Map<Long, QuizUserFeedbackDTO>> batchFeedbackByAssignmentId = new HashMap<>();
+                        for (QuizAssignmentDTO quizAssignment : quizAssignments) {
+                            batchFeedbackByAssignmentId.put(quizAssignment.getId(),
+                                    getUserFeedback(currentUser, feedbackMarkersByAssignmentId.get(quizAssignment.getId()),
+                                            userBatch).stream()
+                                            .collect(Collectors.toMap(f -> f.getUser().getId(), f -> f)));
                         }
-                        if (feedback != null) {
-                            Map<String, QuizFeedbackDTO.Mark> questionMarksByQuestionId = userFeedback.get().getFeedback().getQuestionMarks();
-                            if (questionMarksByQuestionId == null) {
-                                long questionCount = quiz.getChildren().stream()
-                                        .filter(c -> c instanceof IsaacQuizSectionDTO)
-                                        .map(s -> ((IsaacQuizSectionDTO) s).getChildren().stream().filter(t -> t instanceof IsaacQuestionBaseDTO).count())
-                                        .reduce(0L, Long::sum);
-                                for (long i = 0L; i < questionCount; ++i) {
-                                    questionResults.add(""); // We should probably write something here to make debugging easier...
-                                }
-                            } else {
-                                for (String id : questionIds) {
-                                    QuizFeedbackDTO.Mark m = questionMarksByQuestionId.get(id);
-                                    if (m == null) {
-                                        questionResults.add(""); // We should probably write something here to make debugging easier...
-                                        continue;
-                                    }
-                                    if (m.notAttempted == 1) {
-                                        questionResults.add("Not Attempted");
-                                    } else if (m.incorrect == 1) {
-                                        questionResults.add("Incorrect");
-                                    } else if (m.correct == 1) {
-                                        questionResults.add("Correct");
-                                    } else {
-                                        questionResults.add(""); // We should probably write something here to make debugging easier...
-                                    }
-                                }
-                            }
-                        } else {
-                            for (String id : questionIds) {
-                                questionResults.add("REVOKED");
-                            }
+                        for (RegisteredUserDTO groupMember : userBatch) {
+                            csvWriter.writeNext(getGroupQuizResultsCSVRow(groupMember, quizAssignments,
+                                    quizzesByAssignmentId, batchFeedbackByAssignmentId, includeUserIDs));
                         }
+                        csvWriter.flush();
                     }
+                } catch (SegueDatabaseException e) {
+                    log.error("Error whilst streaming group quiz results CSV", e);
+                    throw new IOException("Unable to build group quiz results CSV", e);
                 }
-                row.addAll(quizTotals);
-                row.addAll(questionResults);
-
-                rows.add(row);
-            }
-
-            headerBuilder.append(String.join(",", quizTitles)).append(",");
-            headerBuilder.append(String.join(",", questionTitles));
-            headerBuilder.append("\n");
-
-            for (List<String> row : rows) {
-                csvWriter.writeNext(row.toArray(new String[0]));
-            }
-            csvWriter.close();
+            };
 
-            headerBuilder.append(stringWriter);
-            return Response.ok(headerBuilder.toString())
+            return Response.ok(csvOutput)
                     .header("Content-Disposition", "attachment; filename=group_test_results.csv")
                     .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
 
@@ -1541,11 +1505,99 @@ public class QuizFacade extends AbstractIsaacFacade {
         } catch (ContentManagerException e) {
             log.error("Content error whilst retrieving a quiz", e);
             return SegueErrorResponse.getResourceNotFoundResponse("This quiz has become unavailable.");
-        } catch (IOException e) {
-            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Error while building the CSV file.").toResponse();
         }
     }
 
+    /**
+     * Build a single group member's row of the group quiz results CSV.
+     *
+     * @param groupMember           the group member the row is for.
+     * @param quizAssignments       the quiz assignments of the group, in column order.
+     * @param quizzesByAssignmentId the quiz for each assignment.
+     * @param feedbackByAssignment  map of assignment id to the feedback of users in the current batch, by user id.
+     * @param includeUserIDs        whether to include a user id column.
+     * @return the CSV row.
+     */
+    private String[] getGroupQuizResultsCSVRow(RegisteredUserDTO groupMember, List<QuizAssignmentDTO> quizAssignments,
+                                               Map<Long, IsaacQuizDTO> quizzesByAssignmentId,
+                                               Map<Long, Map<Long, QuizUserFeedbackDTO>> feedbackByAssignment,
+                                               boolean includeUserIDs) {
+        List<String> row;
+        if (includeUserIDs) {
+            row = new ArrayList<>(Arrays.asList(groupMember.getFamilyName(), groupMember.getGivenName(), groupMember.getId().toString()));
+        } else {
+            row = new ArrayList<>(Arrays.asList(groupMember.getFamilyName(), groupMember.getGivenName()));
+        }
+
+        List<String> quizTotals = new ArrayList<>();
+        List<String> questionResults = new ArrayList<>();
+
+        for (QuizAssignmentDTO quizAssignment : quizAssignments) {
+            IsaacQuizDTO quiz = quizzesByAssignmentId.get(quizAssignment.getId());
+            List<String> questionIds = getQuizQuestionIds(quiz);
+            Optional<QuizUserFeedbackDTO> userFeedback = Optional.ofNullable(
+                    feedbackByAssignment.getOrDefault(quizAssignment.getId(), Collections.emptyMap()).get(groupMember.getId()));
+            if (!userFeedback.isPresent()) {
+                // This looks like it should work but I can't test it as I don't know how to retrieve a
+                // non-present user feedback. If everything is set up correctly with retrieving user
+                // feedback, this branch should never happen -- so maybe we might as well forcibly unwrap
+                // and deal with the exception because something has gone very wrong somewhere anyway.
+                quizTotals.add(""); // We should probably write something here to make debugging easier...
+                for (int i = 0; i < questionIds.size(); ++i) {
+                    questionResults.add("-");
+                }
+            } else {
+                QuizFeedbackDTO feedback = userFeedback.get().getFeedback();
+                if (feedback != null) {
+                    QuizFeedbackDTO.Mark overallMark = feedback.getOverallMark();
+                    if (overallMark != null) {
+                        // Add an apostrophe to the beginning of the score, so that the fraction isn't
+                        // interpreted as a date in excel
+                        quizTotals.add(String.format("'%d/%d", overallMark.correct, overallMark.correct + overallMark.incorrect + overallMark.notAttempted));
+                    } else {
+                        quizTotals.add("");
+                    }
+                } else {
+                    // The user has revoked access to their data
+                    quizTotals.add("REVOKED");
+                }
+                if (feedback != null) {
+                    Map<String, QuizFeedbackDTO.Mark> questionMarksByQuestionId = feedback.getQuestionMarks();
+                    if (questionMarksByQuestionId == null) {
+                        for (int i = 0; i < questionIds.size(); ++i) {
+                            questionResults.add(""); // We should probably write something here to make debugging easier...
+                        }
+                    } else {
+                        for (String id : questionIds) {
+                            QuizFeedbackDTO.Mark m = questionMarksByQuestionId.get(id);
+                            if (m == null) {
+                                questionResults.add(""); // We should probably write something here to make debugging easier...
+                                continue;
+                            }
+                            if (m.notAttempted == 1) {
+                                questionResults.add("Not Attempted");
+                            } else if (m.incorrect == 1) {
+                                questionResults.add("Incorrect");
+                            } else if (m.correct == 1) {
+                                questionResults.add("Correct");
+                            } else {
+                                questionResults.add(""); // We should probably write something here to make debugging easier...
+                            }
+                        }
+                    }
+                } else {
+                    for (String id : questionIds) {
+                        questionResults.add("REVOKED");
+                    }
+                }
+            }
+        }
+        row.addAll(quizTotals);
+        row.addAll(questionResults);
+
+        return row.toArray(new String[0]);
+    }
+
     private List<String> getQuizQuestionTitles(IsaacQuizDTO quiz) {
         List<String> questionTitles = new ArrayList<>();
         for (ContentBaseDTO section : quiz.getChildren().stream().filter(c -> c instanceof IsaacQuizSectionDTO).toList()) {
@@ -1886,8 +1938,8 @@ public class QuizFacade extends AbstractIsaacFacade {
         return augmentAttempt(quizAttempt, quizAssignment);
     }
 
-    private List<QuizUserFeedbackDTO> getUserFeedback(RegisteredUserDTO user, QuizAssignmentDTO assignment, IsaacQuizDTO quiz, List<RegisteredUserDTO> groupMembers) throws ContentManagerException, SegueDatabaseException {
-        Map<RegisteredUserDTO, QuizFeedbackDTO> feedbackMap = quizQuestionManager.getAssignmentTeacherFeedback(quiz, assignment, groupMembers);
+    private List<QuizUserFeedbackDTO> getUserFeedback(RegisteredUserDTO user, QuizQuestionManager.AssignmentFeedbackMarker feedbackMarker, List<RegisteredUserDTO> groupMembers) throws SegueDatabaseException {
+        Map<RegisteredUserDTO, QuizFeedbackDTO> feedbackMap = feedbackMarker.getFeedback(groupMembers);
         List<QuizUserFeedbackDTO> userFeedback = new ArrayList<>();
         for (RegisteredUserDTO groupMember : groupMembers) {
             QuizFeedbackDTO feedback = feedbackMap.get(groupMember);
@@ -15,7 +15,6 @@
  */
 package uk.ac.cam.cl.dtg.isaac.api.managers;
 
-import com.google.api.client.util.Lists;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
@@ -35,9 +34,11 @@ import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
@@ -86,18 +87,42 @@ public class AssignmentManager implements IAssignmentLike.Details<AssignmentDTO>
      *             - if we cannot complete a required database operation.
      */
     public Collection<AssignmentDTO> getAssignments(final RegisteredUserDTO user) throws SegueDatabaseException {
-        List<UserGroupDTO> groups = groupManager.getGroupMembershipList(user, false);
-
-        if (groups.size() == 0) {
-            log.debug("User ({}) does not have any groups", user.getId());
-            return Lists.newArrayList();
-        }
+        // The inbox query applies the same group and membership status rules as filterItemsBasedOnMembershipContext.
+        return this.assignmentPersistenceManager.getAssignmentsFromUserInbox(user.getId());
+    }
 
-        List<Long> groupIds = groups.stream().map(UserGroupDTO::getId).collect(Collectors.toList());
-        List<AssignmentDTO> assignments = this.groupManager.filterItemsBasedOnMembershipContext(
-                this.assignmentPersistenceManager.getAssignmentsByGroupList(groupIds), user.getId());
+    /**
+     * Deliver all assignments already set to a group to a user who has just joined it.
+     *
+     * @param group
+     *            - the group that the user has joined.
+     * @param user
+     *            - the new group member.
+     * @throws SegueDatabaseException
+     *             - if we cannot complete a required database operation.
+     */
+    public void addGroupAssignmentsToUserInbox(final UserGroupDTO group, final RegisteredUserDTO user)
+            throws SegueDatabaseException {
+        Objects.requireNonNull(group);
+        Objects.requireNonNull(user);
+        this.assignmentPersistenceManager.addGroupAssignmentsToUserInbox(group.getId(), user.getId());
+    }
 
-        return assignments;
+    /**
+     * Remove all assignments set to a group from the inbox of a user who has left it.
+     *
+     * @param group
+     *            - the group that the user has left.
+     * @param user
+     *            - the former group member.
+     * @throws SegueDatabaseException
+     *             - if we cannot complete a required database operation.
+     */
+    public void removeGroupAssignmentsFromUserInbox(final UserGroupDTO group, final RegisteredUserDTO user)
+            throws SegueDatabaseException {
+        Objects.requireNonNull(group);
+        Objects.requireNonNull(user);
+        this.assignmentPersistenceManager.removeGroupAssignmentsFromUserInbox(group.getId(), user.getId());
     }
 
     /**
@@ -125,41 +150,56 @@ public class AssignmentManager implements IAssignmentLike.Details<AssignmentDTO>
     
 
     /**
-     * Create an Assignment.
+     * Create several Assignments at once.
+     *
+     * The assignments are saved in a single transaction. Any assignment that duplicates an existing assignment, or
+     * an earlier one in the list, is skipped and left without an id. Notification emails are queued to be sent in the
+     * background.
      *
-     * @param newAssignment - will be modified to include new id. It must contain the gameboard being assigned,
-     *                        and should contain the ownerSummaryDTO.
-     * @return the assignment object now with the id field populated.
+     * @param newAssignments - will be modified to include new ids. Each must contain the gameboard being assigned,
+     *                         and should contain the ownerSummaryDTO.
+     * @return the assignments that were created, with their id fields populated.
      * @throws SegueDatabaseException
      *             - if we cannot complete a required database operation.
      */
-    public AssignmentDTO createAssignment(final AssignmentDTO newAssignment) throws SegueDatabaseException {
-        Validate.isTrue(newAssignment.getId() == null, "The id field must be empty.");
-        Validate.isTrue(newAssignment.getGameboard() != null);
-        Objects.requireNonNull(newAssignment.getGameboardId());
-        Objects.requireNonNull(newAssignment.getGroupId());
-
-        if (assignmentPersistenceManager.getAssignmentsByGameboardAndGroup(newAssignment.getGameboardId(),
-                newAssignment.getGroupId()).size() != 0) {
-            log.error("Duplicate assignment: cannot assign the same work '{}' to a group ({}).", newAssignment.getGameboardId(), newAssignment.getGroupId());
-            throw new DuplicateAssignmentException("You cannot assign the same work to a group more than once.");
+    public List<AssignmentDTO> createAssignments(final List<AssignmentDTO> newAssignments) throws SegueDatabaseException {
+        List<AssignmentDTO> assignmentsToSave = new ArrayList<>();
+        Set<String> gameboardAndGroupPairs = new HashSet<>();
+        Date creationDate = new Date();
+        for (AssignmentDTO newAssignment : newAssignments) {
+            Validate.isTrue(newAssignment.getId() == null, "The id field must be empty.");
+            Validate.isTrue(newAssignment.getGameboard() != null);
+            Objects.requireNonNull(newAssignment.getGameboardId());
+            Objects.requireNonNull(newAssignment.getGroupId());
+
+            if (gameboardAndGroupPairs.add(newAssignment.getGroupId() + ":" + newAssignment.getGameboardId())) {
+                newAssignment.setCreationDate(creationDate);
+                assignmentsToSave.add(newAssignment);
+            }
         }
-        
-        newAssignment.setCreationDate(new Date());
-        newAssignment.setId(this.assignmentPersistenceManager.saveAssignment(newAssignment));
-
-        GameboardDTO gameboard = newAssignment.getGameboard();
-        final String gameboardURL = getAssignmentLikeUrl(newAssignment);
-
-        // If there is no date to schedule the assignment for, or the start date is in the past...
-        if (null == newAssignment.getScheduledStartDate()) {
-            // Send the notification email immediately
-            emailService.sendAssignmentEmailToGroup(newAssignment, gameboard, ImmutableMap.of("gameboardURL", gameboardURL),
-                    "email-template-group-assignment");
+
+        List<Long> savedIds = this.assignmentPersistenceManager.saveAssignments(assignmentsToSave);
+
+        List<AssignmentDTO> createdAssignments = new ArrayList<>();
+        for (int i = 0; i < assignmentsToSave.size(); i++) {
+            AssignmentDTO assignment = assignmentsToSave.get(i);
+            Long savedId = savedIds.get(i);
+            if (null == savedId) {
+                log.error("Duplicate assignment: cannot assign the same work '{}' to a group ({}).", assignment.getGameboardId(), assignment.getGroupId());
+                continue;
+            }
+            assignment.setId(savedId);
+            createdAssignments.add(assignment);
+
+            // Scheduled assignments are emailed by a Quartz job on the hour of the scheduledStartDate
+            if (null == assignment.getScheduledStartDate()) {
+                emailService.queueAssignmentEmailToGroup(assignment, assignment.getGameboard(),
+                        ImmutableMap.of("gameboardURL", getAssignmentLikeUrl(assignment)),
+                        "email-template-group-assignment");
+            }
         }
-        // Otherwise, the assignment email will be scheduled by a Quartz job on the hour of the scheduledStartDate
 
-        return newAssignment;
+        return createdAssignments;
     }
 
     /**
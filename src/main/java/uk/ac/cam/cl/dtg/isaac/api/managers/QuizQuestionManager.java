@@ -21,6 +21,7 @@ import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dao.IQuizQuestionAttemptPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuizFeedbackMode;
 import uk.ac.cam.cl.dtg.isaac.dos.content.Question;
@@ -44,12 +45,14 @@ import uk.ac.cam.cl.dtg.util.mappers.MainMapper;
 import jakarta.annotation.Nullable;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 
@@ -62,6 +65,9 @@ public class QuizQuestionManager {
 
     private static final Logger log = LoggerFactory.getLogger(QuizQuestionManager.class);
 
+    // Groups at least this large are marked in parallel.
+    public static final int PARALLEL_GROUP_MARKING_THRESHOLD = 200;
+
     /**
      * Manage questions on quizzes.
      *
@@ -205,32 +211,83 @@ public class QuizQuestionManager {
      *            - the users to get feedback for.
      */
     public Map<RegisteredUserDTO, QuizFeedbackDTO> getAssignmentTeacherFeedback(IsaacQuizDTO quiz, QuizAssignmentDTO assignment, List<RegisteredUserDTO> users) throws ContentManagerException, SegueDatabaseException {
+        return getAssignmentFeedbackMarker(quiz, assignment).getFeedback(users);
+    }
+
+    /**
+     * Do the work needed to mark any user's feedback for an assignment, so that the users of a large group can then be
+     * marked in batches without repeating it. Also augments the quiz with totals.
+     *
+     * @param quiz
+     *            - to augment - this object will be mutated as a result of this method. i.e total and sectionsTotals will be set.
+     * @param assignment
+     *            - the quiz assignment to get feedback for.
+     * @return a marker for users of the assignment.
+     */
+    public AssignmentFeedbackMarker getAssignmentFeedbackMarker(IsaacQuizDTO quiz, QuizAssignmentDTO assignment) throws ContentManagerException, SegueDatabaseException {
         Collection<QuestionDTO> questionsToAugment = GameManager.getAllMarkableQuestionPartsDFSOrder(quiz);
         List<IsaacQuizSectionDTO> sections = quizManager.extractSectionObjects(quiz);
         augmentQuizTotals(quiz, questionsToAugment);
 
         Set<Long> completedUserIds = quizAttemptManager.getCompletedUserIds(assignment);
 
-        Map<Long, Map<String, List<QuestionValidationResponse>>> answers = quizQuestionAttemptManager.getAllAnswersForQuizAssignment(assignment.getId());
+        return new AssignmentFeedbackMarker(quiz, assignment, sections, completedUserIds,
+                new GroupMarkingIndex(sections, questionsToAugment));
+    }
 
-        return users.stream().collect(Collectors.toMap(user -> user, user -> {
-            // Not completed.
-            if (!completedUserIds.contains(user.getId())) {
-                return new QuizFeedbackDTO();
-            }
+    /**
+     * Marks users' feedback for one quiz assignment, using the quiz structure and completion state read once for the
+     * whole assignment.
+     */
+    public class AssignmentFeedbackMarker {
+        private final IsaacQuizDTO quiz;
+        private final QuizAssignmentDTO assignment;
+        private final List<IsaacQuizSectionDTO> sections;
+        private final Set<Long> completedUserIds;
+        private final GroupMarkingIndex markingIndex;
+
+        private AssignmentFeedbackMarker(IsaacQuizDTO quiz, QuizAssignmentDTO assignment,
+                                         List<IsaacQuizSectionDTO> sections, Set<Long> completedUserIds,
+                                         GroupMarkingIndex markingIndex) {
+            this.quiz = quiz;
+            this.assignment = assignment;
+            this.sections = sections;
+            this.completedUserIds = completedUserIds;
+            this.markingIndex = markingIndex;
+        }
 
-            // No questions attempted.
-            if (!answers.containsKey(user.getId())) {
-                Map<String, QuizFeedbackDTO.Mark> sectionMarks = sections.stream().collect(Collectors.toMap(
-                        ContentBaseDTO::getId,
-                    s -> QuizFeedbackDTO.Mark.notAttempted(quiz.getSectionTotals().get(s.getId()))));
-                return new QuizFeedbackDTO(QuizFeedbackDTO.Mark.notAttempted(quiz.getTotal()), sectionMarks, null);
-            }
+        /**
+         * Return a map of users to their individual feedback for the assignment.
+         *
+         * @param users
+         *            - the users to get feedback for.
+         */
+        public Map<RegisteredUserDTO, QuizFeedbackDTO> getFeedback(List<RegisteredUserDTO> users) throws SegueDatabaseException {
+            Map<Long, Map<String, LightweightQuestionValidationResponse>> latestAnswers =
+                    quizQuestionAttemptManager.getLatestQuestionMarksForQuizAssignment(assignment.getId(),
+                            users.stream().map(RegisteredUserDTO::getId).toList());
+
+            Stream<RegisteredUserDTO> userStream = users.size() >= PARALLEL_GROUP_MARKING_THRESHOLD
+                    ? users.parallelStream() : users.stream();
+
+            return userStream.collect(Collectors.toMap(user -> user, user -> {
+                // Not completed.
+                if (!completedUserIds.contains(user.getId())) {
+                    return new QuizFeedbackDTO();
+                }
+
+                // No questions attempted.
+                if (!latestAnswers.containsKey(user.getId())) {
+                    Map<String, QuizFeedbackDTO.Mark> sectionMarks = sections.stream().collect(Collectors.toMap(
+                            ContentBaseDTO::getId,
+                        s -> QuizFeedbackDTO.Mark.notAttempted(quiz.getSectionTotals().get(s.getId()))));
+                    return new QuizFeedbackDTO(QuizFeedbackDTO.Mark.notAttempted(quiz.getTotal()), sectionMarks, null);
+                }
 
-            // Calculate the scores.
-            Map<QuestionDTO, QuestionValidationResponse> answerMap = extractAnswers(questionsToAugment, answers.get(user.getId()));
-            return getIndividualQuizFeedback(sections, QuizFeedbackMode.DETAILED_FEEDBACK, questionsToAugment, answerMap);
-        }));
+                // Calculate the scores.
+                return markingIndex.mark(latestAnswers.get(user.getId()));
+            }));
+        }
     }
 
     /**
@@ -387,6 +444,87 @@ public class QuizQuestionManager {
         return feedback;
     }
 
+    /**
+     * The structure of a quiz flattened for marking many users' answers: each question's position and the index of the
+     * section it belongs to are computed once, so that marking a user is just a pass over their latest answers.
+     */
+    private static class GroupMarkingIndex {
+        private final List<String> sectionIds;
+        private final List<String> questionIds;
+        private final int[] sectionIndexForQuestion;
+
+        GroupMarkingIndex(List<IsaacQuizSectionDTO> sections, Collection<QuestionDTO> questions) {
+            this.sectionIds = sections.stream().map(ContentBaseDTO::getId).toList();
+            Map<String, Integer> sectionIndexes = new HashMap<>();
+            for (int i = 0; i < sectionIds.size(); i++) {
+                sectionIndexes.put(sectionIds.get(i), i);
+            }
+
+            List<String> markableQuestionIds = new ArrayList<>();
+            List<Integer> markableSectionIndexes = new ArrayList<>();
+            for (QuestionDTO question : questions) {
+                String sectionId = extractSectionIdFromQuizQuestionId(question.getId());
+                Integer sectionIndex = sectionIndexes.get(sectionId);
+                if (sectionIndex == null) {
+                    log.error("Missing test section id ({}) in question ({}) but not in section map ({})", sectionId, question, sections);
+                    continue;
+                }
+                markableQuestionIds.add(question.getId());
+                markableSectionIndexes.add(sectionIndex);
+            }
+            this.questionIds = markableQuestionIds;
+            this.sectionIndexForQuestion = markableSectionIndexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Mark one user's answers with detailed feedback.
+         *
+         * @param latestAnswers map of question id to the user's latest attempt at it.
+         * @return the user's quiz feedback, including section and question marks.
+         */
+        QuizFeedbackDTO mark(Map<String, LightweightQuestionValidationResponse> latestAnswers) {
+            int[] sectionCorrect = new int[sectionIds.size()];
+            int[] sectionIncorrect = new int[sectionIds.size()];
+            int[] sectionNotAttempted = new int[sectionIds.size()];
+            Map<String, QuizFeedbackDTO.Mark> questionMarks = new HashMap<>();
+
+            for (int i = 0; i < questionIds.size(); i++) {
+                String questionId = questionIds.get(i);
+                int sectionIndex = sectionIndexForQuestion[i];
+                QuizFeedbackDTO.Mark questionMark = new QuizFeedbackDTO.Mark();
+                LightweightQuestionValidationResponse response = latestAnswers.get(questionId);
+                if (response != null) {
+                    if (Boolean.TRUE.equals(response.isCorrect())) {
+                        sectionCorrect[sectionIndex]++;
+                        questionMark.correct = 1;
+                    } else {
+                        sectionIncorrect[sectionIndex]++;
+                        questionMark.incorrect = 1;
+                    }
+                } else {
+                    sectionNotAttempted[sectionIndex]++;
+                    questionMark.notAttempted = 1;
+                }
+                questionMarks.put(questionId, questionMark);
+            }
+
+            Map<String, QuizFeedbackDTO.Mark> sectionMarks = new HashMap<>();
+            QuizFeedbackDTO.Mark overall = new QuizFeedbackDTO.Mark();
+            for (int i = 0; i < sectionIds.size(); i++) {
+                QuizFeedbackDTO.Mark sectionMark = new QuizFeedbackDTO.Mark();
+                sectionMark.correct = sectionCorrect[i];
+                sectionMark.incorrect = sectionIncorrect[i];
+                sectionMark.notAttempted = sectionNotAttempted[i];
+                sectionMarks.put(sectionIds.get(i), sectionMark);
+                overall.correct += sectionCorrect[i];
+                overall.incorrect += sectionIncorrect[i];
+                overall.notAttempted += sectionNotAttempted[i];
+            }
+
+            return new QuizFeedbackDTO(overall, sectionMarks, questionMarks);
+        }
+    }
+
     private QuizFeedbackDTO.Mark consolidateMarks(Map<String, QuizFeedbackDTO.Mark> scoreTable) {
         QuizFeedbackDTO.Mark result = new QuizFeedbackDTO.Mark();
         scoreTable.values().forEach(mark -> {
@@ -29,6 +29,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.segue.api.managers.GroupManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
+import uk.ac.cam.cl.dtg.segue.comm.BackgroundEmailExecutor;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
 import uk.ac.cam.cl.dtg.segue.comm.EmailType;
 import uk.ac.cam.cl.dtg.segue.comm.MailGunEmailManager;
@@ -63,20 +64,46 @@ public class EmailService {
     private final MailGunEmailManager mailGunEmailManager;
     private final GroupManager groupManager;
     private final UserAccountManager userManager;
+    private final BackgroundEmailExecutor backgroundEmailExecutor;
 
     @Inject
     public EmailService(final AbstractConfigLoader properties, final EmailManager emailManager,
                         final GroupManager groupManager, final UserAccountManager userManager,
-                        final MailGunEmailManager mailGunEmailManager) {
+                        final MailGunEmailManager mailGunEmailManager,
+                        final BackgroundEmailExecutor backgroundEmailExecutor) {
         this.properties = properties;
         this.emailManager = emailManager;
         this.groupManager = groupManager;
         this.userManager = userManager;
         this.mailGunEmailManager = mailGunEmailManager;
+        this.backgroundEmailExecutor = backgroundEmailExecutor;
     }
 
     private static final DateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM/yy");
 
+    /**
+     * Queue an assignment notification email to a group, to be assembled and sent in the background.
+     *
+     * Errors are logged rather than reported to the caller; see sendAssignmentEmailToGroup.
+     *
+     * @param assignment - the assignment that has been set.
+     * @param on - the gameboard or quiz that was assigned.
+     * @param tokenToValueMapping - any additional template tokens.
+     * @param templateName - the id of the email template to use.
+     */
+    public void queueAssignmentEmailToGroup(final IAssignmentLike assignment, final HasTitleOrId on,
+                                            final Map<String, String> tokenToValueMapping, final String templateName) {
+        backgroundEmailExecutor.execute(() -> {
+            try {
+                sendAssignmentEmailToGroup(assignment, on, tokenToValueMapping, templateName);
+            } catch (SegueDatabaseException e) {
+                log.error("Could not send assignment email because of a database error.", e);
+            } catch (RuntimeException e) {
+                log.error("Unexpected error sending assignment email.", e);
+            }
+        });
+    }
+
     public void sendAssignmentEmailToGroup(final IAssignmentLike assignment, final HasTitleOrId on, final Map<String, String> tokenToValueMapping, final String templateName) throws SegueDatabaseException {
         try {
             // This isn't nice, but it avoids augmenting the group unnecessarily!
@@ -82,7 +82,15 @@ public class GroupChangedService implements IGroupObserver {
 
     @Override
     public void onGroupMembershipRemoved(UserGroupDTO group, RegisteredUserDTO user) {
-        // Do nothing
+        Objects.requireNonNull(group);
+        Objects.requireNonNull(user);
+
+        try {
+            assignmentManager.removeGroupAssignmentsFromUserInbox(group, user);
+        } catch (SegueDatabaseException e) {
+            log.error("Unable to remove group assignments from the inbox of user ({}) who left group ({}); the hourly"
+                    + " inbox reconciliation job will retry.", user.getId(), group.getId(), e);
+        }
     }
 
     @Override
@@ -90,6 +98,13 @@ public class GroupChangedService implements IGroupObserver {
         Objects.requireNonNull(group);
         Objects.requireNonNull(user);
 
+        try {
+            assignmentManager.addGroupAssignmentsToUserInbox(group, user);
+        } catch (SegueDatabaseException e) {
+            log.error("Unable to add group assignments to the inbox of user ({}) who joined group ({}); the hourly"
+                    + " inbox reconciliation job will retry.", user.getId(), group.getId(), e);
+        }
+
         // Try to email user to let them know
         try {
             emailManager.sendTemplatedEmailToUser(user,
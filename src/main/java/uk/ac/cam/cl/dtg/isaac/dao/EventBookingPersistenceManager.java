@@ -17,7 +17,6 @@ import uk.ac.cam.cl.dtg.isaac.dto.eventbookings.DetailedEventBookingDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.eventbookings.EventBookingDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryWithEmailAddressDTO;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
-import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
 import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
@@ -25,6 +24,7 @@ import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -313,30 +313,43 @@ public class EventBookingPersistenceManager {
      */
     private DetailedEventBookingDTO convertToDTO(final EventBooking eb, final IsaacEventPageDTO eventInformation)
             throws SegueDatabaseException {
-        DetailedEventBookingDTO result = new DetailedEventBookingDTO();
+        return this.convertToDTO(eb, eventInformation, this.getBookedUserSummaries(Collections.singletonList(eb)));
+    }
 
-        try {
-            // Note: This will pull back deleted users for the purpose of the events system
-            // Note: This will also pull in PII that should be of no interest to anyone
-            // DANGER: The User DTO gets silently upgraded to one containing the email address here
-            UserSummaryWithEmailAddressDTO user = userManager.convertToDetailedUserSummaryObject(userManager.getUserDTOById(eb
-                    .getUserId(), true), UserSummaryWithEmailAddressDTO.class);
-            result.setReservedById(eb.getReservedById());
-            result.setUserBooked(user);
-            result.setBookingId(eb.getId());
-            result.setEventDate(eventInformation.getDate());
-            result.setEventId(eventInformation.getId());
-            result.setEventTitle(eventInformation.getTitle());
-            result.setBookingDate(eb.getCreationDate());
-            result.setUpdated(eb.getUpdateDate());
-            result.setBookingStatus(eb.getBookingStatus());
-            result.setAdditionalInformation(eb.getAdditionalInformation());
-
-            return result;
-        } catch (NoUserException e) {
+    /**
+     * @param eb
+     *            - raw booking do
+     * @param eventInformation
+     *            - pre-fetched event information
+     * @param bookedUsers
+     *            - pre-fetched summaries of the users booked, by user id
+     * @return event booking
+     * @throws SegueDatabaseException
+     *             - if an error occurs.
+     */
+    private DetailedEventBookingDTO convertToDTO(final EventBooking eb, final IsaacEventPageDTO eventInformation,
+                                                 final Map<Long, UserSummaryWithEmailAddressDTO> bookedUsers)
+            throws SegueDatabaseException {
+        // DANGER: The User DTO gets silently upgraded to one containing the email address here
+        UserSummaryWithEmailAddressDTO user = bookedUsers.get(eb.getUserId());
+        if (null == user) {
             log.error("Unable to create event booking dto as user is unavailable");
-            throw new SegueDatabaseException("Unable to create event booking dto as user is unavailable", e);
+            throw new SegueDatabaseException("Unable to create event booking dto as user is unavailable");
         }
+
+        DetailedEventBookingDTO result = new DetailedEventBookingDTO();
+        result.setReservedById(eb.getReservedById());
+        result.setUserBooked(user);
+        result.setBookingId(eb.getId());
+        result.setEventDate(eventInformation.getDate());
+        result.setEventId(eventInformation.getId());
+        result.setEventTitle(eventInformation.getTitle());
+        result.setBookingDate(eb.getCreationDate());
+        result.setUpdated(eb.getUpdateDate());
+        result.setBookingStatus(eb.getBookingStatus());
+        result.setAdditionalInformation(eb.getAdditionalInformation());
+
+        return result;
     }
 
     /**
@@ -347,6 +360,21 @@ public class EventBookingPersistenceManager {
      *             - if an error occurs.
      */
     private DetailedEventBookingDTO convertToDTO(final EventBooking eb) throws SegueDatabaseException {
+        return this.convertToDTO(eb, this.getBookedUserSummaries(Collections.singletonList(eb)));
+    }
+
+    /**
+     * @param eb
+     *            - raw booking do
+     * @param bookedUsers
+     *            - pre-fetched summaries of the users booked, by user id
+     * @return event booking or null if it no longer exists.
+     * @throws SegueDatabaseException
+     *             - if an error occurs.
+     */
+    private DetailedEventBookingDTO convertToDTO(final EventBooking eb,
+                                                 final Map<Long, UserSummaryWithEmailAddressDTO> bookedUsers)
+            throws SegueDatabaseException {
         try {
             ContentDTO c = this.contentManager.getContentById(eb.getEventId(), true);
 
@@ -357,7 +385,7 @@ public class EventBookingPersistenceManager {
             }
 
             if (c instanceof IsaacEventPageDTO event) {
-                return this.convertToDTO(eb, event);
+                return this.convertToDTO(eb, event, bookedUsers);
             } else {
                 log.error("Content object ({}) is not an event page.", c.getId());
                 throw new SegueDatabaseException("Content object is not an event page.");
@@ -377,9 +405,10 @@ public class EventBookingPersistenceManager {
      */
     private List<DetailedEventBookingDTO> convertToDTO(final List<EventBooking> toConvert) throws SegueDatabaseException {
         List<DetailedEventBookingDTO> result = Lists.newArrayList();
+        Map<Long, UserSummaryWithEmailAddressDTO> bookedUsers = this.getBookedUserSummaries(toConvert);
 
         for (EventBooking e : toConvert) {
-            DetailedEventBookingDTO augmentedBooking = convertToDTO(e);
+            DetailedEventBookingDTO augmentedBooking = convertToDTO(e, bookedUsers);
 
             if (augmentedBooking != null) {
                 result.add(augmentedBooking);
@@ -403,11 +432,30 @@ public class EventBookingPersistenceManager {
     private List<DetailedEventBookingDTO> convertToDTO(final List<EventBooking> toConvert, final IsaacEventPageDTO eventDetails)
             throws SegueDatabaseException {
         List<DetailedEventBookingDTO> result = Lists.newArrayList();
+        Map<Long, UserSummaryWithEmailAddressDTO> bookedUsers = this.getBookedUserSummaries(toConvert);
 
         for (EventBooking e : toConvert) {
-            result.add(convertToDTO(e, eventDetails));
+            result.add(convertToDTO(e, eventDetails, bookedUsers));
         }
 
         return result;
     }
+
+    /**
+     * Look up the users booked onto a batch of bookings all at once.
+     *
+     * Note: This will pull back deleted users for the purpose of the events system
+     * Note: This will also pull in PII that should be of no interest to anyone
+     *
+     * @param bookings
+     *            - the bookings to find the users of.
+     * @return map of user id to user summary.
+     * @throws SegueDatabaseException
+     *             - if an error occurs.
+     */
+    private Map<Long, UserSummaryWithEmailAddressDTO> getBookedUserSummaries(final List<EventBooking> bookings)
+            throws SegueDatabaseException {
+        List<Long> userIds = bookings.stream().map(EventBooking::getUserId).distinct().toList();
+        return userManager.getDetailedUserSummariesByIds(userIds, true);
+    }
 }
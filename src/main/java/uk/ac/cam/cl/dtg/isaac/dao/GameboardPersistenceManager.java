@@ -37,6 +37,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.GameboardItem;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentSubclassMapper;
@@ -66,7 +67,6 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
@@ -80,9 +80,15 @@ public class GameboardPersistenceManager {
     private static final Long GAMEBOARD_TTL_MINUTES = 30L;
     private static final int GAMEBOARD_ITEM_MAP_BATCH_SIZE = 1000;
     private static final int MAX_GAMEBOARD_IDS_TO_MATCH = 50;
+    private static final long AUGMENTED_GAMEBOARD_CACHE_MAX_SIZE = 5000L;
+    private static final long AUGMENTED_GAMEBOARD_CACHE_TTL_MINUTES = 5L;
+    private static final String UNKNOWN_CONTENT_SHA = "unknown";
 
     private final PostgresSqlDb database;
     private final Cache<String, GameboardDO> gameboardNonPersistentStorage;
+    // Fully augmented gameboards; these must never be handed out directly as callers add per-user state to them.
+    // Edits only invalidate this node's cache, so entries expire soon after being written to bound staleness elsewhere.
+    private final Cache<AugmentedGameboardKey, GameboardDTO> augmentedGameboardCache;
     
     private final MainMapper mapper; // used for content object mapping.
     private final ObjectMapper objectMapper; // used for json serialisation
@@ -109,8 +115,12 @@ public class GameboardPersistenceManager {
         this.contentManager = contentManager;
         this.objectMapper = objectMapper.getSharedContentObjectMapper();
         // FIXME: since removal of generateRandomGameboard, no more temporary boards to store, so this can go too:
-        this.gameboardNonPersistentStorage = CacheBuilder.newBuilder()
-                .expireAfterAccess(GAMEBOARD_TTL_MINUTES, TimeUnit.MINUTES).<String, GameboardDO> build();
+        this.gameboardNonPersistentStorage = CacheRegistry.build("gameboard_persistence_manager_temporary_cache",
+                CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().expireAfterAccess(GAMEBOARD_TTL_MINUTES, TimeUnit.MINUTES));
+        this.augmentedGameboardCache = CacheRegistry.build("gameboard_persistence_manager_augmented_cache",
+                AUGMENTED_GAMEBOARD_CACHE_MAX_SIZE,
+                CacheBuilder.newBuilder().expireAfterWrite(AUGMENTED_GAMEBOARD_CACHE_TTL_MINUTES, TimeUnit.MINUTES));
     }
 
     /**
@@ -228,6 +238,8 @@ public class GameboardPersistenceManager {
             throw new SegueDatabaseException("Postgres exception", e);
         }
 
+        this.invalidateAugmentedGameboard(gameboard.getId());
+
         return gameboard;
     }
 
@@ -733,6 +745,16 @@ public class GameboardPersistenceManager {
             return this.convertToGameboardDTO(this.gameboardNonPersistentStorage.getIfPresent(gameboardId), fullyPopulate);
         }
 
+        // then try the cache of augmented gameboards for the current content version
+        String contentSha = null;
+        if (fullyPopulate) {
+            contentSha = this.contentManager.getCurrentContentSHA();
+            GameboardDTO cachedGameboard = this.getCachedAugmentedGameboard(gameboardId, contentSha);
+            if (null != cachedGameboard) {
+                return cachedGameboard;
+            }
+        }
+
         String query = "SELECT * FROM gameboards WHERE id = ?;";
         try (Connection conn = database.getDatabaseConnection();
              PreparedStatement pst = conn.prepareStatement(query);
@@ -755,7 +777,11 @@ public class GameboardPersistenceManager {
                             + listOfResults);
                 }
 
-                return this.convertToGameboardDTO(listOfResults.getFirst(), fullyPopulate);
+                GameboardDTO gameboard = this.convertToGameboardDTO(listOfResults.getFirst(), fullyPopulate);
+                if (fullyPopulate) {
+                    return this.cacheAugmentedGameboard(gameboard, contentSha);
+                }
+                return gameboard;
             }
         } catch (SQLException | IOException e) {
             throw new SegueDatabaseException("Unable to find assignment by id", e);
@@ -779,18 +805,31 @@ public class GameboardPersistenceManager {
             return Collections.emptyList();
         }
 
-        // First, try temporary storage
+        // First, try temporary storage and then the augmented gameboard cache
+        String contentSha = fullyPopulate ? this.contentManager.getCurrentContentSHA() : null;
         List<GameboardDO> cachedGameboards = new ArrayList<>();
+        List<GameboardDTO> cachedAugmentedGameboards = new ArrayList<>();
         List<String> gameboardIdsForQuery = new ArrayList<>();
         for (String gameboardId : gameboardIds) {
             GameboardDO cachedGameboard = this.gameboardNonPersistentStorage.getIfPresent(gameboardId);
             if (null != cachedGameboard) {
                 cachedGameboards.add(cachedGameboard);
+                continue;
+            }
+            GameboardDTO cachedAugmentedGameboard = fullyPopulate ? this.getCachedAugmentedGameboard(gameboardId, contentSha) : null;
+            if (null != cachedAugmentedGameboard) {
+                cachedAugmentedGameboards.add(cachedAugmentedGameboard);
             } else {
                 gameboardIdsForQuery.add(gameboardId);
             }
         }
 
+        if (gameboardIdsForQuery.isEmpty()) {
+            List<GameboardDTO> gameboards = new ArrayList<>(convertToGameboardDTOs(cachedGameboards, fullyPopulate));
+            gameboards.addAll(cachedAugmentedGameboards);
+            return gameboards;
+        }
+
         // Then, go for the database
         String query = "SELECT * FROM gameboards WHERE id = ANY (?);";
         try (Connection conn = database.getDatabaseConnection();
@@ -805,14 +844,101 @@ public class GameboardPersistenceManager {
                     databaseGameboards.add(convertFromSQLToGameboardDO(results));
                 }
 
-                List<GameboardDO> allGameboards = Stream.of(cachedGameboards, databaseGameboards).flatMap(Collection::stream).collect(Collectors.toList());
-                return convertToGameboardDTOs(allGameboards, fullyPopulate);
+                List<GameboardDTO> gameboards = new ArrayList<>(convertToGameboardDTOs(cachedGameboards, fullyPopulate));
+                List<GameboardDTO> databaseGameboardDTOs = convertToGameboardDTOs(databaseGameboards, fullyPopulate);
+                if (fullyPopulate) {
+                    for (GameboardDTO databaseGameboardDTO : databaseGameboardDTOs) {
+                        gameboards.add(this.cacheAugmentedGameboard(databaseGameboardDTO, contentSha));
+                    }
+                } else {
+                    gameboards.addAll(databaseGameboardDTOs);
+                }
+                gameboards.addAll(cachedAugmentedGameboards);
+                return gameboards;
             }
         } catch (SQLException | IOException e) {
             throw new SegueDatabaseException("Unable to find assignments by ids", e);
         }
     }
 
+    /**
+     * Look up a fully augmented gameboard in the cache for the given content version.
+     *
+     * @param gameboardId - the gameboard to look up.
+     * @param contentSha - the content version the gameboard items must have been augmented from.
+     * @return a copy of the cached gameboard, safe for per-user modification, or null if it is not cached.
+     */
+    private GameboardDTO getCachedAugmentedGameboard(final String gameboardId, final String contentSha) {
+        if (null == contentSha || UNKNOWN_CONTENT_SHA.equals(contentSha)) {
+            return null;
+        }
+        GameboardDTO cachedGameboard = this.augmentedGameboardCache.getIfPresent(
+                new AugmentedGameboardKey(gameboardId, contentSha));
+        if (null == cachedGameboard) {
+            return null;
+        }
+        return copyGameboard(cachedGameboard);
+    }
+
+    /**
+     * Store a freshly augmented gameboard in the cache for the given content version.
+     *
+     * The gameboard passed in is kept by the cache and must not be modified afterwards, so a copy is returned for the
+     * caller to use instead.
+     *
+     * @param gameboard - the fully augmented gameboard.
+     * @param contentSha - the content version the gameboard items were augmented from.
+     * @return a copy of the gameboard, safe for per-user modification.
+     */
+    private GameboardDTO cacheAugmentedGameboard(final GameboardDTO gameboard, final String contentSha) {
+        if (null == contentSha || UNKNOWN_CONTENT_SHA.equals(contentSha)) {
+            return gameboard;
+        }
+        this.augmentedGameboardCache.put(new AugmentedGameboardKey(gameboard.getId(), contentSha), gameboard);
+        return copyGameboard(gameboard);
+    }
+
+    /**
+     * Remove every cached augmented version of a gameboard, whichever content version it was augmented from.
+     *
+     * Only this node's cache is affected; other nodes pick up the change once their cached copies expire.
+     *
+     * @param gameboardId - the gameboard which has changed.
+     */
+    private void invalidateAugmentedGameboard(final String gameboardId) {
+        this.augmentedGameboardCache.asMap().keySet().removeIf(key -> key.gameboardId().equals(gameboardId));
+    }
+
+    /**
+     * Make a copy of a gameboard which can be augmented with per-user information without affecting the original.
+     *
+     * Content-derived fields of the gameboard items are shared with the original and must not be modified.
+     *
+     * @param original - the gameboard to copy.
+     * @return a new gameboard DTO with new gameboard items.
+     */
+    private static GameboardDTO copyGameboard(final GameboardDTO original) {
+        List<GameboardItem> contents = Lists.newArrayListWithCapacity(original.getContents().size());
+        for (GameboardItem originalItem : original.getContents()) {
+            GameboardItem item = new GameboardItem(originalItem);
+            item.setQuestionPartsTotal(originalItem.getQuestionPartsTotal());
+            item.setBoardId(originalItem.getBoardId());
+            contents.add(item);
+        }
+        Set<String> tags = null == original.getTags() ? null : Sets.newHashSet(original.getTags());
+        return new GameboardDTO(original.getId(), original.getTitle(), contents, original.getWildCard(),
+                original.getWildCardPosition(), original.getCreationDate(), original.getGameFilter(),
+                original.getOwnerUserId(), original.getCreationMethod(), tags);
+    }
+
+    /**
+     * Key for the augmented gameboard cache; boards are cached per content version since their items depend on it.
+     *
+     * @param gameboardId - the gameboard id.
+     * @param contentSha - the content version used to augment the gameboard items.
+     */
+    private record AugmentedGameboardKey(String gameboardId, String contentSha) {}
+
     /**
      * @param results - the results from sql.
      * @return a gameboard DO.
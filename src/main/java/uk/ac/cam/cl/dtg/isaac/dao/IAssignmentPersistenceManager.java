@@ -10,15 +10,17 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 public interface IAssignmentPersistenceManager {
 
     /**
-     * Save an Assignment.
-     * 
-     * @param assignment
-     *            - assignment to save
-     * @return internal database id for the saved assignment.
+     * Save a batch of new assignments in a single transaction and deliver them to their group members' inboxes.
+     *
+     * Any assignment whose gameboard has already been assigned to its group is skipped rather than failing the batch.
+     *
+     * @param assignments
+     *            - the assignments to save. No two may share both a gameboard id and a group id.
+     * @return the new assignment ids, in the order provided, with null in place of any skipped duplicate.
      * @throws SegueDatabaseException
-     *             - if there is a problem saving the assignment in the database.
+     *             - if there is a problem saving the assignments in the database.
      */
-    Long saveAssignment(AssignmentDTO assignment) throws SegueDatabaseException;
+    List<Long> saveAssignments(List<AssignmentDTO> assignments) throws SegueDatabaseException;
 
     /**
      * Find a assignment by id.
@@ -79,6 +81,44 @@ public interface IAssignmentPersistenceManager {
      */
     List<AssignmentDTO> getAssignmentsScheduledForHour(Date timestamp) throws SegueDatabaseException;
 
+    /**
+     * Get the assignments in a user's assignment inbox.
+     *
+     * Assignments from deleted groups, from groups the user has left, and those set after the user's membership became
+     * inactive are excluded.
+     *
+     * @param userId
+     *            - the user to look up the inbox for.
+     * @return list of assignments
+     * @throws SegueDatabaseException
+     *             - if there is an error when accessing the database.
+     */
+    List<AssignmentDTO> getAssignmentsFromUserInbox(Long userId) throws SegueDatabaseException;
+
+    /**
+     * Add every assignment set to a group to a single user's inbox, e.g. when they join the group.
+     *
+     * @param groupId
+     *            - the group whose assignments should be delivered.
+     * @param userId
+     *            - the user whose inbox should be updated.
+     * @throws SegueDatabaseException
+     *             - if there is an error when accessing the database.
+     */
+    void addGroupAssignmentsToUserInbox(Long groupId, Long userId) throws SegueDatabaseException;
+
+    /**
+     * Remove every assignment set to a group from a single user's inbox, e.g. when they leave the group.
+     *
+     * @param groupId
+     *            - the group whose assignments should be removed.
+     * @param userId
+     *            - the user whose inbox should be updated.
+     * @throws SegueDatabaseException
+     *             - if there is an error when accessing the database.
+     */
+    void removeGroupAssignmentsFromUserInbox(Long groupId, Long userId) throws SegueDatabaseException;
+
 
     /**
      * deleteAssignment.
@@ -16,8 +16,10 @@
 package uk.ac.cam.cl.dtg.isaac.dao;
 
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -26,5 +28,16 @@ public interface IQuizQuestionAttemptPersistenceManager {
 
     Map<String, List<QuestionValidationResponse>> getAllAnswersForQuizAttempt(Long quizAttemptId) throws SegueDatabaseException;
 
-    Map<Long, Map<String, List<QuestionValidationResponse>>> getAllAnswersForQuizAssignment(Long quizAssignmentId) throws SegueDatabaseException;
+    /**
+     * Get only the latest attempt at each question for some users on a quiz assignment, without the answer itself.
+     *
+     * This reads just the columns needed for marking, rather than every attempt and its answer, so is cheap enough for
+     * whole-group feedback.
+     *
+     * @param quizAssignmentId the quiz assignment to get the latest attempts for.
+     * @param userIds the users to get the latest attempts for.
+     * @return a map of user id to a map of question id to the latest lightweight attempt at that question.
+     * @throws SegueDatabaseException if there is a database error.
+     */
+    Map<Long, Map<String, LightweightQuestionValidationResponse>> getLatestQuestionMarksForQuizAssignment(Long quizAssignmentId, Collection<Long> userIds) throws SegueDatabaseException;
 }
@@ -20,6 +20,8 @@ import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.AssignmentDO;
+import uk.ac.cam.cl.dtg.isaac.dos.GroupMembershipStatus;
+import uk.ac.cam.cl.dtg.isaac.dos.GroupStatus;
 import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
@@ -30,12 +32,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class is responsible for managing and persisting user data.
@@ -61,60 +65,99 @@ public class PgAssignmentPersistenceManager implements IAssignmentPersistenceMan
     }
 
     @Override
-    public Long saveAssignment(final AssignmentDTO assignment) throws SegueDatabaseException {
-        AssignmentDO assignmentToSave = mapper.map(assignment);
-
-        String query = "INSERT INTO assignments(gameboard_id, group_id, owner_user_id, creation_date, due_date, notes, scheduled_start_date)" +
-                " VALUES (?, ?, ?, ?, ?, ?, ?);";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-        ) {
-            pst.setString(1, assignmentToSave.getGameboardId());
-            pst.setLong(2, assignmentToSave.getGroupId());
-            pst.setLong(3, assignmentToSave.getOwnerUserId());
-
-            if (assignment.getCreationDate() != null) {
-                pst.setTimestamp(4, new java.sql.Timestamp(assignmentToSave.getCreationDate().getTime()));
-            } else {
-                pst.setTimestamp(4, new java.sql.Timestamp(new Date().getTime()));
-            }
-
-            if (assignment.getDueDate() != null) {
-                pst.setTimestamp(5, new java.sql.Timestamp(assignmentToSave.getDueDate().getTime()));
-            } else {
-                pst.setNull(5, Types.TIMESTAMP);
-            }
-
-            if (assignment.getNotes() != null) {
-                pst.setString(6, assignmentToSave.getNotes());
-            } else {
-                pst.setNull(6, Types.VARCHAR);
-            }
-
-            if (assignment.getScheduledStartDate() != null) {
-                pst.setTimestamp(7, new java.sql.Timestamp(assignmentToSave.getScheduledStartDate().getTime()));
-            } else {
-                pst.setNull(7, Types.TIMESTAMP);
-            }
+    public List<Long> saveAssignments(final List<AssignmentDTO> assignments) throws SegueDatabaseException {
+        if (assignments.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save assignment.");
-            }
+        String insertQuery = "INSERT INTO assignments(gameboard_id, group_id, owner_user_id, creation_date, due_date, notes, scheduled_start_date)"
+                + " VALUES " + String.join(", ", Collections.nCopies(assignments.size(), "(?, ?, ?, ?, ?, ?, ?)"))
+                + " ON CONFLICT (gameboard_id, group_id) DO NOTHING RETURNING id, gameboard_id, group_id;";
+
+        String inboxQuery = "INSERT INTO user_assignment_inbox(user_id, assignment_id, group_id)"
+                + " SELECT group_memberships.user_id, assignments.id, assignments.group_id FROM assignments"
+                + " JOIN group_memberships ON group_memberships.group_id = assignments.group_id"
+                + " WHERE assignments.id = ANY(?) AND group_memberships.status <> ?"
+                + " ON CONFLICT DO NOTHING";
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            Map<String, Long> savedIdsByGameboardAndGroup = new HashMap<>();
+            try {
+                conn.setAutoCommit(false);
+
+                try (PreparedStatement pst = conn.prepareStatement(insertQuery)) {
+                    java.sql.Timestamp now = new java.sql.Timestamp(new Date().getTime());
+                    int index = 1;
+                    for (AssignmentDTO assignment : assignments) {
+                        AssignmentDO assignmentToSave = mapper.map(assignment);
+                        pst.setString(index++, assignmentToSave.getGameboardId());
+                        pst.setLong(index++, assignmentToSave.getGroupId());
+                        pst.setLong(index++, assignmentToSave.getOwnerUserId());
+
+                        if (assignmentToSave.getCreationDate() != null) {
+                            pst.setTimestamp(index++, new java.sql.Timestamp(assignmentToSave.getCreationDate().getTime()));
+                        } else {
+                            pst.setTimestamp(index++, now);
+                        }
+
+                        if (assignmentToSave.getDueDate() != null) {
+                            pst.setTimestamp(index++, new java.sql.Timestamp(assignmentToSave.getDueDate().getTime()));
+                        } else {
+                            pst.setNull(index++, Types.TIMESTAMP);
+                        }
+
+                        if (assignmentToSave.getNotes() != null) {
+                            pst.setString(index++, assignmentToSave.getNotes());
+                        } else {
+                            pst.setNull(index++, Types.VARCHAR);
+                        }
+
+                        if (assignmentToSave.getScheduledStartDate() != null) {
+                            pst.setTimestamp(index++, new java.sql.Timestamp(assignmentToSave.getScheduledStartDate().getTime()));
+                        } else {
+                            pst.setNull(index++, Types.TIMESTAMP);
+                        }
+                    }
+
+                    try (ResultSet results = pst.executeQuery()) {
+                        while (results.next()) {
+                            savedIdsByGameboardAndGroup.put(
+                                    gameboardAndGroupKey(results.getString("gameboard_id"), results.getLong("group_id")),
+                                    results.getLong("id"));
+                        }
+                    }
+                }
 
-            long assignmentId;
-            try (ResultSet generatedKeys = pst.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    assignmentId = generatedKeys.getLong(1);
-                } else {
-                    throw new SQLException("Creating assignment failed, no ID obtained.");
+                if (!savedIdsByGameboardAndGroup.isEmpty()) {
+                    try (PreparedStatement pst = conn.prepareStatement(inboxQuery)) {
+                        Array assignmentIdsArray = conn.createArrayOf("INTEGER", savedIdsByGameboardAndGroup.values().toArray());
+                        try {
+                            pst.setArray(1, assignmentIdsArray);
+                            pst.setString(2, GroupMembershipStatus.DELETED.name());
+                            pst.executeUpdate();
+                        } finally {
+                            assignmentIdsArray.free();
+                        }
+                    }
                 }
 
-                log.debug("Saving Assignment ID ({}) with database ID ({})", assignment.getId(), assignmentId);
-                return assignmentId;
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
 
+            log.debug("Saved {} of {} assignments in bulk.", savedIdsByGameboardAndGroup.size(), assignments.size());
+            List<Long> savedIds = new ArrayList<>(assignments.size());
+            for (AssignmentDTO assignment : assignments) {
+                savedIds.add(savedIdsByGameboardAndGroup.get(
+                        gameboardAndGroupKey(assignment.getGameboardId(), assignment.getGroupId())));
+            }
+            return savedIds;
         } catch (SQLException e) {
-            throw new SegueDatabaseException("Postgres exception", e);
+            throw new SegueDatabaseException("Postgres exception while saving assignments", e);
         }
     }
 
@@ -237,6 +280,76 @@ public class PgAssignmentPersistenceManager implements IAssignmentPersistenceMan
         }
     }
 
+    @Override
+    public List<AssignmentDTO> getAssignmentsFromUserInbox(final Long userId) throws SegueDatabaseException {
+        // The inbox only records which assignments a user has been given. Membership status, when it last changed, and
+        // group deletion all change without touching the inbox, so they are read from the primary keys of
+        // group_memberships and groups; this also hides a group's assignments if removing them on leaving failed.
+        String query = "SELECT assignments.* FROM user_assignment_inbox"
+                + " JOIN assignments ON assignments.id = user_assignment_inbox.assignment_id"
+                + " JOIN group_memberships ON group_memberships.group_id = user_assignment_inbox.group_id"
+                + " AND group_memberships.user_id = user_assignment_inbox.user_id"
+                + " JOIN groups ON groups.id = user_assignment_inbox.group_id"
+                + " WHERE user_assignment_inbox.user_id = ? AND group_memberships.status <> ? AND groups.group_status <> ?"
+                + " AND NOT (group_memberships.status = ?"
+                + " AND group_memberships.updated < COALESCE(assignments.scheduled_start_date, assignments.creation_date))"
+                + " ORDER BY assignments.creation_date";
+
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
+            pst.setString(2, GroupMembershipStatus.DELETED.name());
+            pst.setString(3, GroupStatus.DELETED.name());
+            pst.setString(4, GroupMembershipStatus.INACTIVE.name());
+
+            try (ResultSet results = pst.executeQuery()) {
+                List<AssignmentDTO> listOfResults = Lists.newArrayList();
+
+                while (results.next()) {
+                    listOfResults.add(this.convertToAssignmentDTO(this.convertFromSQLToAssignmentDO(results)));
+                }
+
+                return listOfResults;
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Unable to find assignments in user inbox", e);
+        }
+    }
+
+    @Override
+    public void addGroupAssignmentsToUserInbox(final Long groupId, final Long userId) throws SegueDatabaseException {
+        String query = "INSERT INTO user_assignment_inbox(user_id, assignment_id, group_id)"
+                + " SELECT ?, id, group_id FROM assignments WHERE group_id = ?"
+                + " ON CONFLICT DO NOTHING";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, userId);
+            pst.setLong(2, groupId);
+
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception while adding group assignments to user inbox", e);
+        }
+    }
+
+    @Override
+    public void removeGroupAssignmentsFromUserInbox(final Long groupId, final Long userId)
+            throws SegueDatabaseException {
+        String query = "DELETE FROM user_assignment_inbox WHERE group_id = ? AND user_id = ?";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setLong(1, groupId);
+            pst.setLong(2, userId);
+
+            pst.execute();
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception while removing group assignments from user inbox", e);
+        }
+    }
+
     @Override
     public void deleteAssignment(final Long id) throws SegueDatabaseException {
         String query = "DELETE FROM assignments WHERE id = ?";
@@ -251,6 +364,17 @@ public class PgAssignmentPersistenceManager implements IAssignmentPersistenceMan
         }
     }
     
+    /**
+     * Key used to match the rows returned by a bulk insert back to the assignments that were inserted.
+     *
+     * @param gameboardId - the assigned gameboard.
+     * @param groupId - the group it was assigned to.
+     * @return a key unique to the gameboard and group pair.
+     */
+    private static String gameboardAndGroupKey(final String gameboardId, final Long groupId) {
+        return groupId + ":" + gameboardId;
+    }
+
     /**
      * Convert form a Assignment DO to a Assignment DTO.
      * 
@@ -25,14 +25,18 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentSubclassMapper;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -122,36 +126,45 @@ public class PgQuizQuestionAttemptPersistenceManager implements IQuizQuestionAtt
     }
 
     @Override
-    public Map<Long, Map<String, List<QuestionValidationResponse>>> getAllAnswersForQuizAssignment(Long quizAssignmentId) throws SegueDatabaseException {
-        String query = "SELECT user_id, question_id, question_attempt FROM quiz_question_attempts" +
+    public Map<Long, Map<String, LightweightQuestionValidationResponse>> getLatestQuestionMarksForQuizAssignment(Long quizAssignmentId, Collection<Long> userIds) throws SegueDatabaseException {
+        String query = "SELECT DISTINCT ON (user_id, question_id) user_id, question_id, correct, marks, \"timestamp\"" +
+                    " FROM quiz_question_attempts" +
                     " INNER JOIN quiz_attempts ON (quiz_attempts.id = quiz_question_attempts.quiz_attempt_id)" +
-                    " WHERE quiz_assignment_id = ? ORDER BY quiz_attempt_id, timestamp";
+                    " WHERE quiz_assignment_id = ? AND user_id = ANY(?)" +
+                    " ORDER BY user_id, question_id, quiz_attempt_id DESC, \"timestamp\" DESC";
         try (Connection conn = database.getDatabaseConnection();
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setLong(1, quizAssignmentId);
+            Array userIdsArray = conn.createArrayOf("BIGINT", userIds.toArray());
+            pst.setArray(2, userIdsArray);
 
             try (ResultSet results = pst.executeQuery()) {
-                Map<Long, Map<String, List<QuestionValidationResponse>>> resultsMap = Maps.newHashMap();
+                Map<Long, Map<String, LightweightQuestionValidationResponse>> resultsMap = Maps.newHashMap();
                 while (results.next()) {
                     Long userId = results.getLong("user_id");
                     String questionId = results.getString("question_id");
 
-                    Map<String, List<QuestionValidationResponse>> userAttemptsMap = resultsMap.computeIfAbsent(userId, (ignoreKey) -> Maps.newHashMap());
-
-                    List<QuestionValidationResponse> questionAttempts = userAttemptsMap.computeIfAbsent(questionId, (ignoreKey) -> Lists.newArrayList());
-
-                    QuestionValidationResponse questionAttempt = objectMapper.readValue(
-                            results.getString("question_attempt"), QuestionValidationResponse.class);
-
-                    questionAttempts.add(questionAttempt);
+                    Boolean correct = results.getBoolean("correct");
+                    if (results.wasNull()) {
+                        correct = null;
+                    }
+                    Integer marks = results.getInt("marks");
+                    if (results.wasNull()) {
+                        marks = null;
+                    }
+                    java.sql.Timestamp timestamp = results.getTimestamp("timestamp");
+
+                    resultsMap.computeIfAbsent(userId, (ignoreKey) -> Maps.newHashMap()).put(questionId,
+                            new LightweightQuestionValidationResponse(questionId, correct, marks,
+                                    timestamp == null ? null : new Date(timestamp.getTime())));
                 }
                 return resultsMap;
+            } finally {
+                userIdsArray.free();
             }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
-        } catch (JsonProcessingException e) {
-            throw new SegueDatabaseException("Unable to process json exception", e);
         }
     }
 }
@@ -19,6 +19,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.util.locations.Location;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  *
  */
@@ -34,6 +37,18 @@ public interface ILocationHistory {
      */
     LocationHistoryEvent getLatestByIPAddress(final String ipAddress) throws SegueDatabaseException;
 
+    /**
+     * Get the latest location for each of several ip addresses.
+     *
+     * @param ipAddresses
+     *            of interest
+     * @return a map from ip address to its latest location event record, with no entry for an ip address that has none.
+     * @throws SegueDatabaseException
+     *             - if there is a db error.
+     */
+    Map<String, LocationHistoryEvent> getLatestByIPAddresses(final Collection<String> ipAddresses)
+            throws SegueDatabaseException;
+
     /**
      * Store location information about an ip address.
      * 
@@ -64,4 +79,22 @@ public interface ILocationHistory {
      *             - if there is a db error.
      */
     void updateLocationEventDate(final Long id, boolean isCurrent) throws SegueDatabaseException;
+
+    /**
+     * Record the results of checking several ip addresses' locations, in a single transaction.
+     *
+     * @param unchangedEventIds
+     *            - ids of records whose location was found to be unchanged, to be marked as checked now.
+     * @param supersededEventIds
+     *            - ids of records whose location has changed, to be marked as no longer current.
+     * @param newLocations
+     *            - new (geo-coded) locations to record, by ip address.
+     * @throws JsonProcessingException
+     *             if we cannot convert a location into something useful.
+     * @throws SegueDatabaseException
+     *             - if there is a db error.
+     */
+    void storeLocationUpdates(final Collection<Long> unchangedEventIds, final Collection<Long> supersededEventIds,
+                              final Map<String, Location> newLocations)
+            throws JsonProcessingException, SegueDatabaseException;
 }
\ No newline at end of file
@@ -28,12 +28,16 @@ import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.util.locations.Location;
 
 import java.io.IOException;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -89,6 +93,42 @@ public class PgLocationHistory implements ILocationHistory {
         }
     }
 
+    @Override
+    public Map<String, LocationHistoryEvent> getLatestByIPAddresses(final Collection<String> ipAddresses)
+            throws SegueDatabaseException {
+        Objects.requireNonNull(ipAddresses);
+        Map<String, LocationHistoryEvent> latestByIPAddress = new HashMap<>();
+        if (ipAddresses.isEmpty()) {
+            return latestByIPAddress;
+        }
+
+        String query = "SELECT DISTINCT ON (ip_address) * FROM ip_location_history"
+                + " WHERE ip_address = ANY(?) AND is_current = ? ORDER BY ip_address, last_lookup DESC";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            Array ipAddressArray = conn.createArrayOf("TEXT", ipAddresses.toArray());
+            try {
+                pst.setArray(1, ipAddressArray);
+                pst.setBoolean(2, true);
+
+                try (ResultSet results = pst.executeQuery()) {
+                    while (results.next()) {
+                        PgLocationEvent event = buildPgLocationEntry(results);
+                        if (null != event) {
+                            latestByIPAddress.put(results.getString("ip_address"), event);
+                        }
+                    }
+                }
+            } finally {
+                ipAddressArray.free();
+            }
+            return latestByIPAddress;
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -125,6 +165,73 @@ public class PgLocationHistory implements ILocationHistory {
 
     }
 
+    @Override
+    public void storeLocationUpdates(final Collection<Long> unchangedEventIds, final Collection<Long> supersededEventIds,
+                                     final Map<String, Location> newLocations)
+            throws JsonProcessingException, SegueDatabaseException {
+        Objects.requireNonNull(unchangedEventIds);
+        Objects.requireNonNull(supersededEventIds);
+        Objects.requireNonNull(newLocations);
+        if (unchangedEventIds.isEmpty() && supersededEventIds.isEmpty() && newLocations.isEmpty()) {
+            return;
+        }
+
+        String updateQuery = "UPDATE ip_location_history SET last_lookup = ?, is_current = ? WHERE id = ANY(?)";
+        String insertQuery = "INSERT INTO ip_location_history(id, ip_address, location_information, created, last_lookup, is_current) "
+                + "VALUES (DEFAULT, ?, ?, ?, ?, ?)";
+        try (Connection conn = database.getDatabaseConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                java.sql.Timestamp now = new java.sql.Timestamp(new Date().getTime());
+
+                try (PreparedStatement pst = conn.prepareStatement(updateQuery)) {
+                    for (boolean isCurrent : new boolean[] {true, false}) {
+                        Collection<Long> eventIds = isCurrent ? unchangedEventIds : supersededEventIds;
+                        if (eventIds.isEmpty()) {
+                            continue;
+                        }
+                        Array eventIdArray = conn.createArrayOf("BIGINT", eventIds.toArray());
+                        try {
+                            pst.setTimestamp(1, now);
+                            pst.setBoolean(2, isCurrent);
+                            pst.setArray(3, eventIdArray);
+                            pst.executeUpdate();
+                        } finally {
+                            eventIdArray.free();
+                        }
+                    }
+                }
+
+                if (!newLocations.isEmpty()) {
+                    try (PreparedStatement pst = conn.prepareStatement(insertQuery)) {
+                        for (Map.Entry<String, Location> newLocation : newLocations.entrySet()) {
+                            PGobject jsonObject = new PGobject();
+                            jsonObject.setType("jsonb");
+                            jsonObject.setValue(locationSerializer.writeValueAsString(newLocation.getValue()));
+
+                            pst.setString(1, newLocation.getKey());
+                            pst.setObject(2, jsonObject);
+                            pst.setTimestamp(3, now);
+                            pst.setTimestamp(4, now);
+                            pst.setBoolean(5, true);
+                            pst.addBatch();
+                        }
+                        pst.executeBatch();
+                    }
+                }
+
+                conn.commit();
+            } catch (SQLException | JsonProcessingException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     /**
      * Creates a brand new event.
      * 
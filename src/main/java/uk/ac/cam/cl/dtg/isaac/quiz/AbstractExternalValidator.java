@@ -3,6 +3,7 @@ package uk.ac.cam.cl.dtg.isaac.quiz;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
 
 import java.io.IOException;
 import java.io.StringWriter;
@@ -50,7 +51,11 @@ public abstract class AbstractExternalValidator {
                     .header("Content-Type", "application/json")
                     .POST(HttpRequest.BodyPublishers.ofString(requestString))
                     .build();
-            HttpResponse<String> httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> httpResponse;
+            try (RequestTimings.StageTimer validatorTimer =
+                         RequestTimings.time(RequestTimings.Stage.EXTERNAL_VALIDATION)) {
+                httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            }
 
             @SuppressWarnings("unchecked")  // JSON _will_ be String -> Object.
             HashMap<String, Object> response = objectMapper.readValue(httpResponse.body(), HashMap.class);
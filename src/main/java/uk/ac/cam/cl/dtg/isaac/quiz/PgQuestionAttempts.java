@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
+import uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseLockTimoutException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentSubclassMapper;
@@ -82,7 +83,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
             throws SegueDatabaseException {
 
         // Anonymous question attempts are stored in a JSONB object, need to atomically read-and-update this object:
-        try (Connection conn = database.getDatabaseConnection()) {
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.registerAnonymousQuestionAttempt")) {
             conn.setAutoCommit(false);  // Start a transaction to hold a lock open during.
             // Set a timeout for the lock of 2 seconds:
             try (Statement st = conn.createStatement()) {
@@ -108,6 +109,16 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
 
             userAttempts.get(questionPageId).get(fullQuestionId).add(questionAttempt);
 
+            // Anonymous users are only persisted once they record something, so this may be their first attempt:
+            String createQuery = "INSERT INTO temporary_user_store (id, temporary_app_data, created, last_updated)"
+                    + " VALUES (?, '{\"questionAttempts\":{}}'::jsonb, now(), now()) ON CONFLICT (id) DO NOTHING;";
+            try (PreparedStatement pst = conn.prepareStatement(createQuery)) {
+                pst.setString(1, userId);
+                if (pst.executeUpdate() > 0) {
+                    SegueMetrics.CREATE_ANONYMOUS_USER.inc();
+                }
+            }
+
             String query = "UPDATE temporary_user_store SET temporary_app_data = " +
                     "jsonb_set(temporary_app_data, ?::text[], ?::text::jsonb) WHERE id = ?;";
             try (PreparedStatement pst = conn.prepareStatement(query)) {
@@ -143,7 +154,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     public Map<String, Map<String, List<QuestionValidationResponse>>> getAnonymousQuestionAttempts(
             final String anonymousId) throws SegueDatabaseException {
         String query = "SELECT temporary_app_data->'questionAttempts' AS question_attempts from temporary_user_store where id = ?;";
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.getAnonymousQuestionAttempts");
              PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
         ) {
             pst.setString(1, anonymousId);
@@ -189,7 +200,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
 
         String query = "INSERT INTO question_attempts(user_id, page_id, question_id, question_attempt, correct, marks, \"timestamp\")"
                 + " VALUES (?, ?, ?, ?::text::jsonb, ?, ?, ?);";
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.registerQuestionAttempt");
              PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
         ) {
             pst.setLong(1, userId);
@@ -226,7 +237,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId)
             throws SegueDatabaseException {
         String query = "SELECT * FROM question_attempts WHERE user_id = ? ORDER BY \"timestamp\" ASC";
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.getQuestionAttempts");
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setLong(1, userId);
@@ -245,7 +256,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     public Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId, final String questionPageId)
             throws SegueDatabaseException {
         String query = "SELECT * FROM question_attempts WHERE user_id = ? AND page_id = ? ORDER BY \"timestamp\" ASC";
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.getQuestionAttemptsForPage");
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setLong(1, userId);
@@ -280,7 +291,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> mapToReturn
                 = userIds.stream().collect(Collectors.toMap(Function.identity(), k -> Maps.newLinkedHashMap()));
 
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.getLightweightQuestionAttemptsByUsers");
              PreparedStatement pst = conn.prepareStatement(query)) {
 
             Array userIdArray = conn.createArrayOf("INTEGER", userIds.toArray());
@@ -324,7 +335,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> mapToReturn
                 = userIds.stream().collect(Collectors.toMap(Function.identity(), k -> Maps.newHashMap()));;
 
-        try (Connection conn = database.getDatabaseConnection()) {
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.getMatchingLightweightQuestionAttempts")) {
             String query;
             if (null != toDate) {
                 query = "SELECT id, user_id, question_id, correct, marks, timestamp FROM question_attempts"
@@ -401,7 +412,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     public Map<Role, Long> getAnsweredQuestionRolesOverPrevious(TimeInterval timeInterval) throws SegueDatabaseException {
         String query = "SELECT role, count(DISTINCT users.id) FROM question_attempts" +
                 " JOIN users ON user_id=users.id AND NOT deleted WHERE timestamp > now() - ? GROUP BY role";
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.getAnsweredQuestionRolesOverPrevious");
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setObject(1, timeInterval.getPGInterval());
@@ -440,7 +451,7 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
         queryToBuild.append(" GROUP BY gen_date ORDER BY gen_date ASC;");
 
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgQuestionAttempts.getQuestionAttemptCountForUserByDateRange");
              PreparedStatement pst = conn.prepareStatement(queryToBuild.toString());
         ) {
             pst.setLong(1, userId);
@@ -43,8 +43,10 @@ import uk.ac.cam.cl.dtg.segue.api.managers.IExternalAccountManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
 import uk.ac.cam.cl.dtg.segue.api.managers.StatisticsManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.api.monitors.IMisuseMonitor;
 import uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics;
+import uk.ac.cam.cl.dtg.segue.api.monitors.SlowRequestProfiler;
 import uk.ac.cam.cl.dtg.segue.api.monitors.UserSearchMisuseHandler;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoCredentialsAvailableException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
@@ -52,6 +54,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserLoggedInException;
 import uk.ac.cam.cl.dtg.segue.comm.EmailType;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.LocationManager;
+import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
@@ -125,6 +128,7 @@ public class AdminFacade extends AbstractSegueFacade {
     private final EventBookingManager eventBookingManager;
     private final IExternalAccountManager externalAccountManager;
     private final IMisuseMonitor misuseMonitor;
+    private final SlowRequestProfiler slowRequestProfiler;
     private final SegueJobService segueJobService;
     private final HttpClient httpClient;
 
@@ -149,6 +153,8 @@ public class AdminFacade extends AbstractSegueFacade {
      *            - for using the event booking system
      * @param misuseMonitor
      *            - misuse monitor.
+     * @param slowRequestProfiler
+     *            - for retrieving profiles of slow requests.
      */
     @Inject
     public AdminFacade(final AbstractConfigLoader properties, final UserAccountManager userManager,
@@ -156,7 +162,8 @@ public class AdminFacade extends AbstractSegueFacade {
                        final StatisticsManager statsManager, final LocationManager locationManager,
                        final SchoolListReader schoolReader, final AbstractUserPreferenceManager userPreferenceManager,
                        final EventBookingManager eventBookingManager, final SegueJobService segueJobService,
-                       final IExternalAccountManager externalAccountManager, final IMisuseMonitor misuseMonitor) {
+                       final IExternalAccountManager externalAccountManager, final IMisuseMonitor misuseMonitor,
+                       final SlowRequestProfiler slowRequestProfiler) {
         super(properties, logManager);
         this.userManager = userManager;
         this.contentManager = contentManager;
@@ -168,6 +175,7 @@ public class AdminFacade extends AbstractSegueFacade {
         this.eventBookingManager = eventBookingManager;
         this.externalAccountManager = externalAccountManager;
         this.misuseMonitor = misuseMonitor;
+        this.slowRequestProfiler = slowRequestProfiler;
         this.segueJobService = segueJobService;
         this.httpClient = HttpClient.newHttpClient();
     }
@@ -200,6 +208,161 @@ public class AdminFacade extends AbstractSegueFacade {
         }
     }
 
+    /**
+     * Recompute the statistics returned by the statistics endpoint now, rather than waiting for the next scheduled
+     * refresh.
+     *
+     * @param request
+     *            - to determine access.
+     * @return the new stats
+     */
+    @POST
+    @Path("/stats/refresh")
+    @Produces(MediaType.APPLICATION_JSON)
+    @GZIP
+    @Operation(summary = "Recompute the general statistics now.")
+    public Response refreshStatistics(@Context final HttpServletRequest request) {
+        try {
+            if (!isUserAnAdmin(userManager, request)) {
+                return new SegueErrorResponse(Status.FORBIDDEN, "You must be an administrator to use this function.")
+                        .toResponse();
+            }
+
+            log.info("Refreshing general statistics on request.");
+            return Response.ok(statsManager.refreshGeneralStatistics()).build();
+        } catch (SegueDatabaseException e) {
+            log.error("Unable to refresh general statistics.", e);
+            return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, "Database error", e).toResponse();
+        } catch (NoUserLoggedInException e) {
+            return SegueErrorResponse.getNotLoggedInResponse();
+        }
+    }
+
+    /**
+     * List the caches held by this API node, with their sizes and hit rates.
+     *
+     * @param request
+     *            - to determine access.
+     * @return a summary of each cache.
+     */
+    @GET
+    @Path("/caches")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "List the caches held by this API node, with their sizes and hit rates.")
+    public Response getCaches(@Context final HttpServletRequest request) {
+        try {
+            if (!isUserAnAdmin(userManager, request)) {
+                return new SegueErrorResponse(Status.FORBIDDEN, "You must be an administrator to use this function.")
+                        .toResponse();
+            }
+
+            return Response.ok(CacheRegistry.getSummaries())
+                    .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+        } catch (NoUserLoggedInException e) {
+            return SegueErrorResponse.getNotLoggedInResponse();
+        }
+    }
+
+    /**
+     * Remove every entry from one of the caches held by this API node.
+     *
+     * Other API nodes are not affected. Caches which protect the site, such as misuse counts, cannot be cleared.
+     *
+     * @param request
+     *            - to determine access.
+     * @param cacheName
+     *            - the name of the cache, as listed by the caches endpoint.
+     * @return no content, not found if there is no such cache, or forbidden if it cannot be cleared.
+     */
+    @DELETE
+    @Path("/caches/{cache_name}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Remove every entry from one of the caches held by this API node.")
+    public Response invalidateCache(@Context final HttpServletRequest request,
+                                    @PathParam("cache_name") final String cacheName) {
+        try {
+            RegisteredUserDTO currentUser = userManager.getCurrentRegisteredUser(request);
+            if (!isUserAnAdmin(userManager, currentUser)) {
+                return new SegueErrorResponse(Status.FORBIDDEN, "You must be an administrator to use this function.")
+                        .toResponse();
+            }
+
+            CacheRegistry.InvalidationResult result = CacheRegistry.invalidate(cacheName);
+            if (CacheRegistry.InvalidationResult.NOT_FOUND == result) {
+                return new SegueErrorResponse(Status.NOT_FOUND, "There is no cache with that name.").toResponse();
+            }
+            if (CacheRegistry.InvalidationResult.NOT_CLEARABLE == result) {
+                return new SegueErrorResponse(Status.FORBIDDEN,
+                        "This cache protects the site, for example by counting misuse, so it cannot be cleared.")
+                        .toResponse();
+            }
+
+            log.info("Admin ({}) invalidated the {} cache.", currentUser.getEmail(), cacheName);
+            return Response.noContent().build();
+        } catch (NoUserLoggedInException e) {
+            return SegueErrorResponse.getNotLoggedInResponse();
+        }
+    }
+
+    /**
+     * List the flight recording profiles saved by this API node for requests slower than the error threshold.
+     *
+     * @param request
+     *            - to determine access.
+     * @return the profiles, most recent first.
+     */
+    @GET
+    @Path("/profiles")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "List the profiles saved by this API node for very slow requests.")
+    public Response getSlowRequestProfiles(@Context final HttpServletRequest request) {
+        try {
+            if (!isUserAnAdmin(userManager, request)) {
+                return new SegueErrorResponse(Status.FORBIDDEN, "You must be an administrator to use this function.")
+                        .toResponse();
+            }
+
+            return Response.ok(ImmutableMap.of("enabled", slowRequestProfiler.isEnabled(),
+                            "profiles", slowRequestProfiler.getProfiles()))
+                    .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+        } catch (NoUserLoggedInException e) {
+            return SegueErrorResponse.getNotLoggedInResponse();
+        }
+    }
+
+    /**
+     * Download a flight recording profile of a slow request, to open with JDK Mission Control or the jfr tool.
+     *
+     * @param request
+     *            - to determine access.
+     * @param profileId
+     *            - the id of the profile, as listed by the profiles endpoint.
+     * @return the profile as a .jfr file.
+     */
+    @GET
+    @Path("/profiles/{profile_id}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @Operation(summary = "Download a profile saved by this API node for a very slow request.")
+    public Response getSlowRequestProfile(@Context final HttpServletRequest request,
+                                          @PathParam("profile_id") final String profileId) {
+        try {
+            if (!isUserAnAdmin(userManager, request)) {
+                return new SegueErrorResponse(Status.FORBIDDEN, "You must be an administrator to use this function.")
+                        .toResponse();
+            }
+
+            java.nio.file.Path profile = slowRequestProfiler.getProfile(profileId);
+            if (null == profile) {
+                return new SegueErrorResponse(Status.NOT_FOUND, "There is no profile with that id.").toResponse();
+            }
+            return Response.ok(profile.toFile(), MediaType.APPLICATION_OCTET_STREAM)
+                    .header("Content-Disposition", String.format("attachment; filename=%s.jfr", profileId))
+                    .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false)).build();
+        } catch (NoUserLoggedInException e) {
+            return SegueErrorResponse.getNotLoggedInResponse();
+        }
+    }
+
     /**
      * This method will allow users to be mass-converted to a new role.
      * 
@@ -782,6 +945,9 @@ public class AdminFacade extends AbstractSegueFacade {
 
     /**
      * List users by id or email.
+     *
+     * Results are ordered by family name then given name and limited in number; to fetch the next page of results,
+     * repeat the search with after set to the id of the last user returned.
      * 
      * @param httpServletRequest
      *            - for checking permissions
@@ -801,6 +967,8 @@ public class AdminFacade extends AbstractSegueFacade {
      *            - if searching for school by ID.
      * @param emailVerificationStatus
      *            - if searching by email verification status
+     * @param afterUserId
+     *            - the id of the last user on the previous page of results, if fetching a later page.
      * @return a userDTO or a segue error response
      */
     @GET
@@ -812,7 +980,8 @@ public class AdminFacade extends AbstractSegueFacade {
             @QueryParam("familyName") @Nullable final String familyName, @QueryParam("role") @Nullable final Role role,
             @QueryParam("schoolOther") @Nullable final String schoolOther,
             @QueryParam("schoolId") @Nullable final String schoolId,
-            @QueryParam("emailVerificationStatus") @Nullable final EmailVerificationStatus emailVerificationStatus) {
+            @QueryParam("emailVerificationStatus") @Nullable final EmailVerificationStatus emailVerificationStatus,
+            @QueryParam("after") @Nullable final Long afterUserId) {
 
         RegisteredUserDTO currentUser;
         try {
@@ -881,35 +1050,38 @@ public class AdminFacade extends AbstractSegueFacade {
                 userPrototype.setEmailVerificationStatus(emailVerificationStatus);
             }
 
+            int searchResultsLimit;
+            try {
+                searchResultsLimit = Integer.parseInt(this.getProperties().getProperty(Constants.SEARCH_RESULTS_HARD_LIMIT));
+            } catch (NumberFormatException e) {
+                searchResultsLimit = 2000; // Hard-coded, but only as a fail-safe.
+            }
+
             List<RegisteredUserDTO> foundUsers;
 
             // If a unique email address (without wildcards) provided, look up using this email immediately:
             if (null != email && !email.isEmpty() && !(email.contains("%") || email.contains("_"))) {
                 try {
-                    foundUsers = Collections.singletonList(this.userManager.getUserDTOByEmail(email));
+                    foundUsers = null == afterUserId
+                            ? Collections.singletonList(this.userManager.getUserDTOByEmail(email))
+                            : Collections.emptyList();
                 } catch (NoUserException e) {
                     foundUsers = Collections.emptyList();
                 }
             } else {
-                foundUsers = this.userManager.findUsers(userPrototype);
+                // Fetch one more user than the limit, so that we can tell whether the results were truncated:
+                foundUsers = this.userManager.searchUsers(userPrototype, afterUserId, searchResultsLimit + 1);
             }
 
             // Calculate the ETag
             EntityTag etag = new EntityTag(foundUsers.size() + foundUsers.toString().hashCode()
-                    + userPrototype.toString().hashCode() + "");
+                    + userPrototype.toString().hashCode() + Objects.hashCode(afterUserId) + "");
 
             Response cachedResponse = generateCachedResponse(request, etag);
             if (cachedResponse != null) {
                 return cachedResponse;
             }
 
-            int searchResultsLimit;
-            try {
-                searchResultsLimit = Integer.parseInt(this.getProperties().getProperty(Constants.SEARCH_RESULTS_HARD_LIMIT));
-            } catch (NumberFormatException e) {
-                searchResultsLimit = 2000; // Hard-coded, but only as a fail-safe.
-            }
-
             if (foundUsers.size() > searchResultsLimit) {
                 log.warn("{} user ({}) search returned {} results, limiting to {}.",
                         currentUser.getRole(), currentUser.getEmail(), foundUsers.size(), searchResultsLimit);
@@ -922,6 +1094,9 @@ public class AdminFacade extends AbstractSegueFacade {
                     .tag(etag)
                     .cacheControl(getCacheControl(NEVER_CACHE_WITHOUT_ETAG_CHECK, false))
                     .build();
+        } catch (ResourceNotFoundException e) {
+            return new SegueErrorResponse(Status.BAD_REQUEST,
+                    "The user to continue the search after no longer exists; please repeat the search.").toResponse();
         } catch (SegueDatabaseException e) {
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
                     "Database error while looking up user information.").toResponse();
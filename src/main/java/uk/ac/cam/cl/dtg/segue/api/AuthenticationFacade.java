@@ -48,6 +48,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.MFARequiredButNotConfiguredExcepti
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.MissingRequiredFieldException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoCredentialsAvailableException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserLoggedInException;
 import uk.ac.cam.cl.dtg.segue.comm.EmailMustBeVerifiedException;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
@@ -425,6 +426,10 @@ public class AuthenticationFacade extends AbstractSegueFacade {
         } catch (MFARequiredButNotConfiguredException e) {
             log.warn("Login blocked for staff account ({}) missing the required 2FA!", email);
             return new SegueErrorResponse(Status.UNAUTHORIZED, e.getMessage()).toResponse();
+        } catch (PasswordHashingCapacityExceededException e) {
+            log.warn("Login rejected for ({}) as the password hashing queue is full.", email);
+            return SegueErrorResponse.getServiceUnavailableResponse(
+                    "There are too many people logging in right now. Please try again in a moment.");
         } catch (SegueDatabaseException e) {
             String errorMsg = "Internal Database error has occurred during authentication.";
             log.error(errorMsg, e);
@@ -204,6 +204,9 @@ public final class Constants {
     public static final String SEARCH_CLUSTER_NAME = "SEARCH_CLUSTER_V9_NAME";
 
     public static final String SEARCH_RESULTS_HARD_LIMIT = "SEARCH_RESULTS_HARD_LIMIT";
+    // Optional: log the query JSON of a sampled fraction (0 to 1, default all) of searches slower than the threshold.
+    public static final String SEARCH_SLOW_QUERY_THRESHOLD_MILLISECONDS = "SEARCH_SLOW_QUERY_THRESHOLD_MILLISECONDS";
+    public static final String SEARCH_SLOW_QUERY_SAMPLE_RATE = "SEARCH_SLOW_QUERY_SAMPLE_RATE";
 
     // Event management stuff:
     public static final String EVENT_ADMIN_EMAIL = "EVENT_ADMIN_EMAIL";
@@ -321,6 +324,8 @@ public final class Constants {
     public static final String LOCAL_AUTH_EMAIL_VERIFICATION_TOKEN_FIELDNAME = "emailVerificationToken";
     public static final String LOCAL_AUTH_GROUP_MANAGER_INITIATED_FIELDNAME = "groupManagerInitiated";
     public static final String LOCAL_AUTH_GROUP_MANAGER_EMAIL_FIELDNAME = "groupManagerEmail";
+    public static final String PASSWORD_HASHING_THREADS = "PASSWORD_HASHING_THREADS";
+    public static final String PASSWORD_HASHING_QUEUE_CAPACITY = "PASSWORD_HASHING_QUEUE_CAPACITY";
 
     // Database properties
     public static final String SEGUE_DB_NAME = "SEGUE_DB_NAME";
@@ -348,8 +353,24 @@ public final class Constants {
 
     // Logging component
     public static final String LOGGING_ENABLED = "LOGGING_ENABLED";
+    public static final String LOG_QUEUE_CAPACITY = "LOG_QUEUE_CAPACITY";
+    public static final String LOG_QUEUE_OVERFLOW_POLICY = "LOG_QUEUE_OVERFLOW_POLICY";
+    public static final Integer DEFAULT_LOG_QUEUE_CAPACITY = 10000;
     public static final Integer MAX_LOG_REQUEST_BODY_SIZE_IN_BYTES = 1000000;
 
+    // Misuse monitoring: "postgres" to share counts between all API nodes, otherwise each node counts in memory.
+    public static final String MISUSE_MONITOR_BACKEND = "MISUSE_MONITOR_BACKEND";
+    public static final String MISUSE_MONITOR_BACKEND_POSTGRES = "postgres";
+
+    // Slow request profiling: "true" to save flight recordings of requests slower than the error threshold.
+    public static final String SLOW_REQUEST_PROFILING_ENABLED = "SLOW_REQUEST_PROFILING_ENABLED";
+    public static final String SLOW_REQUEST_PROFILE_DIRECTORY = "SLOW_REQUEST_PROFILE_DIRECTORY";
+    public static final String SLOW_REQUEST_PROFILES_TO_KEEP = "SLOW_REQUEST_PROFILES_TO_KEEP";
+
+    // Admin statistics: how often the general statistics snapshot is recomputed in the background.
+    public static final String GENERAL_STATISTICS_REFRESH_INTERVAL_MINUTES = "GENERAL_STATISTICS_REFRESH_INTERVAL_MINUTES";
+    public static final Long DEFAULT_GENERAL_STATISTICS_REFRESH_INTERVAL_MINUTES = 10L;
+
     public interface LogType {
         /**
          * Get the string value of the log Enum.
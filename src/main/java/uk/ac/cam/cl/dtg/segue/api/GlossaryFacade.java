@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.isaac.dto.SegueErrorResponse;
 import uk.ac.cam.cl.dtg.isaac.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.search.BooleanInstruction;
@@ -48,7 +49,6 @@ import java.util.concurrent.TimeUnit;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
-import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
 
 /**
  * Glossary Facade
@@ -75,8 +75,8 @@ public class GlossaryFacade extends AbstractSegueFacade {
         super(properties, logManager);
         this.contentManager = contentManager;
 
-        this.termCache = CacheBuilder.newBuilder().recordStats().softValues().expireAfterAccess(5, TimeUnit.MINUTES).build();
-        CACHE_METRICS_COLLECTOR.addCache("glossary_facade_terms_cache", termCache);
+        this.termCache = CacheRegistry.build("glossary_facade_terms_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterAccess(5, TimeUnit.MINUTES));
     }
 
     /**
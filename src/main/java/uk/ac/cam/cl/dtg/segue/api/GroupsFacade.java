@@ -444,8 +444,7 @@ public class GroupsFacade extends AbstractSegueFacade {
                 return new SegueErrorResponse(Status.FORBIDDEN, "Only owners, admins or managers can view membership of groups").toResponse();
             }
 
-            List<UserSummaryDTO> summarisedMemberInfo = userManager.convertToUserSummaryObjectList(groupManager
-                    .getUsersInGroup(group));
+            List<UserSummaryDTO> summarisedMemberInfo = groupManager.getUserSummariesInGroup(group);
 
             associationManager.enforceAuthorisationPrivacy(user, summarisedMemberInfo);
 
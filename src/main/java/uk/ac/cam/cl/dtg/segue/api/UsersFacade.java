@@ -86,6 +86,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -723,10 +724,12 @@ public class UsersFacade extends AbstractSegueFacade {
             }
 
             final List<RegisteredUserDTO> users = this.userManager.findUsers(userIds);
+            final Map<String, School> schools = schoolListReader.findSchoolsByIds(users.stream()
+                    .map(RegisteredUserDTO::getSchoolId).filter(Objects::nonNull).collect(Collectors.toSet()));
             final ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
             for (RegisteredUserDTO user : users) {
                 if (user.getSchoolId() != null) {
-                    School school = schoolListReader.findSchoolById(user.getSchoolId());
+                    School school = schools.get(user.getSchoolId());
                     if (null != school) {
                         builder.put(user.getId().toString(), school);
                     } else {
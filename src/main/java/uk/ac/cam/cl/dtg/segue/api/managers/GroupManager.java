@@ -17,6 +17,11 @@ package uk.ac.cam.cl.dtg.segue.api.managers;
 
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Sets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
@@ -41,6 +46,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryWithEmailAddressDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryWithGroupMembershipDTO;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
 import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
@@ -58,6 +64,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -68,6 +75,8 @@ import java.util.stream.Collectors;
  */
 public class GroupManager {
     private static final Logger log = LoggerFactory.getLogger(GroupManager.class);
+    private static final int GROUP_MEMBERSHIP_CACHE_MAX_SIZE = 10000;
+    private static final long GROUP_MEMBERSHIP_CACHE_TTL_SECONDS = 60;
 
     private final IUserGroupPersistenceManager groupDatabase;
     private final UserAccountManager userManager;
@@ -75,6 +84,14 @@ public class GroupManager {
     private final UserMapper dtoMapper;
     private List<IGroupObserver> groupsObservers;
 
+    // Memberships and managers are checked many times per request for authorisation, so are kept briefly in memory.
+    // Changes made through this class invalidate the relevant entries; the expiry bounds staleness for changes made on
+    // other servers.
+    private final Cache<Long, Map<Long, GroupMembership>> userMembershipCache;
+    private final Cache<Long, List<UserGroup>> userGroupListCache;
+    private final Cache<Long, Map<Long, GroupMembership>> groupMembershipCache;
+    private final Cache<Long, Set<Long>> additionalManagerCache;
+
     /**
      * GroupManager.
      * 
@@ -98,6 +115,15 @@ public class GroupManager {
         this.dtoMapper = dtoMapper;
 
         groupsObservers = new LinkedList<>();
+
+        this.userMembershipCache = CacheRegistry.build("group_manager_user_membership_cache", GROUP_MEMBERSHIP_CACHE_MAX_SIZE,
+                CacheBuilder.newBuilder().expireAfterWrite(GROUP_MEMBERSHIP_CACHE_TTL_SECONDS, TimeUnit.SECONDS));
+        this.userGroupListCache = CacheRegistry.build("group_manager_user_group_list_cache", GROUP_MEMBERSHIP_CACHE_MAX_SIZE,
+                CacheBuilder.newBuilder().expireAfterWrite(GROUP_MEMBERSHIP_CACHE_TTL_SECONDS, TimeUnit.SECONDS));
+        this.groupMembershipCache = CacheRegistry.build("group_manager_group_membership_cache", GROUP_MEMBERSHIP_CACHE_MAX_SIZE,
+                CacheBuilder.newBuilder().expireAfterWrite(GROUP_MEMBERSHIP_CACHE_TTL_SECONDS, TimeUnit.SECONDS));
+        this.additionalManagerCache = CacheRegistry.build("group_manager_additional_manager_cache", GROUP_MEMBERSHIP_CACHE_MAX_SIZE,
+                CacheBuilder.newBuilder().expireAfterWrite(GROUP_MEMBERSHIP_CACHE_TTL_SECONDS, TimeUnit.SECONDS));
     }
 
     /**
@@ -137,7 +163,10 @@ public class GroupManager {
         userGroup.setLastUpdated(new Date());
 
         UserGroup existingGroup = groupDatabase.findGroupById(groupToEdit.getId());
-        UserGroupDTO group = this.convertGroupToDTO(groupDatabase.editGroup(userGroup));
+        UserGroup editedGroup = groupDatabase.editGroup(userGroup);
+        // the members' cached group lists hold the old group details:
+        userGroupListCache.invalidateAll(this.getMembershipMapForGroup(groupToEdit.getId()).keySet());
+        UserGroupDTO group = this.convertGroupToDTO(editedGroup);
 
         if (existingGroup.isAdditionalManagerPrivileges() != group.isAdditionalManagerPrivileges()) {
             // Notify observers of change in additional manager privileges
@@ -159,7 +188,14 @@ public class GroupManager {
      */
     public void deleteGroup(final UserGroupDTO group) throws SegueDatabaseException {
         Objects.requireNonNull(group);
+        // deleted groups have no members, so find who was in it first:
+        Set<Long> memberIds = this.getMembershipMapForGroup(group.getId()).keySet();
         groupDatabase.deleteGroup(group.getId());
+
+        userMembershipCache.invalidateAll(memberIds);
+        userGroupListCache.invalidateAll(memberIds);
+        groupMembershipCache.invalidate(group.getId());
+        additionalManagerCache.invalidate(group.getId());
     }
 
     /**
@@ -173,7 +209,7 @@ public class GroupManager {
      */
     public List<RegisteredUserDTO> getUsersInGroup(final UserGroupDTO group) throws SegueDatabaseException {
         Objects.requireNonNull(group);
-        List<Long> groupMemberIds = Lists.newArrayList(groupDatabase.getGroupMemberIds(group.getId()));
+        List<Long> groupMemberIds = Lists.newArrayList(this.getMembershipMapForGroup(group.getId()).keySet());
 
         if (groupMemberIds.isEmpty()) {
             return Lists.newArrayList();
@@ -185,6 +221,23 @@ public class GroupManager {
         return users;
     }
 
+    /**
+     * Get minimal summaries of the members of a group, sorted in the same order as {@link #getUsersInGroup}.
+     *
+     * This is much cheaper than getUsersInGroup for callers that do not need the full user objects, as the summaries
+     * are cached.
+     *
+     * @param group
+     *            to find
+     * @return list of summaries of the users who are members of the group.
+     * @throws SegueDatabaseException
+     *             - If an error occurred while interacting with the database.
+     */
+    public List<UserSummaryDTO> getUserSummariesInGroup(final UserGroupDTO group) throws SegueDatabaseException {
+        Objects.requireNonNull(group);
+        return userManager.getUserSummariesByIds(this.getMembershipMapForGroup(group.getId()).keySet());
+    }
+
     /**
      * Get a map representing the current membership of a given group.
      * @param groupId - group of interest
@@ -194,7 +247,7 @@ public class GroupManager {
      */
     public Map<Long, GroupMembershipDTO> getUserMembershipMapForGroup(Long groupId) throws SegueDatabaseException {
         Map<Long, GroupMembershipDTO> result = Maps.newHashMap();
-        for(Map.Entry<Long, GroupMembership> entry : this.groupDatabase.getGroupMembershipMap(groupId).entrySet()) {
+        for(Map.Entry<Long, GroupMembership> entry : this.getMembershipMapForGroup(groupId).entrySet()) {
             result.put(entry.getKey(), dtoMapper.map(entry.getValue()));
         }
         return result;
@@ -247,7 +300,13 @@ public class GroupManager {
             throws SegueDatabaseException {
         Objects.requireNonNull(userToLookup);
 
-        return convertGroupsToDTOs(this.groupDatabase.getGroupMembershipList(userToLookup.getId()), augmentGroups);
+        List<UserGroup> groups = userGroupListCache.getIfPresent(userToLookup.getId());
+        if (null == groups) {
+            groups = ImmutableList.copyOf(this.groupDatabase.getGroupMembershipList(userToLookup.getId()));
+            userGroupListCache.put(userToLookup.getId(), groups);
+        }
+
+        return convertGroupsToDTOs(groups, augmentGroups);
     }
 
     /**
@@ -268,6 +327,7 @@ public class GroupManager {
         // don't do it if they are already in there
         if (!this.isUserInGroup(userToAdd, group)) {
             groupDatabase.addUserToGroup(userToAdd.getId(), group.getId());
+            this.invalidateMembership(group.getId(), userToAdd.getId());
 
             // Notify observers of change
             for (IGroupObserver interestedParty : this.groupsObservers) {
@@ -300,6 +360,7 @@ public class GroupManager {
         // we don't want people to delete user membership via this route as observers are not notified.
         Validate.isTrue(!GroupMembershipStatus.DELETED.equals(newStatus), "Deletion of a group membership should not use this route.");
         groupDatabase.setUsersGroupMembershipStatus(user.getId(), group.getId(), newStatus);
+        this.invalidateMembership(group.getId(), user.getId());
     }
 
     /**
@@ -317,6 +378,7 @@ public class GroupManager {
         Objects.requireNonNull(group);
         Objects.requireNonNull(userToRemove);
         groupDatabase.removeUserFromGroup(userToRemove.getId(), group.getId());
+        this.invalidateMembership(group.getId(), userToRemove.getId());
 
         for (IGroupObserver interestedParty : this.groupsObservers) {
             interestedParty.onGroupMembershipRemoved(group, userToRemove);
@@ -369,6 +431,7 @@ public class GroupManager {
             return group;
         }
         this.groupDatabase.addUserAdditionalManagerList(userToAdd.getId(), group.getId());
+        this.additionalManagerCache.invalidate(group.getId());
 
         // Notify observers of change
         for (IGroupObserver interestedParty : this.groupsObservers) {
@@ -410,6 +473,7 @@ public class GroupManager {
         if (group.getAdditionalManagersUserIds().contains(newOwner.getId())) {
             this.groupDatabase.removeUserFromAdditionalManagerList(newOwner.getId(), group.getId());
         }
+        this.additionalManagerCache.invalidate(group.getId());
 
         // ! We are mutating this group object, but this particular mutation should be safe !
         group.setOwnerId(newOwner.getId());
@@ -439,6 +503,7 @@ public class GroupManager {
             return group;
         }
         this.groupDatabase.removeUserFromAdditionalManagerList(userToAdd.getId(), group.getId());
+        this.additionalManagerCache.invalidate(group.getId());
 
         return this.getGroupById(group.getId());
     }
@@ -471,8 +536,7 @@ public class GroupManager {
      *             - if there is a database problem.
      */
     public boolean isUserInGroup(final RegisteredUserDTO user, final UserGroupDTO group) throws SegueDatabaseException {
-        List<UserGroupDTO> groups = this.getGroupMembershipList(user, false);
-        return groups.contains(group);
+        return this.getMembershipMapForUser(user.getId()).containsKey(group.getId());
     }
     
     /**
@@ -490,6 +554,16 @@ public class GroupManager {
         groupsObservers.add(interestedParty);
     }
 
+    /**
+     * Discard all cached group memberships and managers, e.g. after they have been changed directly in the database.
+     */
+    public void invalidateGroupCaches() {
+        userMembershipCache.invalidateAll();
+        userGroupListCache.invalidateAll();
+        groupMembershipCache.invalidateAll();
+        additionalManagerCache.invalidateAll();
+    }
+
 
     /**
      * Helper function to check if a user id is in the additional managers list of the group dto.
@@ -539,7 +613,7 @@ public class GroupManager {
         }
 
         Set<UserSummaryWithEmailAddressDTO> setOfUsers = Sets.newHashSet();
-        Set<Long> additionalManagers = this.groupDatabase.getAdditionalManagerSetByGroupId(group.getId());
+        Set<Long> additionalManagers = this.getAdditionalManagerSet(group.getId());
 
         if (additionalManagers != null) {
             setOfUsers.addAll(userManager.convertToDetailedUserSummaryObjectList(userManager.findUsers(additionalManagers), UserSummaryWithEmailAddressDTO.class));
@@ -572,7 +646,7 @@ public class GroupManager {
         if (augmentGroups) {
 
             Set<Long> groupIds = groups.stream().map(UserGroup::getId).collect(Collectors.toSet());
-            Map<Long, Set<Long>> groupAdditionalManagers = groupDatabase.getAdditionalManagerSetsByGroupIds(groupIds);
+            Map<Long, Set<Long>> groupAdditionalManagers = this.getAdditionalManagerSets(groupIds);
             Set<Long> ownerManagerIds = groups.stream().map(UserGroup::getOwnerId).collect(Collectors.toSet());
             ownerManagerIds.addAll(groupAdditionalManagers.values().stream().flatMap(Collection::stream).collect(Collectors.toSet()));
 
@@ -722,7 +796,7 @@ public class GroupManager {
     public <T extends IAssignmentLike> List<T> filterItemsBasedOnMembershipContext(final List<T> assignments, final Long userId) throws SegueDatabaseException {
         List<T> results = Lists.newArrayList();
 
-        Map<Long, GroupMembership> groupMembershipMap = groupDatabase.getGroupMembershipMapForUser(userId);
+        Map<Long, GroupMembership> groupMembershipMap = this.getMembershipMapForUser(userId);
 
         for (T assignment : assignments) {
 
@@ -742,4 +816,87 @@ public class GroupManager {
         }
         return results;
     }
+
+    /**
+     * Get a user's current group memberships, from the cache if possible.
+     *
+     * @param userId - the user of interest.
+     * @return map of group id to membership record.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    private Map<Long, GroupMembership> getMembershipMapForUser(final Long userId) throws SegueDatabaseException {
+        Map<Long, GroupMembership> memberships = userMembershipCache.getIfPresent(userId);
+        if (null == memberships) {
+            memberships = ImmutableMap.copyOf(groupDatabase.getGroupMembershipMapForUser(userId));
+            userMembershipCache.put(userId, memberships);
+        }
+        return memberships;
+    }
+
+    /**
+     * Get the current memberships of a group, from the cache if possible.
+     *
+     * @param groupId - the group of interest.
+     * @return map of user id to membership record.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    private Map<Long, GroupMembership> getMembershipMapForGroup(final Long groupId) throws SegueDatabaseException {
+        Map<Long, GroupMembership> memberships = groupMembershipCache.getIfPresent(groupId);
+        if (null == memberships) {
+            memberships = ImmutableMap.copyOf(groupDatabase.getGroupMembershipMap(groupId));
+            groupMembershipCache.put(groupId, memberships);
+        }
+        return memberships;
+    }
+
+    /**
+     * Get the additional managers of a group, from the cache if possible.
+     *
+     * @param groupId - the group of interest.
+     * @return set of additional manager user ids.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    private Set<Long> getAdditionalManagerSet(final Long groupId) throws SegueDatabaseException {
+        Set<Long> managers = additionalManagerCache.getIfPresent(groupId);
+        if (null == managers) {
+            Set<Long> managersFromDb = groupDatabase.getAdditionalManagerSetByGroupId(groupId);
+            managers = null != managersFromDb ? ImmutableSet.copyOf(managersFromDb) : ImmutableSet.of();
+            additionalManagerCache.put(groupId, managers);
+        }
+        return managers;
+    }
+
+    /**
+     * Get the additional managers of several groups, looking up only those groups not already cached.
+     *
+     * @param groupIds - the groups of interest.
+     * @return map of group id to set of additional manager user ids, with an entry for every group.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    private Map<Long, Set<Long>> getAdditionalManagerSets(final Collection<Long> groupIds) throws SegueDatabaseException {
+        Map<Long, Set<Long>> result = Maps.newHashMap(additionalManagerCache.getAllPresent(groupIds));
+        Set<Long> uncachedGroupIds = groupIds.stream().filter(id -> !result.containsKey(id)).collect(Collectors.toSet());
+
+        if (!uncachedGroupIds.isEmpty()) {
+            Map<Long, Set<Long>> managersFromDb = groupDatabase.getAdditionalManagerSetsByGroupIds(uncachedGroupIds);
+            for (Long groupId : uncachedGroupIds) {
+                Set<Long> managers = ImmutableSet.copyOf(managersFromDb.getOrDefault(groupId, ImmutableSet.of()));
+                additionalManagerCache.put(groupId, managers);
+                result.put(groupId, managers);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discard cached membership information affected by a change to one user's membership of a group.
+     *
+     * @param groupId - the group whose membership changed.
+     * @param userId  - the user whose membership changed.
+     */
+    private void invalidateMembership(final Long groupId, final Long userId) {
+        groupMembershipCache.invalidate(groupId);
+        userMembershipCache.invalidate(userId);
+        userGroupListCache.invalidate(userId);
+    }
 }
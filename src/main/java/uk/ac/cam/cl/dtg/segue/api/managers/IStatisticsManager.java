@@ -23,6 +23,14 @@ public interface IStatisticsManager {
     Map<String, Object> getGeneralStatistics()
             throws SegueDatabaseException;
 
+    /**
+     * Recompute the general statistics now, rather than waiting for the next scheduled refresh.
+     *
+     * @return the new general statistics.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    Map<String, Object> refreshGeneralStatistics() throws SegueDatabaseException;
+
     /**
      * LogCount.
      *
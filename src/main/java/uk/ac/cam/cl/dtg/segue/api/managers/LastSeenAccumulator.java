@@ -0,0 +1,95 @@
+package uk.ac.cam.cl.dtg.segue.api.managers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the times at which users were last seen and writes them to the database in periodic batches.
+ *
+ * Only the most recent time for each user is kept between flushes, so however many requests a user makes they cause at
+ * most one row update per flush interval.
+ */
+public class LastSeenAccumulator implements ServletContextListener {
+    private static final Logger log = LoggerFactory.getLogger(LastSeenAccumulator.class);
+    private static final long FLUSH_INTERVAL_SECONDS = 60;
+
+    private final IUserDataManager database;
+    private final Map<Long, Date> pendingLastSeen = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * Create a last seen accumulator, which will begin flushing to the database in the background.
+     *
+     * @param database - the user persistence manager.
+     */
+    @Inject
+    public LastSeenAccumulator(final IUserDataManager database) {
+        this.database = database;
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("last-seen-flush-%d").setDaemon(true).build());
+        this.flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Record that a user has been seen. The database will be updated at the next flush.
+     *
+     * @param userId - the id of the user who has been seen.
+     * @param date   - when they were seen.
+     */
+    public void recordLastSeen(final Long userId, final Date date) {
+        pendingLastSeen.merge(userId, date, (existing, latest) -> latest.after(existing) ? latest : existing);
+    }
+
+    /**
+     * Write all recorded last seen dates to the database.
+     *
+     * If the write fails the dates are kept so that the next flush can retry them.
+     */
+    public void flush() {
+        Map<Long, Date> batch = new HashMap<>();
+        for (Long userId : pendingLastSeen.keySet()) {
+            Date lastSeen = pendingLastSeen.remove(userId);
+            if (null != lastSeen) {
+                batch.put(userId, lastSeen);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            database.updateUsersLastSeen(batch);
+            log.debug("Updated last seen dates for {} users.", batch.size());
+        } catch (SegueDatabaseException | RuntimeException e) {
+            log.error("Unable to update last seen dates for {} users, will retry.", batch.size(), e);
+            batch.forEach(this::recordLastSeen);
+        }
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        log.info("Flushing last seen dates before shutdown.");
+        flushExecutor.shutdown();
+        flush();
+    }
+}
@@ -17,7 +17,9 @@ package uk.ac.cam.cl.dtg.segue.api.managers;
 
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
-import com.google.inject.Inject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
 import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,11 +52,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Maps.immutableEntry;
@@ -66,7 +75,7 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.TimeInterval.*;
  * StatisticsManager.
  * TODO this file is a mess... it needs refactoring.
  */
-public class StatisticsManager implements IStatisticsManager {
+public class StatisticsManager implements IStatisticsManager, ServletContextListener {
     private UserAccountManager userManager;
     private ILogManager logManager;
     private final GitContentManager contentManager;
@@ -76,6 +85,12 @@ public class StatisticsManager implements IStatisticsManager {
     private IUserStreaksManager userStreaksManager;
     private static final Logger log = LoggerFactory.getLogger(StatisticsManager.class);
     private static final int PROGRESS_MAX_RECENT_QUESTIONS = 5;
+    private static final int GENERAL_STATISTICS_QUERY_PARALLELISM = 3;
+
+    private final ExecutorService statisticsQueryExecutor;
+    private final ScheduledExecutorService refreshExecutor;
+    private final Object generalStatisticsRefreshLock = new Object();
+    private volatile Map<String, Object> generalStatistics;
 
     
     /**
@@ -93,12 +108,15 @@ public class StatisticsManager implements IStatisticsManager {
      *            - so that we can see how many questions were answered.
      * @param contentSummarizerService
      *            - to produce content summary objects
+     * @param userStreaksManager
+     *            - to look up user streaks
+     * @param refreshIntervalMinutes
+     *            - how often to recompute the general statistics in the background.
      */
-    @Inject
     public StatisticsManager(final UserAccountManager userManager, final ILogManager logManager,
                              final GitContentManager contentManager, final GroupManager groupManager,
                              final QuestionManager questionManager, final ContentSummarizerService contentSummarizerService,
-                             final IUserStreaksManager userStreaksManager) {
+                             final IUserStreaksManager userStreaksManager, final long refreshIntervalMinutes) {
         this.userManager = userManager;
         this.logManager = logManager;
 
@@ -108,44 +126,166 @@ public class StatisticsManager implements IStatisticsManager {
         this.questionManager = questionManager;
         this.contentSummarizerService = contentSummarizerService;
         this.userStreaksManager = userStreaksManager;
+
+        this.statisticsQueryExecutor = Executors.newFixedThreadPool(GENERAL_STATISTICS_QUERY_PARALLELISM,
+                new ThreadFactoryBuilder().setNameFormat("statistics-query-%d").setDaemon(true).build());
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("statistics-refresh-%d").setDaemon(true).build());
+        refreshExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                this.refreshGeneralStatistics();
+            } catch (SegueDatabaseException | RuntimeException e) {
+                log.error("Unable to refresh general statistics.", e);
+            }
+        }, refreshIntervalMinutes, refreshIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        log.info("Stopping general statistics refresh.");
+        refreshExecutor.shutdownNow();
+        statisticsQueryExecutor.shutdownNow();
     }
 
     /**
      * Output general stats. This returns a Map of String to Object and is intended to be sent directly to a
      * serializable facade endpoint.
+     *
+     * The statistics are recomputed in the background every few minutes, so this returns the latest snapshot without
+     * querying the database; "generatedAt" records when it was computed. Only the very first call waits for the
+     * statistics to be computed.
      * 
      * @return ImmutableMap<String, String> (stat name, stat value)
      * @throws SegueDatabaseException - if there is a database error.
      */
     @Override
-    public synchronized Map<String, Object> getGeneralStatistics()
+    public Map<String, Object> getGeneralStatistics()
             throws SegueDatabaseException {
-        Map<String, Object> result = Maps.newHashMap();
+        Map<String, Object> snapshot = this.generalStatistics;
+        if (null != snapshot) {
+            return snapshot;
+        }
+        synchronized (generalStatisticsRefreshLock) {
+            // Another request may have computed the statistics while this one waited:
+            if (null != this.generalStatistics) {
+                return this.generalStatistics;
+            }
+            return this.refreshGeneralStatistics();
+        }
+    }
 
-        result.put("userGenders", userManager.getGenderCount());
-        result.put("userRoles", userManager.getRoleCount());
-        result.put("userSchoolInfo", userManager.getSchoolInfoStats());
-        result.put("groupCount", this.groupManager.getGroupCount());
-
-        result.put("viewQuestionEvents", logManager.getLogCountByType(IsaacServerLogType.VIEW_QUESTION.name()));
-        result.put("answeredQuestionEvents", logManager.getLogCountByType(SegueServerLogType.ANSWER_QUESTION.name()));
-        result.put("viewConceptEvents", logManager.getLogCountByType(IsaacServerLogType.VIEW_CONCEPT.name()));
-
-        Map<String, Map<Role, Long>> rangedActiveUserStats = Maps.newHashMap();
-        rangedActiveUserStats.put("sevenDays", userManager.getActiveRolesOverPrevious(SEVEN_DAYS));
-        rangedActiveUserStats.put("thirtyDays", userManager.getActiveRolesOverPrevious(THIRTY_DAYS));
-        rangedActiveUserStats.put("ninetyDays", userManager.getActiveRolesOverPrevious(NINETY_DAYS));
-        rangedActiveUserStats.put("sixMonths", userManager.getActiveRolesOverPrevious(SIX_MONTHS));
-        rangedActiveUserStats.put("twoYears", userManager.getActiveRolesOverPrevious(TWO_YEARS));
-        result.put("activeUsersOverPrevious", rangedActiveUserStats);
-
-        Map<String, Map<Role, Long>> rangedAnsweredQuestionStats = Maps.newHashMap();
-        rangedAnsweredQuestionStats.put("sevenDays", questionManager.getAnsweredQuestionRolesOverPrevious(SEVEN_DAYS));
-        rangedAnsweredQuestionStats.put("thirtyDays", questionManager.getAnsweredQuestionRolesOverPrevious(THIRTY_DAYS));
-        rangedAnsweredQuestionStats.put("ninetyDays", questionManager.getAnsweredQuestionRolesOverPrevious(NINETY_DAYS));
-        result.put("answeringUsersOverPrevious", rangedAnsweredQuestionStats);
+    /**
+     * Recompute the general statistics now, running the queries in parallel, and replace the snapshot served by
+     * getGeneralStatistics.
+     *
+     * @return the new statistics.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    @Override
+    public Map<String, Object> refreshGeneralStatistics() throws SegueDatabaseException {
+        synchronized (generalStatisticsRefreshLock) {
+            long startTime = System.currentTimeMillis();
+
+            Map<String, CompletableFuture<?>> queries = Maps.newHashMap();
+            queries.put("userGenders", query(userManager::getGenderCount));
+            queries.put("userRoles", query(userManager::getRoleCount));
+            queries.put("userSchoolInfo", query(userManager::getSchoolInfoStats));
+            queries.put("groupCount", query(groupManager::getGroupCount));
+
+            queries.put("viewQuestionEvents",
+                    query(() -> logManager.getLogCountByType(IsaacServerLogType.VIEW_QUESTION.name())));
+            queries.put("answeredQuestionEvents",
+                    query(() -> logManager.getLogCountByType(SegueServerLogType.ANSWER_QUESTION.name())));
+            queries.put("viewConceptEvents",
+                    query(() -> logManager.getLogCountByType(IsaacServerLogType.VIEW_CONCEPT.name())));
+
+            Map<String, CompletableFuture<Map<Role, Long>>> rangedActiveUserQueries = Maps.newHashMap();
+            rangedActiveUserQueries.put("sevenDays", query(() -> userManager.getActiveRolesOverPrevious(SEVEN_DAYS)));
+            rangedActiveUserQueries.put("thirtyDays", query(() -> userManager.getActiveRolesOverPrevious(THIRTY_DAYS)));
+            rangedActiveUserQueries.put("ninetyDays", query(() -> userManager.getActiveRolesOverPrevious(NINETY_DAYS)));
+            rangedActiveUserQueries.put("sixMonths", query(() -> userManager.getActiveRolesOverPrevious(SIX_MONTHS)));
+            rangedActiveUserQueries.put("twoYears", query(() -> userManager.getActiveRolesOverPrevious(TWO_YEARS)));
+
+            Map<String, CompletableFuture<Map<Role, Long>>> rangedAnsweredQuestionQueries = Maps.newHashMap();
+            rangedAnsweredQuestionQueries.put("sevenDays",
+                    query(() -> questionManager.getAnsweredQuestionRolesOverPrevious(SEVEN_DAYS)));
+            rangedAnsweredQuestionQueries.put("thirtyDays",
+                    query(() -> questionManager.getAnsweredQuestionRolesOverPrevious(THIRTY_DAYS)));
+            rangedAnsweredQuestionQueries.put("ninetyDays",
+                    query(() -> questionManager.getAnsweredQuestionRolesOverPrevious(NINETY_DAYS)));
+
+            Map<String, Object> result = Maps.newHashMap();
+            for (Entry<String, CompletableFuture<?>> query : queries.entrySet()) {
+                result.put(query.getKey(), await(query.getValue()));
+            }
+            result.put("activeUsersOverPrevious", awaitAll(rangedActiveUserQueries));
+            result.put("answeringUsersOverPrevious", awaitAll(rangedAnsweredQuestionQueries));
+            result.put("generatedAt", new Date());
 
-        return result;
+            this.generalStatistics = Collections.unmodifiableMap(result);
+            log.debug("Refreshed general statistics in {}ms.", System.currentTimeMillis() - startTime);
+            return this.generalStatistics;
+        }
+    }
+
+    /**
+     * A statistics query which may fail with a database error.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    private interface StatisticsQuery<T> {
+        T run() throws SegueDatabaseException;
+    }
+
+    /**
+     * Start running a statistics query on the query executor.
+     *
+     * @param statisticsQuery - the query to run.
+     * @param <T> - the type of the result.
+     * @return the future result of the query.
+     */
+    private <T> CompletableFuture<T> query(final StatisticsQuery<T> statisticsQuery) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return statisticsQuery.run();
+            } catch (SegueDatabaseException e) {
+                throw new CompletionException(e);
+            }
+        }, statisticsQueryExecutor);
+    }
+
+    /**
+     * Wait for the result of a statistics query, rethrowing any database error.
+     *
+     * @param futureResult - the query result to wait for.
+     * @param <T> - the type of the result.
+     * @return the result of the query.
+     * @throws SegueDatabaseException - if the query failed.
+     */
+    private static <T> T await(final CompletableFuture<T> futureResult) throws SegueDatabaseException {
+        try {
+            return futureResult.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SegueDatabaseException) {
+                throw (SegueDatabaseException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static <T> Map<String, T> awaitAll(final Map<String, CompletableFuture<T>> futureResults)
+            throws SegueDatabaseException {
+        Map<String, T> results = Maps.newHashMap();
+        for (Entry<String, CompletableFuture<T>> futureResult : futureResults.entrySet()) {
+            results.put(futureResult.getKey(), await(futureResult.getValue()));
+        }
+        return results;
     }
 
     /**
@@ -16,6 +16,8 @@
 package uk.ac.cam.cl.dtg.segue.api.managers;
 
 import com.google.api.client.util.Lists;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.EnumUtils;
@@ -47,6 +49,7 @@ import uk.ac.cam.cl.dtg.isaac.dto.users.UserAuthenticationSettingsDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryWithEmailAddressDTO;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
 import uk.ac.cam.cl.dtg.segue.auth.IAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.IPasswordAuthenticator;
@@ -68,6 +71,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.MFARequiredButNotConfiguredExcepti
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.MissingRequiredFieldException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoCredentialsAvailableException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserLoggedInException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.UnknownCountryCodeException;
 import uk.ac.cam.cl.dtg.segue.comm.CommunicationException;
@@ -75,13 +79,16 @@ import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
 import uk.ac.cam.cl.dtg.segue.comm.EmailMustBeVerifiedException;
 import uk.ac.cam.cl.dtg.segue.comm.EmailType;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
+import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.users.IAnonymousUserDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+import uk.ac.cam.cl.dtg.util.NameOrderer;
 import uk.ac.cam.cl.dtg.util.mappers.UserMapper;
 
+import jakarta.annotation.Nullable;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.core.Response;
@@ -94,6 +101,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -112,6 +120,11 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
  */
 public class UserAccountManager implements IUserAccountManager {
     private static final Logger log = LoggerFactory.getLogger(UserAccountManager.class);
+    private static final String CURRENT_REGISTERED_USER_REQUEST_ATTRIBUTE = UserAccountManager.class.getName() + ".currentRegisteredUser";
+    // Must be comfortably less than the age at which the scheduled clean up job deletes anonymous users.
+    private static final long ANONYMOUS_USER_KEEP_ALIVE_INTERVAL_MILLIS = 15 * 60 * 1000L;
+    private static final int USER_SUMMARY_CACHE_MAX_SIZE = 50000;
+    private static final long USER_SUMMARY_CACHE_TTL_MINUTES = 10;
 
     private final IUserDataManager database;
     private final QuestionManager questionAttemptDb;
@@ -129,6 +142,10 @@ public class UserAccountManager implements IUserAccountManager {
 
     private final AbstractUserPreferenceManager userPreferenceManager;
 
+    private final LastSeenAccumulator lastSeenAccumulator;
+
+    private final Cache<Long, UserSummaryWithEmailAddressDTO> userSummaryCache;
+
     private final Pattern restrictedSignupEmailRegex;
     private static final int USER_NAME_MAX_LENGTH = 255;
     private static final Pattern USER_NAME_FORBIDDEN_CHARS_REGEX = Pattern.compile("[*<>]");
@@ -147,6 +164,7 @@ public class UserAccountManager implements IUserAccountManager {
      * @param userAuthenticationManager
      * @param secondFactorManager
      * @param userPreferenceManager     - Allows user preferences to be managed.
+     * @param lastSeenAccumulator       - Batches updates to users' last seen dates.
      */
     @Inject
     public UserAccountManager(final IUserDataManager database, final QuestionManager questionDb, final AbstractConfigLoader properties,
@@ -154,7 +172,8 @@ public class UserAccountManager implements IUserAccountManager {
                               final EmailManager emailQueue, final IAnonymousUserDataManager temporaryUserCache,
                               final ILogManager logManager, final UserAuthenticationManager userAuthenticationManager,
                               final ISecondFactorAuthenticator secondFactorManager,
-                              final AbstractUserPreferenceManager userPreferenceManager) {
+                              final AbstractUserPreferenceManager userPreferenceManager,
+                              final LastSeenAccumulator lastSeenAccumulator) {
 
         Objects.requireNonNull(properties.getProperty(HMAC_SALT));
         Objects.requireNonNull(properties.getProperty(SESSION_EXPIRY_SECONDS_DEFAULT));
@@ -176,6 +195,11 @@ public class UserAccountManager implements IUserAccountManager {
         this.userAuthenticationManager = userAuthenticationManager;
         this.secondFactorManager = secondFactorManager;
         this.userPreferenceManager = userPreferenceManager;
+        this.lastSeenAccumulator = lastSeenAccumulator;
+
+        this.userSummaryCache = CacheRegistry.build("user_account_manager_user_summary_cache",
+                USER_SUMMARY_CACHE_MAX_SIZE,
+                CacheBuilder.newBuilder().expireAfterWrite(USER_SUMMARY_CACHE_TTL_MINUTES, TimeUnit.MINUTES));
 
         String forbiddenEmailRegex = properties.getProperty(RESTRICTED_SIGNUP_EMAIL_REGEX);
         if (null == forbiddenEmailRegex || forbiddenEmailRegex.isEmpty()) {
@@ -330,11 +354,13 @@ public class UserAccountManager implements IUserAccountManager {
      * @throws AdditionalAuthenticationRequiredException - If the account has 2FA enabled and we need to initiate that flow
      * @throws MFARequiredButNotConfiguredException      - If the account type requires 2FA to be configured but none is enabled for the account
      * @throws SegueDatabaseException                    - if there is a problem with the database.
+     * @throws PasswordHashingCapacityExceededException  - if too many passwords are already waiting to be checked.
      */
     public final RegisteredUserDTO authenticateWithCredentials(final HttpServletRequest request,
                                                                final HttpServletResponse response, final String provider, final String email, final String password, final boolean rememberMe)
             throws AuthenticationProviderMappingException, IncorrectCredentialsProvidedException, NoUserException,
-            NoCredentialsAvailableException, SegueDatabaseException, AdditionalAuthenticationRequiredException, MFARequiredButNotConfiguredException, InvalidKeySpecException, NoSuchAlgorithmException, EmailMustBeVerifiedException {
+            NoCredentialsAvailableException, SegueDatabaseException, AdditionalAuthenticationRequiredException, MFARequiredButNotConfiguredException, InvalidKeySpecException, NoSuchAlgorithmException, EmailMustBeVerifiedException,
+            PasswordHashingCapacityExceededException {
         Validate.notBlank(email);
         Validate.notBlank(password);
 
@@ -587,6 +613,7 @@ public class UserAccountManager implements IUserAccountManager {
             }
 
             RegisteredUserDTO updatedUser = updateUserObject(userObjectFromClient, newPassword);
+            request.removeAttribute(CURRENT_REGISTERED_USER_REQUEST_ATTRIBUTE);
 
             // If the user's school has changed, record it. Check this using Objects.equals() to be null safe!
             if (!Objects.equals(updatedUser.getSchoolId(), existingUserFromDb.getSchoolId())
@@ -641,6 +668,10 @@ public class UserAccountManager implements IUserAccountManager {
         } catch (UnknownCountryCodeException e) {
             log.warn("Unknown country code provided during user update.");
             return new SegueErrorResponse(Response.Status.BAD_REQUEST, e.getMessage()).toResponse();
+        } catch (PasswordHashingCapacityExceededException e) {
+            log.warn("Password change rejected as the password hashing queue is full.");
+            return SegueErrorResponse.getServiceUnavailableResponse(
+                    "We are unable to check your password right now. Please try again in a moment.");
         }
     }
 
@@ -688,10 +719,12 @@ public class UserAccountManager implements IUserAccountManager {
      * @throws NoUserException                        - if the user does not exist
      * @throws NoCredentialsAvailableException        - If the account exists but does not have a local password
      * @throws SegueDatabaseException                 - if there is a problem with the database.
+     * @throws PasswordHashingCapacityExceededException - if too many passwords are already waiting to be checked.
      */
     public void ensureCorrectPassword(final String provider, final String email, final String password)
             throws AuthenticationProviderMappingException, IncorrectCredentialsProvidedException, NoUserException,
-            NoCredentialsAvailableException, SegueDatabaseException, InvalidKeySpecException, NoSuchAlgorithmException {
+            NoCredentialsAvailableException, SegueDatabaseException, InvalidKeySpecException, NoSuchAlgorithmException,
+            PasswordHashingCapacityExceededException {
 
         // this method will throw an error if the credentials are incorrect.
         this.userAuthenticationManager.getSegueUserFromCredentials(provider, email, password);
@@ -780,19 +813,22 @@ public class UserAccountManager implements IUserAccountManager {
             throws NoUserLoggedInException {
         Objects.requireNonNull(request);
 
+        // Many endpoints look up the current user more than once, so remember it for the rest of the request:
+        if (request.getAttribute(CURRENT_REGISTERED_USER_REQUEST_ATTRIBUTE) instanceof RegisteredUserDTO currentUser) {
+            return this.dtoMapper.copy(currentUser);
+        }
+
         RegisteredUser user = this.getCurrentRegisteredUserDO(request);
 
         if (null == user) {
             throw new NoUserLoggedInException();
         }
 
-        try {
-            updateLastSeen(user);
-        } catch (SegueDatabaseException e) {
-            log.error("Unable to update user ({}) last seen date.", user.getId());
-        }
+        updateLastSeen(user);
 
-        return this.convertUserDOToUserDTO(user);
+        RegisteredUserDTO currentUser = this.convertUserDOToUserDTO(user);
+        request.setAttribute(CURRENT_REGISTERED_USER_REQUEST_ATTRIBUTE, this.dtoMapper.copy(currentUser));
+        return currentUser;
     }
 
     /**
@@ -844,6 +880,26 @@ public class UserAccountManager implements IUserAccountManager {
         return this.convertUserDOListToUserDTOList(registeredUsersDOs);
     }
 
+    /**
+     * Search for users based on some user prototype, a page at a time.
+     *
+     * Only the fields needed to summarise each user are populated on the users returned.
+     *
+     * @param prototype   - partially completed user object to base search on
+     * @param afterUserId - the id of the last user on the previous page, or null for the first page.
+     * @param limit       - the maximum number of users to return.
+     * @return list of partially populated registered user dtos, ordered by family name then given name.
+     * @throws ResourceNotFoundException - if afterUserId is given but no such user exists.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    public List<RegisteredUserDTO> searchUsers(final RegisteredUserDTO prototype, @Nullable final Long afterUserId,
+                                               final int limit) throws SegueDatabaseException {
+        List<RegisteredUser> registeredUsersDOs = this.database.searchUsers(this.dtoMapper.map(prototype), afterUserId,
+                limit);
+
+        return this.convertUserDOListToUserDTOList(registeredUsersDOs);
+    }
+
     /**
      * Find a list of users based on a List of user ids.
      *
@@ -862,6 +918,68 @@ public class UserAccountManager implements IUserAccountManager {
         return this.convertUserDOListToUserDTOList(registeredUsersDOs);
     }
 
+    /**
+     * Get summaries, including email addresses, of several users, using the user summary cache where possible.
+     *
+     * Any users not already cached are looked up together in a single query.
+     *
+     * @param userIds             - the ids of the users to summarise.
+     * @param includeDeletedUsers - whether to also summarise deleted users, which are looked up individually and never
+     *                            cached.
+     * @return map of user id to a summary which the caller may modify, in the order the ids were provided, omitting
+     *         any users which cannot be found.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    public Map<Long, UserSummaryWithEmailAddressDTO> getDetailedUserSummariesByIds(final Collection<Long> userIds,
+                                                                                  final boolean includeDeletedUsers)
+            throws SegueDatabaseException {
+        Objects.requireNonNull(userIds);
+        Map<Long, UserSummaryWithEmailAddressDTO> summaries = new HashMap<>(userSummaryCache.getAllPresent(userIds));
+
+        List<Long> uncachedUserIds = userIds.stream().distinct().filter(id -> !summaries.containsKey(id)).toList();
+        if (!uncachedUserIds.isEmpty()) {
+            for (RegisteredUserDTO user : this.convertUserDOListToUserDTOList(this.database.findUsers(uncachedUserIds))) {
+                UserSummaryWithEmailAddressDTO summary = this.convertToDetailedUserSummaryObject(user,
+                        UserSummaryWithEmailAddressDTO.class);
+                userSummaryCache.put(user.getId(), summary);
+                summaries.put(user.getId(), summary);
+            }
+        }
+
+        Map<Long, UserSummaryWithEmailAddressDTO> result = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            UserSummaryWithEmailAddressDTO summary = summaries.get(userId);
+            if (null != summary) {
+                // Callers are free to modify the summaries returned, so never hand out the cached instance:
+                result.put(userId, this.dtoMapper.copy(summary));
+            } else if (includeDeletedUsers && !result.containsKey(userId)) {
+                try {
+                    result.put(userId, this.convertToDetailedUserSummaryObject(this.getUserDTOById(userId, true),
+                            UserSummaryWithEmailAddressDTO.class));
+                } catch (NoUserException e) {
+                    log.debug("Unable to summarise user ({}) as they do not exist.", userId);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get minimal summaries of several users, using the user summary cache where possible.
+     *
+     * @param userIds - the ids of the users to summarise.
+     * @return list of summaries sorted by family name then given name, omitting any deleted or missing users.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    public List<UserSummaryDTO> getUserSummariesByIds(final Collection<Long> userIds) throws SegueDatabaseException {
+        List<UserSummaryDTO> summaries = new ArrayList<>();
+        for (UserSummaryWithEmailAddressDTO summary : this.getDetailedUserSummariesByIds(userIds, false).values()) {
+            summaries.add(this.dtoMapper.mapToUserSummaryDTO(summary));
+        }
+        NameOrderer.orderUserSummariesByName(summaries);
+        return summaries;
+    }
+
     /**
      * This function can be used to find user information about a user when given an id.
      *
@@ -946,6 +1064,7 @@ public class UserAccountManager implements IUserAccountManager {
      */
     public void logUserOut(final HttpServletRequest request, final HttpServletResponse response) {
         Objects.requireNonNull(request);
+        request.removeAttribute(CURRENT_REGISTERED_USER_REQUEST_ATTRIBUTE);
         this.userAuthenticationManager.destroyUserSession(request, response);
     }
 
@@ -1178,6 +1297,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         // save the user
         RegisteredUser userToReturn = this.database.createOrUpdateUser(userToSave);
+        this.invalidateCachedUser(userToReturn.getId());
         if (null != newPassword && !newPassword.isEmpty()) {
             authenticator.setOrChangeUsersPassword(userToReturn, newPassword);
         }
@@ -1222,6 +1342,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         userToSave.setRole(requestedRole);
         this.database.createOrUpdateUser(userToSave);
+        this.invalidateCachedUser(userToSave.getId());
     }
 
     /**
@@ -1240,6 +1361,7 @@ public class UserAccountManager implements IUserAccountManager {
         userToSave.setEmailVerificationStatus(requestedEmailVerificationStatus);
         userToSave.setLastUpdated(new Date());
         this.database.createOrUpdateUser(userToSave);
+        this.invalidateCachedUser(userToSave.getId());
     }
 
     /**
@@ -1259,6 +1381,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         // delete the user.
         this.database.deleteUserAccount(userDOById);
+        this.invalidateCachedUser(userDOById.getId());
     }
 
     /**
@@ -1282,6 +1405,8 @@ public class UserAccountManager implements IUserAccountManager {
 
         // merge the users.
         this.database.mergeUserAccounts(targetUser, sourceUser);
+        this.invalidateCachedUser(targetUser.getId());
+        this.invalidateCachedUser(sourceUser.getId());
     }
 
     /**
@@ -1336,6 +1461,7 @@ public class UserAccountManager implements IUserAccountManager {
 
             // Save user object
             this.database.createOrUpdateUser(user);
+            this.invalidateCachedUser(user.getId());
 
             String emailVerificationToken = user.getEmailVerificationToken();
 
@@ -1438,6 +1564,7 @@ public class UserAccountManager implements IUserAccountManager {
             user.setTeacherAccountPending(false);
 
             RegisteredUser createOrUpdateUser = this.database.createOrUpdateUser(user);
+            this.invalidateCachedUser(createOrUpdateUser.getId());
             log.info("Email verification for user ({}) completed successfully.", createOrUpdateUser.getId());
 
             return this.convertUserDOToUserDTO(createOrUpdateUser);
@@ -1750,6 +1877,10 @@ public class UserAccountManager implements IUserAccountManager {
                     // delete the session attribute as merge has completed.
                     try {
                         temporaryUserCache.deleteAnonymousUser(anonymousUser);
+                    } catch (ResourceNotFoundException e) {
+                        // anonymous users are only persisted once they have recorded something.
+                        log.debug("Anonymous user ({}) was never persisted so there is nothing to delete.",
+                                anonymousUser.getSessionId());
                     } catch (SegueDatabaseException e) {
                         log.error("Unable to delete anonymous user during merge operation.", e);
                     }
@@ -1862,6 +1993,16 @@ public class UserAccountManager implements IUserAccountManager {
                 && !name.isEmpty();
     }
 
+    /**
+     * Discard everything cached about a user whose account has just been changed.
+     *
+     * @param userId - the id of the user who has changed.
+     */
+    private void invalidateCachedUser(final Long userId) {
+        this.userAuthenticationManager.invalidateVerifiedSessions(userId);
+        this.userSummaryCache.invalidate(userId);
+    }
+
     /**
      * Converts the sensitive UserDO into a limited DTO.
      *
@@ -1918,38 +2059,40 @@ public class UserAccountManager implements IUserAccountManager {
     /**
      * Retrieves anonymous user information if it is available.
      *
+     * Anonymous users live only in the session until they record something (e.g. a question attempt), at which point
+     * the code recording it persists them. Merely visiting the site therefore costs no database access, other than
+     * periodically extending the life of any persisted record while the session is in use.
+     *
      * @param request - request containing session information.
      * @return An anonymous user containing any anonymous question attempts (which could be none)
      */
     private AnonymousUser getAnonymousUserDO(final HttpServletRequest request) throws SegueDatabaseException {
         AnonymousUser user;
+        Object anonymousUserAttribute = request.getSession().getAttribute(ANONYMOUS_USER);
 
-        // no session exists so create one.
-        if (request.getSession().getAttribute(ANONYMOUS_USER) == null) {
-            String anonymousUserId = getAnonymousUserIdFromRequest(request);
+        if (anonymousUserAttribute instanceof AnonymousUser sessionUser) {
+            // reuse existing one
+            user = sessionUser;
+            if (null == user.getLastUpdated()
+                    || user.getLastUpdated().getTime() < System.currentTimeMillis() - ANONYMOUS_USER_KEEP_ALIVE_INTERVAL_MILLIS) {
+                this.temporaryUserCache.updateLastUpdatedDate(user);
+            }
+        } else if (null == anonymousUserAttribute || anonymousUserAttribute instanceof String) {
+            // Sessions created before anonymous users were held in the session only store the id; keep using it so
+            // that any attempts already recorded against it are not lost.
+            String anonymousUserId = null == anonymousUserAttribute ? getAnonymousUserIdFromRequest(request)
+                    : (String) anonymousUserAttribute;
             user = new AnonymousUser(anonymousUserId);
             user.setDateCreated(new Date());
-            // add the user reference to the session
-            request.getSession().setAttribute(ANONYMOUS_USER, anonymousUserId);
-            this.temporaryUserCache.storeAnonymousUser(user);
-
-        } else {
-            // reuse existing one
-            if (request.getSession().getAttribute(ANONYMOUS_USER) instanceof String userId) {
-                user = this.temporaryUserCache.getById(userId);
-
-                if (null == user) {
-                    // the session must have expired. Create a new user and run this method again.
-                    // this probably won't happen often as the session expiry and the cache should be timed correctly.
-                    request.getSession().removeAttribute(ANONYMOUS_USER);
-                    log.warn("Anonymous user session expired so creating a"
-                            + " new one - this should not happen often if cache settings are correct.");
-                    return this.getAnonymousUserDO(request);
-                }
-            } else {
-                // this means that someone has put the wrong type in to the session variable.
-                throw new ClassCastException("Unable to get AnonymousUser from session.");
+            if (null == anonymousUserAttribute) {
+                // nothing can have been persisted for a brand new user, so there is no record to keep alive yet.
+                user.setLastUpdated(user.getDateCreated());
             }
+            // add the user to the session
+            request.getSession().setAttribute(ANONYMOUS_USER, user);
+        } else {
+            // this means that someone has put the wrong type in to the session variable.
+            throw new ClassCastException("Unable to get AnonymousUser from session.");
         }
         return user;
     }
@@ -1968,18 +2111,19 @@ public class UserAccountManager implements IUserAccountManager {
     /**
      * Update the users' last seen field.
      *
+     * <p>The update is written to the database in the background, batched with those of other users.
+     *
      * @param user of interest
-     * @throws SegueDatabaseException - if an error occurs with the update.
      */
-    private void updateLastSeen(final RegisteredUser user) throws SegueDatabaseException {
+    private void updateLastSeen(final RegisteredUser user) {
         if (user.getLastSeen() == null) {
-            this.database.updateUserLastSeen(user);
+            this.lastSeenAccumulator.recordLastSeen(user.getId(), new Date());
         } else {
             // work out if we should update the user record again...
             long timeDiff = Math.abs(new Date().getTime() - user.getLastSeen().getTime());
             long minutesElapsed = TimeUnit.MILLISECONDS.toMinutes(timeDiff);
             if (minutesElapsed > LAST_SEEN_UPDATE_FREQUENCY_MINUTES) {
-                this.database.updateUserLastSeen(user);
+                this.lastSeenAccumulator.recordLastSeen(user.getId(), new Date());
             }
         }
     }
@@ -2000,6 +2144,7 @@ public class UserAccountManager implements IUserAccountManager {
             throw new NoUserLoggedInException();
         }
         this.database.incrementSessionToken(user);
+        this.userAuthenticationManager.invalidateVerifiedSessions(user.getId());
         logUserOut(request, response);
     }
 
@@ -16,8 +16,9 @@
 package uk.ac.cam.cl.dtg.segue.api.managers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -31,6 +32,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.RegisteredUser;
 import uk.ac.cam.cl.dtg.isaac.dos.users.UserFromAuthProvider;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
 import uk.ac.cam.cl.dtg.segue.auth.IAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.IFederatedAuthenticator;
@@ -40,6 +42,8 @@ import uk.ac.cam.cl.dtg.segue.auth.IOAuth2AuthenticatorWithSignupFlow;
 import uk.ac.cam.cl.dtg.segue.auth.IOAuthAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.IPasswordAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.OAuth1Token;
+import uk.ac.cam.cl.dtg.segue.auth.SessionCookieParser;
+import uk.ac.cam.cl.dtg.segue.auth.SessionSigner;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AuthenticationCodeException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AuthenticationProviderMappingException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AuthenticatorSecurityException;
@@ -52,6 +56,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.InvalidTokenException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.MissingRequiredFieldException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoCredentialsAvailableException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
 import uk.ac.cam.cl.dtg.segue.comm.EmailType;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
@@ -60,6 +65,7 @@ import uk.ac.cam.cl.dtg.segue.dao.users.IDeletionTokenPersistenceManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 import uk.ac.cam.cl.dtg.util.RequestIPExtractor;
+import uk.ac.cam.cl.dtg.util.mappers.UserMapper;
 
 import jakarta.annotation.Nullable;
 import jakarta.servlet.http.Cookie;
@@ -69,7 +75,6 @@ import java.io.IOException;
 import java.net.HttpCookie;
 import java.net.URI;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.text.ParseException;
@@ -77,11 +82,13 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -95,16 +102,24 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 public class UserAuthenticationManager {
     private static final Logger log = LoggerFactory.getLogger(UserAuthenticationManager.class);
     private static final String HMAC_SHA_ALGORITHM = "HmacSHA256";
+    private static final long VERIFIED_SESSION_CACHE_MAX_SIZE = 20000L;
+    private static final long VERIFIED_SESSION_CACHE_TTL_SECONDS = 60L;
 
     private final AbstractConfigLoader properties;
     private final IUserDataManager database;
     private final IDeletionTokenPersistenceManager deletionTokenPersistenceManager;
     private final EmailManager emailManager;
     private final ObjectMapper serializationMapper;
+    private final SessionSigner sessionSigner;
     private final boolean checkOriginHeader;
 
     private final Map<AuthenticationProvider, IAuthenticator> registeredAuthProviders;
 
+    // Sessions which have recently passed full validation against the database, grouped by the id of their user so that
+    // all of a user's sessions can be forgotten at once. Within a group they are keyed by their signed cookie fields.
+    // The cache only sees a group being created, so all of a user's sessions expire together.
+    private final Cache<String, Map<VerifiedSessionKey, VerifiedSession>> verifiedSessionCache;
+
     /**
      * Fully injectable constructor.
      *  @param database
@@ -133,7 +148,23 @@ public class UserAuthenticationManager {
 
         this.emailManager = emailQueue;
         this.serializationMapper = new ObjectMapper();
+        this.sessionSigner = new SessionSigner(properties.getProperty(HMAC_SALT));
         this.checkOriginHeader = properties.getProperty(Constants.SEGUE_APP_ENVIRONMENT).equals(EnvironmentType.PROD.name());
+
+        this.verifiedSessionCache = CacheRegistry.build("user_authentication_manager_verified_session_cache",
+                VERIFIED_SESSION_CACHE_MAX_SIZE,
+                CacheBuilder.newBuilder().expireAfterWrite(VERIFIED_SESSION_CACHE_TTL_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Forget any cached session validation for a user, so that their next request is checked against the database.
+     *
+     * This must be called whenever the user's session token, role or account details change.
+     *
+     * @param userId - the user whose sessions should be revalidated.
+     */
+    public void invalidateVerifiedSessions(final Long userId) {
+        verifiedSessionCache.invalidate(String.valueOf(userId));
     }
 
     /**
@@ -305,11 +336,14 @@ public class UserAuthenticationManager {
      *             - if the user does not exist
      * @throws NoCredentialsAvailableException
      *             - If the account exists but does not have a local password
+     * @throws PasswordHashingCapacityExceededException
+     *             - If too many passwords are already waiting to be checked
      */
     public final RegisteredUser getSegueUserFromCredentials(final String provider, final String email, 
                         final String plainTextPassword) throws AuthenticationProviderMappingException,
             SegueDatabaseException, IncorrectCredentialsProvidedException, NoUserException,
-            NoCredentialsAvailableException, InvalidKeySpecException, NoSuchAlgorithmException {
+            NoCredentialsAvailableException, InvalidKeySpecException, NoSuchAlgorithmException,
+            PasswordHashingCapacityExceededException {
         Validate.notBlank(email);
         Objects.requireNonNull(plainTextPassword);
         IAuthenticator authenticator = mapToProvider(provider);
@@ -442,16 +476,36 @@ public class UserAuthenticationManager {
     private RegisteredUser getUserFromSessionInformationMap(final Map<String, String> currentSessionInformation,
                                                             final Set<AuthenticationCaveat> expectedCaveats) {
 
+        // If this exact session has been validated recently, we only need to recheck its expiry and caveats:
+        VerifiedSessionKey sessionKey = VerifiedSessionKey.fromSessionInformation(currentSessionInformation);
+        Map<VerifiedSessionKey, VerifiedSession> usersVerifiedSessions = null != sessionKey.userId()
+                ? verifiedSessionCache.getIfPresent(sessionKey.userId()) : null;
+        VerifiedSession verifiedSession = null != usersVerifiedSessions ? usersVerifiedSessions.get(sessionKey) : null;
+        if (null != verifiedSession) {
+            if (new Date().after(verifiedSession.expires())) {
+                usersVerifiedSessions.remove(sessionKey);
+                log.debug("Session expired");
+                return null;
+            }
+            if (!expectedCaveats.containsAll(verifiedSession.caveats())) {
+                return null;
+            }
+            return UserMapper.INSTANCE.copy(verifiedSession.user());
+        }
+
         // Check for authentication caveats, and return null if any present are unexpected
+        Set<AuthenticationCaveat> sessionCaveats = new HashSet<>();
         if (null != currentSessionInformation.get(SESSION_CAVEATS)) {
             try {
-                ArrayList<String> caveatFlags = serializationMapper.readValue(currentSessionInformation.get(SESSION_CAVEATS), new TypeReference<>() {});
+                List<String> caveatFlags = SessionCookieParser.parseStringList(currentSessionInformation.get(SESSION_CAVEATS));
                 for (String caveatFlag : caveatFlags) {
-                    if (!expectedCaveats.contains(AuthenticationCaveat.valueOf(caveatFlag))) {
+                    AuthenticationCaveat caveat = AuthenticationCaveat.valueOf(caveatFlag);
+                    if (!expectedCaveats.contains(caveat)) {
                         return null;
                     }
+                    sessionCaveats.add(caveat);
                 }
-            } catch (JsonProcessingException | IllegalArgumentException e) {
+            } catch (IOException | IllegalArgumentException e) {
                 log.debug("Failed to deserialize session caveats!");
                 return null;
             }
@@ -469,6 +523,16 @@ public class UserAuthenticationManager {
                 return null;
             }
 
+            try {
+                Date sessionExpires = new SimpleDateFormat(DEFAULT_DATE_FORMAT).parse(currentSessionInformation.get(DATE_EXPIRES));
+                verifiedSessionCache.asMap().computeIfAbsent(sessionKey.userId(), id -> new ConcurrentHashMap<>())
+                        .put(sessionKey, new VerifiedSession(UserMapper.INSTANCE.copy(userToReturn),
+                                Set.copyOf(sessionCaveats), sessionExpires));
+            } catch (ParseException e) {
+                // Cannot happen for a session which passed validation, but there is no harm in not caching it.
+                log.debug("Unable to parse the expiry of a validated session.");
+            }
+
             return userToReturn;
         } catch (SegueDatabaseException e) {
             log.error("Internal Database error. Failed to resolve current user.", e);
@@ -531,7 +595,7 @@ public class UserAuthenticationManager {
             return null;
         }
 
-        ArrayList<String> caveatFlags = serializationMapper.readValue(caveats, new TypeReference<>() {});
+        List<String> caveatFlags = new ArrayList<>(SessionCookieParser.parseStringList(caveats));
         if (!caveatFlags.remove(caveatToRemove.toString())) {
             log.warn("Attempted to remove caveat '{}' from user ({}) session, but no such caveat was present!", caveatToRemove, user.getId());
         }
@@ -991,7 +1055,6 @@ public class UserAuthenticationManager {
 
         String userId = user.getId().toString();
         String userSessionToken = user.getSessionToken().toString();
-        String hmacKey = properties.getProperty(HMAC_SALT);
         Set<String> caveatFlags = authenticationCaveats.stream().map(AuthenticationCaveat::toString)
                 .collect(Collectors.toSet());
 
@@ -1012,7 +1075,7 @@ public class UserAuthenticationManager {
 
             sessionInformationBuilder.put(SESSION_CAVEATS, serializationMapper.writeValueAsString(caveatFlags));
 
-            String sessionHMAC = calculateSessionHMAC(hmacKey, userId, sessionExpiryDate, userSessionToken, caveatFlags);
+            String sessionHMAC = sessionSigner.signSession(userId, sessionExpiryDate, userSessionToken, caveatFlags);
             sessionInformationBuilder.put(HMAC, sessionHMAC);
 
             Map<String, String> sessionInformation = sessionInformationBuilder.build();
@@ -1104,19 +1167,8 @@ public class UserAuthenticationManager {
      */
     public static String calculateSessionHMAC(final String key, final String userId, final String currentDate, final String sessionToken,
                                         @Nullable final Set<String> caveatFlags) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(userId);
-        sb.append("|").append(currentDate);
-        sb.append("|").append(sessionToken);
-
-        if (null != caveatFlags) {
-            List<String> sortedCaveatFlags = caveatFlags.stream().sorted().toList();
-            for (String c : sortedCaveatFlags) {
-                sb.append("|").append(c);
-            }
-        }
-
-        return UserAuthenticationManager.calculateHMAC(key, sb.toString());
+        return UserAuthenticationManager.calculateHMAC(key,
+                SessionSigner.sessionDataToSign(userId, currentDate, sessionToken, caveatFlags));
     }
 
     /**
@@ -1147,7 +1199,6 @@ public class UserAuthenticationManager {
      * @return Whether or not the reported HMAC matches our computation.
      */
     private boolean hasValidHmac(final Map<String, String> sessionInformation) {
-        String hmacKey = properties.getProperty(HMAC_SALT);
         String supposedUserId = sessionInformation.get(SESSION_USER_ID);
         String userSessionToken = sessionInformation.get(SESSION_TOKEN);
         String sessionDate = sessionInformation.get(DATE_EXPIRES);
@@ -1155,8 +1206,8 @@ public class UserAuthenticationManager {
 
         if (null != sessionInformation.get(SESSION_CAVEATS)) {
             try {
-                caveatFlags = serializationMapper.readValue(sessionInformation.get(SESSION_CAVEATS), new TypeReference<>() {});
-            } catch (JsonProcessingException e) {
+                caveatFlags = new HashSet<>(SessionCookieParser.parseStringList(sessionInformation.get(SESSION_CAVEATS)));
+            } catch (IOException e) {
                 log.debug("Failed to deserialize session caveats!");
                 caveatFlags = null;
             }
@@ -1167,8 +1218,7 @@ public class UserAuthenticationManager {
             return false;
         }
 
-        String ourHMAC = calculateSessionHMAC(hmacKey, supposedUserId, sessionDate, userSessionToken, caveatFlags);
-        return MessageDigest.isEqual(ourHMAC.getBytes(), sessionHMAC.getBytes());
+        return sessionSigner.verifySession(supposedUserId, sessionDate, userSessionToken, caveatFlags, sessionHMAC);
     }
 
     private String getJSessionIdFromRequest(final HttpServletRequest request) throws InvalidSessionException {
@@ -1221,11 +1271,7 @@ public class UserAuthenticationManager {
             throw new InvalidSessionException("There are no session cookies set.");
         }
 
-        @SuppressWarnings("unchecked")
-        Map<String, String> sessionInformation = this.serializationMapper.readValue(Base64.decodeBase64(segueAuthCookie.getValue()),
-                HashMap.class);
-
-        return sessionInformation;
+        return SessionCookieParser.parseSessionCookie(segueAuthCookie.getValue());
     }
 
     /**
@@ -1251,11 +1297,7 @@ public class UserAuthenticationManager {
             throw new InvalidSessionException("There are no session cookies set.");
         }
 
-        @SuppressWarnings("unchecked")
-        Map<String, String> sessionInformation = this.serializationMapper.readValue(Base64.decodeBase64(segueAuthCookie.getValue()),
-                HashMap.class);
-
-        return sessionInformation;
+        return SessionCookieParser.parseSessionCookie(segueAuthCookie.getValue());
     }
     
     /**
@@ -1285,4 +1327,21 @@ public class UserAuthenticationManager {
             throw new IllegalArgumentException();
         }
     }
+
+    /**
+     * The signed fields of a session cookie. Any change to any of these must cause the session to be validated again.
+     */
+    private record VerifiedSessionKey(String userId, String sessionToken, String expires, String caveats, String hmac) {
+        static VerifiedSessionKey fromSessionInformation(final Map<String, String> sessionInformation) {
+            return new VerifiedSessionKey(sessionInformation.get(SESSION_USER_ID), sessionInformation.get(SESSION_TOKEN),
+                    sessionInformation.get(DATE_EXPIRES), sessionInformation.get(SESSION_CAVEATS),
+                    sessionInformation.get(HMAC));
+        }
+    }
+
+    /**
+     * A session which has passed validation, along with the user it belongs to.
+     */
+    private record VerifiedSession(RegisteredUser user, Set<AuthenticationCaveat> caveats, Date expires) {
+    }
 }
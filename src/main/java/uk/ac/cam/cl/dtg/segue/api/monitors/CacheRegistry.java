@@ -0,0 +1,178 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+
+/**
+ * Builds and keeps track of every named cache in Segue, so that they are all sized the same way, exported to
+ * Prometheus, and can be inspected and cleared by administrators.
+ *
+ * Each cache has a default maximum number of entries chosen by its owner, which can be overridden with a property
+ * named CACHE_MAXIMUM_SIZE_ followed by the upper-cased cache name, e.g.
+ * CACHE_MAXIMUM_SIZE_GROUP_MANAGER_USER_MEMBERSHIP_CACHE. A negative size means no limit. Properties are read when
+ * the cache is built, so the registry must be configured before the classes which own caches are created.
+ *
+ * Caches whose contents protect the site, such as misuse counts or sign-in state, can be built so that they cannot be
+ * cleared by administrators.
+ */
+public final class CacheRegistry {
+    private static final Logger log = LoggerFactory.getLogger(CacheRegistry.class);
+
+    public static final long UNLIMITED = -1;
+    static final String MAXIMUM_SIZE_PROPERTY_PREFIX = "CACHE_MAXIMUM_SIZE_";
+
+    private static final Map<String, RegisteredCache> CACHES = new ConcurrentSkipListMap<>();
+    private static volatile AbstractConfigLoader properties;
+
+    private CacheRegistry() {
+    }
+
+    private record RegisteredCache(Cache<?, ?> cache, long maximumSize, boolean clearable) {
+    }
+
+    /**
+     * The outcome of asking for a cache to be cleared.
+     */
+    public enum InvalidationResult {
+        INVALIDATED,
+        NOT_FOUND,
+        NOT_CLEARABLE
+    }
+
+    /**
+     * A summary of the contents and effectiveness of a cache.
+     *
+     * @param name - the name of the cache.
+     * @param size - the approximate number of entries in the cache.
+     * @param maximumSize - the maximum number of entries, or null if there is no limit.
+     * @param hitCount - lookups which found an entry, since the cache was built.
+     * @param missCount - lookups which did not find an entry.
+     * @param hitRate - the fraction of lookups which found an entry.
+     * @param evictionCount - entries removed because of the size limit, expiry or garbage collection.
+     * @param loadCount - entries loaded into the cache by the cache itself.
+     * @param averageLoadPenaltyMillis - the average time taken to load an entry.
+     * @param clearable - whether administrators may clear the cache.
+     */
+    public record CacheSummary(String name, long size, @Nullable Long maximumSize, long hitCount, long missCount,
+                               double hitRate, long evictionCount, long loadCount, double averageLoadPenaltyMillis,
+                               boolean clearable) {
+    }
+
+    /**
+     * Use the given configuration to size any caches built from now on.
+     *
+     * @param configuration - the loaded configuration.
+     */
+    public static void configure(@Nullable final AbstractConfigLoader configuration) {
+        properties = configuration;
+    }
+
+    /**
+     * Build a cache which administrators may clear.
+     *
+     * @see #build(String, long, CacheBuilder, boolean)
+     * @param name - a unique name for the cache in lower snake case, as used in metrics.
+     * @param defaultMaximumSize - the maximum number of entries unless configured otherwise, or UNLIMITED.
+     * @param builder - a builder with any expiry or reference strength settings, but no maximum size or weight.
+     * @param <K> - the type of the cache keys.
+     * @param <V> - the type of the cache values.
+     * @return the new cache.
+     */
+    public static <K, V> Cache<K, V> build(final String name, final long defaultMaximumSize,
+                                           final CacheBuilder<Object, Object> builder) {
+        return build(name, defaultMaximumSize, builder, true);
+    }
+
+    /**
+     * Build a cache from a partly configured builder, applying its maximum size and recording statistics, and
+     * register it.
+     *
+     * Any cache already registered with the same name is replaced, and is no longer reported or cleared. This is
+     * expected when tests build the same class repeatedly, but otherwise means two caches have been given one name.
+     *
+     * @param name - a unique name for the cache in lower snake case, as used in metrics.
+     * @param defaultMaximumSize - the maximum number of entries unless configured otherwise, or UNLIMITED.
+     * @param builder - a builder with any expiry or reference strength settings, but no maximum size or weight.
+     * @param clearable - whether administrators may clear the cache; false if clearing it would weaken security.
+     * @param <K> - the type of the cache keys.
+     * @param <V> - the type of the cache values.
+     * @return the new cache.
+     */
+    public static <K, V> Cache<K, V> build(final String name, final long defaultMaximumSize,
+                                           final CacheBuilder<Object, Object> builder, final boolean clearable) {
+        long maximumSize = getConfiguredMaximumSize(name, defaultMaximumSize);
+        if (maximumSize >= 0) {
+            builder.maximumSize(maximumSize);
+        }
+        Cache<K, V> cache = builder.recordStats().build();
+        if (null != CACHES.put(name, new RegisteredCache(cache, maximumSize, clearable))) {
+            log.warn("A cache named '{}' was already registered; it has been replaced by a new one.", name);
+        }
+        CACHE_METRICS_COLLECTOR.addCache(name, cache);
+        return cache;
+    }
+
+    /**
+     * @return a summary of every registered cache, ordered by name.
+     */
+    public static List<CacheSummary> getSummaries() {
+        return CACHES.entrySet().stream().map(entry -> summarise(entry.getKey(), entry.getValue())).toList();
+    }
+
+    /**
+     * Remove every entry from a cache, if it may be cleared.
+     *
+     * @param name - the name of the cache.
+     * @return whether the cache was cleared, or why not.
+     */
+    public static InvalidationResult invalidate(final String name) {
+        RegisteredCache registered = CACHES.get(name);
+        if (null == registered) {
+            return InvalidationResult.NOT_FOUND;
+        }
+        if (!registered.clearable()) {
+            return InvalidationResult.NOT_CLEARABLE;
+        }
+        registered.cache().invalidateAll();
+        return InvalidationResult.INVALIDATED;
+    }
+
+    private static long getConfiguredMaximumSize(final String name, final long defaultMaximumSize) {
+        AbstractConfigLoader configuration = properties;
+        if (null == configuration) {
+            return defaultMaximumSize;
+        }
+        String propertyName = MAXIMUM_SIZE_PROPERTY_PREFIX + name.toUpperCase(Locale.ROOT);
+        String configured = configuration.getProperty(propertyName);
+        if (null == configured || configured.isBlank()) {
+            return defaultMaximumSize;
+        }
+        try {
+            return Long.parseLong(configured.trim());
+        } catch (NumberFormatException e) {
+            log.error("Invalid {} '{}'; using the default of {}.", propertyName, configured, defaultMaximumSize);
+            return defaultMaximumSize;
+        }
+    }
+
+    private static CacheSummary summarise(final String name, final RegisteredCache registered) {
+        CacheStats stats = registered.cache().stats();
+        return new CacheSummary(name, registered.cache().size(),
+                registered.maximumSize() >= 0 ? registered.maximumSize() : null, stats.hitCount(),
+                stats.missCount(), stats.hitRate(), stats.evictionCount(), stats.loadCount(),
+                stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1), registered.clearable());
+    }
+}
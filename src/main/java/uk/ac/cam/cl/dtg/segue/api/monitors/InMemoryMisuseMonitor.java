@@ -26,24 +26,31 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dto.MisuseStatisticDTO;
 import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
 
-import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
-import static com.google.common.collect.Maps.immutableEntry;
-
 /**
  * InMemoryMisuseMonitor.
+ *
+ * Each agent and event has a fixed accounting window, held in a single AtomicLong: the window start time, in seconds,
+ * in the upper 32 bits and the count in the lower 32 bits. Events are counted with a compare-and-set on that long, so
+ * there is no lock shared between agents, and each change of count happens exactly once; so each threshold crossing is
+ * seen, and its action run, by exactly one caller.
  */
 public class InMemoryMisuseMonitor implements IMisuseMonitor {
-    // Cache of the form agentIdentifier --> Event --> Date, number
-    private final Cache<String, Map<String, Map.Entry<Date, Integer>>> nonPersistentDatabase;
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    // Cache of the form agentIdentifier --> Event --> packed window start and count
+    private final Cache<String, ConcurrentMap<String, AtomicLong>> nonPersistentDatabase;
 
     private final Map<String, IMisuseHandler> handlerMap;
 
@@ -54,8 +61,8 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
      */
     @Inject
     public InMemoryMisuseMonitor() {
-        nonPersistentDatabase = CacheBuilder.newBuilder().expireAfterAccess(2, TimeUnit.DAYS)
-                .<String, Map<String, Map.Entry<Date, Integer>>> build();
+        nonPersistentDatabase = CacheRegistry.build("in_memory_misuse_monitor_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().expireAfterAccess(2, TimeUnit.DAYS), false);
         handlerMap = Maps.newConcurrentMap();
     }
 
@@ -65,7 +72,7 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
     }
 
     @Override
-    public synchronized void notifyEvent(final String agentIdentifier, final String eventLabel)
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
             throws SegueResourceMisuseException {
         Validate.notBlank(agentIdentifier);
         Validate.notBlank(eventLabel);
@@ -73,7 +80,7 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
     }
 
     @Override
-    public synchronized void notifyEvent(final String agentIdentifier, final String eventLabel,
+    public void notifyEvent(final String agentIdentifier, final String eventLabel,
             final Integer adjustmentValue) throws SegueResourceMisuseException {
         Validate.notBlank(agentIdentifier);
         Validate.notBlank(eventLabel);
@@ -83,53 +90,45 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
         IMisuseHandler handler = handlerMap.get(eventLabel);
         Objects.requireNonNull(handler, "No handler has been registered for " + eventLabel);
 
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+        AtomicLong window = getOrCreateWindow(agentIdentifier, eventLabel);
+        long nowSeconds = currentTimeSeconds();
+        int previousValue;
+        int newValue;
+        long current;
+        long updated;
+        do {
+            current = window.get();
+            long windowStart = windowStartSeconds(current);
+            if (isCountStillFresh(windowStart, handler.getAccountingIntervalInSeconds(), nowSeconds)) {
+                // last events not expired yet so add them.
+                previousValue = count(current);
+                newValue = (int) Math.min((long) previousValue + adjustmentValue, Integer.MAX_VALUE);
+            } else {
+                // deal with expired (or new) events by starting the count over
+                windowStart = nowSeconds;
+                previousValue = 0;
+                newValue = adjustmentValue;
+            }
+            updated = pack(windowStart, newValue);
+        } while (!window.compareAndSet(current, updated));
+        log.debug("Event {} for ({}) now has count {}", eventLabel, agentIdentifier, newValue);
 
-        if (null == existingHistory) {
-            existingHistory = Maps.newConcurrentMap();
+        // deal with threshold violations; only the caller whose update crossed a threshold acts on it.
+        if (handler.getSoftThreshold() != null
+                && (previousValue < handler.getSoftThreshold() && newValue >= handler.getSoftThreshold())) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!",
+                    agentIdentifier));
+        }
 
-            existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-            nonPersistentDatabase.put(agentIdentifier, existingHistory);
-        } else {
-            Entry<Date, Integer> entry = existingHistory.get(eventLabel);
-            if (null == entry) {
-                existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-                log.debug("New Event: {}", existingHistory.get(eventLabel));
-            } else {
+        if (handler.getHardThreshold() != null
+                && (previousValue < handler.getHardThreshold() && newValue >= handler.getHardThreshold())) {
+            String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
 
-                // deal with expired events
-                if (!isCountStillFresh(entry.getKey(), handler.getAccountingIntervalInSeconds())) {
-                    existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-                    log.debug("Event expired starting count over");
-                } else {
-                    // last events not expired yet so add them.
-                    existingHistory.put(eventLabel, immutableEntry(entry.getKey(), entry.getValue() + adjustmentValue));
-                    log.debug("Event NOT expired so adding one: {}", existingHistory.get(eventLabel));
-                }
-
-                entry = existingHistory.get(eventLabel);
-                int previousValue = entry.getValue() - adjustmentValue;
-                
-                // deal with threshold violations
-                if (handler.getSoftThreshold() != null
-                        && (previousValue < handler.getSoftThreshold() && entry.getValue() >= handler
-                                .getSoftThreshold())) {
-                    handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!",
-                            agentIdentifier));
-                }
-
-                if (handler.getHardThreshold() != null
-                        && (previousValue < handler.getHardThreshold() && entry.getValue() >= handler
-                                .getHardThreshold())) {
-                    String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
-
-                    handler.executeHardThresholdAction(errMessage);
-                }
-                
-                if (handler.getHardThreshold() != null && entry.getValue() > handler.getHardThreshold()) {
-                    throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
-                }
-            }
+            handler.executeHardThresholdAction(errMessage);
+        }
+
+        if (handler.getHardThreshold() != null && newValue > handler.getHardThreshold()) {
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
         }
     }
     
@@ -140,24 +139,23 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
 
     @Override
     public boolean willHaveMisused(String agentIdentifier, String eventToCheck, Integer adjustmentValue) {
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
-
-        if (null == existingHistory || existingHistory.get(eventToCheck) == null) {
+        AtomicLong window = getWindowIfPresent(agentIdentifier, eventToCheck);
+        if (null == window) {
             return false;
         }
 
-        Entry<Date, Integer> entry = existingHistory.get(eventToCheck);
+        long current = window.get();
         IMisuseHandler handler = handlerMap.get(eventToCheck);
 
-        return isCountStillFresh(entry.getKey(), handler.getAccountingIntervalInSeconds())
-                && entry.getValue() + adjustmentValue >= handler.getHardThreshold();
+        return isCountStillFresh(windowStartSeconds(current), handler.getAccountingIntervalInSeconds(),
+                currentTimeSeconds()) && count(current) + adjustmentValue >= handler.getHardThreshold();
     }
 
     @Override
     public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+        Map<String, AtomicLong> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
         
-        if (null == existingHistory || existingHistory.get(eventLabel) == null) {
+        if (null == existingHistory) {
             return;
         }
         
@@ -166,18 +164,19 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
 
     @Override
     public int getRemainingUses(String agentIdentifier, String eventToCheck) {
-        Map<String, Entry<Date, Integer>> agentUsage = nonPersistentDatabase.getIfPresent(agentIdentifier);
+        AtomicLong window = getWindowIfPresent(agentIdentifier, eventToCheck);
         IMisuseHandler misuseHandler = handlerMap.get(eventToCheck);
         int maxUsesInInterval = misuseHandler.getHardThreshold();
 
-        if (agentUsage == null || agentUsage.get(eventToCheck) == null) {
+        if (null == window) {
             return maxUsesInInterval;
         }
 
-        Entry<Date, Integer> entry = agentUsage.get(eventToCheck);
+        long current = window.get();
 
-        if (isCountStillFresh(entry.getKey(), misuseHandler.getAccountingIntervalInSeconds())) {
-            return maxUsesInInterval - entry.getValue();
+        if (isCountStillFresh(windowStartSeconds(current), misuseHandler.getAccountingIntervalInSeconds(),
+                currentTimeSeconds())) {
+            return maxUsesInInterval - count(current);
         } else {
             return maxUsesInInterval;
         }
@@ -185,24 +184,28 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
 
     @Override
     public Map<String, List<MisuseStatisticDTO>> getMisuseStatistics(final long n) {
-        Map<String, Map<String, Entry<Date, Integer>>> cache = nonPersistentDatabase.asMap();
+        Map<String, ConcurrentMap<String, AtomicLong>> cache = nonPersistentDatabase.asMap();
         return handlerMap.keySet().stream()
                 .map(eventLabel -> {
                     Integer softThreshold = handlerMap.get(eventLabel).getSoftThreshold();
                     return Map.entry(
                             eventLabel,
                             cache.entrySet().stream()
-                                .map(e -> Pair.of(e.getKey(), e.getValue().get(eventLabel)))
+                                .map(e -> {
+                                    AtomicLong window = e.getValue().get(eventLabel);
+                                    return Pair.of(e.getKey(), null == window ? null : window.get());
+                                })
                                 .filter(e -> null != e.getRight())
-                                .sorted(Comparator.comparingInt((Entry<String, Entry<Date, Integer>> e) -> e.getValue().getValue()).reversed())
+                                .sorted(Comparator.comparingInt((Pair<String, Long> e) -> count(e.getRight())).reversed())
                                 .limit(n)
-                                .map((Pair<String, Entry<Date, Integer>> e) -> {
+                                .map((Pair<String, Long> e) -> {
                                     String agentIdentifier = e.getKey();
-                                    Entry<Date, Integer> misuseEntry = e.getValue();
+                                    long misuseEntry = e.getRight();
                                     return new MisuseStatisticDTO(
                                         agentIdentifier, eventLabel, hasMisused(agentIdentifier, eventLabel),
-                                        misuseEntry.getValue() >= softThreshold,
-                                        misuseEntry.getKey(), misuseEntry.getValue()
+                                        count(misuseEntry) >= softThreshold,
+                                        new Date(TimeUnit.SECONDS.toMillis(windowStartSeconds(misuseEntry))),
+                                        count(misuseEntry)
                                     );
                                 })
                                 .collect(Collectors.toList())
@@ -210,24 +213,63 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
                 }).collect(Collectors.toMap(Entry::getKey, Entry::getValue));
     }
 
+    /**
+     * Get the accounting window for an agent and event, creating an empty, already expired, window if there is none.
+     *
+     * @param agentIdentifier
+     *            - the agent.
+     * @param eventLabel
+     *            - the event.
+     * @return the window.
+     */
+    private AtomicLong getOrCreateWindow(final String agentIdentifier, final String eventLabel) {
+        ConcurrentMap<String, AtomicLong> existingHistory;
+        try {
+            existingHistory = nonPersistentDatabase.get(agentIdentifier, Maps::newConcurrentMap);
+        } catch (ExecutionException e) {
+            // Creating an empty map cannot fail.
+            throw new IllegalStateException(e);
+        }
+        return existingHistory.computeIfAbsent(eventLabel, k -> new AtomicLong(pack(0, 0)));
+    }
+
+    private AtomicLong getWindowIfPresent(final String agentIdentifier, final String eventLabel) {
+        Map<String, AtomicLong> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+        if (null == existingHistory) {
+            return null;
+        }
+        return existingHistory.get(eventLabel);
+    }
+
+    private static long currentTimeSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    private static long pack(final long windowStartSeconds, final int count) {
+        return (windowStartSeconds << 32) | (count & COUNT_MASK);
+    }
+
+    private static long windowStartSeconds(final long packedWindow) {
+        return packedWindow >>> 32;
+    }
+
+    private static int count(final long packedWindow) {
+        return (int) (packedWindow & COUNT_MASK);
+    }
+
     /**
      * Helper to work out whether we can reset the counter or not.
      * 
-     * @param mapEntryDate
-     *            - the date that the map entry for the misuse database was created.
+     * @param windowStartSeconds
+     *            - the time, in seconds, that the window of the misuse database entry started.
      * @param secondsUntilExpiry
      *            - the number of seconds until this entry expires.
+     * @param nowSeconds
+     *            - the current time, in seconds.
      * @return true if we can continue counting false if we should reset the counter as the entry has expired.
      */
-    private boolean isCountStillFresh(final Date mapEntryDate, final Integer secondsUntilExpiry) {
-        Calendar entryExpiry = Calendar.getInstance();
-        entryExpiry.setTime(mapEntryDate);
-        entryExpiry.add(Calendar.SECOND, secondsUntilExpiry);
-
-        if (new Date().after(entryExpiry.getTime())) {
-            return false;
-        }
-
-        return true;
+    private static boolean isCountStillFresh(final long windowStartSeconds, final Integer secondsUntilExpiry,
+                                             final long nowSeconds) {
+        return nowSeconds <= windowStartSeconds + secondsUntilExpiry;
     }
 }
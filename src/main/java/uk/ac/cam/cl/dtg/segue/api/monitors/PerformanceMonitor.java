@@ -31,6 +31,7 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.ext.Provider;
 
 import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.REQUEST_LATENCY_HISTOGRAM;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.REQUEST_STAGE_LATENCY_HISTOGRAM;
 
 /**
  * Allows us to log the performance of all requests.
@@ -47,13 +48,15 @@ public class PerformanceMonitor implements ContainerRequestFilter, ContainerResp
 
     @Context private HttpRequest request;
     private final MonitorService monitorService;
+    private final SlowRequestProfiler slowRequestProfiler;
 
     /**
      * PerformanceMonitor.
      */
     @Inject
-    public PerformanceMonitor(final MonitorService monitorService) {
+    public PerformanceMonitor(final MonitorService monitorService, final SlowRequestProfiler slowRequestProfiler) {
         this.monitorService = monitorService;
+        this.slowRequestProfiler = slowRequestProfiler;
     }
 
     @Override
@@ -61,12 +64,14 @@ public class PerformanceMonitor implements ContainerRequestFilter, ContainerResp
         StopWatch timer = new StopWatch();
         timer.start();
         request.setAttribute("timer", timer);
+        RequestTimings.begin();
     }
 
     @Override
     public void filter(final ContainerRequestContext requestContext, final ContainerResponseContext responseContext) {
         StopWatch timer = (StopWatch) request.getAttribute("timer");
         request.removeAttribute("timer");
+        RequestTimings timings = RequestTimings.end();
         
         if (null == timer) {
             // no timer started don't continue
@@ -75,24 +80,40 @@ public class PerformanceMonitor implements ContainerRequestFilter, ContainerResp
         
         timer.stop();
         long timeInMs = timer.getTime();
+        String stages = null != timings ? timings.toString() : "";
 
         if (timeInMs < WARNING_THRESHOLD) {
-            log.debug("Request: {} {} took {}ms", requestContext.getMethod(), request.getUri().getPath(), timeInMs);
+            log.debug("Request: {} {} took {}ms [{}]", requestContext.getMethod(), request.getUri().getPath(),
+                    timeInMs, stages);
         } else if (timeInMs < ERROR_THRESHOLD) {
-            log.warn("Performance Warning: Request: {} {} took {}ms and exceeded threshold of {}",
-                    requestContext.getMethod(), request.getUri().getPath(), timeInMs, WARNING_THRESHOLD);
+            log.warn("Performance Warning: Request: {} {} took {}ms and exceeded threshold of {} [{}]",
+                    requestContext.getMethod(), request.getUri().getPath(), timeInMs, WARNING_THRESHOLD, stages);
         } else {
-            log.error("Performance Alert: Request: {} {} took {}ms and exceeded threshold of {}",
-                    requestContext.getMethod(), request.getUri().getPath(), timeInMs, ERROR_THRESHOLD);
+            log.error("Performance Alert: Request: {} {} took {}ms and exceeded threshold of {} [{}]",
+                    requestContext.getMethod(), request.getUri().getPath(), timeInMs, ERROR_THRESHOLD, stages);
         }
 
         // Record for metrics
+        String path = monitorService.getPathWithoutPathParamValues(request.getUri());
+        if (timeInMs >= ERROR_THRESHOLD) {
+            slowRequestProfiler.onSlowRequest(requestContext.getMethod(), path, timer.getStartInstant(),
+                    timer.getStopInstant());
+        }
         REQUEST_LATENCY_HISTOGRAM
                 .labels(
                         requestContext.getMethod(),
-                        monitorService.getPathWithoutPathParamValues(request.getUri()),
+                        path,
                         String.valueOf(responseContext.getStatus())
                 ).observe((double)timeInMs / NUMBER_OF_MILLISECONDS_IN_A_SECOND);
+
+        if (null != timings) {
+            for (RequestTimings.Stage stage : RequestTimings.Stage.values()) {
+                if (timings.getCount(stage) > 0) {
+                    REQUEST_STAGE_LATENCY_HISTOGRAM.labels(requestContext.getMethod(), path, stage.getLabel())
+                            .observe(timings.getSeconds(stage));
+                }
+            }
+        }
     }
 
 
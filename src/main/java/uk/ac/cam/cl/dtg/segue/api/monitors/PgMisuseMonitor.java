@@ -0,0 +1,540 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.isaac.dto.MisuseStatisticDTO;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A misuse monitor whose counts are shared by every API node, through the misuse_counters table, so that thresholds
+ * apply across the whole cluster and survive restarts.
+ *
+ * To avoid a database round trip for every event, events for an agent which is well below every threshold are only
+ * added to a local pending count, which is written to the database in batches every second. Once an agent's count is
+ * within reach of a threshold, each event is written immediately. Counts are only ever changed by atomic upserts, so
+ * exactly one upsert crosses each threshold in each window, and only the node which made it runs the threshold action.
+ *
+ * Counts are read back from the database in the same background task, never on the request thread, so counts from
+ * other nodes are seen after at most a few seconds and a burst spread across several nodes may briefly exceed the hard
+ * threshold before it is refused. Pending counts are written when the node shuts down.
+ *
+ * Window start times come from the database clock. Each count also records when its window ends by this node's clock,
+ * measured from the time left in the window according to the database, so the two clocks are never compared.
+ */
+public class PgMisuseMonitor implements IMisuseMonitor, ServletContextListener {
+    private static final Logger log = LoggerFactory.getLogger(PgMisuseMonitor.class);
+
+    private static final long FLUSH_INTERVAL_MILLISECONDS = 1000;
+    private static final long REFRESH_INTERVAL_MILLISECONDS = 5000;
+    private static final long IDLE_COUNTER_EXPIRY_MILLISECONDS = TimeUnit.HOURS.toMillis(1);
+    private static final long CLEAN_UP_INTERVAL_MINUTES = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final int REFRESH_BATCH_SIZE = 500;
+    // Events are written straight to the database once an agent reaches this fraction of the lowest threshold:
+    private static final double WRITE_THROUGH_FRACTION = 0.5;
+    private static final String REMAINING_MILLISECONDS = "(EXTRACT(EPOCH FROM window_start"
+            + " + window_seconds * INTERVAL '1 second' - now()) * 1000)::bigint AS remaining_milliseconds";
+
+    /**
+     * Identifies the count of one event for one agent.
+     */
+    private record CounterKey(String agentIdentifier, String eventLabel) {
+    }
+
+    /**
+     * This node's view of one shared count: the last count read from the database and the events not yet written.
+     */
+    private static final class LocalCounter {
+        private final AtomicInteger pending = new AtomicInteger();
+        // By the database clock, so only ever compared with other window starts read from the database:
+        private long windowStartMillis;
+        // By this node's clock:
+        private long windowEndMillis;
+        private int sharedCount;
+        private volatile long refreshedAtMillis = System.currentTimeMillis();
+        private volatile long lastAccessMillis = refreshedAtMillis;
+
+        /**
+         * Update the shared count, ignoring results older than the one already held.
+         *
+         * @param sharedCount - the count read from the database.
+         */
+        private synchronized void update(final SharedCount sharedCount) {
+            long now = System.currentTimeMillis();
+            if (sharedCount.windowStartMillis() > this.windowStartMillis
+                    || (sharedCount.windowStartMillis() == this.windowStartMillis
+                    && sharedCount.count() > this.sharedCount)) {
+                this.windowStartMillis = sharedCount.windowStartMillis();
+                this.windowEndMillis = now + sharedCount.remainingMillis();
+                this.sharedCount = sharedCount.count();
+            }
+            refreshedAtMillis = now;
+        }
+
+        /**
+         * @param nowMillis - the current time, by this node's clock.
+         * @return the shared count if its window has not expired, plus the events not yet written.
+         */
+        private synchronized int estimate(final long nowMillis) {
+            return (nowMillis <= windowEndMillis ? sharedCount : 0) + pending.get();
+        }
+    }
+
+    /**
+     * A count read from the counter table.
+     *
+     * @param windowStartMillis - the start of the window, by the database clock.
+     * @param count             - the count in the window.
+     * @param remainingMillis   - the time left in the window, according to the database.
+     */
+    private record SharedCount(long windowStartMillis, int count, long remainingMillis) {
+    }
+
+    private final PostgresSqlDb database;
+    private final Map<String, IMisuseHandler> handlerMap;
+    private final ConcurrentMap<CounterKey, LocalCounter> localCounters;
+    private final Set<CounterKey> refreshRequests;
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * Creates a misuse monitor backed by the database, which will begin synchronising counts in the background.
+     *
+     * @param database - client for postgres.
+     */
+    public PgMisuseMonitor(final PostgresSqlDb database) {
+        this.database = database;
+        this.handlerMap = Maps.newConcurrentMap();
+        this.localCounters = Maps.newConcurrentMap();
+        this.refreshRequests = ConcurrentHashMap.newKeySet();
+
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("misuse-monitor-flush-%d").setDaemon(true).build());
+        this.flushExecutor.scheduleWithFixedDelay(this::synchroniseCounts, FLUSH_INTERVAL_MILLISECONDS,
+                FLUSH_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+        this.flushExecutor.scheduleWithFixedDelay(this::removeExpiredCounts, CLEAN_UP_INTERVAL_MINUTES,
+                CLEAN_UP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void registerHandler(final String eventToHandle, final IMisuseHandler handler) {
+        handlerMap.put(eventToHandle, handler);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
+            throws SegueResourceMisuseException {
+        this.notifyEvent(agentIdentifier, eventLabel, 1);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel, final Integer adjustmentValue)
+            throws SegueResourceMisuseException {
+        Validate.notBlank(agentIdentifier);
+        Validate.notBlank(eventLabel);
+        Objects.requireNonNull(adjustmentValue);
+        Validate.isTrue(adjustmentValue >= 0, "Expected positive integer value.");
+
+        IMisuseHandler handler = handlerMap.get(eventLabel);
+        Objects.requireNonNull(handler, "No handler has been registered for " + eventLabel);
+
+        CounterKey key = new CounterKey(agentIdentifier, eventLabel);
+        LocalCounter counter = getCounter(key);
+        int estimate = getEstimate(key, counter, handler, false);
+
+        if (!isNearThreshold(handler, estimate + adjustmentValue)) {
+            counter.pending.addAndGet(adjustmentValue);
+            return;
+        }
+
+        int delta = counter.pending.getAndSet(0) + adjustmentValue;
+        SharedCount result;
+        try {
+            result = upsertCounts(Collections.singletonMap(key, delta)).get(key);
+        } catch (SegueDatabaseException e) {
+            log.error("Unable to record misuse event, it will be retried in the background.", e);
+            counter.pending.addAndGet(delta);
+            if (handler.getHardThreshold() != null && estimate + adjustmentValue > handler.getHardThreshold()) {
+                throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
+            }
+            return;
+        }
+
+        counter.update(result);
+        handleThresholds(key, handler, result.count() - delta, result.count(), true);
+    }
+
+    @Override
+    public boolean hasMisused(final String agentIdentifier, final String eventToCheck) {
+        return willHaveMisused(agentIdentifier, eventToCheck, 0);
+    }
+
+    @Override
+    public boolean willHaveMisused(final String agentIdentifier, final String eventToCheck,
+                                   final Integer adjustmentValue) {
+        IMisuseHandler handler = handlerMap.get(eventToCheck);
+        CounterKey key = new CounterKey(agentIdentifier, eventToCheck);
+        return getEstimate(key, getCounter(key), handler, true) + adjustmentValue >= handler.getHardThreshold();
+    }
+
+    @Override
+    public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
+        CounterKey key = new CounterKey(agentIdentifier, eventLabel);
+        localCounters.remove(key);
+
+        String query = "DELETE FROM misuse_counters WHERE agent_identifier = ? AND event_label = ?";
+        try (Connection conn = database.getDatabaseConnection("PgMisuseMonitor.resetMisuseCount");
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            pst.setString(1, agentIdentifier);
+            pst.setString(2, eventLabel);
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Unable to reset misuse count", e);
+        }
+    }
+
+    @Override
+    public int getRemainingUses(final String agentIdentifier, final String eventToCheck) {
+        IMisuseHandler handler = handlerMap.get(eventToCheck);
+        CounterKey key = new CounterKey(agentIdentifier, eventToCheck);
+        return handler.getHardThreshold() - getEstimate(key, getCounter(key), handler, true);
+    }
+
+    @Override
+    public Map<String, List<MisuseStatisticDTO>> getMisuseStatistics(final long n) {
+        this.flushPendingCounts();
+
+        String query = "SELECT agent_identifier, window_start, count,"
+                + " window_start + window_seconds * INTERVAL '1 second' >= now() AS fresh"
+                + " FROM misuse_counters WHERE event_label = ? ORDER BY count DESC LIMIT ?";
+        Map<String, List<MisuseStatisticDTO>> statistics = Maps.newHashMap();
+        try (Connection conn = database.getDatabaseConnection("PgMisuseMonitor.getMisuseStatistics");
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            for (Map.Entry<String, IMisuseHandler> handler : handlerMap.entrySet()) {
+                String eventLabel = handler.getKey();
+                Integer softThreshold = handler.getValue().getSoftThreshold();
+                Integer hardThreshold = handler.getValue().getHardThreshold();
+                pst.setString(1, eventLabel);
+                pst.setLong(2, n);
+
+                List<MisuseStatisticDTO> eventStatistics = new ArrayList<>();
+                try (ResultSet results = pst.executeQuery()) {
+                    while (results.next()) {
+                        int count = results.getInt("count");
+                        boolean fresh = results.getBoolean("fresh");
+                        eventStatistics.add(new MisuseStatisticDTO(results.getString("agent_identifier"), eventLabel,
+                                fresh && null != hardThreshold && count >= hardThreshold,
+                                null != softThreshold && count >= softThreshold,
+                                new Date(results.getTimestamp("window_start").getTime()), count));
+                    }
+                }
+                statistics.put(eventLabel, eventStatistics);
+            }
+        } catch (SQLException e) {
+            log.error("Unable to load misuse statistics", e);
+        }
+        return statistics;
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    /**
+     * Stop synchronising counts in the background and write out every pending count.
+     *
+     * This is called by SegueGuiceConfigurationModule before it closes the database connection pool, since the
+     * monitor is only created when configured and so is not a registered context listener itself.
+     */
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                flushExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flushPendingCounts();
+    }
+
+    /**
+     * Write every pending count to the database, then read back any counts which requests found out of date.
+     *
+     * This runs in the background every second.
+     */
+    @VisibleForTesting
+    public void synchroniseCounts() {
+        this.flushPendingCounts();
+        this.refreshRequestedCounts();
+    }
+
+    /**
+     * Write every pending count to the database, running the threshold action of any threshold this crosses.
+     */
+    private void flushPendingCounts() {
+        Map<CounterKey, Integer> deltas = Maps.newHashMap();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<CounterKey, LocalCounter> entry : localCounters.entrySet()) {
+            LocalCounter counter = entry.getValue();
+            int delta = counter.pending.getAndSet(0);
+            if (delta > 0) {
+                deltas.put(entry.getKey(), delta);
+            } else if (now - counter.lastAccessMillis > IDLE_COUNTER_EXPIRY_MILLISECONDS
+                    && localCounters.remove(entry.getKey(), counter)) {
+                // Keep any event counted between the check and the removal:
+                int lateDelta = counter.pending.getAndSet(0);
+                if (lateDelta > 0) {
+                    getCounter(entry.getKey()).pending.addAndGet(lateDelta);
+                }
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Map<CounterKey, SharedCount> results;
+        try {
+            results = upsertCounts(deltas);
+        } catch (SegueDatabaseException e) {
+            log.error("Unable to write pending misuse counts, will retry.", e);
+            deltas.forEach((key, delta) -> getCounter(key).pending.addAndGet(delta));
+            return;
+        }
+
+        for (Map.Entry<CounterKey, SharedCount> result : results.entrySet()) {
+            CounterKey key = result.getKey();
+            int count = result.getValue().count();
+            getCounter(key).update(result.getValue());
+            refreshRequests.remove(key);
+            IMisuseHandler handler = handlerMap.get(key.eventLabel());
+            try {
+                handleThresholds(key, handler, count - deltas.get(key), count, false);
+            } catch (SegueResourceMisuseException e) {
+                // Not thrown when not asked to.
+            }
+        }
+    }
+
+    /**
+     * Add to the counts in the database, starting a new window for any count whose window has expired.
+     *
+     * @param deltas - the amount to add to each count.
+     * @return the window start and new count of each.
+     * @throws SegueDatabaseException - if the counts could not be written.
+     */
+    private Map<CounterKey, SharedCount> upsertCounts(final Map<CounterKey, Integer> deltas)
+            throws SegueDatabaseException {
+        // Sorted, so that nodes always lock rows in the same order:
+        List<Map.Entry<CounterKey, Integer>> rows = new ArrayList<>(deltas.entrySet());
+        rows.sort(Comparator.comparing((Map.Entry<CounterKey, Integer> e) -> e.getKey().agentIdentifier())
+                .thenComparing(e -> e.getKey().eventLabel()));
+
+        String expired = "c.window_start + c.window_seconds * INTERVAL '1 second' < now()";
+        String query = "INSERT INTO misuse_counters AS c"
+                + "(agent_identifier, event_label, window_start, window_seconds, count)"
+                + " VALUES " + String.join(", ", Collections.nCopies(rows.size(), "(?, ?, now(), ?, ?)"))
+                + " ON CONFLICT (agent_identifier, event_label) DO UPDATE SET"
+                + " window_start = CASE WHEN " + expired + " THEN now() ELSE c.window_start END,"
+                + " count = CASE WHEN " + expired + " THEN EXCLUDED.count ELSE c.count + EXCLUDED.count END,"
+                + " window_seconds = EXCLUDED.window_seconds"
+                + " RETURNING agent_identifier, event_label, window_start, count, " + REMAINING_MILLISECONDS;
+
+        try (Connection conn = database.getDatabaseConnection("PgMisuseMonitor.upsertCounts");
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            int index = 1;
+            for (Map.Entry<CounterKey, Integer> row : rows) {
+                pst.setString(index++, row.getKey().agentIdentifier());
+                pst.setString(index++, row.getKey().eventLabel());
+                pst.setInt(index++, handlerMap.get(row.getKey().eventLabel()).getAccountingIntervalInSeconds());
+                pst.setInt(index++, row.getValue());
+            }
+
+            try (ResultSet resultSet = pst.executeQuery()) {
+                return readSharedCounts(resultSet);
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception: Unable to update misuse counts", e);
+        }
+    }
+
+    /**
+     * Read the counts in the database of every agent and event whose count a request found out of date.
+     *
+     * If this fails, the counts are requested again the next time they are used.
+     */
+    private void refreshRequestedCounts() {
+        List<CounterKey> keys = new ArrayList<>(refreshRequests);
+        keys.forEach(refreshRequests::remove);
+
+        for (List<CounterKey> batch : Lists.partition(keys, REFRESH_BATCH_SIZE)) {
+            String query = "SELECT agent_identifier, event_label, window_start, count, " + REMAINING_MILLISECONDS
+                    + " FROM misuse_counters WHERE (agent_identifier, event_label) IN ("
+                    + String.join(", ", Collections.nCopies(batch.size(), "(?, ?)")) + ")";
+            try (Connection conn = database.getDatabaseConnection("PgMisuseMonitor.refreshRequestedCounts");
+                 PreparedStatement pst = conn.prepareStatement(query);
+            ) {
+                int index = 1;
+                for (CounterKey key : batch) {
+                    pst.setString(index++, key.agentIdentifier());
+                    pst.setString(index++, key.eventLabel());
+                }
+
+                Map<CounterKey, SharedCount> results;
+                try (ResultSet resultSet = pst.executeQuery()) {
+                    results = readSharedCounts(resultSet);
+                }
+                for (CounterKey key : batch) {
+                    LocalCounter counter = localCounters.get(key);
+                    if (null == counter) {
+                        continue;
+                    }
+                    SharedCount result = results.get(key);
+                    if (null != result) {
+                        counter.update(result);
+                    } else {
+                        counter.refreshedAtMillis = System.currentTimeMillis();
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("Unable to read misuse counts, using the local counts.", e);
+            }
+        }
+    }
+
+    private static Map<CounterKey, SharedCount> readSharedCounts(final ResultSet resultSet) throws SQLException {
+        Map<CounterKey, SharedCount> results = Maps.newHashMap();
+        while (resultSet.next()) {
+            results.put(new CounterKey(resultSet.getString("agent_identifier"), resultSet.getString("event_label")),
+                    new SharedCount(resultSet.getTimestamp("window_start").getTime(), resultSet.getInt("count"),
+                            resultSet.getLong("remaining_milliseconds")));
+        }
+        return results;
+    }
+
+    /**
+     * Estimate the count for an agent and event from this node's view of it, asking for the count to be read from the
+     * database in the background if this node has not done so recently.
+     *
+     * @param key                   - the agent and event.
+     * @param counter               - this node's view of the count.
+     * @param handler               - the handler for the event.
+     * @param refreshNearThreshold  - whether to always read the count of an agent near a threshold, so that other
+     *                                nodes' events are seen as soon as possible.
+     * @return the best estimate of the current count.
+     */
+    private int getEstimate(final CounterKey key, final LocalCounter counter, final IMisuseHandler handler,
+                            final boolean refreshNearThreshold) {
+        long now = System.currentTimeMillis();
+        counter.lastAccessMillis = now;
+        int estimate = counter.estimate(now);
+        if (now - counter.refreshedAtMillis > REFRESH_INTERVAL_MILLISECONDS
+                || (refreshNearThreshold && isNearThreshold(handler, estimate))) {
+            refreshRequests.add(key);
+        }
+        return estimate;
+    }
+
+    /**
+     * Get this node's view of a count, asking for a new one to be read from the database in the background.
+     *
+     * @param key - the agent and event.
+     * @return the local counter.
+     */
+    private LocalCounter getCounter(final CounterKey key) {
+        return localCounters.computeIfAbsent(key, k -> {
+            refreshRequests.add(k);
+            return new LocalCounter();
+        });
+    }
+    /**
+     * Run the actions of any threshold crossed by a change in count.
+     *
+     * @param key           - the agent and event.
+     * @param handler       - the handler for the event.
+     * @param previousValue - the count before the change.
+     * @param newValue      - the count after the change.
+     * @param enforce       - whether to throw if the count is over the hard threshold.
+     * @throws SegueResourceMisuseException - if enforcing and the count is over the hard threshold.
+     */
+    private void handleThresholds(final CounterKey key, final IMisuseHandler handler, final int previousValue,
+                                  final int newValue, final boolean enforce) throws SegueResourceMisuseException {
+        if (handler.getSoftThreshold() != null
+                && (previousValue < handler.getSoftThreshold() && newValue >= handler.getSoftThreshold())) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!",
+                    key.agentIdentifier()));
+        }
+
+        if (handler.getHardThreshold() != null
+                && (previousValue < handler.getHardThreshold() && newValue >= handler.getHardThreshold())) {
+            handler.executeHardThresholdAction(String.format("(%s) has exceeded the hard limit!",
+                    key.agentIdentifier()));
+        }
+
+        if (enforce && handler.getHardThreshold() != null && newValue > handler.getHardThreshold()) {
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + key.eventLabel());
+        }
+    }
+
+    /**
+     * @param handler - the handler for the event.
+     * @param count   - the count of the event.
+     * @return whether the count is close enough to a threshold that events should be written immediately.
+     */
+    private static boolean isNearThreshold(final IMisuseHandler handler, final int count) {
+        Integer lowestThreshold = handler.getSoftThreshold();
+        if (null == lowestThreshold || (null != handler.getHardThreshold()
+                && handler.getHardThreshold() < lowestThreshold)) {
+            lowestThreshold = handler.getHardThreshold();
+        }
+        return null != lowestThreshold && count >= lowestThreshold * WRITE_THROUGH_FRACTION;
+    }
+
+    /**
+     * Delete counts whose window expired long enough ago that no one will want them in the misuse statistics.
+     */
+    private void removeExpiredCounts() {
+        String query = "DELETE FROM misuse_counters"
+                + " WHERE window_start + window_seconds * INTERVAL '1 second' < now() - INTERVAL '2 days'";
+        try (Connection conn = database.getDatabaseConnection("PgMisuseMonitor.removeExpiredCounts");
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            int removed = pst.executeUpdate();
+            log.debug("Removed {} expired misuse counts.", removed);
+        } catch (SQLException e) {
+            log.error("Unable to remove expired misuse counts", e);
+        }
+    }
+}
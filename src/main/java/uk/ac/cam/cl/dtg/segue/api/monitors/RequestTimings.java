@@ -0,0 +1,166 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import jakarta.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long the current request spends in each stage of its work, such as waiting for the database or for
+ * Elasticsearch, so that slow requests can be broken down.
+ *
+ * A request's timings belong to the thread which handles it: PerformanceMonitor begins them when the request arrives
+ * and ends them when the response is sent. Work timed on any other thread, or outside a request, is not recorded and
+ * costs almost nothing. Only the outermost of any nested timings of the same stage is counted, but different stages
+ * may overlap; for example, loading an entry into a content cache includes the search which finds it.
+ */
+public final class RequestTimings {
+    private static final ThreadLocal<RequestTimings> CURRENT_REQUEST = new ThreadLocal<>();
+    private static final StageTimer NOT_TIMED = new StageTimer(null, null);
+
+    /**
+     * The stages of work which are timed.
+     */
+    public enum Stage {
+        DATABASE("database"),
+        SEARCH("search"),
+        EXTERNAL_VALIDATION("external_validation"),
+        CONTENT_CACHE("content_cache");
+
+        private final String label;
+
+        Stage(final String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return the name of the stage, as used in metrics and logs.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final long[] stageNanos = new long[Stage.values().length];
+    private final int[] stageCounts = new int[Stage.values().length];
+    private final int[] stageDepths = new int[Stage.values().length];
+
+    private RequestTimings() {
+    }
+
+    /**
+     * Start recording timings for a request handled by the current thread, discarding any left from an earlier one.
+     */
+    public static void begin() {
+        CURRENT_REQUEST.set(new RequestTimings());
+    }
+
+    /**
+     * Stop recording timings for the current thread.
+     *
+     * @return the timings recorded since begin was called, or null if it was not.
+     */
+    @Nullable
+    public static RequestTimings end() {
+        RequestTimings timings = CURRENT_REQUEST.get();
+        CURRENT_REQUEST.remove();
+        return timings;
+    }
+
+    /**
+     * @return whether timings are being recorded for the current thread.
+     */
+    public static boolean isRecording() {
+        return null != CURRENT_REQUEST.get();
+    }
+
+    /**
+     * Start timing a stage of the current request. Use in a try-with-resources block.
+     *
+     * @param stage - the stage of work about to be done.
+     * @return a timer which records the time taken when closed.
+     */
+    public static StageTimer time(final Stage stage) {
+        RequestTimings timings = CURRENT_REQUEST.get();
+        if (null == timings) {
+            return NOT_TIMED;
+        }
+        return new StageTimer(timings, stage);
+    }
+
+    /**
+     * @param stage - the stage of interest.
+     * @return the total time spent in the stage, in milliseconds.
+     */
+    public long getMillis(final Stage stage) {
+        return TimeUnit.NANOSECONDS.toMillis(stageNanos[stage.ordinal()]);
+    }
+
+    /**
+     * @param stage - the stage of interest.
+     * @return the total time spent in the stage, in seconds.
+     */
+    public double getSeconds(final Stage stage) {
+        return stageNanos[stage.ordinal()] / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @param stage - the stage of interest.
+     * @return the number of times the stage was entered.
+     */
+    public int getCount(final Stage stage) {
+        return stageCounts[stage.ordinal()];
+    }
+
+    /**
+     * @return a summary of the time spent in each stage that was entered, e.g. "database=120ms/14 search=35ms/2".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (getCount(stage) == 0) {
+                continue;
+            }
+            if (!sb.isEmpty()) {
+                sb.append(' ');
+            }
+            sb.append(stage.getLabel()).append('=').append(getMillis(stage)).append("ms/").append(getCount(stage));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Times one stage of work, recording it against the request when closed.
+     */
+    public static final class StageTimer implements AutoCloseable {
+        private final RequestTimings timings;
+        private final Stage stage;
+        private final long startNanos;
+        private final boolean outermost;
+        private boolean closed;
+
+        private StageTimer(@Nullable final RequestTimings timings, @Nullable final Stage stage) {
+            this.timings = timings;
+            this.stage = stage;
+            if (null == timings) {
+                this.startNanos = 0;
+                this.outermost = false;
+            } else {
+                this.outermost = timings.stageDepths[stage.ordinal()]++ == 0;
+                this.startNanos = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (null == timings || closed) {
+                return;
+            }
+            closed = true;
+            timings.stageDepths[stage.ordinal()]--;
+            if (outermost) {
+                timings.stageNanos[stage.ordinal()] += System.nanoTime() - startNanos;
+                timings.stageCounts[stage.ordinal()]++;
+            }
+        }
+    }
+}
@@ -20,6 +20,9 @@ import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Created by mlt47 on 09/03/2018.
  * Use this class to register public static final Counters, Gauges and other metric types used by Segue.
@@ -33,6 +36,12 @@ public final class SegueMetrics {
             .labelNames("method", "path", "status")
             .help("Request latency in seconds.").register();
 
+    public static final Histogram REQUEST_STAGE_LATENCY_HISTOGRAM = Histogram.build()
+            .name("isaac_api_request_stages")
+            .labelNames("method", "path", "stage")
+            .help("Time in seconds each request spent in each stage, such as database or search, when it entered it.")
+            .register();
+
     // WebSocket Response Time Metrics
     public static final Histogram WEBSOCKET_LATENCY_HISTOGRAM = Histogram.build()
             .name("isaac_api_websocket_requests")
@@ -45,6 +54,72 @@ public final class SegueMetrics {
             .labelNames("validator")
             .help("Validator latency in seconds.").register();
 
+    // Password Hashing Metrics
+    public static final Histogram PASSWORD_HASHING_LATENCY_HISTOGRAM = Histogram.build()
+            .name("segue_password_hashing")
+            .labelNames("algorithm")
+            .help("Password hashing latency in seconds, excluding time spent queued.").register();
+    public static final Gauge PASSWORD_HASHING_QUEUE_DEPTH = Gauge.build()
+            .name("segue_password_hashing_queue_depth").help("Password hashes waiting for a hashing thread.").register();
+    public static final Counter PASSWORD_HASHING_REJECTED = Counter.build()
+            .name("segue_password_hashing_rejected_total")
+            .help("Password hashes rejected because the hashing queue was full since process start.").register();
+
+    // Log Event Writer Metrics
+    public static final Gauge LOG_EVENT_QUEUE_DEPTH = Gauge.build()
+            .name("segue_log_event_queue_depth").help("Log events waiting to be written to the database.").register();
+    public static final Counter LOG_EVENTS_DROPPED = Counter.build()
+            .name("segue_log_events_dropped_total").labelNames("reason")
+            .help("Log events not written to the database since process start.").register();
+    public static final Counter LOG_EVENT_TYPE_COUNT_FAILURES = Counter.build()
+            .name("segue_log_event_type_count_failures_total")
+            .help("Batches of log events saved without updating the event type totals since process start.").register();
+
+    // Database Metrics
+    public static final Gauge DATABASE_POOL_ACTIVE_CONNECTIONS = Gauge.build()
+            .name("segue_database_pool_active_connections")
+            .help("Database connections currently borrowed from the pool.").register();
+    public static final Gauge DATABASE_POOL_IDLE_CONNECTIONS = Gauge.build()
+            .name("segue_database_pool_idle_connections")
+            .help("Database connections currently idle in the pool.").register();
+    public static final Gauge DATABASE_POOL_BORROWING_THREADS = Gauge.build()
+            .name("segue_database_pool_borrowing_threads")
+            .help("Threads currently borrowing a database connection from the pool, either waiting for a free"
+                    + " connection or validating one.").register();
+    public static final Histogram DATABASE_POOL_BORROW_LATENCY_HISTOGRAM = Histogram.build()
+            .name("segue_database_pool_borrow")
+            .buckets(0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .help("Time in seconds taken to borrow a database connection from the pool, including validating it.")
+            .register();
+    public static final Histogram DATABASE_QUERY_LATENCY_HISTOGRAM = Histogram.build()
+            .name("segue_database_queries")
+            .labelNames("query")
+            .help("Database statement execution latency in seconds.").register();
+    public static final Counter DATABASE_SLOW_QUERIES = Counter.build()
+            .name("segue_database_slow_queries_total").labelNames("query")
+            .help("Database statements which exceeded the slow query threshold since process start.").register();
+
+    // Search Metrics, labelled by index type (e.g. "content") rather than the versioned index name
+    public static final Histogram SEARCH_LATENCY_HISTOGRAM = Histogram.build()
+            .name("segue_search_requests")
+            .labelNames("index", "operation")
+            .help("Elasticsearch request latency in seconds.").register();
+    public static final Histogram SEARCH_RESULT_SIZE_HISTOGRAM = Histogram.build()
+            .name("segue_search_result_size")
+            .labelNames("index", "operation")
+            .buckets(0, 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000)
+            .help("Documents returned by each Elasticsearch request.").register();
+    public static final Counter SEARCH_UNLIMITED_REQUERIES = Counter.build()
+            .name("segue_search_unlimited_requeries_total").labelNames("index")
+            .help("Unlimited searches which needed a second request to fetch all results since process start.")
+            .register();
+    public static final Counter SEARCH_MAX_RESULT_WINDOW_EXCEEDED = Counter.build()
+            .name("segue_search_max_result_window_exceeded_total").labelNames("index")
+            .help("Searches refused for exceeding the index max_result_window since process start.").register();
+    public static final Counter SEARCH_SLOW_QUERIES = Counter.build()
+            .name("segue_search_slow_queries_total").labelNames("index", "operation")
+            .help("Elasticsearch requests slower than the slow query threshold since process start.").register();
+
     // Cache Metrics
     public static final CacheMetricsCollector CACHE_METRICS_COLLECTOR = new CacheMetricsCollector().register();
 
@@ -89,10 +164,33 @@ public final class SegueMetrics {
     public static final Counter QUEUED_EMAIL = Counter.build()
             .name("segue_queued_email_total").help("All emails queued since process start").labelNames("type", "sender").register();
 
+    // Location Metrics
+    public static final Counter IP_LOCATION_LOOKUPS_DROPPED = Counter.build()
+            .name("segue_ip_location_lookups_dropped_total")
+            .help("IP addresses not geocoded because the lookup queue was full since process start.").register();
+
     // Log Event Metrics
     public static final Counter LOG_EVENT = Counter.build()
             .name("isaac_log_event").help("Counter for Log Events by type").labelNames("type").register();
 
+    private static final Set<Gauge> GAUGES_WITH_CHILD = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Read an unlabelled gauge from a child which describes a single object, such as a connection pool, unless another
+     * object's child has already been set. A second instance is not reported, rather than replacing the first.
+     *
+     * @param gauge - the gauge.
+     * @param child - reads the value from the object.
+     * @return whether the child was set.
+     */
+    public static boolean setGaugeChildIfAbsent(final Gauge gauge, final Gauge.Child child) {
+        if (!GAUGES_WITH_CHILD.add(gauge)) {
+            return false;
+        }
+        gauge.setChild(child);
+        return true;
+    }
+
     /**
      *  Private constructor as it does not make sense to instantiate this class.
      */
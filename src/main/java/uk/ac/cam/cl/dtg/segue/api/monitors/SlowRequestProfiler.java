@@ -0,0 +1,345 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.Nullable;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a rolling JDK Flight Recorder recording and, when a request is slower than PerformanceMonitor.ERROR_THRESHOLD,
+ * saves the part of it which covers that request so the cause can be diagnosed after the fact.
+ *
+ * Each saved profile only contains events from the time the request was running, and of the thread-specific events
+ * (execution samples, locks, I/O, allocation samples and so on) only those of the thread which handled the request.
+ * Events which are not specific to a thread, such as garbage collections, are kept. The profile also contains a
+ * "Slow Request" event recording the method and endpoint template of the request.
+ *
+ * Profiling is off unless enabled in configuration. At most one profile is saved a minute, and only the most recent
+ * profiles are kept. Profiles saved before a restart are listed again when profiling starts, and any beyond the number
+ * to keep are deleted.
+ */
+public class SlowRequestProfiler implements ServletContextListener {
+    private static final Logger log = LoggerFactory.getLogger(SlowRequestProfiler.class);
+
+    public static final int DEFAULT_PROFILES_TO_KEEP = 20;
+    private static final Duration RECORDING_MAX_AGE = Duration.ofMinutes(2);
+    private static final long MINIMUM_MILLISECONDS_BETWEEN_PROFILES = TimeUnit.MINUTES.toMillis(1);
+    private static final DateTimeFormatter PROFILE_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private static final String PROFILE_EXTENSION = ".jfr";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SLOW_REQUEST_EVENT_NAME = "uk.ac.cam.cl.dtg.segue.SlowRequest";
+
+    private final Recording recording;
+    private final Path directory;
+    private final int profilesToKeep;
+    private final ThreadPoolExecutor profileWriter;
+    private final AtomicLong lastProfileMillis = new AtomicLong();
+    private final Deque<ProfileSummary> profiles = new ConcurrentLinkedDeque<>();
+
+    /**
+     * A profile saved for a slow request.
+     *
+     * @param id - identifies the profile, and is its file name without the extension.
+     * @param capturedAt - when the request finished.
+     * @param method - the HTTP method of the request.
+     * @param path - the endpoint template of the request, without path parameter values.
+     * @param durationMillis - how long the request took.
+     * @param sizeBytes - the size of the profile.
+     */
+    public record ProfileSummary(String id, Date capturedAt, String method, String path, long durationMillis,
+                                 long sizeBytes) {
+    }
+
+    /**
+     * Recorded in the flight recording for each request slower than the error threshold.
+     */
+    @Name(SLOW_REQUEST_EVENT_NAME)
+    @Label("Slow Request")
+    @Category("Segue")
+    static class SlowRequestEvent extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("Endpoint")
+        String path;
+
+        // Not "duration", which every event already has.
+        @Label("Request Duration")
+        @Timespan(Timespan.MILLISECONDS)
+        long requestDuration;
+    }
+
+    /**
+     * Create a profiler, starting the rolling recording and picking up the profiles already saved if profiling is
+     * enabled.
+     *
+     * @param enabled - whether to profile slow requests at all.
+     * @param directory - where to save profiles.
+     * @param profilesToKeep - how many of the most recent profiles to keep.
+     */
+    public SlowRequestProfiler(final boolean enabled, final Path directory, final int profilesToKeep) {
+        this.directory = directory;
+        this.profilesToKeep = profilesToKeep;
+        this.recording = enabled ? startRecording(directory) : null;
+        // Only one profile is written at a time; while one is being written, further slow requests are not profiled.
+        this.profileWriter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                new ThreadFactoryBuilder().setNameFormat("slow-request-profiler-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.DiscardPolicy());
+        if (null != recording) {
+            loadSavedProfiles();
+        }
+    }
+
+    /**
+     * @return whether slow requests are being profiled.
+     */
+    public boolean isEnabled() {
+        return null != recording;
+    }
+
+    /**
+     * Save a profile of a request which has just finished on the current thread, unless profiling is disabled or a
+     * profile was saved very recently. The profile is written in the background.
+     *
+     * @param method - the HTTP method of the request.
+     * @param path - the endpoint template of the request, without path parameter values.
+     * @param start - when the request started.
+     * @param end - when the request finished.
+     */
+    public void onSlowRequest(final String method, final String path, final Instant start, final Instant end) {
+        if (null == recording) {
+            return;
+        }
+
+        SlowRequestEvent event = new SlowRequestEvent();
+        event.method = method;
+        event.path = path;
+        event.requestDuration = Duration.between(start, end).toMillis();
+        event.commit();
+        // The event is committed after the request ends, so the profile must run until now to include it:
+        Instant profileEnd = Instant.now();
+
+        long nowMillis = System.currentTimeMillis();
+        long lastMillis = lastProfileMillis.get();
+        if (nowMillis - lastMillis < MINIMUM_MILLISECONDS_BETWEEN_PROFILES
+                || !lastProfileMillis.compareAndSet(lastMillis, nowMillis)) {
+            log.debug("Not profiling slow request {} {}; a profile was saved recently.", method, path);
+            return;
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        profileWriter.execute(() -> saveProfile(method, path, threadId, start, end, profileEnd));
+    }
+
+    /**
+     * @return the profiles saved by this process which are still kept, most recent first.
+     */
+    public List<ProfileSummary> getProfiles() {
+        return List.copyOf(profiles);
+    }
+
+    /**
+     * @param id - the id of a profile, as listed by getProfiles.
+     * @return the location of the profile, or null if there is no such profile.
+     */
+    @Nullable
+    public Path getProfile(final String id) {
+        for (ProfileSummary profile : profiles) {
+            if (profile.id().equals(id)) {
+                Path file = directory.resolve(profile.id() + PROFILE_EXTENSION);
+                return Files.exists(file) ? file : null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // Nothing to do: the recording is started when the profiler is created.
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        profileWriter.shutdownNow();
+        if (null != recording) {
+            recording.close();
+        }
+    }
+
+    @Nullable
+    private static Recording startRecording(final Path directory) {
+        try {
+            Files.createDirectories(directory);
+            Recording recording = new Recording(Configuration.getConfiguration("default"));
+            recording.setName("segue-slow-requests");
+            recording.setToDisk(true);
+            recording.setMaxAge(RECORDING_MAX_AGE);
+            recording.start();
+            log.info("Profiling slow requests, saving profiles to {}", directory);
+            return recording;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            log.error("Unable to start the flight recording; slow requests will not be profiled.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Save a profile of part of the rolling recording.
+     *
+     * @param method - the HTTP method of the request.
+     * @param path - the endpoint template of the request.
+     * @param threadId - the thread which handled the request.
+     * @param start - when the request started.
+     * @param end - when the request finished.
+     * @param profileEnd - the time up to which to keep events, just after the slow request event was recorded.
+     */
+    private void saveProfile(final String method, final String path, final long threadId, final Instant start,
+                             final Instant end, final Instant profileEnd) {
+        String id = String.format("%s-%s-%s", PROFILE_TIMESTAMP.format(end), method,
+                path.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", ""));
+        Path destination = directory.resolve(id + PROFILE_EXTENSION);
+        Path snapshot = null;
+        try {
+            snapshot = Files.createTempFile(directory, SNAPSHOT_PREFIX, PROFILE_EXTENSION);
+            try (Recording copy = recording.copy(true)) {
+                copy.dump(snapshot);
+            }
+            try (RecordingFile recordingFile = new RecordingFile(snapshot)) {
+                recordingFile.write(destination, event -> isPartOfRequest(event, threadId, start, profileEnd));
+            }
+
+            profiles.addFirst(new ProfileSummary(id, Date.from(end), method, path,
+                    Duration.between(start, end).toMillis(), Files.size(destination)));
+            removeOldProfiles();
+            log.info("Saved profile {} of slow request {} {}", id, method, path);
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to save a profile of slow request {} {}", method, path, e);
+        } finally {
+            if (null != snapshot) {
+                try {
+                    Files.deleteIfExists(snapshot);
+                } catch (IOException e) {
+                    log.warn("Unable to delete flight recording snapshot {}", snapshot, e);
+                }
+            }
+        }
+    }
+
+    private static boolean isPartOfRequest(final RecordedEvent event, final long threadId, final Instant start,
+                                           final Instant end) {
+        if (event.getEndTime().isBefore(start) || event.getStartTime().isAfter(end)) {
+            return false;
+        }
+        // Execution samples record the sampled thread separately from the thread which took the sample:
+        RecordedThread thread = event.hasField("sampledThread") ? event.getThread("sampledThread") : event.getThread();
+        return null == thread || thread.getJavaThreadId() == threadId;
+    }
+
+    private void removeOldProfiles() {
+        while (profiles.size() > profilesToKeep) {
+            ProfileSummary oldest = profiles.pollLast();
+            if (null == oldest) {
+                return;
+            }
+            deleteProfileFile(directory.resolve(oldest.id() + PROFILE_EXTENSION));
+        }
+    }
+
+    /**
+     * List the profiles saved before this process started, keeping only the most recent, and delete any snapshots
+     * left behind by a process which stopped while saving a profile.
+     */
+    private void loadSavedProfiles() {
+        List<Path> savedProfiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + PROFILE_EXTENSION)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().startsWith(SNAPSHOT_PREFIX)) {
+                    deleteProfileFile(file);
+                } else {
+                    savedProfiles.add(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to list the profiles already saved in {}", directory, e);
+            return;
+        }
+
+        // Profile ids start with the time the request finished, so sorting by name sorts by age:
+        savedProfiles.sort(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed());
+        for (Path file : savedProfiles) {
+            ProfileSummary summary = profiles.size() < profilesToKeep ? readSummary(file) : null;
+            if (null != summary) {
+                profiles.addLast(summary);
+            } else {
+                deleteProfileFile(file);
+            }
+        }
+        if (!profiles.isEmpty()) {
+            log.info("Found {} profiles of slow requests saved before this process started.", profiles.size());
+        }
+    }
+
+    /**
+     * @param file - a saved profile.
+     * @return the summary of the profile from the slow request event in it, or null if it has none or is unreadable.
+     */
+    @Nullable
+    private static ProfileSummary readSummary(final Path file) {
+        String fileName = file.getFileName().toString();
+        String id = fileName.substring(0, fileName.length() - PROFILE_EXTENSION.length());
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                if (SLOW_REQUEST_EVENT_NAME.equals(event.getEventType().getName())) {
+                    return new ProfileSummary(id, Date.from(event.getEndTime()), event.getString("method"),
+                            event.getString("path"), event.getDuration("requestDuration").toMillis(),
+                            Files.size(file));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read saved profile {}", id, e);
+        }
+        return null;
+    }
+
+    private static void deleteProfileFile(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete old profile {}", file.getFileName(), e);
+        }
+    }
+}
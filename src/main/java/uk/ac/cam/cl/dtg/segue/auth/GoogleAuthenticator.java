@@ -41,6 +41,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.users.EmailVerificationStatus;
 import uk.ac.cam.cl.dtg.isaac.dos.users.UserFromAuthProvider;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AuthenticatorSecurityException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.CodeExchangeException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
@@ -115,9 +116,9 @@ public class GoogleAuthenticator implements IOAuth2Authenticator {
             this.callbackUri = callbackUri;
 
             if (null == credentialStore) {
-                credentialStore = CacheBuilder.newBuilder()
-                        .expireAfterAccess(CREDENTIAL_CACHE_TTL_MINUTES, TimeUnit.MINUTES)
-                        .build();
+                credentialStore = CacheRegistry.build("google_authenticator_credential_cache", CacheRegistry.UNLIMITED,
+                        CacheBuilder.newBuilder().expireAfterAccess(CREDENTIAL_CACHE_TTL_MINUTES, TimeUnit.MINUTES),
+                        false);
             }
 
             if (null == tokenVerifier) {
@@ -148,9 +149,9 @@ public class GoogleAuthenticator implements IOAuth2Authenticator {
         this.callbackUri = callbackUri;
 
         if (null == credentialStore) {
-            credentialStore = CacheBuilder.newBuilder()
-                    .expireAfterAccess(CREDENTIAL_CACHE_TTL_MINUTES, TimeUnit.MINUTES)
-                    .<String, Credential> build();
+            credentialStore = CacheRegistry.build("google_authenticator_credential_cache", CacheRegistry.UNLIMITED,
+                    CacheBuilder.newBuilder().expireAfterAccess(CREDENTIAL_CACHE_TTL_MINUTES, TimeUnit.MINUTES),
+                    false);
         }
 
         if (null == tokenVerifier) {
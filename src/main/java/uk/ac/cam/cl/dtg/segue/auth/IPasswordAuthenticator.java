@@ -20,6 +20,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.IncorrectCredentialsProvidedExcept
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.InvalidPasswordException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoCredentialsAvailableException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 
 import java.security.NoSuchAlgorithmException;
@@ -77,10 +78,13 @@ public interface IPasswordAuthenticator extends IAuthenticator {
      *             - No credentials are configured on this account so we cannot authenticate the user.
      * @throws SegueDatabaseException
      *             - If there is an internal database error.
+     * @throws PasswordHashingCapacityExceededException
+     *             - If too many passwords are already waiting to be checked.
      */
     RegisteredUser authenticate(String usersEmailAddress, String plainTextPassword)
             throws IncorrectCredentialsProvidedException, NoUserException, NoCredentialsAvailableException,
-            SegueDatabaseException, InvalidKeySpecException, NoSuchAlgorithmException;
+            SegueDatabaseException, InvalidKeySpecException, NoSuchAlgorithmException,
+            PasswordHashingCapacityExceededException;
 
     /**
      * Method to check if a user has a password configured.
@@ -48,6 +48,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.EmailVerificationStatus;
 import uk.ac.cam.cl.dtg.isaac.dos.users.UserFromAuthProvider;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AuthenticationCodeException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AuthenticatorSecurityException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.CodeExchangeException;
@@ -106,7 +107,8 @@ public class MicrosoftAuthenticator implements IOAuth2Authenticator {
         this.redirectUrl = Validation.url(redirectUrl, "Missing redirect_url, can't be \"%s\".");
         var parsedJwksUrl = Validation.url(jwksUrl, "Missing jwks_url, can't be \"%s\".");
         this.jwkProvider = new JwkProviderBuilder(parsedJwksUrl).cached(10, 1, TimeUnit.HOURS).build();
-        this.credentialStore = CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).build();
+        this.credentialStore = CacheRegistry.build("microsoft_authenticator_credential_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES), false);
     }
 
     @Override
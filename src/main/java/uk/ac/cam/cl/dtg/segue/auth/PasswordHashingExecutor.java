@@ -0,0 +1,144 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.FailedToHashPasswordException;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.PASSWORD_HASHING_LATENCY_HISTOGRAM;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.PASSWORD_HASHING_QUEUE_DEPTH;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.PASSWORD_HASHING_REJECTED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.setGaugeChildIfAbsent;
+
+/**
+ * Runs password hashes on a small, fixed pool of threads.
+ *
+ * Hashing is deliberately CPU intensive, so when many users log in at once it could otherwise occupy every request
+ * thread. Instead, at most a fixed number of hashes run at a time and a bounded number wait; any more are rejected
+ * immediately so that the client can be asked to try again.
+ *
+ * This must be a singleton, so that all logins share the one pool. Its threads are stopped when the application
+ * shuts down.
+ */
+public class PasswordHashingExecutor implements ServletContextListener {
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashingExecutor.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    // Leave CPU free for other requests during a burst of logins, e.g. a whole class signing in at once.
+    public static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Create a password hashing executor.
+     *
+     * @param threads       - the maximum number of passwords to hash at once.
+     * @param queueCapacity - the maximum number of passwords to hold waiting for a free thread.
+     */
+    public PasswordHashingExecutor(final int threads, final int queueCapacity) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("password-hashing-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        if (!setGaugeChildIfAbsent(PASSWORD_HASHING_QUEUE_DEPTH, new Gauge.Child() {
+            @Override
+            public double get() {
+                return getQueueDepth();
+            }
+        })) {
+            log.warn("Another password hashing executor already exists; its queue depth is reported instead.");
+        }
+    }
+
+    /**
+     * @return the number of passwords currently waiting for a hashing thread.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Hash a password on the hashing pool, waiting for the result.
+     *
+     * @param algorithm - the algorithm to hash the password with.
+     * @param password  - plain text password.
+     * @param salt      - salt.
+     * @return hashed password.
+     * @throws PasswordHashingCapacityExceededException - if too many passwords are already waiting to be hashed.
+     * @throws NoSuchAlgorithmException                 - if the algorithm is not available.
+     * @throws InvalidKeySpecException                  - if the algorithm parameters are invalid.
+     */
+    public String hashPassword(final ISegueHashingAlgorithm algorithm, final String password, final String salt)
+            throws PasswordHashingCapacityExceededException, NoSuchAlgorithmException, InvalidKeySpecException {
+        Future<String> hash;
+        try {
+            hash = executor.submit(() -> {
+                Histogram.Timer timer = PASSWORD_HASHING_LATENCY_HISTOGRAM.labels(algorithm.hashingAlgorithmName())
+                        .startTimer();
+                try {
+                    return algorithm.hashPassword(password, salt);
+                } finally {
+                    timer.observeDuration();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            PASSWORD_HASHING_REJECTED.inc();
+            throw new PasswordHashingCapacityExceededException("Too many passwords are waiting to be checked.");
+        }
+
+        try {
+            return hash.get();
+        } catch (InterruptedException e) {
+            hash.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new FailedToHashPasswordException("Interrupted while waiting for a password to be hashed.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NoSuchAlgorithmException noSuchAlgorithmException) {
+                throw noSuchAlgorithmException;
+            } else if (cause instanceof InvalidKeySpecException invalidKeySpecException) {
+                throw invalidKeySpecException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new FailedToHashPasswordException("Unexpected error hashing password: " + cause);
+        }
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    /**
+     * Stop the hashing threads, letting any hashes already started finish.
+     */
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -40,6 +40,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.UserFromAuthProvider;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.managers.CountryLookupManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.AuthenticatorSecurityException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.CodeExchangeException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
@@ -119,8 +120,9 @@ public class RaspberryPiOidcAuthenticator implements IOAuth2AuthenticatorWithSig
         this.requestedScopes = Arrays.asList(oauthScopes.split(";"));
 
         if (null == credentialStore) {
-            credentialStore = CacheBuilder.newBuilder().expireAfterAccess(CREDENTIAL_CACHE_TTL_MINUTES, TimeUnit.MINUTES)
-                    .build();
+            credentialStore = CacheRegistry.build("raspberry_pi_authenticator_credential_cache", CacheRegistry.UNLIMITED,
+                    CacheBuilder.newBuilder().expireAfterAccess(CREDENTIAL_CACHE_TTL_MINUTES, TimeUnit.MINUTES),
+                    false);
         }
 
         idTokenVerifier = new IdTokenVerifier.Builder()
@@ -27,6 +27,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.IncorrectCredentialsProvidedExcept
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.InvalidPasswordException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoCredentialsAvailableException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.users.IPasswordDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
@@ -58,6 +59,7 @@ public class SegueLocalAuthenticator implements IPasswordAuthenticator {
 
     private final Map<String, ISegueHashingAlgorithm> possibleAlgorithms;
     private final ISegueHashingAlgorithm preferredAlgorithm;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
 
     /**
@@ -69,17 +71,21 @@ public class SegueLocalAuthenticator implements IPasswordAuthenticator {
      *            - so we can look up system properties.
      * @param possibleAlgorithms
      *            - Map of possibleAlgorithms
+     * @param passwordHashingExecutor
+     *            - the shared pool to check passwords on when logging in.
      */
     @Inject
     public SegueLocalAuthenticator(final IUserDataManager userDataManager, final IPasswordDataManager passwordDataManager,
                                    final AbstractConfigLoader properties,
                                    final Map<String, ISegueHashingAlgorithm> possibleAlgorithms,
-                                   final ISegueHashingAlgorithm preferredAlgorithm) {
+                                   final ISegueHashingAlgorithm preferredAlgorithm,
+                                   final PasswordHashingExecutor passwordHashingExecutor) {
         this.userDataManager = userDataManager;
         this.properties = properties;
         this.possibleAlgorithms = possibleAlgorithms;
         this.preferredAlgorithm = preferredAlgorithm;
         this.passwordDataManager = passwordDataManager;
+        this.passwordHashingExecutor = passwordHashingExecutor;
     }
 
     @Override
@@ -103,7 +109,8 @@ public class SegueLocalAuthenticator implements IPasswordAuthenticator {
     @Override
     public RegisteredUser authenticate(final String usersEmailAddress, final String plainTextPassword)
             throws IncorrectCredentialsProvidedException, NoUserException, NoCredentialsAvailableException,
-            SegueDatabaseException, InvalidKeySpecException, NoSuchAlgorithmException {
+            SegueDatabaseException, InvalidKeySpecException, NoSuchAlgorithmException,
+            PasswordHashingCapacityExceededException {
 
         if (null == usersEmailAddress || null == plainTextPassword) {
             throw new IncorrectCredentialsProvidedException("Incorrect credentials provided.");
@@ -123,8 +130,8 @@ public class SegueLocalAuthenticator implements IPasswordAuthenticator {
         // work out what algorithm is being used.
         ISegueHashingAlgorithm hashingAlgorithmUsed = this.possibleAlgorithms.get(luc.getSecurityScheme());
 
-        if (hashingAlgorithmUsed.hashPassword(plainTextPassword, luc.getSecureSalt()).equals(
-                luc.getPassword())) {
+        if (passwordHashingExecutor.hashPassword(hashingAlgorithmUsed, plainTextPassword, luc.getSecureSalt())
+                .equals(luc.getPassword())) {
 
             // success, now check if we should rehash the password or not.
             if (!preferredAlgorithm.hashingAlgorithmName().equals(hashingAlgorithmUsed.hashingAlgorithmName())) {
@@ -0,0 +1,178 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the contents of session cookies.
+ *
+ * A session cookie is a Base64 encoded JSON object whose values are all strings, one of which is itself a JSON array
+ * of strings. Since these are read on every authenticated request, this reads exactly those shapes directly rather
+ * than using a general purpose JSON mapper.
+ */
+public final class SessionCookieParser {
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private SessionCookieParser() {
+    }
+
+    /**
+     * Decode the value of a session cookie.
+     *
+     * @param cookieValue - the Base64 encoded cookie value.
+     * @return the session information in the cookie.
+     * @throws IOException - if the cookie value is not a Base64 encoded JSON object of strings.
+     */
+    public static Map<String, String> parseSessionCookie(final String cookieValue) throws IOException {
+        byte[] decodedValue;
+        try {
+            decodedValue = Base64.getMimeDecoder().decode(cookieValue);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Session cookie is not valid Base64.", e);
+        }
+        return parseStringMap(new String(decodedValue, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse a JSON object whose values are all strings.
+     *
+     * @param json - the JSON to parse.
+     * @return a map of the keys and values of the object.
+     * @throws IOException - if the JSON is not an object of strings.
+     */
+    public static Map<String, String> parseStringMap(final String json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        Map<String, String> result = new HashMap<>();
+        reader.expect('{');
+        if (!reader.consumeIf('}')) {
+            do {
+                String key = reader.readString();
+                reader.expect(':');
+                result.put(key, reader.readString());
+            } while (reader.consumeIf(','));
+            reader.expect('}');
+        }
+        reader.expectEnd();
+        return result;
+    }
+
+    /**
+     * Parse a JSON array of strings.
+     *
+     * @param json - the JSON to parse.
+     * @return the strings in the array, in order.
+     * @throws IOException - if the JSON is not an array of strings.
+     */
+    public static List<String> parseStringList(final String json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        List<String> result = new ArrayList<>();
+        reader.expect('[');
+        if (!reader.consumeIf(']')) {
+            do {
+                result.add(reader.readString());
+            } while (reader.consumeIf(','));
+            reader.expect(']');
+        }
+        reader.expectEnd();
+        return result;
+    }
+
+    /**
+     * Reads tokens from a JSON string, skipping any whitespace between them.
+     */
+    private static final class JsonReader {
+        private final String json;
+        private int position;
+
+        private JsonReader(final String json) {
+            this.json = json;
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private boolean consumeIf(final char expected) {
+            skipWhitespace();
+            if (position < json.length() && json.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(final char expected) throws IOException {
+            if (!consumeIf(expected)) {
+                throw new IOException(String.format("Expected '%s' at position %d of session information.", expected,
+                        position));
+            }
+        }
+
+        private void expectEnd() throws IOException {
+            skipWhitespace();
+            if (position != json.length()) {
+                throw new IOException("Unexpected content after session information.");
+            }
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder value = null;
+            int start = position;
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    if (null == value) {
+                        return json.substring(start, position - 1);
+                    }
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    if (null != value) {
+                        value.append(c);
+                    }
+                    continue;
+                }
+
+                // Only allocate a builder once an escape sequence is found:
+                if (null == value) {
+                    value = new StringBuilder(json.substring(start, position - 1));
+                }
+                if (position >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > json.length()) {
+                            throw new IOException("Truncated unicode escape in session information.");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid unicode escape in session information.", e);
+                        }
+                        position += 4;
+                    }
+                    default -> throw new IOException("Invalid escape sequence in session information.");
+                }
+            }
+            throw new IOException("Unterminated string in session information.");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import org.apache.commons.lang3.Validate;
+
+import jakarta.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Signs and verifies data, such as the contents of session cookies, with an HMAC.
+ *
+ * Creating and initialising a Mac is comparatively expensive and a Mac is not threadsafe, so each thread keeps its
+ * own Mac initialised with the key and reuses it for every signature.
+ */
+public class SessionSigner {
+    private static final String HMAC_SHA_ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> threadMac;
+
+    /**
+     * Create a signer.
+     *
+     * @param key - the secret HMAC key, normally the HMAC_SALT property.
+     */
+    public SessionSigner(final String key) {
+        Validate.notEmpty(key, "Signing key cannot be blank.");
+        SecretKeySpec signingKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA_ALGORITHM);
+        this.threadMac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_SHA_ALGORITHM);
+                mac.init(signingKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialise HMAC signer.", e);
+            }
+        });
+        // Fail now, rather than on first use, if the algorithm is unavailable:
+        this.threadMac.get();
+    }
+
+    /**
+     * Sign some data.
+     *
+     * @param dataToSign - data to be signed.
+     * @return the Base64 encoded HMAC of the data.
+     */
+    public String sign(final String dataToSign) {
+        return Base64.getEncoder().encodeToString(calculateRawHmac(dataToSign));
+    }
+
+    /**
+     * Check, in constant time, whether a signature is the HMAC of some data.
+     *
+     * @param dataToSign - the data which should have been signed.
+     * @param signature  - the Base64 encoded signature to check.
+     * @return true if the signature is correct, false if it is not or is missing or malformed.
+     */
+    public boolean verify(final String dataToSign, @Nullable final String signature) {
+        if (null == signature) {
+            return false;
+        }
+        byte[] suppliedHmac;
+        try {
+            suppliedHmac = Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(calculateRawHmac(dataToSign), suppliedHmac);
+    }
+
+    /**
+     * Sign the fields of a session.
+     *
+     * @param userId       - User Id
+     * @param expiryDate   - the session expiry date
+     * @param sessionToken - a token allowing session invalidation
+     * @param caveatFlags  - any authentication caveats applying to the session
+     * @return the Base64 encoded HMAC of the session.
+     */
+    public String signSession(final String userId, final String expiryDate, final String sessionToken,
+                              @Nullable final Set<String> caveatFlags) {
+        return this.sign(sessionDataToSign(userId, expiryDate, sessionToken, caveatFlags));
+    }
+
+    /**
+     * Check the signature of the fields of a session.
+     *
+     * @param userId       - User Id
+     * @param expiryDate   - the session expiry date
+     * @param sessionToken - a token allowing session invalidation
+     * @param caveatFlags  - any authentication caveats applying to the session
+     * @param signature    - the Base64 encoded signature to check.
+     * @return true if the signature is correct, false if not.
+     */
+    public boolean verifySession(final String userId, final String expiryDate, final String sessionToken,
+                                 @Nullable final Set<String> caveatFlags, @Nullable final String signature) {
+        return this.verify(sessionDataToSign(userId, expiryDate, sessionToken, caveatFlags), signature);
+    }
+
+    /**
+     * Build the string which is signed for a session: each field separated by a pipe, with caveats in sorted order.
+     *
+     * @param userId       - User Id
+     * @param expiryDate   - the session expiry date
+     * @param sessionToken - a token allowing session invalidation
+     * @param caveatFlags  - any authentication caveats applying to the session
+     * @return the data to sign.
+     */
+    public static String sessionDataToSign(final String userId, final String expiryDate, final String sessionToken,
+                                           @Nullable final Set<String> caveatFlags) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(userId);
+        sb.append("|").append(expiryDate);
+        sb.append("|").append(sessionToken);
+
+        if (null != caveatFlags) {
+            List<String> sortedCaveatFlags = caveatFlags.stream().sorted().toList();
+            for (String c : sortedCaveatFlags) {
+                sb.append("|").append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private byte[] calculateRawHmac(final String dataToSign) {
+        Validate.notEmpty(dataToSign, "Data to sign cannot be blank.");
+        // doFinal resets the Mac, ready for the next signature on this thread.
+        return threadMac.get().doFinal(dataToSign.getBytes(StandardCharsets.UTF_8));
+    }
+}
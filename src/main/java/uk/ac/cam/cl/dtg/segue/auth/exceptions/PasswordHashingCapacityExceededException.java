@@ -0,0 +1,19 @@
+package uk.ac.cam.cl.dtg.segue.auth.exceptions;
+
+/**
+ * An exception which indicates that a password could not be checked because too many other passwords are already
+ * waiting to be hashed. The client should try again shortly.
+ */
+public class PasswordHashingCapacityExceededException extends Exception {
+    private static final long serialVersionUID = 4906328718517625433L;
+
+    /**
+     * Creates a PasswordHashingCapacityExceededException.
+     *
+     * @param message
+     *            - to accompany the exception.
+     */
+    public PasswordHashingCapacityExceededException(final String message) {
+        super(message);
+    }
+}
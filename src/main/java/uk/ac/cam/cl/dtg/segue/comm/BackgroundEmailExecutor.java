@@ -0,0 +1,64 @@
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the work of assembling notification emails, such as looking up group members and their preferences, off the
+ * request thread. The assembled emails are then added to the email queue as usual.
+ *
+ * The queue of tasks is bounded; if it fills up, tasks are run on the calling thread instead, so that no email is lost.
+ * Tasks still queued at shutdown are given a short time to finish.
+ */
+public class BackgroundEmailExecutor implements ServletContextListener {
+    private static final Logger log = LoggerFactory.getLogger(BackgroundEmailExecutor.class);
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Create the executor, with a single daemon worker thread.
+     */
+    public BackgroundEmailExecutor() {
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                new ThreadFactoryBuilder().setNameFormat("background-email-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Run a task in the background, or on the calling thread if too many tasks are already waiting.
+     *
+     * @param task - the task, which should handle its own errors.
+     */
+    public void execute(final Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Stopping with {} background email tasks unfinished.",
+                        executor.shutdownNow().size() + executor.getActiveCount());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -80,6 +80,7 @@ import uk.ac.cam.cl.dtg.segue.api.managers.IGroupObserver;
 import uk.ac.cam.cl.dtg.segue.api.managers.IStatisticsManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.ITransactionManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.IUserAccountManager;
+import uk.ac.cam.cl.dtg.segue.api.managers.LastSeenAccumulator;
 import uk.ac.cam.cl.dtg.segue.api.managers.PgTransactionManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.StatisticsManager;
@@ -97,16 +98,19 @@ import uk.ac.cam.cl.dtg.segue.auth.MicrosoftAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.RaspberryPiOidcAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.SegueChainedPBKDFv1SCryptv1;
 import uk.ac.cam.cl.dtg.segue.auth.SegueChainedPBKDFv2SCryptv1;
+import uk.ac.cam.cl.dtg.segue.auth.PasswordHashingExecutor;
 import uk.ac.cam.cl.dtg.segue.auth.SegueLocalAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.SeguePBKDF2v1;
 import uk.ac.cam.cl.dtg.segue.auth.SeguePBKDF2v2;
 import uk.ac.cam.cl.dtg.segue.auth.SeguePBKDF2v3;
 import uk.ac.cam.cl.dtg.segue.auth.SegueSCryptv1;
 import uk.ac.cam.cl.dtg.segue.auth.SegueTOTPAuthenticator;
+import uk.ac.cam.cl.dtg.segue.comm.BackgroundEmailExecutor;
 import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicator;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
 import uk.ac.cam.cl.dtg.segue.comm.ICommunicator;
 import uk.ac.cam.cl.dtg.segue.comm.MailGunEmailManager;
+import uk.ac.cam.cl.dtg.segue.dao.AsyncLogEventWriter;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.LocationManager;
 import uk.ac.cam.cl.dtg.segue.dao.PgLogManager;
@@ -161,12 +165,14 @@ import jakarta.servlet.ServletContextListener;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -276,6 +282,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private void configureProperties() {
         // Properties loader
         bind(AbstractConfigLoader.class).toInstance(globalProperties);
+        // Caches are sized from properties as they are built, so this must happen before anything is instantiated.
+        CacheRegistry.configure(globalProperties);
 
         this.bindConstantToProperty(Constants.SEARCH_CLUSTER_NAME, globalProperties);
         this.bindConstantToProperty(Constants.SEARCH_CLUSTER_ADDRESS, globalProperties);
@@ -575,6 +583,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - boolean to determine if we should persist log messages.
      * @param lhm
      *            - location history manager
+     * @param logEventWriter
+     *            - writes log events to the database in the background.
      * @return A fully configured LogManager
      */
     @Inject
@@ -582,12 +592,12 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Singleton
     private static ILogManager getLogManager(final PostgresSqlDb database,
                                              @Named(Constants.LOGGING_ENABLED) final boolean loggingEnabled,
-                                             final LocationManager lhm) {
+                                             final LocationManager lhm, final AsyncLogEventWriter logEventWriter) {
 
         if (null == logManager) {
             ObjectMapper objectMapper = new ObjectMapper();
             objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-            logManager = new PgLogManager(database, objectMapper, loggingEnabled, lhm);
+            logManager = new PgLogManager(database, objectMapper, loggingEnabled, lhm, logEventWriter);
 
             log.info("Creating singleton of LogManager");
             if (loggingEnabled) {
@@ -600,6 +610,99 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         return logManager;
     }
 
+    /**
+     * Gets the instance of the log event writer. This must be a singleton so that there is one queue of log events,
+     * which is written out on shutdown.
+     *
+     * The queue size and what to do when it is full can be set with the LOG_QUEUE_CAPACITY and
+     * LOG_QUEUE_OVERFLOW_POLICY properties. Unless another policy is set, a full queue makes the logging thread wait
+     * (BLOCK); the policies which drop events to keep requests fast must be chosen explicitly.
+     *
+     * @param database
+     *            - database reference
+     * @param properties
+     *            - properties loader for the queue settings
+     * @return the log event writer.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static AsyncLogEventWriter getAsyncLogEventWriter(final PostgresSqlDb database,
+                                                              final AbstractConfigLoader properties) {
+        long capacity = getPositiveLongProperty(properties, Constants.LOG_QUEUE_CAPACITY,
+                Constants.DEFAULT_LOG_QUEUE_CAPACITY);
+
+        AsyncLogEventWriter.OverflowPolicy overflowPolicy = AsyncLogEventWriter.OverflowPolicy.BLOCK;
+        String configuredOverflowPolicy = properties.getProperty(Constants.LOG_QUEUE_OVERFLOW_POLICY);
+        if (null != configuredOverflowPolicy && !configuredOverflowPolicy.isBlank()) {
+            try {
+                overflowPolicy = AsyncLogEventWriter.OverflowPolicy.valueOf(
+                        configuredOverflowPolicy.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid {} '{}'; using the default of {}.", Constants.LOG_QUEUE_OVERFLOW_POLICY,
+                        configuredOverflowPolicy, overflowPolicy);
+            }
+        }
+
+        return new AsyncLogEventWriter(database, (int) Math.min(capacity, Integer.MAX_VALUE), overflowPolicy);
+    }
+
+    /**
+     * Gets the instance of the slow request profiler. This must be a singleton so that there is one rolling flight
+     * recording, which is stopped on shutdown.
+     *
+     * Profiling is enabled with the SLOW_REQUEST_PROFILING_ENABLED property. Profiles are saved to
+     * SLOW_REQUEST_PROFILE_DIRECTORY, by default a directory under the system temporary directory, and the number kept
+     * is set by SLOW_REQUEST_PROFILES_TO_KEEP.
+     *
+     * @param properties
+     *            - properties loader for the profiling settings
+     * @return the slow request profiler.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static SlowRequestProfiler getSlowRequestProfiler(final AbstractConfigLoader properties) {
+        String directory = properties.getProperty(Constants.SLOW_REQUEST_PROFILE_DIRECTORY);
+        long profilesToKeep = getPositiveLongProperty(properties, Constants.SLOW_REQUEST_PROFILES_TO_KEEP,
+                SlowRequestProfiler.DEFAULT_PROFILES_TO_KEEP);
+        return new SlowRequestProfiler(
+                Boolean.parseBoolean(properties.getProperty(Constants.SLOW_REQUEST_PROFILING_ENABLED)),
+                null != directory ? Paths.get(directory)
+                        : Paths.get(System.getProperty("java.io.tmpdir"), "segue-slow-request-profiles"),
+                (int) Math.min(profilesToKeep, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Read a positive whole number setting, falling back to the default if it is missing or invalid.
+     *
+     * @param properties
+     *            - properties loader to read the setting from
+     * @param propertyName
+     *            - the name of the setting
+     * @param defaultValue
+     *            - the value to use if the setting is missing or invalid
+     * @return the configured value, or the default.
+     */
+    private static long getPositiveLongProperty(final AbstractConfigLoader properties, final String propertyName,
+                                                final long defaultValue) {
+        String configured = properties.getProperty(propertyName);
+        if (null == configured || configured.isBlank()) {
+            return defaultValue;
+        }
+        long value;
+        try {
+            value = Long.parseLong(configured.trim());
+        } catch (NumberFormatException e) {
+            value = 0;
+        }
+        if (value <= 0) {
+            log.error("Invalid {} '{}'; using the default of {}.", propertyName, configured, defaultValue);
+            return defaultValue;
+        }
+        return value;
+    }
+
     /**
      * This provides a singleton of the contentVersionController for the segue facade. 
      * Note: This is a singleton because this content mapper has to use reflection to register all content classes.
@@ -654,6 +757,29 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         return QuestionValidationMapper.INSTANCE;
     }
 
+    /**
+     * Gets the instance of the password hashing executor. This must be a singleton so that every login shares the one
+     * pool of hashing threads, which is stopped on shutdown.
+     *
+     * The pool size and how many logins may wait for it can be set with the PASSWORD_HASHING_THREADS and
+     * PASSWORD_HASHING_QUEUE_CAPACITY properties.
+     *
+     * @param properties
+     *            - properties loader for the pool settings
+     * @return the password hashing executor.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static PasswordHashingExecutor getPasswordHashingExecutor(final AbstractConfigLoader properties) {
+        long threads = getPositiveLongProperty(properties, Constants.PASSWORD_HASHING_THREADS,
+                PasswordHashingExecutor.DEFAULT_THREADS);
+        long queueCapacity = getPositiveLongProperty(properties, Constants.PASSWORD_HASHING_QUEUE_CAPACITY,
+                PasswordHashingExecutor.DEFAULT_QUEUE_CAPACITY);
+        return new PasswordHashingExecutor((int) Math.min(threads, Integer.MAX_VALUE),
+                (int) Math.min(queueCapacity, Integer.MAX_VALUE));
+    }
+
     /**
      * This provides an instance of the SegueLocalAuthenticator.
      *
@@ -664,12 +790,15 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      * 			- the database to access passwords
      * @param properties
      * 			- the global system properties
+     * @param passwordHashingExecutor
+     * 			- the shared pool to check passwords on
      * @return an instance of the queue
      */
     @Inject
     @Provides
     private static SegueLocalAuthenticator getSegueLocalAuthenticator(final IUserDataManager database, final IPasswordDataManager passwordDataManager,
-                                                                      final AbstractConfigLoader properties) {
+                                                                      final AbstractConfigLoader properties,
+                                                                      final PasswordHashingExecutor passwordHashingExecutor) {
         ISegueHashingAlgorithm preferredAlgorithm = new SegueSCryptv1();
         ISegueHashingAlgorithm oldAlgorithm1 = new SeguePBKDF2v1();
         ISegueHashingAlgorithm oldAlgorithm2 = new SeguePBKDF2v2();
@@ -686,7 +815,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                 chainedAlgorithm2.hashingAlgorithmName(), chainedAlgorithm2
         );
 
-        return new SegueLocalAuthenticator(database, passwordDataManager, properties, possibleAlgorithms, preferredAlgorithm);
+        return new SegueLocalAuthenticator(database, passwordDataManager, properties, possibleAlgorithms, preferredAlgorithm,
+                passwordHashingExecutor);
     }
 
     /**
@@ -835,6 +965,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - For managing TOTP multifactor authentication.
      * @param userPreferenceManager
      *      *     - For managing user preferences.
+     * @param lastSeenAccumulator
+     *            - For batching updates to users' last seen dates.
      * @return Content version controller with associated dependencies.
      */
     @Inject
@@ -846,17 +978,43 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                                                final ILogManager logManager, final UserMapper userMapper,
                                                final UserAuthenticationManager userAuthenticationManager,
                                                final ISecondFactorAuthenticator secondFactorManager,
-                                               final AbstractUserPreferenceManager userPreferenceManager) {
+                                               final AbstractUserPreferenceManager userPreferenceManager,
+                                               final LastSeenAccumulator lastSeenAccumulator) {
         if (null == userManager) {
             userManager = new UserAccountManager(database, questionManager, properties, providersToRegister,
                     userMapper, emailQueue, temporaryUserCache, logManager, userAuthenticationManager,
-                    secondFactorManager, userPreferenceManager);
+                    secondFactorManager, userPreferenceManager, lastSeenAccumulator);
             log.info("Creating singleton of UserManager");
         }
 
         return userManager;
     }
 
+    /**
+     * Gets the instance of the last seen accumulator. This must be a singleton so that it is flushed on shutdown.
+     *
+     * @param database
+     *            - the user persistence manager.
+     * @return the last seen accumulator.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static LastSeenAccumulator getLastSeenAccumulator(final IUserDataManager database) {
+        return new LastSeenAccumulator(database);
+    }
+
+    /**
+     * Gets the instance of the background email executor. This must be a singleton so that it is shut down.
+     *
+     * @return the background email executor.
+     */
+    @Provides
+    @Singleton
+    private static BackgroundEmailExecutor getBackgroundEmailExecutor() {
+        return new BackgroundEmailExecutor();
+    }
+
     /**
      * QuestionManager.
      * Note: This has to be a singleton as the question manager keeps anonymous question attempts in memory.
@@ -923,20 +1081,29 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     /**
      * Get singleton of misuseMonitor.
      *
-     * Note: this has to be a singleton as it tracks (in memory) the number of misuses.
+     * Note: this has to be a singleton as it tracks (in memory) the number of misuses. If the MISUSE_MONITOR_BACKEND
+     * property is "postgres", the counts are shared with every other node through the database.
      *
      * @param emailManager
      *            - so that the monitors can send e-mails.
      * @param properties
      *            - so that the monitors can look up email settings etc.
+     * @param database
+     *            - to share misuse counts, if configured to.
      * @return gets the singleton of the misuse manager.
      */
     @Inject
     @Provides
     @Singleton
-    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final AbstractConfigLoader properties) {
+    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final AbstractConfigLoader properties,
+                                            final PostgresSqlDb database) {
         if (null == misuseMonitor) {
-            misuseMonitor = new InMemoryMisuseMonitor();
+            if (Constants.MISUSE_MONITOR_BACKEND_POSTGRES.equals(
+                    properties.getProperty(Constants.MISUSE_MONITOR_BACKEND))) {
+                misuseMonitor = new PgMisuseMonitor(database);
+            } else {
+                misuseMonitor = new InMemoryMisuseMonitor();
+            }
             log.info("Creating singleton of MisuseMonitor");
 
             // TODO: We should automatically register all handlers that implement this interface using reflection?
@@ -1076,6 +1243,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - dependency
      * @param questionManager
      *            - dependency
+     * @param properties
+     *            - properties loader for the GENERAL_STATISTICS_REFRESH_INTERVAL_MINUTES setting
      * @return stats manager
      */
     @Provides
@@ -1085,11 +1254,15 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                                                      final GitContentManager contentManager, final GroupManager groupManager,
                                                      final QuestionManager questionManager,
                                                      final ContentSummarizerService contentSummarizerService,
-                                                     final IUserStreaksManager userStreaksManager) {
+                                                     final IUserStreaksManager userStreaksManager,
+                                                     final AbstractConfigLoader properties) {
 
         if (null == statsManager) {
+            long refreshIntervalMinutes = getPositiveLongProperty(properties,
+                    Constants.GENERAL_STATISTICS_REFRESH_INTERVAL_MINUTES,
+                    Constants.DEFAULT_GENERAL_STATISTICS_REFRESH_INTERVAL_MINUTES);
             statsManager = new StatisticsManager(userManager, logManager, contentManager,
-                    groupManager, questionManager, contentSummarizerService, userStreaksManager);
+                    groupManager, questionManager, contentSummarizerService, userStreaksManager, refreshIntervalMinutes);
             log.info("Created Singleton of Statistics Manager");
         }
 
@@ -1125,6 +1298,12 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                     "SQL scheduled job that deletes expired reservations for the event booking system",
                     "0 0 7 * * ?", "db_scripts/scheduled/expired-reservations-clean-up.sql");
 
+            SegueScheduledJob reconcileUserAssignmentInboxes = new SegueScheduledDatabaseScriptJob(
+                    "reconcileUserAssignmentInboxes",
+                    "SQLMaintenance",
+                    "SQL scheduled job that repairs user assignment inboxes after recent failed updates",
+                    "0 15 * ? * * *", "db_scripts/scheduled/user-assignment-inbox-reconciliation.sql");
+
             SegueScheduledJob deleteEventAdditionalBookingInformation = SegueScheduledJob.createCustomJob(
                   "deleteEventAdditionalBookingInformation",
                   "JavaJob",
@@ -1189,6 +1368,7 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                     PIISQLJob,
                     cleanUpOldAnonymousUsers,
                     cleanUpExpiredReservations,
+                    reconcileUserAssignmentInboxes,
                     deleteEventAdditionalBookingInformation,
                     deleteEventAdditionalBookingInformationOneYearJob,
                     scheduledAssignmentsEmail,
@@ -1250,18 +1430,37 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     }
 
     /**
-     * This provides a new instance of the location resolver.
+     * This provides the location resolver. It is a singleton so that the IP database and its cache are only loaded once.
      *
      * @param properties
      *            - properties loader for the IP database filename
-     * @return The singleton instance of EmailCommunicator
+     * @return The singleton instance of IPLocationResolver
      */
     @Inject
     @Provides
+    @Singleton
     private IPLocationResolver getIPLocator(final AbstractConfigLoader properties) throws IOException {
         return new MaxMindIPLocationResolver(properties);
     }
 
+    /**
+     * Gets the instance of the location manager. This must be a singleton so that there is one queue of ip addresses to
+     * geo-code, which is processed on shutdown.
+     *
+     * @param dao
+     *            - the location history data access object.
+     * @param ipLocationResolver
+     *            - the ip location resolver.
+     * @return the location manager.
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static LocationManager getLocationManager(final ILocationHistory dao,
+                                                      final IPLocationResolver ipLocationResolver) {
+        return new LocationManager(dao, ipLocationResolver);
+    }
+
     /**
      * Gets a Game persistence manager.
      *
@@ -1453,10 +1652,23 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
 
             subTypes.removeAll(etlSubTypes);
 
+            // The shared misuse monitor is only created when configured, so it is stopped by this module instead:
+            subTypes.remove(PgMisuseMonitor.class);
+
+            // This module closes the shared database and search clients on shutdown, so it must be notified after the
+            // listeners which still use them then, such as the log event writer writing out its queue.
+            boolean includesThisModule = subTypes.remove(SegueGuiceConfigurationModule.class);
+
             for (Class<? extends ServletContextListener> contextListener : subTypes) {
                 contextListeners.add(contextListener);
                 log.info("Registering context listener class '{}'", contextListener.getCanonicalName());
             }
+
+            if (includesThisModule) {
+                contextListeners.add(SegueGuiceConfigurationModule.class);
+                log.info("Registering context listener class '{}' last",
+                        SegueGuiceConfigurationModule.class.getCanonicalName());
+            }
         }
 
         return contextListeners;
@@ -1471,6 +1683,10 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     public void contextDestroyed(final ServletContextEvent sce) {
         // Close all resources we hold.
         log.info("Segue Config Module notified of shutdown. Releasing resources");
+        if (misuseMonitor instanceof ServletContextListener misuseMonitorListener) {
+            misuseMonitorListener.contextDestroyed(sce);
+        }
+
         try {
             elasticSearchClient.close();
             elasticSearchClient = null;
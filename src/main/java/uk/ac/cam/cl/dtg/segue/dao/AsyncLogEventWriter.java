@@ -0,0 +1,373 @@
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.prometheus.client.Gauge;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.isaac.dos.LogEvent;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_QUEUE_DEPTH;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_TYPE_COUNT_FAILURES;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENTS_DROPPED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.setGaugeChildIfAbsent;
+
+/**
+ * Writes log events to the database in batches on a background thread, so that requests do not wait for them.
+ *
+ * Events wait in a bounded queue. What happens when events arrive faster than they can be written is decided by the
+ * OverflowPolicy. Any events still queued are written when the application shuts down.
+ *
+ * If a batch is rejected because of the data in it, its events are retried one at a time so that only the bad events
+ * are lost. If the database cannot be reached, the batch is queued again and the writer backs off before retrying.
+ */
+public class AsyncLogEventWriter implements ServletContextListener {
+    private static final Logger log = LoggerFactory.getLogger(AsyncLogEventWriter.class);
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final long POLL_INTERVAL_MILLISECONDS = 1000;
+    private static final long BLOCK_TIMEOUT_MILLISECONDS = 5000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final long MAX_RETRY_DELAY_MILLISECONDS = 60000;
+
+    /**
+     * What to do with a new event when the queue is full, or filling up. BLOCK is the default, as the other policies
+     * lose events.
+     */
+    public enum OverflowPolicy {
+        /** Make the logging thread wait for space, for a few seconds at most, before dropping the new event. */
+        BLOCK,
+        /** Drop the oldest queued event to make room for the new one. */
+        DROP_OLDEST,
+        /** Once the queue is half full, keep a shrinking proportion of new events, dropping them all once full. */
+        SAMPLE
+    }
+
+    /**
+     * A log event waiting to be written, with its details already serialised.
+     */
+    record QueuedLogEvent(LogEvent event, String eventDetailsJson) {
+    }
+
+    private final PostgresSqlDb database;
+    private final OverflowPolicy overflowPolicy;
+    private final int capacity;
+    private final BlockingQueue<QueuedLogEvent> queue;
+    private final ExecutorService writerExecutor;
+    private volatile boolean running = true;
+
+    /**
+     * Create a log event writer, which will begin writing queued events in the background.
+     *
+     * @param database       - client for postgres.
+     * @param capacity       - the maximum number of events to hold waiting to be written.
+     * @param overflowPolicy - what to do when the queue is full.
+     */
+    public AsyncLogEventWriter(final PostgresSqlDb database, final int capacity, final OverflowPolicy overflowPolicy) {
+        this(database, capacity, overflowPolicy, true);
+    }
+
+    /**
+     * Create a log event writer.
+     *
+     * @param database          - client for postgres.
+     * @param capacity          - the maximum number of events to hold waiting to be written.
+     * @param overflowPolicy    - what to do when the queue is full.
+     * @param writeInBackground - whether to start writing queued events in the background.
+     */
+    @VisibleForTesting
+    AsyncLogEventWriter(final PostgresSqlDb database, final int capacity, final OverflowPolicy overflowPolicy,
+                        final boolean writeInBackground) {
+        this.database = database;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        if (!setGaugeChildIfAbsent(LOG_EVENT_QUEUE_DEPTH, new Gauge.Child() {
+            @Override
+            public double get() {
+                return getQueueDepth();
+            }
+        })) {
+            log.warn("Another log event writer already exists; its queue depth is reported instead of this one's.");
+        }
+
+        this.writerExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("log-event-writer-%d").setDaemon(true).build());
+        if (writeInBackground) {
+            this.writerExecutor.submit(this::writeUntilStopped);
+        }
+    }
+
+    /**
+     * @return the number of events waiting to be written.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Queue an event to be written, applying the overflow policy if the queue is full.
+     *
+     * @param event            - the event to write.
+     * @param eventDetailsJson - the event details, serialised as JSON.
+     */
+    public void enqueue(final LogEvent event, final String eventDetailsJson) {
+        QueuedLogEvent queuedEvent = new QueuedLogEvent(event, eventDetailsJson);
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(queuedEvent, BLOCK_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                        LOG_EVENTS_DROPPED.labels("queue_full").inc();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOG_EVENTS_DROPPED.labels("queue_full").inc();
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(queuedEvent)) {
+                    if (null != queue.poll()) {
+                        LOG_EVENTS_DROPPED.labels("queue_full").inc();
+                    }
+                }
+            }
+            case SAMPLE -> {
+                int freeSpace = queue.remainingCapacity();
+                int halfCapacity = capacity / 2;
+                if (freeSpace < halfCapacity && ThreadLocalRandom.current().nextInt(halfCapacity) >= freeSpace) {
+                    LOG_EVENTS_DROPPED.labels("sampled").inc();
+                } else if (!queue.offer(queuedEvent)) {
+                    LOG_EVENTS_DROPPED.labels("queue_full").inc();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write everything currently queued to the database.
+     *
+     * This makes one attempt only: if the database cannot be reached, the events are dropped.
+     */
+    public void flush() {
+        List<QueuedLogEvent> batch = new ArrayList<>();
+        while (queue.drainTo(batch, WRITE_BATCH_SIZE) > 0) {
+            List<QueuedLogEvent> unwritten = this.write(batch);
+            if (!unwritten.isEmpty()) {
+                int dropped = unwritten.size() + queue.size();
+                queue.clear();
+                log.error("Unable to write log events; dropping {} events.", dropped);
+                LOG_EVENTS_DROPPED.labels("write_failed").inc(dropped);
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Write events as they arrive, in batches of whatever has queued up, until shutdown.
+     */
+    private void writeUntilStopped() {
+        long retryDelay = POLL_INTERVAL_MILLISECONDS;
+        while (running) {
+            try {
+                if (this.writeNextBatch()) {
+                    retryDelay = POLL_INTERVAL_MILLISECONDS;
+                } else {
+                    Thread.sleep(retryDelay);
+                    retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error writing log events.", e);
+            }
+        }
+    }
+
+    /**
+     * Wait briefly for events to arrive, then write a batch of whatever has queued up.
+     *
+     * Events which could not be written because of a database error are queued again, or dropped if there is no room.
+     *
+     * @return false if the batch could not be written and should be retried later, true otherwise.
+     * @throws InterruptedException - if interrupted while waiting for events.
+     */
+    @VisibleForTesting
+    boolean writeNextBatch() throws InterruptedException {
+        QueuedLogEvent first = queue.poll(POLL_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+        if (null == first) {
+            return true;
+        }
+        List<QueuedLogEvent> batch = new ArrayList<>();
+        batch.add(first);
+        queue.drainTo(batch, WRITE_BATCH_SIZE - 1);
+
+        List<QueuedLogEvent> unwritten = this.write(batch);
+        if (unwritten.isEmpty()) {
+            return true;
+        }
+        int dropped = 0;
+        for (QueuedLogEvent queuedEvent : unwritten) {
+            if (!queue.offer(queuedEvent)) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            LOG_EVENTS_DROPPED.labels("write_failed").inc(dropped);
+        }
+        log.warn("Unable to write {} log events; {} queued to retry.", unwritten.size(), unwritten.size() - dropped);
+        return false;
+    }
+
+    /**
+     * Insert a batch of events, of at most WRITE_BATCH_SIZE, with a single multi-row INSERT statement.
+     *
+     * The running totals of each event type are updated in the same transaction. If that fails the events are still
+     * saved, and the totals are left too low.
+     *
+     * If the batch is rejected because of the data in it, the events are retried one at a time, and any which are
+     * still rejected are dropped.
+     *
+     * @param batch - the events to write.
+     * @return the events not written because of a database error, which may succeed if retried later.
+     */
+    private List<QueuedLogEvent> write(final List<QueuedLogEvent> batch) {
+        if (batch.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String insertQuery = "INSERT INTO logged_events(user_id, anonymous_user, event_type, event_details_type,"
+                + " event_details, ip_address, timestamp) VALUES "
+                + String.join(", ", Collections.nCopies(batch.size(), "(?, ?, ?, ?, ?::text::jsonb, ?::inet, ?)"));
+
+        // Sorted, so that concurrent writers always lock the counter rows in the same order:
+        Map<String, Long> countsByType = new TreeMap<>();
+        for (QueuedLogEvent queuedEvent : batch) {
+            if (null != queuedEvent.event().getEventType()) {
+                countsByType.merge(queuedEvent.event().getEventType(), 1L, Long::sum);
+            }
+        }
+        String countQuery = "INSERT INTO logged_event_type_counts(event_type, total) VALUES "
+                + String.join(", ", Collections.nCopies(countsByType.size(), "(?, ?)"))
+                + " ON CONFLICT (event_type) DO UPDATE SET total = logged_event_type_counts.total + EXCLUDED.total";
+
+        try (Connection conn = database.getDatabaseConnection("AsyncLogEventWriter.write")) {
+            try {
+                conn.setAutoCommit(false);
+
+                try (PreparedStatement pst = conn.prepareStatement(insertQuery)) {
+                    int index = 1;
+                    for (QueuedLogEvent queuedEvent : batch) {
+                        LogEvent logEvent = queuedEvent.event();
+                        pst.setString(index++, logEvent.getUserId());
+                        pst.setBoolean(index++, logEvent.isAnonymousUser());
+                        pst.setString(index++, logEvent.getEventType());
+                        pst.setString(index++, logEvent.getEventDetailsType());
+                        pst.setString(index++, queuedEvent.eventDetailsJson());
+                        pst.setString(index++, logEvent.getIpAddress());
+                        pst.setTimestamp(index++, new java.sql.Timestamp(logEvent.getTimestamp().getTime()));
+                    }
+                    pst.executeUpdate();
+                }
+
+                if (!countsByType.isEmpty()) {
+                    // The events matter more than the totals: if the totals cannot be updated, save the events anyway.
+                    Savepoint beforeCounts = conn.setSavepoint();
+                    try (PreparedStatement pst = conn.prepareStatement(countQuery)) {
+                        int index = 1;
+                        for (Map.Entry<String, Long> count : countsByType.entrySet()) {
+                            pst.setString(index++, count.getKey());
+                            pst.setLong(index++, count.getValue());
+                        }
+                        pst.executeUpdate();
+                    } catch (SQLException e) {
+                        conn.rollback(beforeCounts);
+                        log.error("Unable to add {} log events to the event type totals; the totals are now too low.",
+                                batch.size(), e);
+                        LOG_EVENT_TYPE_COUNT_FAILURES.inc();
+                    }
+                }
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return Collections.emptyList();
+        } catch (SQLException e) {
+            if (!isDataError(e)) {
+                log.warn("Database error saving {} log events.", batch.size(), e);
+                return batch;
+            }
+            if (batch.size() == 1) {
+                log.error("Unable to save log event to the database", e);
+                LOG_EVENTS_DROPPED.labels("invalid_event").inc();
+                return Collections.emptyList();
+            }
+            // Don't lose the whole batch to one bad event; write them one at a time instead:
+            log.warn("Unable to save a batch of {} log events, retrying individually.", batch.size(), e);
+            List<QueuedLogEvent> unwritten = new ArrayList<>();
+            for (QueuedLogEvent queuedEvent : batch) {
+                unwritten.addAll(this.write(List.of(queuedEvent)));
+            }
+            return unwritten;
+        }
+    }
+
+    /**
+     * @param e - an error from the database.
+     * @return whether the error was caused by the data written (SQLSTATE class 22 or 23), rather than the database.
+     */
+    private static boolean isDataError(final SQLException e) {
+        String sqlState = e.getSQLState();
+        return null != sqlState && (sqlState.startsWith("22") || sqlState.startsWith("23"));
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    /**
+     * Stop the background writer and write out whatever is still queued.
+     *
+     * The database connection pool is closed by SegueGuiceConfigurationModule, which is always notified of shutdown
+     * after the other context listeners, so it is still open here.
+     */
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        log.info("Writing queued log events before shutdown.");
+        running = false;
+        writerExecutor.shutdown();
+        try {
+            if (!writerExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                writerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -90,6 +90,8 @@ public interface ILogManager {
 
     /**
      * Convenience method to find out how many of a particular type of event have been logged.
+     *
+     * This reads a maintained running total, so does not include events still waiting to be written.
      * 
      * @param type
      *            - event type of interest.
@@ -97,4 +99,18 @@ public interface ILogManager {
      * @throws SegueDatabaseException 
      */
     Long getLogCountByType(String type) throws SegueDatabaseException;
+
+    /**
+     * Find out how many of a particular type of event have been logged, optionally by counting every event rather than
+     * reading the running total. Counting is slow and should only be used to audit the running totals.
+     *
+     * @param type
+     *            - event type of interest.
+     * @param exact
+     *            - whether to count the events themselves.
+     * @return the number of that type recorded.
+     * @throws SegueDatabaseException
+     *             - if there is a problem with the database.
+     */
+    Long getLogCountByType(String type, boolean exact) throws SegueDatabaseException;
 }
@@ -15,36 +15,59 @@
  */
 package uk.ac.cam.cl.dtg.segue.dao;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.ILocationHistory;
 import uk.ac.cam.cl.dtg.isaac.dos.LocationHistoryEvent;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
+import uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics;
 import uk.ac.cam.cl.dtg.util.locations.IPLocationResolver;
 import uk.ac.cam.cl.dtg.util.locations.Location;
 import uk.ac.cam.cl.dtg.util.locations.LocationServerException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * This manager governs access to IP and other location lookup services.
  *
+ * IP addresses are queued when seen and geo-coded in batches on a background thread, so that requests never wait for
+ * a location lookup. The queue holds each address at most once and is bounded; addresses seen while it is full are
+ * dropped, and will be queued again the next time they are seen. If a batch cannot be recorded, its addresses are
+ * queued again for the next batch.
  */
-public class LocationManager {
+public class LocationManager implements ServletContextListener {
     private static final Logger log = LoggerFactory.getLogger(LocationManager.class);
     private static final int LOCATION_UPDATE_FREQUENCY_IN_DAYS = 30;
     private static final int NON_PERSISTENT_CACHE_TIME_IN_HOURS = 1;
+    private static final int MAX_PENDING_IP_ADDRESSES = 10000;
+    private static final long LOOKUP_INTERVAL_SECONDS = 10;
 
     private final ILocationHistory dao;
     private final IPLocationResolver ipLocationResolver;
     private final Cache<String, Boolean> locationUpdatedRecentlyCache;
+    private final Set<String> pendingIpAddresses = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService lookupExecutor;
 
     /**
+     * Create a location manager, which will begin geo-coding queued ip addresses in the background.
+     *
      * @param dao
      *            - the location history data access object.
      * @param ipLocationResolver
@@ -56,20 +79,25 @@ public class LocationManager {
         this.ipLocationResolver = ipLocationResolver;
 
         // This cache is here to prevent lots of needless look-ups to the database.
-        locationUpdatedRecentlyCache = CacheBuilder.newBuilder().expireAfterWrite(NON_PERSISTENT_CACHE_TIME_IN_HOURS, TimeUnit.HOURS).build();
+        locationUpdatedRecentlyCache = CacheRegistry.build("location_manager_updated_recently_cache",
+                CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().expireAfterWrite(NON_PERSISTENT_CACHE_TIME_IN_HOURS, TimeUnit.HOURS));
+
+        this.lookupExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ip-location-lookup-%d").setDaemon(true).build());
+        this.lookupExecutor.scheduleWithFixedDelay(this::processPendingLocations, LOOKUP_INTERVAL_SECONDS,
+                LOOKUP_INTERVAL_SECONDS, TimeUnit.SECONDS);
     }
 
     /**
      * This method will keep our database of ip addresses to locations updated.
+     *
+     * The ip address is only queued here; it will be looked up at the next batch.
      * 
      * @param ipAddress
      *            that should be looked up
-     * @throws SegueDatabaseException
-     *             - if we cannot resolve the location from our database
-     * @throws IOException
-     *             - if there is an IO error
      */
-    public void refreshLocation(final String ipAddress) throws SegueDatabaseException, IOException {
+    public void refreshLocation(final String ipAddress) {
         // if the IP is missing or present in our cache, no need to look up again
         if (ipAddress == null || ipAddress.isEmpty() || locationUpdatedRecentlyCache.getIfPresent(ipAddress) != null) {
             return;
@@ -90,40 +118,109 @@ public class LocationManager {
             return;
         }
 
-        // do we have an existing location for this ip address?
-        LocationHistoryEvent latestByIPAddress = dao.getLatestByIPAddress(ipAddress);
+        if (!queue(ipAddress)) {
+            log.debug("Too many ip addresses waiting to be geocoded, not queueing: {}", ipAddress);
+        }
+    }
+
+    /**
+     * Add an ip address to the queue to be geo-coded, if there is room.
+     *
+     * @param ipAddress - the ip address.
+     * @return whether the address is now queued.
+     */
+    private boolean queue(final String ipAddress) {
+        if (pendingIpAddresses.size() >= MAX_PENDING_IP_ADDRESSES && !pendingIpAddresses.contains(ipAddress)) {
+            SegueMetrics.IP_LOCATION_LOOKUPS_DROPPED.inc();
+            return false;
+        }
+        pendingIpAddresses.add(ipAddress);
+        return true;
+    }
+
+    /**
+     * Geo-code every queued ip address whose location is missing or out of date, and record the results.
+     */
+    public void processPendingLocations() {
+        List<String> batch = new ArrayList<>();
+        for (String ipAddress : pendingIpAddresses) {
+            if (pendingIpAddresses.remove(ipAddress)) {
+                batch.add(ipAddress);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Calendar locationExpiry = Calendar.getInstance();
+        locationExpiry.add(Calendar.DATE, -LOCATION_UPDATE_FREQUENCY_IN_DAYS);
+
         try {
-            if (latestByIPAddress != null) {
-                Calendar locationExpiry = Calendar.getInstance();
-                locationExpiry.setTime(latestByIPAddress.getLastUpdated());
-                locationExpiry.add(Calendar.DATE, LOCATION_UPDATE_FREQUENCY_IN_DAYS);
-
-                if (new Date().after(locationExpiry.getTime())) {
-                    // check if ip location data has changed, and if so update it, else mark it still valid
-                    Location locationInformation = ipLocationResolver.resolveAllLocationInformation(ipAddress);
-
-                    if (locationInformation.equals(latestByIPAddress.getLocationInformation())) {
-                        dao.updateLocationEventDate(latestByIPAddress.getId(), true);
-                        log.debug("Location for IP '{}' unchanged. Marking as current.", ipAddress);
-
-                    } else {
-                        dao.updateLocationEventDate(latestByIPAddress.getId(), false);
-                        dao.storeLocationEvent(ipAddress, locationInformation);
-                        log.debug("Location for IP '{}' changed. Updating to new value.", ipAddress);
-                    }
+            // do we have existing locations for these ip addresses?
+            Map<String, LocationHistoryEvent> latestByIPAddress = dao.getLatestByIPAddresses(batch);
+
+            List<Long> unchangedEventIds = new ArrayList<>();
+            List<Long> supersededEventIds = new ArrayList<>();
+            Map<String, Location> newLocations = new HashMap<>();
+            List<String> resolvedIpAddresses = new ArrayList<>();
+            for (String ipAddress : batch) {
+                LocationHistoryEvent latest = latestByIPAddress.get(ipAddress);
+                if (latest != null && !latest.getLastUpdated().before(locationExpiry.getTime())) {
+                    this.locationUpdatedRecentlyCache.put(ipAddress, true);
+                    continue;
+                }
+
+                Location locationInformation;
+                try {
+                    locationInformation = ipLocationResolver.resolveAllLocationInformation(ipAddress);
+                } catch (final LocationServerException | IOException e) {
+                    log.error("Unable to resolve location for IP address: '{}'. {} ", ipAddress, e.getMessage());
+                    // add to failed cache so we don't repeat failed lookups immediately
+                    this.locationUpdatedRecentlyCache.put(ipAddress, false);
+                    continue;
                 }
-            } else {
-                Location locationInformation = ipLocationResolver.resolveAllLocationInformation(ipAddress);
-                dao.storeLocationEvent(ipAddress, locationInformation);
-                log.debug("Recording location for IP '{}'.", ipAddress);
-            }
 
-            this.locationUpdatedRecentlyCache.put(ipAddress, true);
+                // check if ip location data has changed, and if so update it, else mark it still valid
+                if (latest == null) {
+                    newLocations.put(ipAddress, locationInformation);
+                    log.debug("Recording location for IP '{}'.", ipAddress);
+                } else if (locationInformation.equals(latest.getLocationInformation())) {
+                    unchangedEventIds.add(latest.getId());
+                    log.debug("Location for IP '{}' unchanged. Marking as current.", ipAddress);
+                } else {
+                    supersededEventIds.add(latest.getId());
+                    newLocations.put(ipAddress, locationInformation);
+                    log.debug("Location for IP '{}' changed. Updating to new value.", ipAddress);
+                }
+                resolvedIpAddresses.add(ipAddress);
+            }
 
-        } catch (final LocationServerException e) {
-            log.error("Unable to resolve location for IP address: '{}'. {} ", ipAddress, e.getMessage());
-            // add to failed cache so we don't repeat failed lookups immediately
-            this.locationUpdatedRecentlyCache.put(ipAddress, false);
+            dao.storeLocationUpdates(unchangedEventIds, supersededEventIds, newLocations);
+            for (String ipAddress : resolvedIpAddresses) {
+                this.locationUpdatedRecentlyCache.put(ipAddress, true);
+            }
+        } catch (SegueDatabaseException | JsonProcessingException | RuntimeException e) {
+            // Retry the addresses whose results were lost; those already in the cache need no further work.
+            int requeued = 0;
+            for (String ipAddress : batch) {
+                if (locationUpdatedRecentlyCache.getIfPresent(ipAddress) == null && queue(ipAddress)) {
+                    requeued++;
+                }
+            }
+            log.error("Unable to record location information for {} ip addresses; {} queued to retry.", batch.size(),
+                    requeued, e);
         }
     }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        log.info("Geocoding queued ip addresses before shutdown.");
+        lookupExecutor.shutdown();
+        processPendingLocations();
+    }
 }
@@ -29,12 +29,10 @@ import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.util.RequestIPExtractor;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Date;
 import java.util.Objects;
 
@@ -51,6 +49,7 @@ public class PgLogManager implements ILogManager {
 
     private final PostgresSqlDb database;
     private final LocationManager locationManager;
+    private final AsyncLogEventWriter logEventWriter;
     private final boolean loggingEnabled;
     private final ObjectMapper objectMapper;
 
@@ -65,16 +64,19 @@ public class PgLogManager implements ILogManager {
      *            - whether the log event should be persisted or not?
      * @param locationManager
      *            - Helps identify a rough location for an ip address.
+     * @param logEventWriter
+     *            - writes log events to the database in the background.
      */
     @Inject
     public PgLogManager(final PostgresSqlDb database, final ObjectMapper objectMapper,
             @Named(LOGGING_ENABLED) final boolean loggingEnabled,
-            final LocationManager locationManager) {
+            final LocationManager locationManager, final AsyncLogEventWriter logEventWriter) {
 
         this.database = database;
         this.objectMapper = objectMapper;
         this.loggingEnabled = loggingEnabled;
         this.locationManager = locationManager;
+        this.logEventWriter = logEventWriter;
     }
 
     @Override
@@ -92,8 +94,6 @@ public class PgLogManager implements ILogManager {
 
         } catch (JsonProcessingException e) {
             log.error("Unable to serialize eventDetails as json string", e);
-        } catch (SegueDatabaseException e) {
-            log.error("Unable to save log event to the database", e);
         }
     }
 
@@ -112,8 +112,6 @@ public class PgLogManager implements ILogManager {
 
         } catch (JsonProcessingException e) {
             log.error("Unable to serialize eventDetails as json string", e);
-        } catch (SegueDatabaseException e) {
-            log.error("Unable to save log event to the database", e);
         }
     }
 
@@ -130,15 +128,13 @@ public class PgLogManager implements ILogManager {
 
         } catch (JsonProcessingException e) {
             log.error("Unable to serialize eventDetails as json string", e);
-        } catch (SegueDatabaseException e) {
-            log.error("Unable to save log event to the databasse", e);
         }
     }
 
     @Override
     public void transferLogEventsToRegisteredUser(final String oldUserId, final String newUserId) {
         String query = "UPDATE logged_events SET user_id = ?, anonymous_user = TRUE WHERE user_id = ?;";
-        try (Connection conn = database.getDatabaseConnection();
+        try (Connection conn = database.getDatabaseConnection("PgLogManager.transferLogEventsToRegisteredUser");
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setString(1, newUserId);
@@ -153,8 +149,18 @@ public class PgLogManager implements ILogManager {
 
     @Override
     public Long getLogCountByType(final String type) throws SegueDatabaseException {
-        String query = "SELECT COUNT(*) AS TOTAL FROM logged_events WHERE event_type = ?";
-        try (Connection conn = database.getDatabaseConnection();
+        return this.getLogCountByType(type, false);
+    }
+
+    @Override
+    public Long getLogCountByType(final String type, final boolean exact) throws SegueDatabaseException {
+        String query;
+        if (exact) {
+            query = "SELECT COUNT(*) AS TOTAL FROM logged_events WHERE event_type = ?";
+        } else {
+            query = "SELECT COALESCE(SUM(total), 0) AS TOTAL FROM logged_event_type_counts WHERE event_type = ?";
+        }
+        try (Connection conn = database.getDatabaseConnection("PgLogManager.getLogCountByType");
              PreparedStatement pst = conn.prepareStatement(query);
         ) {
             pst.setString(1, type);
@@ -170,6 +176,8 @@ public class PgLogManager implements ILogManager {
 
     /**
      * log an event in the database.
+     *
+     * The event is queued to be written in the background; its details are serialised now, in case they change later.
      * 
      * @param userId
      *            -
@@ -183,10 +191,9 @@ public class PgLogManager implements ILogManager {
      *            -
      * @throws JsonProcessingException
      *             - if we are unable to serialize the eventDetails as a string.
-     * @throws SegueDatabaseException - if we cannot persist the event in the database.
      */
     private void persistLogEvent(final String userId, final String anonymousUserId, final String eventType,
-            final Object eventDetails, final String ipAddress) throws JsonProcessingException, SegueDatabaseException {
+            final Object eventDetails, final String ipAddress) throws JsonProcessingException {
         // don't do anything if logging is not enabled.
         if (!this.loggingEnabled) {
             return;
@@ -199,34 +206,7 @@ public class PgLogManager implements ILogManager {
             LOG_EVENT.labels(eventType).inc();
         }
 
-        String query = "INSERT INTO logged_events(user_id, anonymous_user, event_type, event_details_type,"
-                + " event_details, ip_address, timestamp) VALUES (?, ?, ?, ?, ?::text::jsonb, ?::inet, ?);";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-        ) {
-            pst.setString(1, logEvent.getUserId());
-            pst.setBoolean(2, logEvent.isAnonymousUser());
-            pst.setString(3, logEvent.getEventType());
-            pst.setString(4, logEvent.getEventDetailsType());
-            pst.setString(5, objectMapper.writeValueAsString(logEvent.getEventDetails()));
-            pst.setString(6, logEvent.getIpAddress());
-            pst.setTimestamp(7, new java.sql.Timestamp(new Date().getTime()));
-
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save user.");
-            }
-
-            try (ResultSet generatedKeys = pst.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    generatedKeys.getLong(1);
-                } else {
-                    throw new SQLException("Creating user failed, no ID obtained.");
-                }
-            }
-
-        } catch (SQLException e) {
-            throw new SegueDatabaseException("Postgres exception", e);
-        }
+        logEventWriter.enqueue(logEvent, objectMapper.writeValueAsString(logEvent.getEventDetails()));
     }
 
     /**
@@ -269,12 +249,7 @@ public class PgLogManager implements ILogManager {
 
         if (ipAddress != null) {
             logEvent.setIpAddress(ipAddress);
-
-            try {
-                locationManager.refreshLocation(ipAddress);
-            } catch (SegueDatabaseException | IOException e1) {
-                log.error("Unable to record location information for ip Address: {}", ipAddress, e1);
-            }
+            locationManager.refreshLocation(ipAddress);
         }
 
         logEvent.setTimestamp(new Date());
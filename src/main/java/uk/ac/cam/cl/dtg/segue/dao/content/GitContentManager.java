@@ -39,6 +39,8 @@ import uk.ac.cam.cl.dtg.isaac.dto.content.QuestionDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.content.SeguePageDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.content.SidebarDTO;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
 import uk.ac.cam.cl.dtg.segue.database.GitDb;
 import uk.ac.cam.cl.dtg.segue.search.BooleanInstruction;
 import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
@@ -70,7 +72,6 @@ import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
-import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
 
 /**
  * Implementation that specifically works with Content objects.
@@ -130,12 +131,13 @@ public class GitContentManager {
             log.info("API Configured to hide content tagged with 'regression_test'.");
         }
 
-        this.contentDOcache = CacheBuilder.newBuilder().recordStats().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        this.contentDTOcache = CacheBuilder.newBuilder().recordStats().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        CACHE_METRICS_COLLECTOR.addCache("git_content_manager_do_cache", contentDOcache);
-        CACHE_METRICS_COLLECTOR.addCache("git_content_manager_dto_cache", contentDTOcache);
+        this.contentDOcache = CacheRegistry.build("git_content_manager_do_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS));
+        this.contentDTOcache = CacheRegistry.build("git_content_manager_dto_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS));
 
-        this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(5, TimeUnit.SECONDS).build();
+        this.contentShaCache = CacheRegistry.build("git_content_manager_sha_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterWrite(5, TimeUnit.SECONDS));
 
         this.contentIndex = globalProperties.getProperty(Constants.CONTENT_INDEX);
     }
@@ -161,9 +163,12 @@ public class GitContentManager {
         this.globalProperties = null;
         this.showOnlyPublishedContent = false;
         this.hideRegressionTestContent = false;
-        this.contentDOcache = CacheBuilder.newBuilder().recordStats().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        this.contentDTOcache = CacheBuilder.newBuilder().recordStats().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(1, TimeUnit.MINUTES).build();
+        this.contentDOcache = CacheRegistry.build("git_content_manager_do_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS));
+        this.contentDTOcache = CacheRegistry.build("git_content_manager_dto_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS));
+        this.contentShaCache = CacheRegistry.build("git_content_manager_sha_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterWrite(1, TimeUnit.MINUTES));
         this.contentIndex = null;
     }
 
@@ -246,7 +251,7 @@ public class GitContentManager {
 
         String k = "getContentDOById~" + getCurrentContentSHA() + "~" + id;
 
-        try {
+        try (RequestTimings.StageTimer cacheTimer = RequestTimings.time(RequestTimings.Stage.CONTENT_CACHE)) {
             ResultsWrapper<Content> result = contentDOcache.get(k, () -> {
                 BooleanInstruction searchInstruction = this.getBaseSearchInstructionBuilder().includeHiddenContent(true).build();
                 searchInstruction.must(new MatchInstruction(Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX, id));
@@ -292,7 +297,7 @@ public class GitContentManager {
 
         String k = "getContentMatchingIds~" + getCurrentContentSHA() + "~" + ids.toString() + "~" + startIndex + "~" + limit;
 
-        try {
+        try (RequestTimings.StageTimer cacheTimer = RequestTimings.time(RequestTimings.Stage.CONTENT_CACHE)) {
             return contentDTOcache.get(k, () -> {
 
                 BooleanInstruction searchInstruction = this.getBaseSearchInstructionBuilder().includeHiddenContent(true).build();
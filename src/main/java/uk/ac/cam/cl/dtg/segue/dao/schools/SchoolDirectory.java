@@ -0,0 +1,281 @@
+package uk.ac.cam.cl.dtg.segue.dao.schools;
+
+import com.google.common.collect.ImmutableMap;
+import uk.ac.cam.cl.dtg.isaac.dos.users.School;
+
+import jakarta.annotation.Nullable;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, in-memory copy of the school list which can be searched without a round trip to the search provider.
+ *
+ * Every school can be looked up by id. Schools which are neither closed nor excluded can also be searched for by name
+ * or postcode: each word of the query must be the start of a word in the school's name or postcode. Candidates are
+ * found using an index from the trigrams of each word to the schools containing them, and then checked in full.
+ *
+ * The schools returned are shared between callers and must not be modified.
+ */
+class SchoolDirectory {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final String WORD_START_PADDING = "  ";
+    private static final int[] NO_SCHOOLS = new int[0];
+
+    private final Map<String, School> schoolsById;
+
+    private final School[] searchableSchools;
+    private final String[] searchableNames;
+    private final String[] searchablePostcodes;
+    private final String[][] searchableWords;
+    private final Map<String, int[]> schoolsByTrigram;
+
+    /**
+     * Build a directory of schools.
+     *
+     * @param schools
+     *            - every school in the school list.
+     */
+    SchoolDirectory(final Collection<School> schools) {
+        Map<String, School> byId = new HashMap<>();
+        List<School> searchable = new ArrayList<>();
+        for (School school : schools) {
+            if (null == school.getSchoolId()) {
+                continue;
+            }
+            byId.put(school.getSchoolId(), school);
+            if (!Boolean.TRUE.equals(school.getClosed()) && !Boolean.TRUE.equals(school.getExcluded())) {
+                searchable.add(school);
+            }
+        }
+        this.schoolsById = ImmutableMap.copyOf(byId);
+
+        // Keep the searchable schools in name order, so that candidates found by the index are already sorted:
+        Map<School, String> normalisedNames = new IdentityHashMap<>();
+        for (School school : searchable) {
+            normalisedNames.put(school, normalise(school.getSchoolName()));
+        }
+        searchable.sort(Comparator.comparing(normalisedNames::get));
+
+        int size = searchable.size();
+        this.searchableSchools = searchable.toArray(new School[0]);
+        this.searchableNames = new String[size];
+        this.searchablePostcodes = new String[size];
+        this.searchableWords = new String[size][];
+
+        Map<String, List<Integer>> trigramPostings = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            School school = searchableSchools[i];
+            searchableNames[i] = normalisedNames.get(school);
+            String postcode = normalise(school.getPostalCode());
+            searchablePostcodes[i] = postcode.replace(" ", "");
+
+            Set<String> words = new LinkedHashSet<>(splitWords(searchableNames[i]));
+            words.addAll(splitWords(postcode));
+            if (!searchablePostcodes[i].isEmpty()) {
+                words.add(searchablePostcodes[i]);
+            }
+            searchableWords[i] = words.toArray(new String[0]);
+
+            Set<String> trigrams = new LinkedHashSet<>();
+            for (String word : searchableWords[i]) {
+                addTrigrams(WORD_START_PADDING + word + " ", trigrams);
+            }
+            for (String trigram : trigrams) {
+                trigramPostings.computeIfAbsent(trigram, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<String, int[]> postings = new HashMap<>();
+        trigramPostings.forEach((trigram, schoolIndexes) ->
+                postings.put(trigram, schoolIndexes.stream().mapToInt(Integer::intValue).toArray()));
+        this.schoolsByTrigram = ImmutableMap.copyOf(postings);
+    }
+
+    /**
+     * @return the number of schools in the directory, including closed and excluded schools.
+     */
+    int size() {
+        return schoolsById.size();
+    }
+
+    /**
+     * Find a school by id, whether or not it is closed or excluded.
+     *
+     * @param schoolId
+     *            - the id to look up.
+     * @return the school, or null if there is no school with this id.
+     */
+    @Nullable
+    School findById(final String schoolId) {
+        if (null == schoolId) {
+            return null;
+        }
+        return schoolsById.get(schoolId);
+    }
+
+    /**
+     * Search for open, non-excluded schools by id, name or postcode.
+     *
+     * A school whose id is the query comes first, then schools whose name or postcode starts with the query, and then
+     * any other matches; each group in name order.
+     *
+     * @param searchQuery
+     *            - the id, or the start of each word of the name or postcode, to search for.
+     * @param countryCode
+     *            - the country code to filter by, if any.
+     * @param limit
+     *            - the maximum number of schools to return, or a negative number for no limit.
+     * @return the matching schools, or an empty list.
+     */
+    List<School> search(final String searchQuery, @Nullable final String countryCode, final int limit) {
+        List<School> results = new ArrayList<>();
+        if (null == searchQuery || limit == 0) {
+            return results;
+        }
+
+        School schoolWithId = schoolsById.get(searchQuery.trim());
+        boolean idMatches = null != schoolWithId && !Boolean.TRUE.equals(schoolWithId.getClosed())
+                && !Boolean.TRUE.equals(schoolWithId.getExcluded()) && isInCountry(schoolWithId, countryCode);
+        if (idMatches) {
+            results.add(schoolWithId);
+        }
+
+        String query = normalise(searchQuery);
+        List<String> queryWords = splitWords(query);
+        if (queryWords.isEmpty()) {
+            return results;
+        }
+
+        Set<String> queryTrigrams = new LinkedHashSet<>();
+        for (String word : queryWords) {
+            addTrigrams(WORD_START_PADDING + word, queryTrigrams);
+        }
+        int[] candidates = findSchoolsWithAllTrigrams(queryTrigrams);
+
+        String compactQuery = query.replace(" ", "");
+        List<School> otherMatches = new ArrayList<>();
+        for (int candidate : candidates) {
+            School school = searchableSchools[candidate];
+            if ((idMatches && school == schoolWithId) || !isInCountry(school, countryCode)
+                    || !allWordsArePrefixes(queryWords, searchableWords[candidate])) {
+                continue;
+            }
+            if (searchableNames[candidate].startsWith(query) || searchablePostcodes[candidate].startsWith(compactQuery)) {
+                results.add(school);
+            } else {
+                otherMatches.add(school);
+            }
+            if (limit > 0 && results.size() >= limit) {
+                return results;
+            }
+        }
+        results.addAll(otherMatches);
+
+        if (limit > 0 && results.size() > limit) {
+            return new ArrayList<>(results.subList(0, limit));
+        }
+        return results;
+    }
+
+    /**
+     * Intersect the index entries for every trigram, smallest first.
+     *
+     * @param trigrams
+     *            - the trigrams which must all be present.
+     * @return the sorted indexes of the searchable schools containing every trigram.
+     */
+    private int[] findSchoolsWithAllTrigrams(final Set<String> trigrams) {
+        List<int[]> postings = new ArrayList<>();
+        for (String trigram : trigrams) {
+            int[] posting = schoolsByTrigram.get(trigram);
+            if (null == posting) {
+                return NO_SCHOOLS;
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(posting -> posting.length));
+
+        int[] result = postings.getFirst();
+        for (int p = 1; p < postings.size() && result.length > 0; p++) {
+            int[] other = postings.get(p);
+            int[] intersection = new int[result.length];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < result.length && j < other.length) {
+                if (result[i] < other[j]) {
+                    i++;
+                } else if (result[i] > other[j]) {
+                    j++;
+                } else {
+                    intersection[count++] = result[i];
+                    i++;
+                    j++;
+                }
+            }
+            result = Arrays.copyOf(intersection, count);
+        }
+        return result;
+    }
+
+    private static boolean allWordsArePrefixes(final List<String> queryWords, final String[] schoolWords) {
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String schoolWord : schoolWords) {
+                if (schoolWord.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInCountry(final School school, @Nullable final String countryCode) {
+        return null == countryCode || countryCode.isEmpty() || countryCode.equals(school.getCountryCode());
+    }
+
+    private static void addTrigrams(final String paddedWord, final Set<String> trigrams) {
+        for (int i = 0; i + 3 <= paddedWord.length(); i++) {
+            trigrams.add(paddedWord.substring(i, i + 3));
+        }
+    }
+
+    private static List<String> splitWords(final String normalisedText) {
+        if (normalisedText.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Arrays.asList(normalisedText.split(" "));
+    }
+
+    /**
+     * Lower case, strip accents and replace any run of punctuation or whitespace with a single space.
+     *
+     * @param text
+     *            - the text to normalise.
+     * @return the normalised text, or the empty string if there is none.
+     */
+    private static String normalise(@Nullable final String text) {
+        if (null == text) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String unaccented = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(unaccented.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
@@ -21,7 +21,10 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.api.client.util.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dos.users.School;
@@ -32,7 +35,15 @@ import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 
 import jakarta.annotation.Nullable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 
@@ -42,15 +53,26 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
  * This class is threadsafe providing that the ISearchProvider given as a dependency is not given to another instance of
  * this class. Normally this class should be treated as a singleton to ensure the ISearchProvider is not shared with
  * another instance of this class.
+ *
+ * Once loaded, lookups are served from an in-memory SchoolDirectory. It is loaded in the background at startup and
+ * reloaded whenever the school list index is rebuilt; until then lookups go to the search provider.
  */
-public class SchoolListReader {
+public class SchoolListReader implements ServletContextListener {
     private static final Logger log = LoggerFactory.getLogger(SchoolListReader.class);
+    private static final long DIRECTORY_REFRESH_INTERVAL_MINUTES = 5;
+    // Reload periodically even if the index metadata is unchanged, in case it was read part way through a rebuild.
+    private static final long DIRECTORY_MAX_AGE_MINUTES = 60;
 
     private final ISearchProvider searchProvider;
+    private final ScheduledExecutorService refreshExecutor;
 
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private final String dataSourceModificationDate;
+    private volatile String dataSourceModificationDate;
+
+    private volatile SchoolDirectory directory;
+    private volatile String directoryModificationDate;
+    private volatile long directoryLoadedAt;
 
     /**
      * SchoolListReader constructor.
@@ -62,17 +84,24 @@ public class SchoolListReader {
     public SchoolListReader(final ISearchProvider searchProvider) {
         this.searchProvider = searchProvider;
 
-        String modificationDate = "unknown";
-        try {
-            GetResponse<ObjectNode> response = searchProvider.getById(
-                    SCHOOLS_INDEX_BASE, SCHOOLS_INDEX_TYPE.METADATA.toString(), "sourceFile");
-            if (null != response.source()) {
-                modificationDate = response.source().get("lastModified").asText();
-            }
-        } catch (SegueSearchException e) {
-            log.error("Failed to retrieve school list modification date", e);
-        }
-        dataSourceModificationDate = modificationDate;
+        String modificationDate = this.readDataSourceModificationDate();
+        dataSourceModificationDate = null != modificationDate ? modificationDate : "unknown";
+
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("school-directory-refresh-%d").setDaemon(true).build());
+        refreshExecutor.scheduleWithFixedDelay(this::refreshDirectory, 0, DIRECTORY_REFRESH_INTERVAL_MINUTES,
+                TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void contextInitialized(final ServletContextEvent sce) {
+        // nothing needed
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent sce) {
+        log.info("Stopping school directory refresh.");
+        refreshExecutor.shutdownNow();
     }
 
     /**
@@ -90,13 +119,22 @@ public class SchoolListReader {
      */
     public List<School> findSchoolByNameOrPostCode(final String searchQuery, @Nullable final String countryCode,
                                                    @Nullable final Integer limit) throws UnableToIndexSchoolsException, SegueSearchException {
+        Integer queryLimit = limit == null ? DEFAULT_RESULTS_LIMIT : limit;
+
+        SchoolDirectory currentDirectory = this.directory;
+        if (null != currentDirectory) {
+            List<School> directoryResults = currentDirectory.search(searchQuery, countryCode, queryLimit);
+            if (!directoryResults.isEmpty()) {
+                return directoryResults;
+            }
+            // Nothing starts with the query, so fall through to the search provider for its fuzzy matching of typos.
+        }
+
         if (!this.ensureSchoolList()) {
             log.error("Unable to ensure school search cache.");
             throw new UnableToIndexSchoolsException("unable to ensure the cache has been populated");
         }
 
-        Integer queryLimit = limit == null ? DEFAULT_RESULTS_LIMIT : limit;
-
         BooleanInstruction matchInstruction = new BooleanInstruction();
         // Exclude excluded/closed schools
         matchInstruction.must(new MatchInstruction(SCHOOL_EXCLUDED_FIELDNAME, "false", null, false));
@@ -145,6 +183,11 @@ public class SchoolListReader {
     public School findSchoolById(final String schoolId) throws UnableToIndexSchoolsException, JsonParseException,
             JsonMappingException, IOException, SegueSearchException {
 
+        SchoolDirectory currentDirectory = this.directory;
+        if (null != currentDirectory) {
+            return currentDirectory.findById(schoolId);
+        }
+
         if (!this.ensureSchoolList()) {
             log.error("Unable to ensure school search cache.");
             throw new UnableToIndexSchoolsException("unable to ensure the cache has been populated");
@@ -168,6 +211,30 @@ public class SchoolListReader {
     }
 
 
+    /**
+     * Find several schools by Id at once.
+     *
+     * @param schoolIds
+     *            - to search for.
+     * @return a map from school id to school, with no entry for any id which does not match a school.
+     * @throws UnableToIndexSchoolsException
+     *             - if we cannot complete the indexing process
+     * @throws IOException
+     *             - If we cannot read the school data
+     */
+    public Map<String, School> findSchoolsByIds(final Collection<String> schoolIds)
+            throws UnableToIndexSchoolsException, IOException, SegueSearchException {
+        Map<String, School> schools = new HashMap<>();
+        SchoolDirectory currentDirectory = this.directory;
+        for (String schoolId : new HashSet<>(schoolIds)) {
+            School school = null != currentDirectory ? currentDirectory.findById(schoolId) : this.findSchoolById(schoolId);
+            if (null != school) {
+                schools.put(schoolId, school);
+            }
+        }
+        return schools;
+    }
+
     /**
      * Ensure School List has been generated.
      * 
@@ -177,7 +244,66 @@ public class SchoolListReader {
         return searchProvider.hasIndex(SCHOOLS_INDEX_BASE, SCHOOLS_INDEX_TYPE.SCHOOL_SEARCH.toString());
     }
 
+    /**
+     * Read when the school list in the index was last modified.
+     *
+     * @return the modification date, or null if it cannot be found.
+     */
+    private String readDataSourceModificationDate() {
+        try {
+            GetResponse<ObjectNode> response = searchProvider.getById(
+                    SCHOOLS_INDEX_BASE, SCHOOLS_INDEX_TYPE.METADATA.toString(), "sourceFile");
+            if (null != response.source()) {
+                return response.source().get("lastModified").asText();
+            }
+        } catch (SegueSearchException | RuntimeException e) {
+            log.error("Failed to retrieve school list modification date", e);
+        }
+        return null;
+    }
+
+    /**
+     * (Re)load the in-memory school directory if the school list index has changed since it was last loaded.
+     */
+    void refreshDirectory() {
+        String modificationDate = this.readDataSourceModificationDate();
+        boolean directoryExpired = System.currentTimeMillis() - directoryLoadedAt
+                > TimeUnit.MINUTES.toMillis(DIRECTORY_MAX_AGE_MINUTES);
+        if (null != directory && !directoryExpired && Objects.equals(modificationDate, directoryModificationDate)) {
+            return;
+        }
+        if (!this.ensureSchoolList()) {
+            log.warn("School list index not found; unable to load the school directory.");
+            return;
+        }
 
+        try {
+            List<School> schools = Lists.newArrayList();
+            for (String schoolString : searchProvider.getAllDocumentsFromIndex(SCHOOLS_INDEX_BASE,
+                    SCHOOLS_INDEX_TYPE.SCHOOL_SEARCH.toString())) {
+                try {
+                    schools.add(mapper.readValue(schoolString, School.class));
+                } catch (IOException e) {
+                    log.error("Unable to parse the school '{}'", schoolString, e);
+                }
+            }
+            if (schools.isEmpty()) {
+                log.warn("School list index is empty; not replacing the school directory.");
+                return;
+            }
+
+            SchoolDirectory newDirectory = new SchoolDirectory(schools);
+            this.directory = newDirectory;
+            this.directoryModificationDate = modificationDate;
+            this.directoryLoadedAt = System.currentTimeMillis();
+            if (null != modificationDate) {
+                this.dataSourceModificationDate = modificationDate;
+            }
+            log.info("Loaded {} schools into the school directory.", newDirectory.size());
+        } catch (SegueSearchException | RuntimeException e) {
+            log.error("Unable to load the school directory.", e);
+        }
+    }
 
     /**
      * Method to help determine freshness of data.
@@ -26,18 +26,6 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.AnonymousUser;
  */
 public interface IAnonymousUserDataManager {
 
-    /**
-     * Save the anonymous user object in the data store.
-     * 
-     * @param user
-     *            - the user object to persist.
-     * 
-     * @return user which was saved.
-     * @throws SegueDatabaseException
-     *             - If there is an internal database error.
-     */
-    AnonymousUser storeAnonymousUser(AnonymousUser user) throws SegueDatabaseException;
-
     /**
      * Delete a anonymous user by id.
      * 
@@ -56,6 +44,14 @@ public interface IAnonymousUserDataManager {
      */
     AnonymousUser getById(final String id) throws SegueDatabaseException;
 
+    /**
+     * Extend the life of an anonymous user in our db, if they have been persisted.
+     *
+     * @param user - to update; its last updated date will be set to now.
+     * @throws SegueDatabaseException - if we can't access the database
+     */
+    void updateLastUpdatedDate(AnonymousUser user) throws SegueDatabaseException;
+
     /**
      * Find out how many live anonymous users we have currently in the database.
      *
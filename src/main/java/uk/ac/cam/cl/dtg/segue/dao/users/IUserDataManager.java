@@ -15,9 +15,11 @@
  */
 package uk.ac.cam.cl.dtg.segue.dao.users;
 
+import jakarta.annotation.Nullable;
 import uk.ac.cam.cl.dtg.segue.api.Constants.SchoolInfoStatus;
 import uk.ac.cam.cl.dtg.segue.api.Constants.TimeInterval;
 import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
+import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Gender;
 import uk.ac.cam.cl.dtg.isaac.dos.users.RegisteredUser;
@@ -173,6 +175,26 @@ public interface IUserDataManager {
      */
     List<RegisteredUser> findUsers(RegisteredUser prototype) throws SegueDatabaseException;
 
+    /**
+     * Search for users by a prototype, a page at a time, ordered by family name then given name.
+     *
+     * Only the fields needed to summarise each user are populated on the users returned.
+     *
+     * @param prototype
+     *            - a user prototype that can be used for matching fields.
+     * @param afterUserId
+     *            - the id of the last user on the previous page, or null for the first page.
+     * @param limit
+     *            - the maximum number of users to return.
+     * @return list of partially populated users
+     * @throws ResourceNotFoundException
+     *             if afterUserId is given but no such user exists.
+     * @throws SegueDatabaseException
+     *             if there is a database error.
+     */
+    List<RegisteredUser> searchUsers(RegisteredUser prototype, @Nullable Long afterUserId, int limit)
+            throws SegueDatabaseException;
+
     /**
      * Bulk find users based on ids.
      * 
@@ -240,6 +262,18 @@ public interface IUserDataManager {
      */
     void updateUserLastSeen(final RegisteredUser user, final Date date) throws SegueDatabaseException;
 
+    /**
+     * Update the last seen dates of several users at once.
+     *
+     * A user's last seen date is never moved backwards.
+     *
+     * @param lastSeenByUserId
+     *            map of user id to the date that user was last seen.
+     * @throws SegueDatabaseException
+     *             if an error occurs
+     */
+    void updateUsersLastSeen(Map<Long, Date> lastSeenByUserId) throws SegueDatabaseException;
+
     /**
      * Increment the session token of a user object in the data store.
      *
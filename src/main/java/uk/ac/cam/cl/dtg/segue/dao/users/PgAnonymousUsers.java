@@ -45,29 +45,6 @@ public class PgAnonymousUsers implements IAnonymousUserDataManager {
         this.database = ds;
     }
 
-    @Override
-    public AnonymousUser storeAnonymousUser(final AnonymousUser user) throws SegueDatabaseException {
-        String query = "INSERT INTO temporary_user_store (id, temporary_app_data, created, last_updated)"
-                + " VALUES (?,?::text::jsonb,?,?);";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
-        ) {
-            pst.setString(1, user.getSessionId());
-            pst.setString(2, "{\"questionAttempts\":{}}");
-            pst.setTimestamp(3, new java.sql.Timestamp(user.getDateCreated().getTime()));
-            pst.setTimestamp(4, new java.sql.Timestamp(user.getDateCreated().getTime()));
-
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save anonymous user.");
-            }
-            SegueMetrics.CREATE_ANONYMOUS_USER.inc();
-            return user;
-
-        } catch (final SQLException e) {
-            throw new SegueDatabaseException("Postgres exception on creating anonymous user ", e);
-        }
-    }
-
     @Override
     public void deleteAnonymousUser(final AnonymousUser userToDelete) throws SegueDatabaseException {
         String query = "DELETE FROM temporary_user_store WHERE id = ?";
@@ -132,7 +109,8 @@ public class PgAnonymousUsers implements IAnonymousUserDataManager {
      *
      * @param user - to update.
      */
-    private void updateLastUpdatedDate(final AnonymousUser user) throws SegueDatabaseException {
+    @Override
+    public void updateLastUpdatedDate(final AnonymousUser user) throws SegueDatabaseException {
         Objects.requireNonNull(user);
 
         String query = "UPDATE temporary_user_store SET last_updated = ? WHERE id = ?";
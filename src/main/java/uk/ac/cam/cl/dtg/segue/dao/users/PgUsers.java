@@ -19,7 +19,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 import uk.ac.cam.cl.dtg.isaac.dos.users.EmailVerificationStatus;
 import uk.ac.cam.cl.dtg.isaac.dos.users.Gender;
@@ -30,6 +32,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.UserContext;
 import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.DuplicateAccountException;
 import uk.ac.cam.cl.dtg.segue.dao.AbstractPgDataManager;
+import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 
@@ -41,6 +44,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +61,10 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 public class PgUsers extends AbstractPgDataManager implements IUserDataManager {
     private static final String POSTGRES_EXCEPTION_MESSAGE = "Postgres exception";
     private static final String JSONB_PROCESSING_ERROR_MESSAGE = "Postgres JSONb processing exception";
+    private static final int LAST_SEEN_UPDATE_BATCH_SIZE = 1000;
+    private static final String USER_SEARCH_SUMMARY_COLUMNS = "id, family_name, given_name, email, role,"
+            + " registration_date, school_id, school_other, registered_contexts, last_updated, last_seen,"
+            + " email_verification_status";
 
     private final PostgresSqlDb database;
     private final ObjectMapper jsonMapper;
@@ -283,6 +291,87 @@ public class PgUsers extends AbstractPgDataManager implements IUserDataManager {
 
     @Override
     public List<RegisteredUser> findUsers(final RegisteredUser prototype) throws SegueDatabaseException {
+        List<Object> orderToAdd = Lists.newArrayList();
+        String query = "SELECT * FROM users" + this.buildPrototypeWhereClause(prototype, orderToAdd)
+                + " ORDER BY family_name, given_name";
+        try (Connection conn = database.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(query);
+        ) {
+            this.setPrototypeParameters(pst, 1, orderToAdd);
+            
+            try (ResultSet results = pst.executeQuery()) {
+                return this.findAllUsers(results);
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException(POSTGRES_EXCEPTION_MESSAGE, e);
+        } catch (JsonProcessingException e) {
+            throw new SegueDatabaseException(JSONB_PROCESSING_ERROR_MESSAGE, e);
+        }
+    }
+
+    @Override
+    public List<RegisteredUser> searchUsers(final RegisteredUser prototype, @Nullable final Long afterUserId,
+                                            final int limit) throws SegueDatabaseException {
+        List<Object> orderToAdd = Lists.newArrayList();
+        StringBuilder sb = new StringBuilder("SELECT " + USER_SEARCH_SUMMARY_COLUMNS + " FROM users");
+        sb.append(this.buildPrototypeWhereClause(prototype, orderToAdd));
+        if (null != afterUserId) {
+            // Keyset pagination: continue from the position of the last user of the previous page.
+            sb.append(" AND (COALESCE(family_name, ''), COALESCE(given_name, ''), id) > (?, ?, ?)");
+        }
+        sb.append(" ORDER BY COALESCE(family_name, ''), COALESCE(given_name, ''), id LIMIT ?");
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            if (null != afterUserId) {
+                // Look up the position of the last user explicitly; comparing against a missing row would silently
+                // match nothing and so look like the end of the results.
+                String anchorQuery = "SELECT COALESCE(family_name, '') AS family_name,"
+                        + " COALESCE(given_name, '') AS given_name FROM users WHERE id = ?";
+                try (PreparedStatement pst = conn.prepareStatement(anchorQuery)) {
+                    pst.setLong(1, afterUserId);
+                    try (ResultSet results = pst.executeQuery()) {
+                        if (!results.next()) {
+                            throw new ResourceNotFoundException(String.format(
+                                    "Unable to continue user search: the user (%s) to search after does not exist.",
+                                    afterUserId));
+                        }
+                        orderToAdd.add(results.getString("family_name"));
+                        orderToAdd.add(results.getString("given_name"));
+                        orderToAdd.add(afterUserId);
+                    }
+                }
+            }
+
+            try (PreparedStatement pst = conn.prepareStatement(sb.toString())) {
+                int index = this.setPrototypeParameters(pst, 1, orderToAdd);
+                pst.setInt(index, limit);
+
+                try (ResultSet results = pst.executeQuery()) {
+                    List<RegisteredUser> users = Lists.newArrayList();
+                    while (results.next()) {
+                        users.add(this.buildRegisteredUserSummary(results));
+                    }
+                    return users;
+                }
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException(POSTGRES_EXCEPTION_MESSAGE, e);
+        } catch (JsonProcessingException e) {
+            throw new SegueDatabaseException(JSONB_PROCESSING_ERROR_MESSAGE, e);
+        }
+    }
+
+    /**
+     * Build the WHERE clause for a prototypical user search.
+     *
+     * String fields are matched case-insensitively and may contain wildcards; the trigram indexes on the users table
+     * allow these to be searched without a sequential scan.
+     *
+     * @param prototype - partially completed user object to base search on.
+     * @param orderToAdd - list to add the values of the clause's parameters to, in order.
+     * @return the WHERE clause, starting with a space.
+     */
+    private String buildPrototypeWhereClause(final RegisteredUser prototype, final List<Object> orderToAdd) {
         Map<String, Object> fieldsOfInterest = Maps.newHashMap();
         
         // Interesting fields to use for prototypical search
@@ -314,53 +403,42 @@ public class PgUsers extends AbstractPgDataManager implements IUserDataManager {
         // Build optional WHERE clause:
         StringBuilder sb = new StringBuilder();
         sb.append(" WHERE NOT deleted");
-        if (fieldsOfInterest.entrySet().size() != 0) {
-            sb.append(" AND ");
-        }
-
-        int index = 0;
-        List<Object> orderToAdd = Lists.newArrayList();
         for (Entry<String, Object> e : fieldsOfInterest.entrySet()) {
-
             if (e.getValue() instanceof String) {
-                sb.append(e.getKey() + " ILIKE ?");
+                sb.append(" AND " + e.getKey() + " ILIKE ?");
             } else {
-                sb.append(e.getKey() + " = ?");
+                sb.append(" AND " + e.getKey() + " = ?");
             }
-
             orderToAdd.add(e.getValue());
-            if (index + 1 < fieldsOfInterest.entrySet().size()) {
-                sb.append(" AND ");
-            }
-            index++;
         }
+        return sb.toString();
+    }
 
-        String query = "SELECT * FROM users" + sb.toString() + " ORDER BY family_name, given_name";
-        try (Connection conn = database.getDatabaseConnection();
-             PreparedStatement pst = conn.prepareStatement(query);
-        ) {
-            index = 1;
-            for (Object value : orderToAdd) {
-                if (value instanceof String) {
-                    pst.setString(index, (String) value);
-                }
-                if (value instanceof Integer) {
-                    pst.setInt(index, (Integer) value);
-                }
-                if (value instanceof Long) {
-                    pst.setLong(index, (Long) value);
-                }
-                index++;
+    /**
+     * Set the parameters of a prototypical user search.
+     *
+     * @param pst - the statement to set the parameters of.
+     * @param firstIndex - the index of the first parameter to set.
+     * @param orderToAdd - the values of the parameters, in order.
+     * @return the index of the next parameter after those set.
+     * @throws SQLException - if a parameter cannot be set.
+     */
+    private int setPrototypeParameters(final PreparedStatement pst, final int firstIndex, final List<Object> orderToAdd)
+            throws SQLException {
+        int index = firstIndex;
+        for (Object value : orderToAdd) {
+            if (value instanceof String) {
+                pst.setString(index, (String) value);
             }
-            
-            try (ResultSet results = pst.executeQuery()) {
-                return this.findAllUsers(results);
+            if (value instanceof Integer) {
+                pst.setInt(index, (Integer) value);
             }
-        } catch (SQLException e) {
-            throw new SegueDatabaseException(POSTGRES_EXCEPTION_MESSAGE, e);
-        } catch (JsonProcessingException e) {
-            throw new SegueDatabaseException(JSONB_PROCESSING_ERROR_MESSAGE, e);
+            if (value instanceof Long) {
+                pst.setLong(index, (Long) value);
+            }
+            index++;
         }
+        return index;
     }
 
     @Override
@@ -592,6 +670,38 @@ public class PgUsers extends AbstractPgDataManager implements IUserDataManager {
         }
     }
 
+    @Override
+    public void updateUsersLastSeen(final Map<Long, Date> lastSeenByUserId) throws SegueDatabaseException {
+        Objects.requireNonNull(lastSeenByUserId);
+        if (lastSeenByUserId.isEmpty()) {
+            return;
+        }
+
+        // Batch the users in id order, so that concurrent updates reach overlapping users in the same order and are
+        // less likely to deadlock.
+        List<Entry<Long, Date>> updatesInIdOrder = lastSeenByUserId.entrySet().stream()
+                .sorted(Entry.comparingByKey()).toList();
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            for (List<Entry<Long, Date>> batch : Iterables.partition(updatesInIdOrder, LAST_SEEN_UPDATE_BATCH_SIZE)) {
+                String query = "UPDATE users SET last_seen = updates.last_seen FROM (VALUES "
+                        + String.join(", ", Collections.nCopies(batch.size(), "(?::bigint, ?::timestamp)"))
+                        + ") AS updates(id, last_seen)"
+                        + " WHERE users.id = updates.id AND (users.last_seen IS NULL OR users.last_seen < updates.last_seen)";
+                try (PreparedStatement pst = conn.prepareStatement(query)) {
+                    int index = 1;
+                    for (Entry<Long, Date> userLastSeen : batch) {
+                        pst.setLong(index++, userLastSeen.getKey());
+                        pst.setTimestamp(index++, new java.sql.Timestamp(userLastSeen.getValue().getTime()));
+                    }
+                    pst.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException(POSTGRES_EXCEPTION_MESSAGE, e);
+        }
+    }
+
     @Override
     public void incrementSessionToken(RegisteredUser user) throws SegueDatabaseException {
         Objects.requireNonNull(user);
@@ -828,6 +938,39 @@ public class PgUsers extends AbstractPgDataManager implements IUserDataManager {
         return u;
     }
 
+    /**
+     * Build a {@link RegisteredUser} from a Postgres {@link ResultSet} of the {@link #USER_SEARCH_SUMMARY_COLUMNS}.
+     *
+     * @param results The results to convert
+     * @return A RegisteredUser with only the fields needed to summarise the user populated.
+     * @throws SQLException If an error occurs.
+     */
+    private RegisteredUser buildRegisteredUserSummary(final ResultSet results) throws SQLException, JsonProcessingException {
+        RegisteredUser u = new RegisteredUser();
+        u.setId(results.getLong("id"));
+        u.setFamilyName(results.getString("family_name"));
+        u.setGivenName(results.getString("given_name"));
+        u.setEmail(results.getString("email"));
+        u.setRole(results.getString("role") != null ? Role.valueOf(results.getString("role")) : null);
+        u.setRegistrationDate(results.getTimestamp("registration_date"));
+        u.setSchoolId(results.getString("school_id"));
+        u.setSchoolOther(results.getString("school_other"));
+        Array registeredContextsArray = results.getArray("registered_contexts");
+        if (registeredContextsArray != null) {
+            List<UserContext> userContexts = Lists.newArrayList();
+            for (String registeredContextJson : (String[]) registeredContextsArray.getArray()) {
+                userContexts.add(jsonMapper.readValue(registeredContextJson, UserContext.class));
+            }
+            u.setRegisteredContexts(userContexts);
+        }
+        u.setLastUpdated(results.getTimestamp("last_updated"));
+        u.setLastSeen(results.getTimestamp("last_seen"));
+        u.setEmailVerificationStatus(results.getString("email_verification_status") != null ? EmailVerificationStatus
+                .valueOf(results.getString("email_verification_status")) : null);
+
+        return u;
+    }
+
     /**
      * findOne helper method to ensure that only one result matches the search criteria.
      * 
@@ -0,0 +1,203 @@
+package uk.ac.cam.cl.dtg.segue.database;
+
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+import uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps connections borrowed from the pool so that every statement executed on them is timed and labelled with a
+ * stable query name, and statements slower than the slow query threshold are logged.
+ *
+ * The query name is the one the DAO supplied when it asked for the connection, or failing that one derived from the
+ * SQL, e.g. "select:question_attempts". Slow query logs never include the values of bind parameters, only their
+ * types, and any string literals written into the SQL itself are replaced with '?'.
+ */
+final class InstrumentedConnection {
+    private static final Logger log = LoggerFactory.getLogger(InstrumentedConnection.class);
+
+    static final long SLOW_QUERY_THRESHOLD_MILLISECONDS = 1000;
+    private static final long SLOW_QUERY_THRESHOLD_NANOSECONDS =
+            TimeUnit.MILLISECONDS.toNanos(SLOW_QUERY_THRESHOLD_MILLISECONDS);
+    private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_LOGGED_SQL_LENGTH = 2000;
+
+    private static final Pattern SQL_VERB = Pattern.compile("^\\s*([a-zA-Z]+)");
+    private static final Pattern SQL_TABLE = Pattern.compile(
+            "\\b(?:from|into|update|join)\\s+(\"?[a-z_][\\w.\"]*)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SQL_STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private InstrumentedConnection() {
+    }
+
+    /**
+     * Wrap a connection borrowed from the pool.
+     *
+     * @param connection - the connection to wrap.
+     * @param queryName - the name to label all statements run on the connection with, or null to derive it from SQL.
+     * @return a connection which instruments its statements and otherwise behaves exactly like the one it wraps.
+     */
+    static Connection wrap(final Connection connection, @Nullable final String queryName) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection, queryName));
+    }
+
+    /**
+     * Derive a query name from a statement's SQL: its first keyword, and the first table it names if any.
+     *
+     * @param sql - the statement's SQL, if known.
+     * @return a name such as "select:question_attempts", "set" or "unknown".
+     */
+    static String deriveQueryName(@Nullable final String sql) {
+        if (null == sql) {
+            return "unknown";
+        }
+        Matcher verb = SQL_VERB.matcher(sql);
+        if (!verb.find()) {
+            return "unknown";
+        }
+        String name = verb.group(1).toLowerCase(Locale.ROOT);
+        Matcher table = SQL_TABLE.matcher(sql);
+        if (table.find()) {
+            name += ":" + table.group(1).replace("\"", "").toLowerCase(Locale.ROOT);
+        }
+        return name;
+    }
+
+    /**
+     * @param sql - the statement's SQL.
+     * @return the SQL with any string literals replaced by '?', shortened if very long.
+     */
+    static String redactSql(@Nullable final String sql) {
+        if (null == sql) {
+            return "";
+        }
+        String redacted = SQL_STRING_LITERAL.matcher(sql).replaceAll("'?'");
+        if (redacted.length() > MAX_LOGGED_SQL_LENGTH) {
+            return redacted.substring(0, MAX_LOGGED_SQL_LENGTH) + "...";
+        }
+        return redacted;
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Passes calls through to the real connection, wrapping any statements it creates.
+     */
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        private final String queryName;
+
+        private ConnectionHandler(final Connection connection, @Nullable final String queryName) {
+            this.connection = connection;
+            this.queryName = queryName;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            Object result = InstrumentedConnection.invoke(connection, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0], proxy);
+                case "prepareCall":
+                    return wrapStatement(CallableStatement.class, (Statement) result, (String) args[0], proxy);
+                case "createStatement":
+                    return wrapStatement(Statement.class, (Statement) result, null, proxy);
+                default:
+                    return result;
+            }
+        }
+
+        private Object wrapStatement(final Class<? extends Statement> type, final Statement statement,
+                                     @Nullable final String sql, final Object connectionProxy) {
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {type},
+                    new StatementHandler(statement, sql, queryName, connectionProxy));
+        }
+    }
+
+    /**
+     * Times each execution of a statement, and remembers the types of its bind parameters for the slow query log.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        private final String queryName;
+        private final Object connectionProxy;
+        private Map<Integer, String> parameterTypes;
+
+        private StatementHandler(final Statement statement, @Nullable final String sql,
+                                 @Nullable final String queryName, final Object connectionProxy) {
+            this.statement = statement;
+            this.sql = sql;
+            this.queryName = queryName;
+            this.connectionProxy = connectionProxy;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (methodName.startsWith("execute")) {
+                // Plain statements are given their SQL when executed, prepared ones when created:
+                String executedSql = null != args && args.length > 0 && args[0] instanceof String s ? s : sql;
+                return timeExecution(method, args, executedSql);
+            }
+            if (methodName.startsWith("set") && null != args && args.length >= 2 && args[0] instanceof Integer index) {
+                recordParameter(index, "setNull".equals(methodName) || null == args[1]
+                        ? "null" : args[1].getClass().getSimpleName());
+            } else if ("clearParameters".equals(methodName) && null != parameterTypes) {
+                parameterTypes.clear();
+            } else if ("getConnection".equals(methodName)) {
+                return connectionProxy;
+            }
+            return InstrumentedConnection.invoke(statement, method, args);
+        }
+
+        private Object timeExecution(final Method method, final Object[] args, @Nullable final String executedSql)
+                throws Throwable {
+            long startNanos = System.nanoTime();
+            try (RequestTimings.StageTimer ignored = RequestTimings.time(RequestTimings.Stage.DATABASE)) {
+                return InstrumentedConnection.invoke(statement, method, args);
+            } finally {
+                long elapsedNanos = System.nanoTime() - startNanos;
+                String name = null != queryName ? queryName : deriveQueryName(executedSql);
+                SegueMetrics.DATABASE_QUERY_LATENCY_HISTOGRAM.labels(name)
+                        .observe(elapsedNanos / NANOSECONDS_PER_SECOND);
+                if (elapsedNanos >= SLOW_QUERY_THRESHOLD_NANOSECONDS) {
+                    SegueMetrics.DATABASE_SLOW_QUERIES.labels(name).inc();
+                    log.warn("Slow query '{}' took {}ms: {} with parameters {}", name,
+                            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), redactSql(executedSql),
+                            null != parameterTypes ? parameterTypes : "{}");
+                }
+            }
+        }
+
+        private void recordParameter(final int index, final String type) {
+            if (null == parameterTypes) {
+                parameterTypes = new TreeMap<>();
+            }
+            parameterTypes.put(index, type);
+        }
+    }
+}
@@ -16,7 +16,13 @@
 package uk.ac.cam.cl.dtg.segue.database;
 
 import com.google.inject.Inject;
+import io.prometheus.client.Gauge;
+import jakarta.annotation.Nullable;
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+import uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics;
 
 import java.io.Closeable;
 import java.sql.Connection;
@@ -24,14 +30,21 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
 
 /**
  * PostgresSqlDb adapter.
  *
  */
 public class PostgresSqlDb implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PostgresSqlDb.class);
+
+    private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
 
     private final BasicDataSource dataSource;
+    private final AtomicInteger threadsBorrowingConnection = new AtomicInteger();
 
     /**
      * Connect to a given database.
@@ -62,16 +75,56 @@ public class PostgresSqlDb implements Closeable {
         dataSource.setRemoveAbandonedOnBorrow(true);
         dataSource.setRemoveAbandonedTimeout(Duration.ofSeconds(60));
         dataSource.setDurationBetweenEvictionRuns(Duration.ofSeconds(30));
+
+        // The pool gauges are unlabelled, so they only describe the first pool created:
+        boolean gaugesSet = SegueMetrics.setGaugeChildIfAbsent(SegueMetrics.DATABASE_POOL_ACTIVE_CONNECTIONS,
+                new PoolGauge(dataSource::getNumActive));
+        gaugesSet &= SegueMetrics.setGaugeChildIfAbsent(SegueMetrics.DATABASE_POOL_IDLE_CONNECTIONS,
+                new PoolGauge(dataSource::getNumIdle));
+        gaugesSet &= SegueMetrics.setGaugeChildIfAbsent(SegueMetrics.DATABASE_POOL_BORROWING_THREADS,
+                new PoolGauge(threadsBorrowingConnection::get));
+        if (!gaugesSet) {
+            log.warn("Another database connection pool already exists; metrics will not be reported for this one.");
+        }
     }
 
     /**
      * Get a handle to the database.
+     *
+     * Statements run on the connection are labelled with a query name derived from their SQL; prefer
+     * {@link #getDatabaseConnection(String)} for queries which are run often.
      * 
      * @return database connection.
      * @throws SQLException
      */
     public Connection getDatabaseConnection() throws SQLException {
-        return dataSource.getConnection();
+        return getDatabaseConnection(null);
+    }
+
+    /**
+     * Get a handle to the database, labelling the statements run on it with a query name.
+     *
+     * The time taken to borrow the connection from the pool and to execute each statement is exported as metrics and,
+     * during a request, recorded as database time in the request's timings. Slow statements are logged.
+     *
+     * @param queryName
+     *            - a short, stable name for the work to be done, e.g. "PgUsers.getById", or null to derive one from
+     *            the SQL of each statement.
+     * @return database connection.
+     * @throws SQLException
+     */
+    public Connection getDatabaseConnection(@Nullable final String queryName) throws SQLException {
+        long startNanos = System.nanoTime();
+        threadsBorrowingConnection.incrementAndGet();
+        Connection connection;
+        try (RequestTimings.StageTimer ignored = RequestTimings.time(RequestTimings.Stage.DATABASE)) {
+            connection = dataSource.getConnection();
+        } finally {
+            threadsBorrowingConnection.decrementAndGet();
+            SegueMetrics.DATABASE_POOL_BORROW_LATENCY_HISTOGRAM.observe(
+                    (System.nanoTime() - startNanos) / NANOSECONDS_PER_SECOND);
+        }
+        return InstrumentedConnection.wrap(connection, queryName);
     }
 
     @Override
@@ -98,4 +151,20 @@ public class PostgresSqlDb implements Closeable {
             return results.getBoolean(1);
         }
     }
+
+    /**
+     * A gauge which reads its value from the pool whenever it is scraped.
+     */
+    private static final class PoolGauge extends Gauge.Child {
+        private final IntSupplier value;
+
+        private PoolGauge(final IntSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public double get() {
+            return value.getAsInt();
+        }
+    }
 }
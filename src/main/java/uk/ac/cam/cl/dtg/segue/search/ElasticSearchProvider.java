@@ -32,12 +32,14 @@ import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
 import co.elastic.clients.elasticsearch._types.query_dsl.WildcardQuery;
 import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.core.ScrollResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.indices.GetIndexResponse;
 import co.elastic.clients.elasticsearch.indices.IndexSettings;
 import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.json.JsonpUtils;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest5_client.Rest5ClientTransport;
@@ -55,6 +57,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.CacheRegistry;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+import uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics;
+import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
@@ -68,6 +74,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
@@ -89,10 +96,21 @@ public class ElasticSearchProvider implements ISearchProvider {
     private static final int LARGE_LIMIT = 100;
 
     private static final int DEFAULT_MAX_WINDOW_SIZE = 10000;
+    private static final String RESULT_WINDOW_TOO_LARGE = "Result window is too large";
+
+    // page size and keep-alive used when reading every document from an index.
+    private static final int SCROLL_BATCH_SIZE = 5000;
+    private static final String SCROLL_KEEP_ALIVE = "1m";
+
+    private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
 
     // used to optimise index setting retrieval as these probably don't change every request.
     private final Cache<String, String> settingsCache;
 
+    // searches slower than this have their query logged, for a sampled fraction of them; disabled when null.
+    private final Long slowQueryThresholdNanos;
+    private final double slowQuerySampleRate;
+
     public static String produceTypedIndexName(final String indexName, final String typeName) {
         return indexName + "_" + CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, typeName);
     }
@@ -100,13 +118,48 @@ public class ElasticSearchProvider implements ISearchProvider {
     /**
      * Constructor for creating an instance of the ElasticSearchProvider Object.
      *
+     * Slow query capture is disabled.
+     *
      * @param searchClient
      *            - the client that the provider should be using.
      */
-    @Inject
     public ElasticSearchProvider(final ElasticsearchClient searchClient) {
+        this(searchClient, null, 1.0);
+    }
+
+    /**
+     * Constructor for creating an instance of the ElasticSearchProvider Object, configuring slow query capture from
+     * the SEARCH_SLOW_QUERY_THRESHOLD_MILLISECONDS and SEARCH_SLOW_QUERY_SAMPLE_RATE properties.
+     *
+     * @param searchClient
+     *            - the client that the provider should be using.
+     * @param properties
+     *            - the loaded configuration.
+     */
+    @Inject
+    public ElasticSearchProvider(final ElasticsearchClient searchClient, final AbstractConfigLoader properties) {
+        this(searchClient, parseThreshold(properties.getProperty(Constants.SEARCH_SLOW_QUERY_THRESHOLD_MILLISECONDS)),
+                parseSampleRate(properties.getProperty(Constants.SEARCH_SLOW_QUERY_SAMPLE_RATE)));
+    }
+
+    /**
+     * Constructor for creating an instance of the ElasticSearchProvider Object.
+     *
+     * @param searchClient
+     *            - the client that the provider should be using.
+     * @param slowQueryThresholdMillis
+     *            - log the query JSON of searches taking at least this long, or null to never log it.
+     * @param slowQuerySampleRate
+     *            - the fraction, between 0 and 1, of slow searches to log.
+     */
+    public ElasticSearchProvider(final ElasticsearchClient searchClient, @Nullable final Long slowQueryThresholdMillis,
+                                 final double slowQuerySampleRate) {
         this.client = searchClient;
-        this.settingsCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(10, TimeUnit.MINUTES).build();
+        this.settingsCache = CacheRegistry.build("elastic_search_provider_settings_cache", CacheRegistry.UNLIMITED,
+                CacheBuilder.newBuilder().softValues().expireAfterWrite(10, TimeUnit.MINUTES));
+        this.slowQueryThresholdNanos = null != slowQueryThresholdMillis
+                ? TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis) : null;
+        this.slowQuerySampleRate = slowQuerySampleRate;
     }
 
     @Override
@@ -286,12 +339,13 @@ public class ElasticSearchProvider implements ISearchProvider {
         }
 
         log.debug("Building Query: {}", requestBuilder);
-        ResultsWrapper<String> results = executeQuery(requestBuilder.build());
+        ResultsWrapper<String> results = executeQuery(requestBuilder.build(), indexType, "search");
 
         // execute another query to get all results as this is an unlimited
         // query.
         if (isUnlimitedSearch && (results.getResults().size() < results.getTotalResults())) {
             if (results.getTotalResults() > this.getMaxResultSize(indexBase, indexType)) {
+                SegueMetrics.SEARCH_MAX_RESULT_WINDOW_EXCEEDED.labels(indexType).inc();
                 throw new SegueSearchException(String.format("The search you have requested "
                                 + "exceeds the maximum number of results that can be returned at once (%s).",
                         this.getMaxResultSize(indexBase, indexType)));
@@ -304,7 +358,8 @@ public class ElasticSearchProvider implements ISearchProvider {
                     .from(startIndex)
                     .build();
 
-            results = executeQuery(secondRequest);
+            SegueMetrics.SEARCH_UNLIMITED_REQUERIES.labels(indexType).inc();
+            results = executeQuery(secondRequest, indexType, "search_unlimited");
 
             log.debug("Unlimited Search - had to make a second round trip to elasticsearch.");
         }
@@ -316,10 +371,16 @@ public class ElasticSearchProvider implements ISearchProvider {
      * A general method for getting the results of a search.
      * @param searchRequest
      *            - the search request to send to the cluster.
+     * @param indexType
+     *            - the type of index searched, for metrics.
+     * @param operation
+     *            - the kind of search, for metrics.
      * @return List of the search results.
      */
-    private ResultsWrapper<String> executeQuery(final SearchRequest searchRequest) throws SegueSearchException {
-        try {
+    private ResultsWrapper<String> executeQuery(final SearchRequest searchRequest, final String indexType,
+                                                final String operation) throws SegueSearchException {
+        long startNanos = System.nanoTime();
+        try (RequestTimings.StageTimer searchTimer = RequestTimings.time(RequestTimings.Stage.SEARCH)) {
             SearchResponse<ObjectNode> response = client.search(searchRequest, ObjectNode.class);
 
             List<Hit<ObjectNode>> hits = response.hits().hits();
@@ -334,10 +395,118 @@ public class ElasticSearchProvider implements ISearchProvider {
                 resultList.add(null != src ? src.toString() : "{}");
             }
 
+            SegueMetrics.SEARCH_RESULT_SIZE_HISTOGRAM.labels(indexType, operation).observe(resultList.size());
             return new ResultsWrapper<>(resultList, totalHits);
-        } catch (ElasticsearchException | IOException e) {
+        } catch (ElasticsearchException e) {
+            if (isResultWindowTooLarge(e)) {
+                SegueMetrics.SEARCH_MAX_RESULT_WINDOW_EXCEEDED.labels(indexType).inc();
+            }
             throw new SegueSearchException("Error while trying to search", e);
+        } catch (IOException e) {
+            throw new SegueSearchException("Error while trying to search", e);
+        } finally {
+            long elapsedNanos = observeLatency(indexType, operation, startNanos);
+            captureIfSlow(searchRequest, indexType, operation, elapsedNanos);
+        }
+    }
+
+    /**
+     * @param e - an error returned by the cluster.
+     * @return whether the error was caused by asking for results beyond the index max_result_window.
+     */
+    private static boolean isResultWindowTooLarge(final ElasticsearchException e) {
+        if (null != e.getMessage() && e.getMessage().contains(RESULT_WINDOW_TOO_LARGE)) {
+            return true;
         }
+        return null != e.error() && e.error().rootCause().stream()
+                .anyMatch(cause -> null != cause.reason() && cause.reason().contains(RESULT_WINDOW_TOO_LARGE));
+    }
+
+    /**
+     * Record how long a request to the cluster took.
+     *
+     * @param indexType - the type of index the request was for.
+     * @param operation - the kind of request.
+     * @param startNanos - when the request was started, from System.nanoTime().
+     * @return the time the request took, in nanoseconds.
+     */
+    private static long observeLatency(final String indexType, final String operation, final long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        SegueMetrics.SEARCH_LATENCY_HISTOGRAM.labels(indexType, operation)
+                .observe(elapsedNanos / NANOSECONDS_PER_SECOND);
+        return elapsedNanos;
+    }
+
+    /**
+     * Log the query JSON of a slow search, if slow query capture is enabled and the search is sampled.
+     *
+     * @param searchRequest - the search which was run.
+     * @param indexType - the type of index searched.
+     * @param operation - the kind of search.
+     * @param elapsedNanos - how long the search took.
+     */
+    private void captureIfSlow(final SearchRequest searchRequest, final String indexType, final String operation,
+                               final long elapsedNanos) {
+        if (null == slowQueryThresholdNanos || elapsedNanos < slowQueryThresholdNanos) {
+            return;
+        }
+        SegueMetrics.SEARCH_SLOW_QUERIES.labels(indexType, operation).inc();
+        if (ThreadLocalRandom.current().nextDouble() >= slowQuerySampleRate) {
+            return;
+        }
+        try {
+            log.warn("Slow {} on {} index took {}ms: {}", operation, indexType,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    JsonpUtils.toJsonString(searchRequest, client._jsonpMapper()));
+        } catch (RuntimeException e) {
+            log.warn("Slow {} on {} index took {}ms; unable to serialise its query.", operation, indexType,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), e);
+        }
+    }
+
+    /**
+     * @param thresholdMillis - the configured slow query threshold.
+     * @return the threshold in milliseconds, or null to disable slow query capture if it is unset or invalid.
+     */
+    @Nullable
+    private static Long parseThreshold(@Nullable final String thresholdMillis) {
+        if (null == thresholdMillis || thresholdMillis.isBlank()) {
+            return null;
+        }
+        long threshold;
+        try {
+            threshold = Long.parseLong(thresholdMillis.trim());
+        } catch (NumberFormatException e) {
+            threshold = -1;
+        }
+        if (threshold < 0) {
+            log.error("Invalid {} '{}'; slow search queries will not be logged.",
+                    Constants.SEARCH_SLOW_QUERY_THRESHOLD_MILLISECONDS, thresholdMillis);
+            return null;
+        }
+        return threshold;
+    }
+
+    /**
+     * @param sampleRate - the configured fraction of slow queries to log.
+     * @return the fraction, 1 if it is unset, or 0 to disable slow query capture if it is invalid.
+     */
+    private static double parseSampleRate(@Nullable final String sampleRate) {
+        if (null == sampleRate || sampleRate.isBlank()) {
+            return 1.0;
+        }
+        double rate;
+        try {
+            rate = Double.parseDouble(sampleRate.trim());
+        } catch (NumberFormatException e) {
+            rate = Double.NaN;
+        }
+        if (!(rate >= 0 && rate <= 1)) {
+            log.error("Invalid {} '{}'; slow search queries will not be logged.",
+                    Constants.SEARCH_SLOW_QUERY_SAMPLE_RATE, sampleRate);
+            return 0.0;
+        }
+        return rate;
     }
 
     /**
@@ -443,20 +612,74 @@ public class ElasticSearchProvider implements ISearchProvider {
     @Override
     public GetResponse<ObjectNode> getById(final String indexBase, final String indexType, final String id) throws SegueSearchException {
         String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
-        try {
-            return client.get(gr -> gr.index(typedIndex).id(id), ObjectNode.class);
+        long startNanos = System.nanoTime();
+        try (RequestTimings.StageTimer searchTimer = RequestTimings.time(RequestTimings.Stage.SEARCH)) {
+            GetResponse<ObjectNode> response = client.get(gr -> gr.index(typedIndex).id(id), ObjectNode.class);
+            SegueMetrics.SEARCH_RESULT_SIZE_HISTOGRAM.labels(indexType, "get_by_id").observe(response.found() ? 1 : 0);
+            return response;
         } catch (final IOException e) {
             throw new SegueSearchException(String.format("Failed to get content with ID %s from index %s", id, typedIndex), e);
+        } finally {
+            observeLatency(indexType, "get_by_id", startNanos);
         }
     }
 
     @Override
     public SearchResponse<ObjectNode> getAllFromIndex(final String indexBase, final String indexType) throws SegueSearchException {
         String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
-        try {
-            return client.search(sr -> sr.index(typedIndex).size(10000), ObjectNode.class);
+        long startNanos = System.nanoTime();
+        try (RequestTimings.StageTimer searchTimer = RequestTimings.time(RequestTimings.Stage.SEARCH)) {
+            SearchResponse<ObjectNode> response = client.search(sr -> sr.index(typedIndex).size(10000),
+                    ObjectNode.class);
+            SegueMetrics.SEARCH_RESULT_SIZE_HISTOGRAM.labels(indexType, "get_all")
+                    .observe(response.hits().hits().size());
+            return response;
         } catch (final IOException e) {
             throw new SegueSearchException(String.format("Failed to retrieve all data from index %s", typedIndex), e);
+        } finally {
+            observeLatency(indexType, "get_all", startNanos);
+        }
+    }
+
+    @Override
+    public List<String> getAllDocumentsFromIndex(final String indexBase, final String indexType)
+            throws SegueSearchException {
+        String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
+        List<String> documents = new ArrayList<>();
+        String scrollId = null;
+        long startNanos = System.nanoTime();
+        try {
+            SearchResponse<ObjectNode> response = client.search(sr -> sr.index(typedIndex).size(SCROLL_BATCH_SIZE)
+                    .scroll(t -> t.time(SCROLL_KEEP_ALIVE)), ObjectNode.class);
+            scrollId = response.scrollId();
+            List<Hit<ObjectNode>> hits = response.hits().hits();
+
+            while (!hits.isEmpty()) {
+                for (Hit<ObjectNode> hit : hits) {
+                    if (null != hit.source()) {
+                        documents.add(hit.source().toString());
+                    }
+                }
+                final String currentScrollId = scrollId;
+                ScrollResponse<ObjectNode> nextPage = client.scroll(s -> s.scrollId(currentScrollId)
+                        .scroll(t -> t.time(SCROLL_KEEP_ALIVE)), ObjectNode.class);
+                scrollId = nextPage.scrollId();
+                hits = nextPage.hits().hits();
+            }
+            SegueMetrics.SEARCH_RESULT_SIZE_HISTOGRAM.labels(indexType, "scroll_all").observe(documents.size());
+            return documents;
+        } catch (ElasticsearchException | IOException e) {
+            throw new SegueSearchException(String.format("Failed to retrieve all documents from index %s", typedIndex), e);
+        } finally {
+            observeLatency(indexType, "scroll_all", startNanos);
+            if (null != scrollId) {
+                final String finalScrollId = scrollId;
+                try {
+                    client.clearScroll(c -> c.scrollId(finalScrollId));
+                } catch (ElasticsearchException | IOException e) {
+                    log.warn("Unable to clear scroll context for index {}", typedIndex, e);
+                }
+            }
         }
     }
 
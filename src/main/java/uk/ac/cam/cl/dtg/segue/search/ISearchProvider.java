@@ -23,6 +23,7 @@ import uk.ac.cam.cl.dtg.segue.api.Constants;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -66,4 +67,17 @@ public interface ISearchProvider {
     GetResponse<ObjectNode> getById(String indexBase, String indexType, String id) throws SegueSearchException;
 
     SearchResponse<ObjectNode> getAllFromIndex(String indexBase, String indexType) throws SegueSearchException;
+
+    /**
+     * Read every document in an index, however many there are, paging through them as needed.
+     *
+     * @param indexBase
+     *            to read from
+     * @param indexType
+     *            to read from
+     * @return the source of every document in the index, as JSON.
+     * @throws SegueSearchException
+     *             if the documents cannot be retrieved.
+     */
+    List<String> getAllDocumentsFromIndex(String indexBase, String indexType) throws SegueSearchException;
 }
@@ -1,9 +1,11 @@
 package uk.ac.cam.cl.dtg.util;
 
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryDTO;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  *  A utility class to order names lexicographically.
@@ -22,15 +24,33 @@ public class NameOrderer {
      *            - list of users.
      */
     public static void orderUsersByName(final List<RegisteredUserDTO> users) {
+        users.sort(nameOrder(RegisteredUserDTO::getFamilyName, RegisteredUserDTO::getGivenName));
+    }
+
+    /**
+     * Helper method to sort user summaries in the same order as {@link #orderUsersByName}.
+     * @param users
+     *            - list of user summaries.
+     */
+    public static void orderUserSummariesByName(final List<? extends UserSummaryDTO> users) {
+        users.sort(nameOrder(UserSummaryDTO::getFamilyName, UserSummaryDTO::getGivenName));
+    }
+
+    /**
+     * @param familyName - extracts the family name of a user.
+     * @param givenName - extracts the given name of a user.
+     * @param <T> - the type of user object.
+     * @return a comparator ordering users by family name then given name.
+     */
+    private static <T> Comparator<T> nameOrder(final Function<T, String> familyName, final Function<T, String> givenName) {
         // Remove apostrophes so that string containing them are ordered in the same way as in Excel.
         // I.e. we want that "O'Aaa" < "Obbb" < "O'Ccc"
         Comparator<String> excelStringOrder = Comparator.nullsLast((String a, String b) ->
                 String.CASE_INSENSITIVE_ORDER.compare(a.replaceAll("'", ""), b.replaceAll("'", "")));
 
         // If names differ only by an apostrophe (i.e. "O'A" and "Oa"), break ties using name including any apostrophes:
-        users.sort(Comparator
-                .comparing(RegisteredUserDTO::getFamilyName, excelStringOrder)
-                .thenComparing(RegisteredUserDTO::getGivenName, excelStringOrder)
-                .thenComparing(RegisteredUserDTO::getFamilyName));
+        return Comparator.comparing(familyName, excelStringOrder)
+                .thenComparing(givenName, excelStringOrder)
+                .thenComparing(familyName);
     }
 }
@@ -0,0 +1,42 @@
+-- Adds the events logged before the application began maintaining logged_event_type_counts to the totals.
+-- Run this once the new version of the application is live; see 2026-10-create-logged-event-type-counts.sql.
+--
+-- Events up to the id recorded by that migration are counted in chunks of ids, each committed separately, so no lock
+-- is held on logged_events and logging carries on as normal. Progress is saved with each chunk, so the script can be
+-- stopped and run again to carry on where it left off.
+--
+-- This commits as it goes, so it must not be run inside a transaction block (e.g. with psql --single-transaction).
+
+DO $$
+DECLARE
+    chunk_size CONSTANT integer := 1000000;
+    chunk_start integer;
+    chunk_end integer;
+    backfill_up_to integer;
+BEGIN
+    IF to_regclass('public.logged_event_type_counts_backfill') IS NULL THEN
+        RAISE NOTICE 'The logged_event_type_counts backfill has already finished.';
+        RETURN;
+    END IF;
+
+    LOOP
+        SELECT counted_up_to_id, up_to_id INTO chunk_start, backfill_up_to
+        FROM public.logged_event_type_counts_backfill
+        FOR UPDATE;
+        EXIT WHEN chunk_start >= backfill_up_to;
+        chunk_end := LEAST(chunk_start + chunk_size, backfill_up_to);
+
+        INSERT INTO public.logged_event_type_counts(event_type, total)
+        SELECT event_type, COUNT(*)
+        FROM public.logged_events
+        WHERE id > chunk_start AND id <= chunk_end AND event_type IS NOT NULL
+        GROUP BY event_type
+        ON CONFLICT (event_type) DO UPDATE SET total = logged_event_type_counts.total + EXCLUDED.total;
+
+        UPDATE public.logged_event_type_counts_backfill SET counted_up_to_id = chunk_end;
+        COMMIT;
+    END LOOP;
+
+    DROP TABLE public.logged_event_type_counts_backfill;
+END
+$$;
@@ -0,0 +1,35 @@
+-- Table: public.logged_event_type_counts
+
+-- DROP TABLE public.logged_event_type_counts;
+
+-- Keeps a running total of logged_events rows of each event_type, so that statistics do not need to count the whole
+-- logged_events table. Incremented by the application as each batch of logged_events is written.
+--
+-- Deployment order:
+--  1. Run this migration immediately before the new version of the application starts. The table is created empty,
+--     and the id of the latest event logged so far is recorded; no lock is taken on logged_events.
+--  2. Start the new version, which adds every event it logs to the totals. Events logged after step 1 by an older
+--     version which is still running are not counted, so stop older versions before step 1 if exact totals matter.
+--  3. Run 2026-10-create-logged-event-type-counts-backfill.sql to count the events up to the recorded id.
+-- Until step 3 has finished, the totals only include recent events.
+
+CREATE TABLE public.logged_event_type_counts(
+    event_type character varying(255) NOT NULL,
+    total bigint NOT NULL DEFAULT 0,
+    CONSTRAINT logged_event_type_counts_pkey PRIMARY KEY (event_type)
+);
+
+ALTER TABLE public.logged_event_type_counts
+    owner to rutherford;
+
+-- Records how far the backfill has got; it is dropped when the backfill finishes.
+CREATE TABLE public.logged_event_type_counts_backfill(
+    up_to_id integer NOT NULL,
+    counted_up_to_id integer NOT NULL DEFAULT 0
+);
+
+ALTER TABLE public.logged_event_type_counts_backfill
+    owner to rutherford;
+
+INSERT INTO public.logged_event_type_counts_backfill(up_to_id)
+SELECT COALESCE(MAX(id), 0) FROM public.logged_events;
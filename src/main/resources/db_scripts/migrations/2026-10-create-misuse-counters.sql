@@ -0,0 +1,21 @@
+-- Table: public.misuse_counters
+
+-- DROP TABLE public.misuse_counters;
+
+-- Misuse counts shared by every API node when MISUSE_MONITOR_BACKEND is "postgres". Each row counts one event for one
+-- agent within an accounting window of window_seconds starting at window_start.
+
+CREATE TABLE public.misuse_counters(
+    agent_identifier text NOT NULL,
+    event_label text NOT NULL,
+    window_start timestamp with time zone NOT NULL DEFAULT now(),
+    window_seconds integer NOT NULL,
+    count integer NOT NULL DEFAULT 0,
+    CONSTRAINT misuse_counters_pkey PRIMARY KEY (agent_identifier, event_label)
+);
+
+ALTER TABLE public.misuse_counters
+    owner to rutherford;
+
+-- Supports the misuse statistics, which list the highest counts of each event.
+CREATE INDEX misuse_counters_by_event_count ON public.misuse_counters USING btree (event_label, count DESC);
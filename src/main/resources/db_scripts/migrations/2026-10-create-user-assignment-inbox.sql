@@ -0,0 +1,33 @@
+-- The inbox references assignments by id, which needs a unique constraint as the primary key is
+-- (gameboard_id, group_id). Ids already come from a sequence, so this only makes that explicit.
+ALTER TABLE public.assignments
+    ADD CONSTRAINT assignments_id_key UNIQUE (id);
+
+-- Table: public.user_assignment_inbox
+
+-- DROP TABLE public.user_assignment_inbox;
+
+CREATE TABLE public.user_assignment_inbox(
+    user_id integer NOT NULL,
+    assignment_id integer NOT NULL,
+    group_id integer NOT NULL,
+    created timestamp with time zone NOT NULL DEFAULT now(),
+    CONSTRAINT user_assignment_inbox_pkey PRIMARY KEY (user_id, assignment_id),
+    CONSTRAINT user_assignment_inbox_assignment_id_fkey FOREIGN KEY (assignment_id)
+        REFERENCES public.assignments(id) ON DELETE CASCADE,
+    CONSTRAINT user_assignment_inbox_user_id_fkey FOREIGN KEY (user_id)
+        REFERENCES public.users(id) ON DELETE CASCADE
+);
+
+ALTER TABLE public.user_assignment_inbox
+    owner to rutherford;
+
+CREATE INDEX user_assignment_inbox_by_assignment ON public.user_assignment_inbox USING btree (assignment_id);
+
+-- Deliver every existing assignment to the current members of the group it was set to.
+INSERT INTO public.user_assignment_inbox(user_id, assignment_id, group_id, created)
+SELECT group_memberships.user_id, assignments.id, assignments.group_id, assignments.creation_date
+FROM public.assignments
+JOIN public.group_memberships ON group_memberships.group_id = assignments.group_id
+WHERE group_memberships.status <> 'DELETED'
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,161 @@
+-- Merged accounts keep the assignments sent to the account being deleted; redefine mergeuser to move them.
+
+CREATE OR REPLACE FUNCTION mergeuser(targetuseridtokeep bigint, targetuseridtodelete bigint) RETURNS boolean
+LANGUAGE plpgsql
+AS $$
+BEGIN
+
+  UPDATE assignments
+  SET owner_user_id = targetUserIdToKeep
+  WHERE owner_user_id = targetUserIdToDelete;
+
+  BEGIN
+    UPDATE event_bookings
+    SET user_id = targetUserIdToKeep
+    WHERE user_id = targetUserIdToDelete;
+    -- Do not ignore duplicate inserts; merging should fail if booking data would be lost for duplicated bookings!
+  END;
+
+  UPDATE gameboards
+  SET owner_user_id = targetUserIdToKeep
+  WHERE owner_user_id = targetUserIdToDelete;
+
+  BEGIN
+    INSERT INTO group_additional_managers (user_id, group_id, created)
+    SELECT targetUserIdToKeep, group_id, created
+    FROM group_additional_managers WHERE user_id=targetUserIdToDelete
+    ON CONFLICT DO NOTHING;
+  END;
+
+  BEGIN
+    INSERT INTO group_memberships (group_id, user_id, created, updated, status)
+    SELECT group_id, targetuseridtokeep, created, updated, status
+    FROM group_memberships WHERE user_id = targetuseridtodelete
+    ON CONFLICT (group_id, user_id) DO UPDATE
+      -- merge memberships, ensuring "earliest" membership is used and ACTIVE status takes precedence.
+      SET created=LEAST(group_memberships.created, EXCLUDED.created), updated=GREATEST(group_memberships.updated, EXCLUDED.updated),
+          status=CASE WHEN group_memberships.status='ACTIVE' OR EXCLUDED.status='ACTIVE' THEN 'ACTIVE' ELSE group_memberships.status END;
+  END;
+
+  UPDATE groups
+  SET owner_id = targetUserIdToKeep
+  WHERE owner_id = targetUserIdToDelete;
+
+  BEGIN
+    UPDATE linked_accounts
+    SET user_id = targetUserIdToKeep
+    WHERE user_id = targetUserIdToDelete;
+    EXCEPTION WHEN unique_violation THEN
+    -- Ignore duplicate inserts.
+  END;
+
+  UPDATE logged_events
+  SET user_id = targetUserIdToKeep::varchar(255)
+  WHERE user_id = targetUserIdToDelete::varchar(255);
+
+  UPDATE question_attempts
+  SET user_id = targetUserIdToKeep
+  WHERE user_id = targetUserIdToDelete;
+
+  UPDATE quiz_assignments
+  SET owner_user_id = targetUserIdToKeep
+  WHERE owner_user_id = targetUserIdToDelete;
+
+  UPDATE quiz_attempts
+  SET user_id = targetUserIdToKeep
+  WHERE user_id = targetUserIdToDelete;
+
+  UPDATE user_alerts
+  SET user_id = targetUserIdToKeep
+  WHERE user_id = targetUserIdToDelete;
+
+  BEGIN
+    INSERT INTO user_assignment_inbox (user_id, assignment_id, group_id, created)
+    SELECT targetUserIdToKeep, assignment_id, group_id, created
+    FROM user_assignment_inbox WHERE user_id=targetUserIdToDelete
+    -- Ignore duplicate inserts; both accounts may have been sent the same assignment.
+    ON CONFLICT DO NOTHING;
+  END;
+
+  BEGIN
+    INSERT INTO user_associations (user_id_granting_permission, user_id_receiving_permission, created)
+    SELECT targetuseridtokeep, user_id_receiving_permission, created
+    FROM user_associations WHERE user_id_granting_permission=targetuseridtodelete
+    -- Ignore duplicate inserts.
+    ON CONFLICT DO NOTHING;
+  END;
+
+  BEGIN
+    INSERT INTO user_associations (user_id_granting_permission, user_id_receiving_permission, created)
+    SELECT user_id_granting_permission, targetuseridtokeep, created
+    FROM user_associations WHERE user_id_receiving_permission=targetuseridtodelete
+    -- Ignore duplicate inserts.
+    ON CONFLICT DO NOTHING;
+  END;
+
+  UPDATE user_associations_tokens
+  SET owner_user_id = targetUserIdToKeep
+  WHERE owner_user_id = targetUserIdToDelete;
+
+  BEGIN
+      UPDATE user_credentials
+      SET user_id = targetUserIdToKeep
+      WHERE user_id = targetUserIdToDelete;
+  EXCEPTION WHEN unique_violation THEN
+  -- Ignore duplicate inserts. This may lose some info.
+  END;
+
+  BEGIN
+    INSERT INTO user_gameboards (user_id, gameboard_id, created, last_visited)
+    SELECT targetUserIdToKeep, gameboard_id, created, last_visited
+    FROM user_gameboards WHERE user_id=targetUserIdToDelete
+    ON CONFLICT (user_id, gameboard_id) DO UPDATE
+      SET created=LEAST(EXCLUDED.created, user_gameboards.created),
+          last_visited=GREATEST(EXCLUDED.last_visited, user_gameboards.last_visited);
+  END;
+
+  BEGIN
+    INSERT INTO user_notifications (user_id, notification_id, status, created)
+    SELECT targetUserIdToKeep, notification_id, status, created
+    FROM user_notifications WHERE user_id=targetUserIdToDelete
+    ON CONFLICT DO NOTHING;
+  END;
+
+  BEGIN
+    INSERT INTO user_preferences (user_id, preference_type, preference_name, preference_value, last_updated)
+    SELECT targetUserIdToKeep, preference_type, preference_name, preference_value, last_updated
+    FROM user_preferences WHERE user_id=targetUserIdToDelete
+    ON CONFLICT DO NOTHING;
+    -- Do not let "to delete" preferences override "to keep" ones.
+  END;
+
+  BEGIN
+    INSERT INTO user_streak_freezes (user_id, start_date, end_date, comment)
+    SELECT targetUserIdToKeep, start_date, end_date, comment
+    FROM user_streak_freezes WHERE user_id=targetUserIdToDelete
+    ON CONFLICT DO NOTHING;
+  END;
+
+  BEGIN
+    INSERT INTO user_streak_targets (user_id, target_count, start_date, end_date, comment)
+    SELECT user_id, target_count, start_date, end_date, comment
+    FROM user_streak_targets WHERE user_id=targetUserIdToDelete
+    ON CONFLICT DO NOTHING;
+  END;
+
+  BEGIN
+      UPDATE user_totp
+      SET user_id = targetUserIdToKeep
+      WHERE user_id = targetUserIdToDelete;
+  EXCEPTION WHEN unique_violation THEN
+  -- Ignore duplicate inserts. This will prefer the "to keep" account 2FA.
+  END;
+
+  DELETE FROM users
+  WHERE id = targetUserIdToDelete;
+
+  RETURN true;
+END
+$$;
+
+ALTER FUNCTION mergeuser(targetuseridtokeep bigint, targetuseridtodelete bigint) OWNER TO rutherford;
@@ -0,0 +1,24 @@
+-- Trigram indexes allow the ILIKE (and wildcard) matching used by the admin user search to use an index scan rather
+-- than scanning the whole users table.
+-- Requires a superuser, or a trusted extension (Postgres 13+), to create the extension.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_family_name_trgm
+    ON public.users USING gin (family_name gin_trgm_ops) WHERE NOT deleted;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_given_name_trgm
+    ON public.users USING gin (given_name gin_trgm_ops) WHERE NOT deleted;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_email_trgm
+    ON public.users USING gin (email gin_trgm_ops) WHERE NOT deleted;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_school_id_trgm
+    ON public.users USING gin (school_id gin_trgm_ops) WHERE NOT deleted;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_school_other_trgm
+    ON public.users USING gin (school_other gin_trgm_ops) WHERE NOT deleted;
+
+-- Supports the ordering and keyset pagination of search results.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_name_order
+    ON public.users USING btree (COALESCE(family_name, ''), COALESCE(given_name, ''), id) WHERE NOT deleted;
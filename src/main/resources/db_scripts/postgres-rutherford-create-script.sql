@@ -29,6 +29,13 @@ CREATE EXTENSION IF NOT EXISTS plpgsql WITH SCHEMA pg_catalog;
 
 COMMENT ON EXTENSION plpgsql IS 'PL/pgSQL procedural language';
 
+
+--
+-- Name: pg_trgm; Type: EXTENSION; Schema: -; Owner:
+--
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+
 SET default_tablespace = '';
 
 SET default_table_access_method = heap;
@@ -295,6 +302,18 @@ COMMENT ON COLUMN public.linked_accounts.user_id IS 'This is the postgres foreig
 COMMENT ON COLUMN public.linked_accounts.provider_user_id IS 'user id from the remote service';
 
 
+--
+-- Name: logged_event_type_counts; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.logged_event_type_counts (
+    event_type character varying(255) NOT NULL,
+    total bigint DEFAULT 0 NOT NULL
+);
+
+
+ALTER TABLE public.logged_event_type_counts OWNER TO rutherford;
+
 --
 -- Name: logged_events; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -334,6 +353,21 @@ ALTER SEQUENCE public.logged_events_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.logged_events_id_seq OWNED BY public.logged_events.id;
 
 
+--
+-- Name: misuse_counters; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.misuse_counters (
+    agent_identifier text NOT NULL,
+    event_label text NOT NULL,
+    window_start timestamp with time zone DEFAULT now() NOT NULL,
+    window_seconds integer NOT NULL,
+    count integer DEFAULT 0 NOT NULL
+);
+
+
+ALTER TABLE public.misuse_counters OWNER TO rutherford;
+
 --
 -- Name: question_attempts; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -578,6 +612,20 @@ CREATE TABLE public.user_alerts (
 
 ALTER TABLE public.user_alerts OWNER TO rutherford;
 
+--
+-- Name: user_assignment_inbox; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.user_assignment_inbox (
+    user_id integer NOT NULL,
+    assignment_id integer NOT NULL,
+    group_id integer NOT NULL,
+    created timestamp with time zone DEFAULT now() NOT NULL
+);
+
+
+ALTER TABLE public.user_assignment_inbox OWNER TO rutherford;
+
 --
 -- Name: user_associations; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -892,6 +940,14 @@ ALTER TABLE ONLY public.assignments
     ADD CONSTRAINT "composite pkey assignments" PRIMARY KEY (gameboard_id, group_id);
 
 
+--
+-- Name: assignments assignments_id_key; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.assignments
+    ADD CONSTRAINT assignments_id_key UNIQUE (id);
+
+
 --
 -- Name: linked_accounts compound key; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -940,6 +996,14 @@ ALTER TABLE ONLY public.groups
     ADD CONSTRAINT group_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: logged_event_type_counts logged_event_type_counts_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.logged_event_type_counts
+    ADD CONSTRAINT logged_event_type_counts_pkey PRIMARY KEY (event_type);
+
+
 --
 -- Name: logged_events id pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -948,6 +1012,14 @@ ALTER TABLE ONLY public.logged_events
     ADD CONSTRAINT "id pkey" PRIMARY KEY (id);
 
 
+--
+-- Name: misuse_counters misuse_counters_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.misuse_counters
+    ADD CONSTRAINT misuse_counters_pkey PRIMARY KEY (agent_identifier, event_label);
+
+
 --
 -- Name: ip_location_history id pky; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1076,6 +1148,14 @@ ALTER TABLE ONLY public.user_alerts
     ADD CONSTRAINT user_alerts_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: user_assignment_inbox user_assignment_inbox_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_assignment_inbox
+    ADD CONSTRAINT user_assignment_inbox_pkey PRIMARY KEY (user_id, assignment_id);
+
+
 --
 -- Name: user_associations user_associations_composite_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1210,6 +1290,13 @@ CREATE INDEX log_events_type ON public.logged_events USING btree (event_type);
 CREATE INDEX log_events_user_id ON public.logged_events USING btree (user_id);
 
 
+--
+-- Name: misuse_counters_by_event_count; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX misuse_counters_by_event_count ON public.misuse_counters USING btree (event_label, count DESC);
+
+
 --
 -- Name: only_one_attempt_per_assignment_per_user; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1280,6 +1367,13 @@ CREATE UNIQUE INDEX "unique email case insensitive" ON public.users USING btree
 CREATE UNIQUE INDEX user_alerts_id_uindex ON public.user_alerts USING btree (id);
 
 
+--
+-- Name: user_assignment_inbox_by_assignment; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX user_assignment_inbox_by_assignment ON public.user_assignment_inbox USING btree (assignment_id);
+
+
 --
 -- Name: user_associations_by_receiving; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1322,6 +1416,48 @@ CREATE INDEX user_streak_targets_by_user_id ON public.user_streak_targets USING
 CREATE INDEX users_id_role ON public.users USING btree (id, role);
 
 
+--
+-- Name: users_email_trgm; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX users_email_trgm ON public.users USING gin (email public.gin_trgm_ops) WHERE (NOT deleted);
+
+
+--
+-- Name: users_family_name_trgm; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX users_family_name_trgm ON public.users USING gin (family_name public.gin_trgm_ops) WHERE (NOT deleted);
+
+
+--
+-- Name: users_given_name_trgm; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX users_given_name_trgm ON public.users USING gin (given_name public.gin_trgm_ops) WHERE (NOT deleted);
+
+
+--
+-- Name: users_name_order; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX users_name_order ON public.users USING btree (COALESCE(family_name, ''::text), COALESCE(given_name, ''::text), id) WHERE (NOT deleted);
+
+
+--
+-- Name: users_school_id_trgm; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX users_school_id_trgm ON public.users USING gin (school_id public.gin_trgm_ops) WHERE (NOT deleted);
+
+
+--
+-- Name: users_school_other_trgm; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX users_school_other_trgm ON public.users USING gin (school_other public.gin_trgm_ops) WHERE (NOT deleted);
+
+
 --
 -- Name: archived_users archived_users_fk; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1482,6 +1618,22 @@ ALTER TABLE ONLY public.user_associations_tokens
     ADD CONSTRAINT token_owner_user_id FOREIGN KEY (owner_user_id) REFERENCES public.users(id) ON DELETE CASCADE;
 
 
+--
+-- Name: user_assignment_inbox user_assignment_inbox_assignment_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_assignment_inbox
+    ADD CONSTRAINT user_assignment_inbox_assignment_id_fkey FOREIGN KEY (assignment_id) REFERENCES public.assignments(id) ON DELETE CASCADE;
+
+
+--
+-- Name: user_assignment_inbox user_assignment_inbox_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_assignment_inbox
+    ADD CONSTRAINT user_assignment_inbox_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+
 --
 -- Name: user_bookmarks user_bookmarks_user_id_fk; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
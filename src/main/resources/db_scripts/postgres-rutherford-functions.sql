@@ -2,7 +2,7 @@
 -- Merge and Delete Users
 --
 -- Authors: Stephen Cummins, James Sharkey
--- Last Modified: 2023-11-01
+-- Last Modified: 2026-10-19
 --
 
 CREATE OR REPLACE FUNCTION mergeuser(targetuseridtokeep bigint, targetuseridtodelete bigint) RETURNS boolean
@@ -74,6 +74,14 @@ BEGIN
   SET user_id = targetUserIdToKeep
   WHERE user_id = targetUserIdToDelete;
 
+  BEGIN
+    INSERT INTO user_assignment_inbox (user_id, assignment_id, group_id, created)
+    SELECT targetUserIdToKeep, assignment_id, group_id, created
+    FROM user_assignment_inbox WHERE user_id=targetUserIdToDelete
+    -- Ignore duplicate inserts; both accounts may have been sent the same assignment.
+    ON CONFLICT DO NOTHING;
+  END;
+
   BEGIN
     INSERT INTO user_associations (user_id_granting_permission, user_id_receiving_permission, created)
     SELECT targetuseridtokeep, user_id_receiving_permission, created
@@ -0,0 +1,16 @@
+/* Repair the user assignment inbox where updating it on joining or leaving a group, or on setting an assignment, failed */
+
+INSERT INTO user_assignment_inbox(user_id, assignment_id, group_id, created)
+SELECT group_memberships.user_id, assignments.id, assignments.group_id, assignments.creation_date
+FROM assignments
+JOIN group_memberships ON group_memberships.group_id = assignments.group_id
+WHERE group_memberships.status <> 'DELETED'
+  AND (group_memberships.updated > NOW() - INTERVAL '1 day' OR assignments.creation_date > NOW() - INTERVAL '1 day')
+ON CONFLICT DO NOTHING;
+
+DELETE FROM user_assignment_inbox
+USING group_memberships
+WHERE group_memberships.group_id = user_assignment_inbox.group_id
+  AND group_memberships.user_id = user_assignment_inbox.user_id
+  AND group_memberships.status = 'DELETED'
+  AND group_memberships.updated > NOW() - INTERVAL '1 day';
@@ -47,6 +47,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.PgUserPreferenceManager;
 import uk.ac.cam.cl.dtg.isaac.quiz.PgQuestionAttempts;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.managers.GroupManager;
+import uk.ac.cam.cl.dtg.segue.api.managers.LastSeenAccumulator;
 import uk.ac.cam.cl.dtg.segue.api.managers.PgTransactionManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager;
 import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
@@ -65,11 +66,13 @@ import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
 import uk.ac.cam.cl.dtg.segue.auth.IAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.ISecondFactorAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.ISegueHashingAlgorithm;
+import uk.ac.cam.cl.dtg.segue.auth.PasswordHashingExecutor;
 import uk.ac.cam.cl.dtg.segue.auth.RaspberryPiOidcAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.SegueLocalAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.SeguePBKDF2v3;
 import uk.ac.cam.cl.dtg.segue.auth.SegueSCryptv1;
 import uk.ac.cam.cl.dtg.segue.auth.SegueTOTPAuthenticator;
+import uk.ac.cam.cl.dtg.segue.comm.BackgroundEmailExecutor;
 import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicator;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
 import uk.ac.cam.cl.dtg.segue.comm.MailGunEmailManager;
@@ -171,6 +174,7 @@ public class AbstractIsaacIntegrationTest {
     protected static Map<AuthenticationProvider, IAuthenticator> providersToRegister;
 
     protected static PgAnonymousUsers pgAnonymousUsers;
+    protected static LastSeenAccumulator lastSeenAccumulator;
 
     protected static ISecondFactorAuthenticator secondFactorManager;
 
@@ -270,7 +274,9 @@ public class AbstractIsaacIntegrationTest {
         );
 
         Map<String, ISegueHashingAlgorithm> algorithms = new HashMap<>(Map.of("SeguePBKDF2v3", new SeguePBKDF2v3(), "SegueSCryptv1", new SegueSCryptv1()));
-        providersToRegister.put(AuthenticationProvider.SEGUE, new SegueLocalAuthenticator(pgUsers, passwordDataManager, properties, algorithms, algorithms.get("SegueSCryptv1")));
+        PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(
+                PasswordHashingExecutor.DEFAULT_THREADS, PasswordHashingExecutor.DEFAULT_QUEUE_CAPACITY);
+        providersToRegister.put(AuthenticationProvider.SEGUE, new SegueLocalAuthenticator(pgUsers, passwordDataManager, properties, algorithms, algorithms.get("SegueSCryptv1"), passwordHashingExecutor));
 
         EmailCommunicator communicator = new EmailCommunicator("localhost", "default@localhost", "Howdy!");
         userPreferenceManager = new PgUserPreferenceManager(postgresSqlDb);
@@ -286,7 +292,8 @@ public class AbstractIsaacIntegrationTest {
         userAuthenticationManager = new UserAuthenticationManager(pgUsers, deletionTokenPersistenceManager, properties, providersToRegister, emailManager);
         secondFactorManager = new SegueTOTPAuthenticator(new PgTOTPDataManager(postgresSqlDb));
 
-        userAccountManager = new UserAccountManager(pgUsers, questionManager, properties, providersToRegister, mainMapper, emailManager, pgAnonymousUsers, logManager, userAuthenticationManager, secondFactorManager, userPreferenceManager);
+        lastSeenAccumulator = new LastSeenAccumulator(pgUsers);
+        userAccountManager = new UserAccountManager(pgUsers, questionManager, properties, providersToRegister, mainMapper, emailManager, pgAnonymousUsers, logManager, userAuthenticationManager, secondFactorManager, userPreferenceManager, lastSeenAccumulator);
 
         ObjectMapper objectMapper = new ObjectMapper();
         mailGunEmailManager = new MailGunEmailManager(globalTokens, properties, userPreferenceManager);
@@ -302,12 +309,13 @@ public class AbstractIsaacIntegrationTest {
         PgTransactionManager pgTransactionManager = new PgTransactionManager(postgresSqlDb);
         eventBookingManager = new EventBookingManager(bookingPersistanceManager, emailManager, userAssociationManager, properties, groupManager, userAccountManager, pgTransactionManager);
         eventsManager = new EventsManager(eventBookingManager, contentManager, mainMapper);
-        assignmentManager = new AssignmentManager(assignmentPersistenceManager, groupManager, new EmailService(properties, emailManager, groupManager, userAccountManager, mailGunEmailManager), gameManager, properties);
+        BackgroundEmailExecutor backgroundEmailExecutor = new BackgroundEmailExecutor();
+        assignmentManager = new AssignmentManager(assignmentPersistenceManager, groupManager, new EmailService(properties, emailManager, groupManager, userAccountManager, mailGunEmailManager, backgroundEmailExecutor), gameManager, properties);
         schoolListReader = createNiceMock(SchoolListReader.class);
 
         quizManager = new QuizManager(properties, contentManager, new ContentSummarizerService(mainMapper, new URIManager(properties)));
         quizAssignmentPersistenceManager =  new PgQuizAssignmentPersistenceManager(postgresSqlDb, mainMapper);
-        quizAssignmentManager = new QuizAssignmentManager(quizAssignmentPersistenceManager, new EmailService(properties, emailManager, groupManager, userAccountManager, mailGunEmailManager), quizManager, groupManager, properties);
+        quizAssignmentManager = new QuizAssignmentManager(quizAssignmentPersistenceManager, new EmailService(properties, emailManager, groupManager, userAccountManager, mailGunEmailManager, backgroundEmailExecutor), quizManager, groupManager, properties);
         assignmentService = new AssignmentService(userAccountManager);
         quizAttemptPersistenceManager = new PgQuizAttemptPersistenceManager(postgresSqlDb, mainMapper);
         quizAttemptManager = new QuizAttemptManager(quizAttemptPersistenceManager);
@@ -51,6 +51,9 @@ public class AuthorisationFacadeIT extends IsaacIntegrationTest {
         pst.setInt(1, (int) TEST_TEACHERS_AB_GROUP_ID);
         pst.setInt(2, (int) TEST_TUTORS_AB_GROUP_ID);
         pst.executeUpdate();
+
+        // the group manager will still have the changed groups cached
+        groupManager.invalidateGroupCaches();
     }
 
     @Test
@@ -72,6 +72,9 @@ public class GroupsFacadeIT extends IsaacIntegrationTest {
         pst.setString(1, GroupMembershipStatus.ACTIVE.name());
         pst.setTimestamp(2, new Timestamp(new Date().getTime()));
         pst.executeUpdate();
+
+        // the group manager will still have the changed groups cached
+        groupManager.invalidateGroupCaches();
     }
 
     @Test
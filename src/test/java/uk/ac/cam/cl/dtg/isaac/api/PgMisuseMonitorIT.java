@@ -0,0 +1,137 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+import uk.ac.cam.cl.dtg.segue.api.monitors.IMisuseHandler;
+import uk.ac.cam.cl.dtg.segue.api.monitors.PgMisuseMonitor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PgMisuseMonitorIT extends IsaacIntegrationTest {
+    private static final String EVENT = "SharedTestEvent";
+    private static final String AGENT = "shared-test-agent";
+    private static final int SOFT_THRESHOLD = 4;
+    private static final int HARD_THRESHOLD = 6;
+
+    private final AtomicInteger softThresholdActions = new AtomicInteger();
+    private final AtomicInteger hardThresholdActions = new AtomicInteger();
+    private final List<PgMisuseMonitor> monitors = new ArrayList<>();
+    private PgMisuseMonitor firstNode;
+    private PgMisuseMonitor secondNode;
+
+    @BeforeEach
+    public void setUp() {
+        firstNode = createMonitor();
+        secondNode = createMonitor();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        // Stop every monitor first, so that none writes counts back after they are deleted:
+        for (PgMisuseMonitor monitor : monitors) {
+            monitor.contextDestroyed(null);
+        }
+
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement("DELETE FROM misuse_counters WHERE event_label = ?")) {
+            pst.setString(1, EVENT);
+            pst.executeUpdate();
+        }
+    }
+
+    @Test
+    public void notifyEvent_eventsSpreadAcrossNodes_thresholdsApplyToTheCombinedCount() throws Exception {
+        // Act: alternate events between the two nodes up to the hard threshold
+        for (int i = 0; i < HARD_THRESHOLD; i++) {
+            (i % 2 == 0 ? firstNode : secondNode).notifyEvent(AGENT, EVENT);
+        }
+
+        // Assert: each threshold action ran once, and both nodes refuse further events once they have synchronised
+        firstNode.synchroniseCounts();
+        secondNode.synchroniseCounts();
+        assertEquals(1, softThresholdActions.get());
+        assertEquals(1, hardThresholdActions.get());
+        assertTrue(firstNode.hasMisused(AGENT, EVENT));
+        assertTrue(secondNode.hasMisused(AGENT, EVENT));
+        assertThrows(SegueResourceMisuseException.class, () -> secondNode.notifyEvent(AGENT, EVENT));
+        assertEquals(1, hardThresholdActions.get());
+    }
+
+    @Test
+    public void notifyEvent_newNode_seesExistingCount() throws Exception {
+        // Arrange: count events on one node
+        for (int i = 0; i < HARD_THRESHOLD; i++) {
+            firstNode.notifyEvent(AGENT, EVENT);
+        }
+
+        // Act: start another node, as after a restart, which reads the count in the background once it is used
+        PgMisuseMonitor restartedNode = createMonitor();
+        restartedNode.hasMisused(AGENT, EVENT);
+        restartedNode.synchroniseCounts();
+
+        // Assert
+        assertTrue(restartedNode.hasMisused(AGENT, EVENT));
+        assertEquals(0, restartedNode.getRemainingUses(AGENT, EVENT));
+    }
+
+    @Test
+    public void resetMisuseCount_afterMisuse_countCleared() throws Exception {
+        // Arrange
+        for (int i = 0; i < HARD_THRESHOLD; i++) {
+            firstNode.notifyEvent(AGENT, EVENT);
+        }
+
+        // Act
+        firstNode.resetMisuseCount(AGENT, EVENT);
+
+        // Assert
+        PgMisuseMonitor restartedNode = createMonitor();
+        restartedNode.hasMisused(AGENT, EVENT);
+        restartedNode.synchroniseCounts();
+        assertFalse(restartedNode.hasMisused(AGENT, EVENT));
+    }
+
+    private PgMisuseMonitor createMonitor() {
+        PgMisuseMonitor monitor = new PgMisuseMonitor(postgresSqlDb);
+        monitors.add(monitor);
+        monitor.registerHandler(EVENT, new IMisuseHandler() {
+            @Override
+            public Integer getSoftThreshold() {
+                return SOFT_THRESHOLD;
+            }
+
+            @Override
+            public Integer getHardThreshold() {
+                return HARD_THRESHOLD;
+            }
+
+            @Override
+            public Integer getAccountingIntervalInSeconds() {
+                return Constants.NUMBER_SECONDS_IN_ONE_HOUR;
+            }
+
+            @Override
+            public void executeSoftThresholdAction(final String message) {
+                softThresholdActions.incrementAndGet();
+            }
+
+            @Override
+            public void executeHardThresholdAction(final String message) {
+                hardThresholdActions.incrementAndGet();
+            }
+        });
+        return monitor;
+    }
+}
@@ -0,0 +1,192 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.UserGroupDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the user assignment inbox follows group membership and assignment creation. The GroupChangedService is
+ * not registered in integration tests, so the inbox updates it would make are made directly here.
+ */
+public class UserAssignmentInboxIT extends IsaacIntegrationTest {
+    private static final long DAVES_GROUP_ASSIGNMENT_ID = 3L;
+    private static final long DAVE_TEACHER_ID = 10L;
+
+    private UserGroupDTO davesGroup;
+    private RegisteredUserDTO alice;
+    private RegisteredUserDTO bob;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        davesGroup = groupManager.getGroupById(ITConstants.DAVE_TEACHERS_BC_GROUP_ID);
+        alice = userAccountManager.getUserDTOById(ITConstants.ALICE_STUDENT_ID);
+        bob = userAccountManager.getUserDTOById(ITConstants.BOB_STUDENT_ID);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (groupManager.isUserInGroup(alice, davesGroup)) {
+            groupManager.removeUserFromGroup(davesGroup, alice);
+        }
+        try (Connection conn = postgresSqlDb.getDatabaseConnection()) {
+            try (PreparedStatement pst = conn.prepareStatement(
+                    "DELETE FROM group_memberships WHERE group_id = ? AND user_id = ?")) {
+                pst.setLong(1, ITConstants.DAVE_TEACHERS_BC_GROUP_ID);
+                pst.setLong(2, ITConstants.ALICE_STUDENT_ID);
+                pst.executeUpdate();
+            }
+            try (PreparedStatement pst = conn.prepareStatement(
+                    "DELETE FROM user_assignment_inbox WHERE group_id = ? AND user_id = ?")) {
+                pst.setLong(1, ITConstants.DAVE_TEACHERS_BC_GROUP_ID);
+                pst.setLong(2, ITConstants.ALICE_STUDENT_ID);
+                pst.executeUpdate();
+            }
+            try (PreparedStatement pst = conn.prepareStatement("DELETE FROM assignments WHERE gameboard_id = ?")) {
+                pst.setString(1, ITConstants.ASSIGNMENTS_TEST_GAMEBOARD_ID);
+                pst.executeUpdate();
+            }
+        }
+    }
+
+    @Test
+    public void addGroupAssignmentsToUserInbox_userJoinsGroup_existingAssignmentsDelivered() throws Exception {
+        // Arrange
+        groupManager.addUserToGroup(davesGroup, alice);
+
+        // Act
+        assignmentManager.addGroupAssignmentsToUserInbox(davesGroup, alice);
+
+        // Assert
+        assertTrue(getAssignmentIds(alice).contains(DAVES_GROUP_ASSIGNMENT_ID));
+    }
+
+    @Test
+    public void removeGroupAssignmentsFromUserInbox_userLeavesGroup_groupAssignmentsRemoved() throws Exception {
+        // Arrange
+        groupManager.addUserToGroup(davesGroup, alice);
+        assignmentManager.addGroupAssignmentsToUserInbox(davesGroup, alice);
+
+        // Act
+        groupManager.removeUserFromGroup(davesGroup, alice);
+        assignmentManager.removeGroupAssignmentsFromUserInbox(davesGroup, alice);
+
+        // Assert
+        assertFalse(getAssignmentIds(alice).contains(DAVES_GROUP_ASSIGNMENT_ID));
+        assertEquals(0, countInboxRows(ITConstants.ALICE_STUDENT_ID, ITConstants.DAVE_TEACHERS_BC_GROUP_ID));
+    }
+
+    @Test
+    public void getAssignments_userLeftGroupButInboxNotUpdated_groupAssignmentsHidden() throws Exception {
+        // Arrange
+        groupManager.addUserToGroup(davesGroup, alice);
+        assignmentManager.addGroupAssignmentsToUserInbox(davesGroup, alice);
+
+        // Act
+        groupManager.removeUserFromGroup(davesGroup, alice);
+
+        // Assert
+        assertFalse(getAssignmentIds(alice).contains(DAVES_GROUP_ASSIGNMENT_ID));
+    }
+
+    @Test
+    public void createAssignments_groupHasMembers_assignmentDeliveredToEveryMember() throws Exception {
+        // Arrange
+        AssignmentDTO assignment = new AssignmentDTO();
+        assignment.setGameboardId(ITConstants.ASSIGNMENTS_TEST_GAMEBOARD_ID);
+        assignment.setGameboard(gameManager.getLiteGameboard(ITConstants.ASSIGNMENTS_TEST_GAMEBOARD_ID));
+        assignment.setGroupId(ITConstants.DAVE_TEACHERS_BC_GROUP_ID);
+        assignment.setOwnerUserId(DAVE_TEACHER_ID);
+
+        // Act
+        List<AssignmentDTO> created = assignmentManager.createAssignments(Collections.singletonList(assignment));
+
+        // Assert
+        assertEquals(1, created.size());
+        assertTrue(getAssignmentIds(bob).contains(created.getFirst().getId()));
+        assertFalse(getAssignmentIds(alice).contains(created.getFirst().getId()));
+    }
+
+    @Test
+    public void reconciliationScript_inboxUpdateMissedOnJoin_existingAssignmentsDelivered() throws Exception {
+        // Arrange: Alice joins, but her inbox is not updated
+        groupManager.addUserToGroup(davesGroup, alice);
+        assertEquals(0, countInboxRows(ITConstants.ALICE_STUDENT_ID, ITConstants.DAVE_TEACHERS_BC_GROUP_ID));
+
+        // Act
+        String script = IOUtils.toString(getClass().getClassLoader().getResourceAsStream(
+                "db_scripts/scheduled/user-assignment-inbox-reconciliation.sql"), StandardCharsets.UTF_8);
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             Statement statement = conn.createStatement()) {
+            statement.execute(script);
+        }
+
+        // Assert
+        assertTrue(getAssignmentIds(alice).contains(DAVES_GROUP_ASSIGNMENT_ID));
+    }
+
+    @Test
+    public void mergeUserAccounts_deletedAccountHadAssignments_assignmentsMovedToKeptAccount() throws Exception {
+        // Arrange: a duplicate of Alice's account which is in Dave's group and was sent its assignment
+        long duplicateId;
+        try (Connection conn = postgresSqlDb.getDatabaseConnection()) {
+            try (PreparedStatement pst = conn.prepareStatement(
+                    "INSERT INTO users(given_name, family_name, email) VALUES ('Alice', 'Duplicate', ?)"
+                            + " RETURNING id")) {
+                pst.setString(1, "alice-duplicate@test.com");
+                try (ResultSet results = pst.executeQuery()) {
+                    results.next();
+                    duplicateId = results.getLong(1);
+                }
+            }
+            try (PreparedStatement pst = conn.prepareStatement(
+                    "INSERT INTO group_memberships(group_id, user_id, created) VALUES (?, ?, now())")) {
+                pst.setLong(1, ITConstants.DAVE_TEACHERS_BC_GROUP_ID);
+                pst.setLong(2, duplicateId);
+                pst.executeUpdate();
+            }
+        }
+        RegisteredUserDTO duplicate = userAccountManager.getUserDTOById(duplicateId);
+        assignmentManager.addGroupAssignmentsToUserInbox(davesGroup, duplicate);
+
+        // Act
+        userAccountManager.mergeUserAccounts(alice, duplicate);
+
+        // Assert
+        assertTrue(getAssignmentIds(alice).contains(DAVES_GROUP_ASSIGNMENT_ID));
+        assertEquals(1, countInboxRows(ITConstants.ALICE_STUDENT_ID, ITConstants.DAVE_TEACHERS_BC_GROUP_ID));
+        assertEquals(0, countInboxRows(duplicateId, ITConstants.DAVE_TEACHERS_BC_GROUP_ID));
+    }
+
+    private static List<Long> getAssignmentIds(final RegisteredUserDTO user) throws Exception {
+        return assignmentManager.getAssignments(user).stream().map(AssignmentDTO::getId).toList();
+    }
+
+    private static int countInboxRows(final long userId, final long groupId) throws Exception {
+        try (Connection conn = postgresSqlDb.getDatabaseConnection();
+             PreparedStatement pst = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM user_assignment_inbox WHERE user_id = ? AND group_id = ?")) {
+            pst.setLong(1, userId);
+            pst.setLong(2, groupId);
+            try (ResultSet results = pst.executeQuery()) {
+                results.next();
+                return results.getInt(1);
+            }
+        }
+    }
+}
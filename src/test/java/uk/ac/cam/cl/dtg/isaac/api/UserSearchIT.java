@@ -0,0 +1,58 @@
+package uk.ac.cam.cl.dtg.isaac.api;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.users.Role;
+import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserSearchIT extends IsaacIntegrationTest {
+    private static final int PAGE_SIZE = 2;
+    private static final long NON_EXISTENT_USER_ID = 999999L;
+
+    @Test
+    public void searchUsers_pagedByLastUser_pagesMatchSingleOrderedSearch() throws Exception {
+        // Arrange
+        RegisteredUserDTO prototype = new RegisteredUserDTO();
+        prototype.setRole(Role.STUDENT);
+        List<RegisteredUserDTO> allStudents = userAccountManager.searchUsers(prototype, null, 1000);
+
+        // Act
+        List<RegisteredUserDTO> pagedStudents = new ArrayList<>();
+        Long afterUserId = null;
+        List<RegisteredUserDTO> page;
+        do {
+            page = userAccountManager.searchUsers(prototype, afterUserId, PAGE_SIZE);
+            assertTrue(page.size() <= PAGE_SIZE);
+            pagedStudents.addAll(page);
+            if (!page.isEmpty()) {
+                afterUserId = page.getLast().getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        // Assert: paging must neither skip nor repeat users, relative to the single ordered search
+        assertTrue(allStudents.size() > PAGE_SIZE, "Test data must span more than one page");
+        assertEquals(ids(allStudents), ids(pagedStudents));
+    }
+
+    @Test
+    public void searchUsers_lastUserNoLongerExists_throwsResourceNotFound() {
+        // Arrange
+        RegisteredUserDTO prototype = new RegisteredUserDTO();
+        prototype.setRole(Role.STUDENT);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+                () -> userAccountManager.searchUsers(prototype, NON_EXISTENT_USER_ID, PAGE_SIZE));
+    }
+
+    private static List<Long> ids(final List<RegisteredUserDTO> users) {
+        return users.stream().map(RegisteredUserDTO::getId).toList();
+    }
+}
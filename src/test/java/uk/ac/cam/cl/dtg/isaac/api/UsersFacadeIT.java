@@ -131,7 +131,7 @@ public class UsersFacadeIT extends IsaacIntegrationTest {
 
         UserAccountManager userAccountManagerForTest = new UserAccountManager(pgUsers, questionManager,
                 propertiesForTest, providersToRegister, mainMapper, emailManager, pgAnonymousUsers, logManager,
-                userAuthenticationManager, secondFactorManager, userPreferenceManager);
+                userAuthenticationManager, secondFactorManager, userPreferenceManager, lastSeenAccumulator);
 
         UsersFacade usersFacadeForTest = new UsersFacade(propertiesForTest, userAccountManagerForTest, logManager,
                 userAssociationManager, misuseMonitor, userPreferenceManager, schoolListReader);
@@ -841,7 +841,7 @@ public class UsersFacadeIT extends IsaacIntegrationTest {
                 pgUsers, dummyDeletionTokenManager, properties, providersToRegister, dummyEmailManager);
         UserAccountManager userAccountManager = new UserAccountManager(
                 pgUsers, questionManager, properties, providersToRegister, mainMapper, emailManager, pgAnonymousUsers,
-                logManager, userAuthenticationManager, secondFactorManager, userPreferenceManager);
+                logManager, userAuthenticationManager, secondFactorManager, userPreferenceManager, lastSeenAccumulator);
         UsersFacade usersFacadeForTest = new UsersFacade(properties, userAccountManager, logManager,
                 userAssociationManager, misuseMonitor, userPreferenceManager, schoolListReader);
 
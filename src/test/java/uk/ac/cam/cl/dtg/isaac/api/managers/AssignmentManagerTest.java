@@ -0,0 +1,88 @@
+package uk.ac.cam.cl.dtg.isaac.api.managers;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.api.services.EmailService;
+import uk.ac.cam.cl.dtg.isaac.dao.IAssignmentPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static uk.ac.cam.cl.dtg.segue.api.Constants.HOST_NAME;
+
+public class AssignmentManagerTest extends AbstractManagerTest {
+
+    private AssignmentManager assignmentManager;
+
+    private IAssignmentPersistenceManager assignmentPersistenceManager;
+    private EmailService emailService;
+
+    @BeforeEach
+    public void setUp() {
+        AbstractConfigLoader properties = createMock(AbstractConfigLoader.class);
+        emailService = createMock(EmailService.class);
+        assignmentPersistenceManager = createMock(IAssignmentPersistenceManager.class);
+
+        assignmentManager = new AssignmentManager(assignmentPersistenceManager, groupManager, emailService,
+                createMock(GameManager.class), properties);
+
+        expect(properties.getProperty(HOST_NAME)).andStubReturn("example.com.invalid");
+
+        replay(properties);
+    }
+
+    @Test
+    public void createAssignments_mixedAssignments_savedTogetherAndEmailsQueuedOnlyForNewUnscheduledAssignments()
+            throws SegueDatabaseException {
+        // Arrange
+        AssignmentDTO unscheduled = newAssignment("board-a", 1L);
+        AssignmentDTO scheduled = newAssignment("board-b", 1L);
+        scheduled.setScheduledStartDate(someFutureDate);
+        AssignmentDTO alreadyInDatabase = newAssignment("board-c", 1L);
+        AssignmentDTO repeatedInRequest = newAssignment("board-a", 1L);
+
+        expect(assignmentPersistenceManager.saveAssignments(ImmutableList.of(unscheduled, scheduled, alreadyInDatabase)))
+                .andReturn(Arrays.asList(11L, 12L, null));
+        emailService.queueAssignmentEmailToGroup(eq(unscheduled), eq(unscheduled.getGameboard()), anyObject(),
+                eq("email-template-group-assignment"));
+        expectLastCall().once();
+        replay(assignmentPersistenceManager, emailService);
+
+        // Act
+        List<AssignmentDTO> created = assignmentManager.createAssignments(
+                ImmutableList.of(unscheduled, scheduled, alreadyInDatabase, repeatedInRequest));
+
+        // Assert
+        verify(assignmentPersistenceManager, emailService);
+        assertEquals(ImmutableList.of(unscheduled, scheduled), created);
+        assertEquals(Long.valueOf(11L), unscheduled.getId());
+        assertEquals(Long.valueOf(12L), scheduled.getId());
+        assertNull(alreadyInDatabase.getId());
+        assertNull(repeatedInRequest.getId());
+    }
+
+    private AssignmentDTO newAssignment(final String gameboardId, final Long groupId) {
+        GameboardDTO gameboard = new GameboardDTO();
+        gameboard.setId(gameboardId);
+        AssignmentDTO assignment = new AssignmentDTO();
+        assignment.setGameboardId(gameboardId);
+        assignment.setGameboard(gameboard);
+        assignment.setGroupId(groupId);
+        assignment.setOwnerUserId(teacher.getId());
+        return assignment;
+    }
+}
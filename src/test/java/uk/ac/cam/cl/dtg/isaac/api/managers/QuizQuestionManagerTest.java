@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableMap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.ac.cam.cl.dtg.isaac.dao.IQuizQuestionAttemptPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dos.LightweightQuestionValidationResponse;
 import uk.ac.cam.cl.dtg.isaac.dos.QuizFeedbackMode;
 import uk.ac.cam.cl.dtg.isaac.dto.QuizAttemptDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.QuizFeedbackDTO;
@@ -49,6 +50,7 @@ import static java.util.Collections.singletonList;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -255,10 +257,12 @@ public class QuizQuestionManagerTest extends AbstractManagerTest {
         List<RegisteredUserDTO> groupMembers = this.groupManager.getUsersInGroup(studentGroup);
 
         withMock(quizAttemptManager, m -> expect(m.getCompletedUserIds(studentAssignment)).andReturn(singleton(student.getId())));
-        withMock(quizQuestionAttemptPersistenceManager, m -> expect(m.getAllAnswersForQuizAssignment(studentAssignment.getId())).andReturn(
+        withMock(quizQuestionAttemptPersistenceManager, m -> expect(m.getLatestQuestionMarksForQuizAssignment(studentAssignment.getId(),
+            groupMembers.stream().map(RegisteredUserDTO::getId).toList())).andReturn(
             ImmutableMap.of(student.getId(), answerMap.entrySet().stream().collect(Collectors.toMap(
                 entry -> entry.getKey().getId(),
-                entry -> singletonList(entry.getValue()))))
+                entry -> new LightweightQuestionValidationResponse(entry.getKey().getId(),
+                    entry.getValue().isCorrect(), entry.getValue().getDateAttempted()))))
         ));
 
         Map<RegisteredUserDTO, QuizFeedbackDTO> feedback = quizQuestionManager.getAssignmentTeacherFeedback(studentQuiz, studentAssignment, groupMembers);
@@ -268,6 +272,45 @@ public class QuizQuestionManagerTest extends AbstractManagerTest {
         assertEquals(Integer.valueOf(3), studentQuiz.getTotal());
     }
 
+    @Test
+    public void getAssignmentFeedbackIncludesQuestionMarks() throws ContentManagerException, SegueDatabaseException {
+        List<RegisteredUserDTO> groupMembers = this.groupManager.getUsersInGroup(studentGroup);
+
+        withMock(quizAttemptManager, m -> expect(m.getCompletedUserIds(studentAssignment)).andReturn(singleton(student.getId())));
+        withMock(quizQuestionAttemptPersistenceManager, m -> expect(m.getLatestQuestionMarksForQuizAssignment(studentAssignment.getId(),
+            groupMembers.stream().map(RegisteredUserDTO::getId).toList())).andReturn(
+            ImmutableMap.of(student.getId(), ImmutableMap.of(
+                question.getId(), new LightweightQuestionValidationResponse(question.getId(), true, somePastDate),
+                question2.getId(), new LightweightQuestionValidationResponse(question2.getId(), false, somePastDate)))
+        ));
+
+        Map<RegisteredUserDTO, QuizFeedbackDTO> feedback = quizQuestionManager.getAssignmentTeacherFeedback(studentQuiz, studentAssignment, groupMembers);
+
+        Map<String, QuizFeedbackDTO.Mark> questionMarks = feedback.get(student).getQuestionMarks();
+        assertNotNull(questionMarks);
+        assertMarks(1, 0, 0, questionMarks.get(question.getId()));
+        assertMarks(0, 1, 0, questionMarks.get(question2.getId()));
+        assertMarks(0, 0, 1, questionMarks.get(question3.getId()));
+    }
+
+    @Test
+    public void getAssignmentFeedbackMarkerMarksBatchesWithoutRereadingAssignment() throws ContentManagerException, SegueDatabaseException {
+        withMock(quizAttemptManager, m -> expect(m.getCompletedUserIds(studentAssignment)).andReturn(singleton(student.getId())).once());
+        withMock(quizQuestionAttemptPersistenceManager,
+            m -> expect(m.getLatestQuestionMarksForQuizAssignment(studentAssignment.getId(), ImmutableList.of(student.getId())))
+                .andReturn(ImmutableMap.of(student.getId(), ImmutableMap.of(
+                    question.getId(), new LightweightQuestionValidationResponse(question.getId(), true, somePastDate)))),
+            m -> expect(m.getLatestQuestionMarksForQuizAssignment(studentAssignment.getId(), ImmutableList.of(secondStudent.getId())))
+                .andReturn(ImmutableMap.of()));
+
+        QuizQuestionManager.AssignmentFeedbackMarker marker = quizQuestionManager.getAssignmentFeedbackMarker(studentQuiz, studentAssignment);
+        Map<RegisteredUserDTO, QuizFeedbackDTO> firstBatch = marker.getFeedback(ImmutableList.of(student));
+        Map<RegisteredUserDTO, QuizFeedbackDTO> secondBatch = marker.getFeedback(ImmutableList.of(secondStudent));
+
+        verify(quizAttemptManager, quizQuestionAttemptPersistenceManager);
+        assertMarks(1, 0, 2, firstBatch.get(student).getOverallMark());
+        assertFalse(secondBatch.get(secondStudent).isComplete());
+    }
 
     private void assertStudentMarks(QuizFeedbackDTO result) {
         assertMarks(1, 1, 1, result.getOverallMark());
@@ -0,0 +1,136 @@
+package uk.ac.cam.cl.dtg.isaac.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentSubclassMapper;
+import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.util.mappers.MainMapper;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+public class GameboardPersistenceManagerTest {
+    private static final String GAMEBOARD_ID = "test-gameboard";
+
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private GitContentManager dummyContentManager;
+    private ContentSubclassMapper dummyContentMapper;
+
+    @BeforeEach
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyContentManager = createMock(GitContentManager.class);
+        this.dummyContentMapper = createMock(ContentSubclassMapper.class);
+        expect(dummyContentMapper.getSharedContentObjectMapper()).andStubReturn(new ObjectMapper());
+    }
+
+    @Test
+    public void getGameboardById_sameContentVersion_augmentedGameboardServedFromCache() throws Exception {
+        // Arrange
+        expect(dummyContentManager.getCurrentContentSHA()).andStubReturn("sha-1");
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(connectionReturningGameboard("Title")).once();
+        replay(dummyPostgresSqlDb, dummyContentManager, dummyContentMapper);
+        GameboardPersistenceManager gameboardPersistenceManager = buildGameboardPersistenceManager();
+
+        // Act
+        GameboardDTO first = gameboardPersistenceManager.getGameboardById(GAMEBOARD_ID);
+        GameboardDTO second = gameboardPersistenceManager.getGameboardById(GAMEBOARD_ID);
+
+        // Assert
+        verify(dummyPostgresSqlDb);
+        assertEquals(GAMEBOARD_ID, second.getId());
+        assertNotSame(first, second, "Each caller must be given its own copy of a cached gameboard");
+    }
+
+    @Test
+    public void getGameboardById_contentVersionChanged_gameboardReloaded() throws Exception {
+        // Arrange
+        expect(dummyContentManager.getCurrentContentSHA()).andReturn("sha-1").andReturn("sha-2");
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(connectionReturningGameboard("Title"))
+                .andReturn(connectionReturningGameboard("Title"));
+        replay(dummyPostgresSqlDb, dummyContentManager, dummyContentMapper);
+        GameboardPersistenceManager gameboardPersistenceManager = buildGameboardPersistenceManager();
+
+        // Act
+        gameboardPersistenceManager.getGameboardById(GAMEBOARD_ID);
+        gameboardPersistenceManager.getGameboardById(GAMEBOARD_ID);
+
+        // Assert
+        verify(dummyPostgresSqlDb, dummyContentManager);
+    }
+
+    @Test
+    public void getGameboardById_afterTitleUpdated_updatedGameboardReloaded() throws Exception {
+        // Arrange
+        expect(dummyContentManager.getCurrentContentSHA()).andStubReturn("sha-1");
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(connectionReturningGameboard("Old title"))
+                .andReturn(connectionUpdatingOneRow())
+                .andReturn(connectionReturningGameboard("New title"));
+        replay(dummyPostgresSqlDb, dummyContentManager, dummyContentMapper);
+        GameboardPersistenceManager gameboardPersistenceManager = buildGameboardPersistenceManager();
+        GameboardDTO gameboard = gameboardPersistenceManager.getGameboardById(GAMEBOARD_ID);
+
+        // Act
+        gameboard.setTitle("New title");
+        gameboardPersistenceManager.updateGameboardTitle(gameboard);
+        GameboardDTO reloaded = gameboardPersistenceManager.getGameboardById(GAMEBOARD_ID);
+
+        // Assert
+        verify(dummyPostgresSqlDb);
+        assertEquals("New title", reloaded.getTitle());
+    }
+
+    private GameboardPersistenceManager buildGameboardPersistenceManager() {
+        return new GameboardPersistenceManager(dummyPostgresSqlDb, dummyContentManager, MainMapper.INSTANCE,
+                dummyContentMapper);
+    }
+
+    private static Connection connectionReturningGameboard(final String title) throws SQLException {
+        // An empty gameboard needs no content lookups to augment it:
+        Array contents = createNiceMock(Array.class);
+        expect(contents.getArray()).andStubReturn(new String[0]);
+
+        ResultSet resultSet = createNiceMock(ResultSet.class);
+        expect(resultSet.next()).andReturn(true).andReturn(false);
+        expect(resultSet.getString("id")).andStubReturn(GAMEBOARD_ID);
+        expect(resultSet.getString("title")).andStubReturn(title);
+        expect(resultSet.getArray("contents")).andStubReturn(contents);
+        expect(resultSet.getObject("game_filter")).andStubReturn("{}");
+        expect(resultSet.getObject("tags")).andStubReturn("[]");
+        expect(resultSet.getTimestamp("creation_date")).andStubReturn(new Timestamp(0L));
+
+        PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+        expect(preparedStatement.executeQuery()).andStubReturn(resultSet);
+        Connection connection = createNiceMock(Connection.class);
+        expect(connection.prepareStatement(anyString())).andStubReturn(preparedStatement);
+
+        replay(contents, resultSet, preparedStatement, connection);
+        return connection;
+    }
+
+    private static Connection connectionUpdatingOneRow() throws SQLException {
+        PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+        expect(preparedStatement.executeUpdate()).andStubReturn(1);
+        Connection connection = createNiceMock(Connection.class);
+        expect(connection.prepareStatement(anyString())).andStubReturn(preparedStatement);
+
+        replay(preparedStatement, connection);
+        return connection;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.cam.cl.dtg.isaac.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.util.mappers.MainMapper;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.startsWith;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PgAssignmentPersistenceManagerTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PreparedStatement dummyInsertStatement;
+    private PreparedStatement dummyInboxStatement;
+    private ResultSet dummyResultSet;
+
+    @BeforeEach
+    public final void setUp() throws SQLException {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.dummyInsertStatement = createNiceMock(PreparedStatement.class);
+        this.dummyInboxStatement = createNiceMock(PreparedStatement.class);
+        this.dummyResultSet = createNiceMock(ResultSet.class);
+
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection);
+        expect(dummyConnection.prepareStatement(startsWith("INSERT INTO assignments"))).andReturn(dummyInsertStatement);
+        expect(dummyConnection.prepareStatement(startsWith("INSERT INTO user_assignment_inbox")))
+                .andReturn(dummyInboxStatement);
+        expect(dummyConnection.createArrayOf(anyString(), anyObject())).andStubReturn(createNiceMock(Array.class));
+        expect(dummyInsertStatement.executeQuery()).andReturn(dummyResultSet);
+
+        // Only the first and third assignments are new; the second already exists and is skipped by the insert:
+        expect(dummyResultSet.next()).andReturn(true).andReturn(true).andReturn(false);
+        expect(dummyResultSet.getString("gameboard_id")).andReturn("board-a").andReturn("board-c");
+        expect(dummyResultSet.getLong("group_id")).andReturn(1L).andReturn(1L);
+        expect(dummyResultSet.getLong("id")).andReturn(11L).andReturn(13L);
+    }
+
+    @Test
+    public void saveAssignments_someAlreadyExist_newIdsReturnedInOrderAndCommitted() throws Exception {
+        // Arrange
+        dummyConnection.commit();
+        expectLastCall().once();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyInsertStatement, dummyInboxStatement, dummyResultSet);
+
+        // Act
+        List<Long> savedIds = buildAssignmentPersistenceManager().saveAssignments(
+                Arrays.asList(newAssignment("board-a"), newAssignment("board-b"), newAssignment("board-c")));
+
+        // Assert
+        verify(dummyConnection, dummyInboxStatement);
+        assertEquals(Arrays.asList(11L, null, 13L), savedIds);
+    }
+
+    @Test
+    public void saveAssignments_inboxUpdateFails_assignmentsRolledBack() throws Exception {
+        // Arrange
+        expect(dummyInboxStatement.executeUpdate()).andThrow(new SQLException("Inbox update failed"));
+        dummyConnection.rollback();
+        expectLastCall().once();
+        replay(dummyPostgresSqlDb, dummyConnection, dummyInsertStatement, dummyInboxStatement, dummyResultSet);
+        PgAssignmentPersistenceManager assignmentPersistenceManager = buildAssignmentPersistenceManager();
+        List<AssignmentDTO> assignments = Arrays.asList(newAssignment("board-a"), newAssignment("board-c"));
+
+        // Act & Assert
+        assertThrows(SegueDatabaseException.class, () -> assignmentPersistenceManager.saveAssignments(assignments));
+        verify(dummyConnection);
+    }
+
+    private PgAssignmentPersistenceManager buildAssignmentPersistenceManager() {
+        return new PgAssignmentPersistenceManager(dummyPostgresSqlDb, MainMapper.INSTANCE);
+    }
+
+    private static AssignmentDTO newAssignment(final String gameboardId) {
+        AssignmentDTO assignment = new AssignmentDTO();
+        assignment.setGameboardId(gameboardId);
+        assignment.setGroupId(1L);
+        assignment.setOwnerUserId(10L);
+        return assignment;
+    }
+}
@@ -17,6 +17,7 @@ package uk.ac.cam.cl.dtg.segue.api.managers;
 
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Sets;
+import com.google.common.collect.ImmutableMap;
 import org.easymock.Capture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +28,8 @@ import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicationMessage;
 import uk.ac.cam.cl.dtg.segue.comm.ICommunicator;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserGroupPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dos.GroupMembership;
+import uk.ac.cam.cl.dtg.isaac.dos.GroupMembershipStatus;
 import uk.ac.cam.cl.dtg.isaac.dos.UserGroup;
 import uk.ac.cam.cl.dtg.isaac.dto.UserGroupDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
@@ -40,6 +43,7 @@ import java.util.List;
 import java.util.Set;
 
 import static org.easymock.EasyMock.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -141,4 +145,32 @@ public class GroupManagerTest {
 		}
 		verify(this.groupDataManager);
 	}
+
+	/**
+	 * Verify that repeated membership checks are answered from memory until the membership changes.
+	 */
+	@Test
+	public final void isUserInGroup_checkedRepeatedly_membershipOnlyLoadedAgainAfterChange() throws Exception {
+		RegisteredUserDTO someUser = new RegisteredUserDTO();
+		someUser.setId(5339L);
+		UserGroupDTO someGroup = new UserGroupDTO();
+		someGroup.setId(2L);
+		GroupMembership someMembership = new GroupMembership(2L, 5339L, GroupMembershipStatus.ACTIVE, new Date(), new Date());
+
+		GroupManager gm = new GroupManager(this.groupDataManager, this.userManager, this.gameManager, this.dummyMapper);
+		expect(this.groupDataManager.getGroupMembershipMapForUser(5339L))
+				.andReturn(ImmutableMap.of(2L, someMembership)).once()
+				.andReturn(ImmutableMap.of()).once();
+		this.groupDataManager.removeUserFromGroup(5339L, 2L);
+		expectLastCall().once();
+		replay(this.userManager, this.groupDataManager, this.dummyMapper);
+
+		assertTrue(gm.isUserInGroup(someUser, someGroup));
+		assertTrue(gm.isUserInGroup(someUser, someGroup));
+
+		gm.removeUserFromGroup(someGroup, someUser);
+		assertFalse(gm.isUserInGroup(someUser, someGroup));
+
+		verify(this.groupDataManager);
+	}
 }
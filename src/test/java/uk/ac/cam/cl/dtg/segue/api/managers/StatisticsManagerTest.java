@@ -0,0 +1,92 @@
+package uk.ac.cam.cl.dtg.segue.api.managers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.api.services.ContentSummarizerService;
+import uk.ac.cam.cl.dtg.isaac.dos.IUserStreaksManager;
+import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
+import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
+
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StatisticsManagerTest {
+    private static final long REFRESH_INTERVAL_MINUTES = 60;
+
+    private GroupManager groupManager;
+    private StatisticsManager statisticsManager;
+
+    @BeforeEach
+    public final void setUp() {
+        UserAccountManager userManager = createNiceMock(UserAccountManager.class);
+        ILogManager logManager = createNiceMock(ILogManager.class);
+        QuestionManager questionManager = createNiceMock(QuestionManager.class);
+        this.groupManager = createMock(GroupManager.class);
+        replay(userManager, logManager, questionManager);
+
+        this.statisticsManager = new StatisticsManager(userManager, logManager, createMock(GitContentManager.class),
+                groupManager, questionManager, createMock(ContentSummarizerService.class),
+                createMock(IUserStreaksManager.class), REFRESH_INTERVAL_MINUTES);
+    }
+
+    @AfterEach
+    public final void tearDown() {
+        statisticsManager.contextDestroyed(null);
+    }
+
+    @Test
+    public void getGeneralStatistics_calledTwice_statisticsComputedOnce() throws Exception {
+        // Arrange
+        expect(groupManager.getGroupCount()).andReturn(5L).once();
+        replay(groupManager);
+
+        // Act
+        Map<String, Object> first = statisticsManager.getGeneralStatistics();
+        Map<String, Object> second = statisticsManager.getGeneralStatistics();
+
+        // Assert
+        verify(groupManager);
+        assertSame(first, second);
+        assertEquals(5L, first.get("groupCount"));
+    }
+
+    @Test
+    public void refreshGeneralStatistics_afterFirstRequest_snapshotReplaced() throws Exception {
+        // Arrange
+        expect(groupManager.getGroupCount()).andReturn(5L).andReturn(6L);
+        replay(groupManager);
+        Map<String, Object> first = statisticsManager.getGeneralStatistics();
+
+        // Act
+        statisticsManager.refreshGeneralStatistics();
+
+        // Assert
+        verify(groupManager);
+        Map<String, Object> second = statisticsManager.getGeneralStatistics();
+        assertNotSame(first, second);
+        assertEquals(6L, second.get("groupCount"));
+    }
+
+    @Test
+    public void contextDestroyed_statisticsExecutorsStopped() {
+        // Arrange
+        replay(groupManager);
+
+        // Act
+        statisticsManager.contextDestroyed(null);
+
+        // Assert
+        assertThrows(RejectedExecutionException.class, () -> statisticsManager.refreshGeneralStatistics());
+    }
+}
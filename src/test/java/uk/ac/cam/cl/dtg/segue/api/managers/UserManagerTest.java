@@ -34,6 +34,7 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.UserFromAuthProvider;
 import uk.ac.cam.cl.dtg.isaac.dto.content.EmailTemplateDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.AnonymousUserDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.users.RegisteredUserDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.users.UserSummaryWithEmailAddressDTO;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.auth.AuthenticationProvider;
 import uk.ac.cam.cl.dtg.segue.auth.GoogleAuthenticator;
@@ -63,14 +64,19 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -93,6 +99,7 @@ public class UserManagerTest {
     private SimpleDateFormat sdf;
 
     private IAnonymousUserDataManager dummyUserCache;
+    private LastSeenAccumulator dummyLastSeenAccumulator;
     private ILogManager dummyLogManager;
     private SegueLocalAuthenticator dummyLocalAuth;
 
@@ -124,6 +131,7 @@ public class UserManagerTest {
         this.sdf = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy");
 
         this.dummyUserCache = createMock(IAnonymousUserDataManager.class);
+        this.dummyLastSeenAccumulator = createNiceMock(LastSeenAccumulator.class);
 
         this.dummyLogManager = createMock(ILogManager.class);
 
@@ -155,6 +163,7 @@ public class UserManagerTest {
 
         Cookie[] emptyCookies = {};
         expect(request.getCookies()).andReturn(emptyCookies).anyTimes();
+        expect(request.getAttribute(anyString())).andReturn(null).anyTimes();
 
         replay(dummySession);
         replay(request);
@@ -197,10 +206,14 @@ public class UserManagerTest {
         Map<String, String> sessionInformation = getSessionInformationAsAMap(validUserId.toString(), validDateString, returnUser.getSessionToken());
         Cookie[] cookieWithSessionInfo = getCookieArray(sessionInformation);
        
-        dummyDatabase.updateUserLastSeen(returnUser);
-        expectLastCall();
+        dummyLastSeenAccumulator.recordLastSeen(eq(validUserId), anyObject(Date.class));
+        expectLastCall().once();
+        replay(dummyLastSeenAccumulator);
 
         expect(request.getCookies()).andReturn(cookieWithSessionInfo).anyTimes();
+        expect(request.getAttribute(anyString())).andReturn(null).once();
+        request.setAttribute(anyString(), anyObject(RegisteredUserDTO.class));
+        expectLastCall().once();
         replay(request);
 
         expect(dummyDatabase.getById(validUserId)).andReturn(returnUser);
@@ -209,6 +222,7 @@ public class UserManagerTest {
         replay(dummyQuestionDatabase);
 
         expect(dummyMapper.map(returnUser)).andReturn(new RegisteredUserDTO()).atLeastOnce();
+        expect(dummyMapper.copy(anyObject(RegisteredUserDTO.class))).andReturn(new RegisteredUserDTO()).once();
         replay(dummyMapper, dummyDatabase, dummyLocalAuth);
 
         // Act
@@ -217,7 +231,55 @@ public class UserManagerTest {
         // Assert
         assertTrue(user != null);
 
-        verify(dummyQuestionDatabase, request, dummyMapper);
+        verify(dummyQuestionDatabase, request, dummyMapper, dummyLastSeenAccumulator);
+    }
+
+    /**
+     * Test that a session which has already been validated is not checked against the database again.
+     *
+     * @throws Exception
+     */
+    @Test
+    public final void getCurrentUser_sameSessionInTwoRequests_userIsLoadedFromDatabaseOnce() throws Exception {
+        UserAccountManager userManager = buildTestUserManager();
+
+        Long validUserId = 533L;
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, 500);
+        String validDateString = sdf.format(calendar.getTime());
+
+        RegisteredUser returnUser = new RegisteredUser(validUserId, "TestFirstName", "TestLastName", "", Role.STUDENT,
+                new Date(), Gender.MALE, null, new Date(), null, null, null,null, false);
+        returnUser.setId(validUserId);
+        returnUser.setSessionToken(0);
+        returnUser.setLastSeen(new Date());
+
+        Map<String, String> sessionInformation = getSessionInformationAsAMap(validUserId.toString(), validDateString, returnUser.getSessionToken());
+        Cookie[] cookieWithSessionInfo = getCookieArray(sessionInformation);
+
+        HttpServletRequest firstRequest = createMock(HttpServletRequest.class);
+        HttpServletRequest secondRequest = createMock(HttpServletRequest.class);
+        for (HttpServletRequest request : List.of(firstRequest, secondRequest)) {
+            expect(request.getCookies()).andReturn(cookieWithSessionInfo).anyTimes();
+            expect(request.getAttribute(anyString())).andReturn(null).once();
+            request.setAttribute(anyString(), anyObject(RegisteredUserDTO.class));
+            expectLastCall().once();
+        }
+        replay(firstRequest, secondRequest);
+
+        expect(dummyDatabase.getById(validUserId)).andReturn(returnUser).once();
+        expect(dummyMapper.map(anyObject(RegisteredUser.class))).andReturn(new RegisteredUserDTO()).times(2);
+        expect(dummyMapper.copy(anyObject(RegisteredUserDTO.class))).andReturn(new RegisteredUserDTO()).times(2);
+        replay(dummyMapper, dummyDatabase);
+
+        // Act
+        RegisteredUserDTO firstUser = userManager.getCurrentRegisteredUser(firstRequest);
+        RegisteredUserDTO secondUser = userManager.getCurrentRegisteredUser(secondRequest);
+
+        // Assert
+        assertTrue(firstUser != null && secondUser != null);
+
+        verify(firstRequest, secondRequest, dummyMapper, dummyDatabase);
     }
 
     /**
@@ -327,8 +389,7 @@ public class UserManagerTest {
 
         AnonymousUser au = new AnonymousUser();
         au.setSessionId(someSegueAnonymousUserId);
-        expect(this.dummyUserCache.storeAnonymousUser(au)).andReturn(au).atLeastOnce();
-        expect(this.dummyUserCache.getById(au.getSessionId())).andReturn(au).atLeastOnce();
+        au.setLastUpdated(new Date());
         this.dummyUserCache.deleteAnonymousUser(au);
         expectLastCall().once();
 
@@ -345,7 +406,7 @@ public class UserManagerTest {
         Cookie[] cookieWithoutSessionInfo = {}; // empty as not logged in.
         expect(request.getCookies()).andReturn(cookieWithoutSessionInfo).times(2);
 
-        expect(dummySession.getAttribute(Constants.ANONYMOUS_USER)).andReturn(someSegueAnonymousUserId).atLeastOnce(); // session
+        expect(dummySession.getAttribute(Constants.ANONYMOUS_USER)).andReturn(au).atLeastOnce(); // session
                                                                                                                        // id
 
         // Mock CSRF checks
@@ -762,6 +823,36 @@ public class UserManagerTest {
     }
 
 
+    /**
+     * Ensure that user summaries are only looked up in the database the first time they are requested.
+     */
+    @Test
+    public final void getDetailedUserSummariesByIds_requestedTwice_usersOnlyLoadedOnce() throws Exception {
+        // Arrange
+        UserAccountManager userManager = buildTestUserManager();
+        RegisteredUser someUser = new RegisteredUser();
+        someUser.setId(533L);
+        RegisteredUserDTO someUserDTO = new RegisteredUserDTO();
+        someUserDTO.setId(533L);
+        UserSummaryWithEmailAddressDTO someUserSummary = new UserSummaryWithEmailAddressDTO();
+        someUserSummary.setId(533L);
+
+        expect(dummyDatabase.findUsers(List.of(533L))).andReturn(List.of(someUser)).once();
+        expect(dummyMapper.map(someUser)).andReturn(someUserDTO);
+        expect(dummyMapper.map(someUserDTO, UserSummaryWithEmailAddressDTO.class)).andReturn(someUserSummary);
+        expect(dummyMapper.copy(someUserSummary)).andReturn(someUserSummary).times(2);
+        replay(dummyDatabase, dummyMapper);
+
+        // Act
+        Map<Long, UserSummaryWithEmailAddressDTO> first = userManager.getDetailedUserSummariesByIds(List.of(533L), false);
+        Map<Long, UserSummaryWithEmailAddressDTO> second = userManager.getDetailedUserSummariesByIds(List.of(533L), false);
+
+        // Assert
+        assertEquals(someUserSummary, first.get(533L));
+        assertEquals(someUserSummary, second.get(533L));
+        verify(dummyDatabase, dummyMapper);
+    }
+
     /**
      * Helper method to construct a UserManager with the default TEST provider.
      * 
@@ -787,7 +878,7 @@ public class UserManagerTest {
         return new UserAccountManager(dummyDatabase, this.dummyQuestionDatabase, this.dummyPropertiesLoader,
                 providerMap, this.dummyMapper, this.dummyQueue, this.dummyUserCache, this.dummyLogManager,
                 buildTestAuthenticationManager(provider, authenticator), dummySecondFactorAuthenticator,
-                dummyUserPreferenceManager);
+                dummyUserPreferenceManager, dummyLastSeenAccumulator);
     }
     
     private UserAuthenticationManager buildTestAuthenticationManager() {
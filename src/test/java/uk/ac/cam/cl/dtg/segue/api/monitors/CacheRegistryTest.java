@@ -0,0 +1,116 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CacheRegistryTest {
+
+    @AfterEach
+    public void tearDown() {
+        CacheRegistry.configure(null);
+    }
+
+    @Test
+    public void build_sizeConfigured_configuredSizeOverridesDefault() {
+        // Arrange
+        AbstractConfigLoader properties = createMock(AbstractConfigLoader.class);
+        expect(properties.getProperty("CACHE_MAXIMUM_SIZE_CACHE_REGISTRY_TEST_CONFIGURED_CACHE")).andReturn("2");
+        expect(properties.getProperty(anyString())).andStubReturn(null);
+        replay(properties);
+        CacheRegistry.configure(properties);
+
+        // Act
+        Cache<Integer, String> cache = CacheRegistry.build("cache_registry_test_configured_cache", 100,
+                CacheBuilder.newBuilder());
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value");
+        }
+
+        // Assert
+        assertTrue(cache.size() <= 2);
+        assertEquals(2L, summaryOf("cache_registry_test_configured_cache").maximumSize());
+    }
+
+    @Test
+    public void build_noConfiguration_defaultSizeAndStatisticsRecorded() {
+        // Act
+        Cache<Integer, String> cache = CacheRegistry.build("cache_registry_test_unlimited_cache",
+                CacheRegistry.UNLIMITED, CacheBuilder.newBuilder());
+        cache.put(1, "value");
+        cache.getIfPresent(1);
+        cache.getIfPresent(2);
+
+        // Assert
+        CacheRegistry.CacheSummary summary = summaryOf("cache_registry_test_unlimited_cache");
+        assertNull(summary.maximumSize());
+        assertEquals(1, summary.size());
+        assertEquals(1, summary.hitCount());
+        assertEquals(1, summary.missCount());
+    }
+
+    @Test
+    public void invalidate_registeredCache_entriesRemoved() {
+        // Arrange
+        Cache<Integer, String> cache = CacheRegistry.build("cache_registry_test_invalidated_cache",
+                CacheRegistry.UNLIMITED, CacheBuilder.newBuilder());
+        cache.put(1, "value");
+
+        // Act & Assert
+        assertEquals(CacheRegistry.InvalidationResult.INVALIDATED,
+                CacheRegistry.invalidate("cache_registry_test_invalidated_cache"));
+        assertEquals(0, cache.size());
+        assertEquals(CacheRegistry.InvalidationResult.NOT_FOUND,
+                CacheRegistry.invalidate("cache_registry_test_missing_cache"));
+    }
+
+    @Test
+    public void invalidate_notClearableCache_entriesKept() {
+        // Arrange
+        Cache<Integer, String> cache = CacheRegistry.build("cache_registry_test_protected_cache",
+                CacheRegistry.UNLIMITED, CacheBuilder.newBuilder(), false);
+        cache.put(1, "value");
+
+        // Act
+        CacheRegistry.InvalidationResult result = CacheRegistry.invalidate("cache_registry_test_protected_cache");
+
+        // Assert
+        assertEquals(CacheRegistry.InvalidationResult.NOT_CLEARABLE, result);
+        assertEquals(1, cache.size());
+        assertFalse(summaryOf("cache_registry_test_protected_cache").clearable());
+    }
+
+    @Test
+    public void build_nameAlreadyRegistered_newCacheReplacesOld() {
+        // Arrange
+        Cache<Integer, String> oldCache = CacheRegistry.build("cache_registry_test_duplicate_cache",
+                CacheRegistry.UNLIMITED, CacheBuilder.newBuilder());
+        oldCache.put(1, "value");
+
+        // Act
+        Cache<Integer, String> newCache = CacheRegistry.build("cache_registry_test_duplicate_cache",
+                CacheRegistry.UNLIMITED, CacheBuilder.newBuilder());
+
+        // Assert
+        assertEquals(0, summaryOf("cache_registry_test_duplicate_cache").size());
+        assertTrue(summaryOf("cache_registry_test_duplicate_cache").clearable());
+        assertEquals(1, oldCache.size());
+        assertEquals(0, newCache.size());
+    }
+
+    private static CacheRegistry.CacheSummary summaryOf(final String name) {
+        return CacheRegistry.getSummaries().stream().filter(summary -> summary.name().equals(name)).findFirst()
+                .orElseThrow();
+    }
+}
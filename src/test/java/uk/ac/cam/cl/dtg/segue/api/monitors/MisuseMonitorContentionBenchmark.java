@@ -0,0 +1,107 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH benchmark of many threads notifying the misuse monitor at once, as happens when many question attempts arrive
+ * together: each thread notifying for its own agent, all threads notifying for one agent, and each thread notifying for
+ * its own agent while holding one global lock, as notifyEvent previously did.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class MisuseMonitorContentionBenchmark {
+    private static final String EVENT = "BenchmarkEvent";
+    private static final AtomicInteger NEXT_AGENT = new AtomicInteger();
+
+    private final Object globalLock = new Object();
+    private InMemoryMisuseMonitor misuseMonitor;
+
+    /**
+     * The agent a benchmark thread notifies events for.
+     */
+    @State(Scope.Thread)
+    public static class Agent {
+        private final String agentIdentifier = "agent-" + NEXT_AGENT.incrementAndGet();
+    }
+
+    /**
+     * Create a monitor whose handler has no thresholds, so that every notification is only counted.
+     */
+    @Setup
+    public void setUp() {
+        misuseMonitor = new InMemoryMisuseMonitor();
+        misuseMonitor.registerHandler(EVENT, new IMisuseHandler() {
+            @Override
+            public Integer getSoftThreshold() {
+                return null;
+            }
+
+            @Override
+            public Integer getHardThreshold() {
+                return null;
+            }
+
+            @Override
+            public Integer getAccountingIntervalInSeconds() {
+                return Integer.MAX_VALUE / 2;
+            }
+
+            @Override
+            public void executeSoftThresholdAction(final String message) {
+            }
+
+            @Override
+            public void executeHardThresholdAction(final String message) {
+            }
+        });
+    }
+
+    /**
+     * @param agent - the agent for this thread.
+     * @throws SegueResourceMisuseException - not thrown, as there is no hard threshold.
+     */
+    @Benchmark
+    public void agentPerThread(final Agent agent) throws SegueResourceMisuseException {
+        misuseMonitor.notifyEvent(agent.agentIdentifier, EVENT);
+    }
+
+    /**
+     * @throws SegueResourceMisuseException - not thrown, as there is no hard threshold.
+     */
+    @Benchmark
+    public void sharedAgent() throws SegueResourceMisuseException {
+        misuseMonitor.notifyEvent("shared-agent", EVENT);
+    }
+
+    /**
+     * @param agent - the agent for this thread.
+     * @throws SegueResourceMisuseException - not thrown, as there is no hard threshold.
+     */
+    @Benchmark
+    public void agentPerThreadWithGlobalLock(final Agent agent) throws SegueResourceMisuseException {
+        synchronized (globalLock) {
+            misuseMonitor.notifyEvent(agent.agentIdentifier, EVENT);
+        }
+    }
+}
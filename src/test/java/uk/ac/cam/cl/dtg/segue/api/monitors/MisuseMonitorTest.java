@@ -26,7 +26,15 @@ import uk.ac.cam.cl.dtg.isaac.dos.users.EmailVerificationStatus;
 import uk.ac.cam.cl.dtg.isaac.dos.users.RegisteredUser;
 import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.easymock.EasyMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -261,4 +269,71 @@ public class MisuseMonitorTest {
             System.out.println("SegueResourceMisuseException");
         }
     }
+
+    /**
+     * Verifies that, when many threads notify events for one agent at once, each threshold action runs exactly once and
+     * every event is counted.
+     *
+     * @throws Exception - if a notifying thread fails.
+     */
+    @Test
+    public final void notifyEvent_concurrentEvents_thresholdActionsRunOnce() throws Exception {
+        String event = "ConcurrentEvent";
+        int threads = 8;
+        int eventsPerThread = 1000;
+        AtomicInteger softThresholdActions = new AtomicInteger();
+        AtomicInteger hardThresholdActions = new AtomicInteger();
+        AtomicInteger misuseExceptions = new AtomicInteger();
+
+        IMisuseMonitor misuseMonitor = new InMemoryMisuseMonitor();
+        misuseMonitor.registerHandler(event, new IMisuseHandler() {
+            @Override
+            public Integer getSoftThreshold() {
+                return 100;
+            }
+
+            @Override
+            public Integer getHardThreshold() {
+                return 200;
+            }
+
+            @Override
+            public Integer getAccountingIntervalInSeconds() {
+                return Constants.NUMBER_SECONDS_IN_ONE_HOUR;
+            }
+
+            @Override
+            public void executeSoftThresholdAction(final String message) {
+                softThresholdActions.incrementAndGet();
+            }
+
+            @Override
+            public void executeHardThresholdAction(final String message) {
+                hardThresholdActions.incrementAndGet();
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    try {
+                        misuseMonitor.notifyEvent("agent", event);
+                    } catch (SegueResourceMisuseException e) {
+                        misuseExceptions.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1, softThresholdActions.get());
+        assertEquals(1, hardThresholdActions.get());
+        assertEquals(threads * eventsPerThread - 200, misuseExceptions.get());
+        assertEquals(200 - threads * eventsPerThread, misuseMonitor.getRemainingUses("agent", event));
+    }
 }
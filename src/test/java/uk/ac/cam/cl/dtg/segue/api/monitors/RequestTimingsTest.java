@@ -0,0 +1,62 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the RequestTimings class.
+ */
+public class RequestTimingsTest {
+
+    /**
+     * Make sure no test leaves timings recording on the test thread.
+     */
+    @AfterEach
+    public final void tearDown() {
+        RequestTimings.end();
+    }
+
+    /**
+     * Verify that each stage is counted separately, and nested timings of the same stage are only counted once.
+     */
+    @Test
+    public final void time_nestedAndSeparateStages_outermostOfEachStageCounted() {
+        RequestTimings.begin();
+        try (RequestTimings.StageTimer outer = RequestTimings.time(RequestTimings.Stage.CONTENT_CACHE)) {
+            try (RequestTimings.StageTimer search = RequestTimings.time(RequestTimings.Stage.SEARCH)) {
+                try (RequestTimings.StageTimer nested = RequestTimings.time(RequestTimings.Stage.SEARCH)) {
+                    assertTrue(RequestTimings.isRecording());
+                }
+            }
+        }
+        RequestTimings.StageTimer database = RequestTimings.time(RequestTimings.Stage.DATABASE);
+        database.close();
+        database.close();
+
+        RequestTimings timings = RequestTimings.end();
+
+        assertEquals(1, timings.getCount(RequestTimings.Stage.CONTENT_CACHE));
+        assertEquals(1, timings.getCount(RequestTimings.Stage.SEARCH));
+        assertEquals(1, timings.getCount(RequestTimings.Stage.DATABASE));
+        assertEquals(0, timings.getCount(RequestTimings.Stage.EXTERNAL_VALIDATION));
+        assertTrue(timings.getMillis(RequestTimings.Stage.CONTENT_CACHE) >= timings.getMillis(RequestTimings.Stage.SEARCH));
+        assertTrue(timings.toString().startsWith("database="));
+    }
+
+    /**
+     * Verify that nothing is recorded outside a request.
+     */
+    @Test
+    public final void time_outsideRequest_notRecorded() {
+        assertFalse(RequestTimings.isRecording());
+        try (RequestTimings.StageTimer timer = RequestTimings.time(RequestTimings.Stage.DATABASE)) {
+            assertFalse(RequestTimings.isRecording());
+        }
+        assertNull(RequestTimings.end());
+    }
+}
@@ -0,0 +1,103 @@
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlowRequestProfilerTest {
+    private static final String ENDPOINT = "/pages/questions/{question_page_id}";
+
+    @TempDir
+    Path profileDirectory;
+
+    @Test
+    public void onSlowRequest_disabled_nothingSaved() {
+        // Arrange
+        SlowRequestProfiler profiler = new SlowRequestProfiler(false, profileDirectory, 1);
+
+        // Act
+        profiler.onSlowRequest("GET", ENDPOINT, Instant.now().minusSeconds(20), Instant.now());
+
+        // Assert
+        assertFalse(profiler.isEnabled());
+        assertTrue(profiler.getProfiles().isEmpty());
+        assertNull(profiler.getProfile("anything"));
+    }
+
+    @Test
+    public void onSlowRequest_enabled_profileOfRequestSavedAndTagged() throws Exception {
+        // Arrange
+        SlowRequestProfiler profiler = new SlowRequestProfiler(true, profileDirectory, 1);
+        try {
+            Instant start = Instant.now();
+            Thread.sleep(50);
+
+            // Act
+            profiler.onSlowRequest("GET", ENDPOINT, start, Instant.now());
+            waitForProfile(profiler);
+
+            // Assert
+            assertEquals(1, profiler.getProfiles().size());
+            SlowRequestProfiler.ProfileSummary summary = profiler.getProfiles().get(0);
+            assertEquals(ENDPOINT, summary.path());
+            Path profile = profiler.getProfile(summary.id());
+            assertNotNull(profile);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(profile);
+            assertTrue(events.stream().anyMatch(event ->
+                    event.getEventType().getName().equals("uk.ac.cam.cl.dtg.segue.SlowRequest")
+                            && ENDPOINT.equals(event.getString("path"))));
+        } finally {
+            profiler.contextDestroyed(null);
+        }
+    }
+
+    @Test
+    public void constructor_profilesSavedBeforeRestart_recentProfilesListedAndLeftoversDeleted() throws Exception {
+        // Arrange: save a profile, then leave behind a snapshot and an unreadable profile, as after a crash
+        SlowRequestProfiler previousProfiler = new SlowRequestProfiler(true, profileDirectory, 1);
+        SlowRequestProfiler.ProfileSummary savedProfile;
+        try {
+            previousProfiler.onSlowRequest("GET", ENDPOINT, Instant.now().minusSeconds(20), Instant.now());
+            waitForProfile(previousProfiler);
+            savedProfile = previousProfiler.getProfiles().get(0);
+        } finally {
+            previousProfiler.contextDestroyed(null);
+        }
+        Path snapshot = Files.createFile(profileDirectory.resolve("snapshot-1234.jfr"));
+        Path unreadable = Files.writeString(profileDirectory.resolve("unreadable.jfr"), "not a recording");
+
+        // Act
+        SlowRequestProfiler profiler = new SlowRequestProfiler(true, profileDirectory, 1);
+        try {
+            // Assert
+            assertEquals(List.of(savedProfile.id()),
+                    profiler.getProfiles().stream().map(SlowRequestProfiler.ProfileSummary::id).toList());
+            assertEquals(ENDPOINT, profiler.getProfiles().get(0).path());
+            assertNotNull(profiler.getProfile(savedProfile.id()));
+            assertFalse(Files.exists(snapshot));
+            assertFalse(Files.exists(unreadable));
+        } finally {
+            profiler.contextDestroyed(null);
+        }
+    }
+
+    private static void waitForProfile(final SlowRequestProfiler profiler) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (profiler.getProfiles().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+}
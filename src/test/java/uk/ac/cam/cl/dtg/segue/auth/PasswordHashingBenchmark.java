@@ -0,0 +1,69 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of each password hashing algorithm, for tuning algorithm cost parameters and the size of the
+ * PasswordHashingExecutor against login throughput.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec
+ * Add e.g. -Djmh.args="-t 4" to measure throughput with several threads hashing at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PasswordHashingBenchmark {
+    private static final Map<String, ISegueHashingAlgorithm> ALGORITHMS = ImmutableMap.<String, ISegueHashingAlgorithm>builder()
+            .put("SeguePBKDF2v1", new SeguePBKDF2v1())
+            .put("SeguePBKDF2v2", new SeguePBKDF2v2())
+            .put("SeguePBKDF2v3", new SeguePBKDF2v3())
+            .put("SegueSCryptv1", new SegueSCryptv1())
+            .put("SegueChainedPBKDFv1SCryptv1", new SegueChainedPBKDFv1SCryptv1())
+            .put("SegueChainedPBKDFv2SCryptv1", new SegueChainedPBKDFv2SCryptv1())
+            .build();
+
+    @Param({"SeguePBKDF2v1", "SeguePBKDF2v2", "SeguePBKDF2v3", "SegueSCryptv1", "SegueChainedPBKDFv1SCryptv1",
+            "SegueChainedPBKDFv2SCryptv1"})
+    public String algorithmName;
+
+    private ISegueHashingAlgorithm algorithm;
+    private String salt;
+
+    /**
+     * Pick the algorithm under test and generate a salt for it.
+     *
+     * @throws NoSuchAlgorithmException - if the salt cannot be generated.
+     */
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        algorithm = ALGORITHMS.get(algorithmName);
+        salt = algorithm.generateSalt();
+    }
+
+    /**
+     * @return the password hash, so that the work cannot be optimised away.
+     */
+    @Benchmark
+    public String hashPassword() throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return algorithm.hashPassword("test5eguePassw0rd", salt);
+    }
+}
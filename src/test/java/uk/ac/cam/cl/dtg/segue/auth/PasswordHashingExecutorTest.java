@@ -0,0 +1,77 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the PasswordHashingExecutor class.
+ */
+public class PasswordHashingExecutorTest {
+
+    /**
+     * Verify that the executor returns the hash calculated by the algorithm.
+     */
+    @Test
+    public final void hashPassword_capacityAvailable_hashIsReturned() throws Exception {
+        PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1);
+        ISegueHashingAlgorithm algorithm = new SegueSCryptv1();
+        String salt = algorithm.generateSalt();
+
+        assertEquals(algorithm.hashPassword("test5eguePassw0rd", salt),
+                executor.hashPassword(algorithm, "test5eguePassw0rd", salt));
+    }
+
+    /**
+     * Verify that once every thread is busy and the queue is full, further hashes are rejected without waiting.
+     */
+    @Test
+    public final void hashPassword_threadsBusyAndQueueFull_requestIsRejected() throws Exception {
+        PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1);
+        CountDownLatch hashingStarted = new CountDownLatch(1);
+        CountDownLatch releaseHashing = new CountDownLatch(1);
+        ISegueHashingAlgorithm blockingAlgorithm = new SegueSCryptv1() {
+            @Override
+            public String hashPassword(final String password, final String salt) {
+                hashingStarted.countDown();
+                try {
+                    releaseHashing.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash";
+            }
+        };
+
+        // One hash occupies the only thread and a second fills the only queue slot:
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hashQuietly(executor, blockingAlgorithm));
+        assertTrue(hashingStarted.await(10, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hashQuietly(executor, blockingAlgorithm));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThrows(PasswordHashingCapacityExceededException.class,
+                () -> executor.hashPassword(blockingAlgorithm, "password", "salt"));
+
+        releaseHashing.countDown();
+        assertEquals("hash", running.get(10, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(10, TimeUnit.SECONDS));
+    }
+
+    private static String hashQuietly(final PasswordHashingExecutor executor, final ISegueHashingAlgorithm algorithm) {
+        try {
+            return executor.hashPassword(algorithm, "password", "salt");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.segue.auth;
 
 import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.ac.cam.cl.dtg.isaac.dos.users.LocalUserCredential;
@@ -24,6 +25,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.IncorrectCredentialsProvidedExcept
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.InvalidPasswordException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoCredentialsAvailableException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
+import uk.ac.cam.cl.dtg.segue.auth.exceptions.PasswordHashingCapacityExceededException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.users.IPasswordDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.IUserDataManager;
@@ -48,6 +50,7 @@ public class SegueLocalAuthenticatorTest {
     private IUserDataManager userDataManager;
     private IPasswordDataManager passwordDataManager;
     private AbstractConfigLoader propertiesLoader;
+    private PasswordHashingExecutor passwordHashingExecutor;
 
     private final ISegueHashingAlgorithm preferredAlgorithm = new SegueSCryptv1();
     private final ISegueHashingAlgorithm oldAlgorithm1 = new SeguePBKDF2v1();
@@ -71,6 +74,15 @@ public class SegueLocalAuthenticatorTest {
         this.userDataManager = createMock(IUserDataManager.class);
         this.passwordDataManager = createMock(IPasswordDataManager.class);
         this.propertiesLoader = createMock(AbstractConfigLoader.class);
+        this.passwordHashingExecutor = new PasswordHashingExecutor(1, 1);
+    }
+
+    /**
+     * Stop the hashing threads started for each test.
+     */
+    @AfterEach
+    public final void tearDown() {
+        this.passwordHashingExecutor.contextDestroyed(null);
     }
 
     /**
@@ -85,7 +97,7 @@ public class SegueLocalAuthenticatorTest {
         replay(userDataManager);
 
         SegueLocalAuthenticator segueAuthenticator = new SegueLocalAuthenticator(this.userDataManager, this.passwordDataManager,
-                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm);
+                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm, passwordHashingExecutor);
 
         try {
             segueAuthenticator.setOrChangeUsersPassword(someUser, null);
@@ -121,7 +133,7 @@ public class SegueLocalAuthenticatorTest {
         replay(userDataManager);
 
         SegueLocalAuthenticator segueAuthenticator = new SegueLocalAuthenticator(this.userDataManager, this.passwordDataManager,
-                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm);
+                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm, passwordHashingExecutor);
 
         try {
             segueAuthenticator.setOrChangeUsersPassword(someUser, somePassword);
@@ -144,7 +156,8 @@ public class SegueLocalAuthenticatorTest {
      */
     @Test
     public final void segueLocalAuthenticator_authenticate_correctEmailAndIncorrectPasswordProvided()
-            throws SegueDatabaseException, NoUserException, NoCredentialsAvailableException, InvalidKeySpecException, NoSuchAlgorithmException {
+            throws SegueDatabaseException, NoUserException, NoCredentialsAvailableException, InvalidKeySpecException, NoSuchAlgorithmException,
+            PasswordHashingCapacityExceededException {
         String someCorrectPasswordPlainText = "test5eguePassw0rd";
         String someCorrectPasswordHashFromDB = "NyACfIYjYUGK7EbtlMAV48+dgyXpa+DPUKHmR1IjY/nAI2xydZUuqtVYc/shQnJ9fhquDOu56C57NGUPsxJ52Q==";
         String someCorrectSecureSaltFromDB = "P77Fhqu2/SAVGDCtu9IkHg==";
@@ -171,7 +184,7 @@ public class SegueLocalAuthenticatorTest {
         replay(userDataManager, passwordDataManager);
 
         SegueLocalAuthenticator segueAuthenticator = new SegueLocalAuthenticator(this.userDataManager, this.passwordDataManager,
-                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm);
+                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm, passwordHashingExecutor);
         try {
             RegisteredUser authenticatedUser = segueAuthenticator.authenticate(usersEmailAddress, someIncorrectPassword);
             fail("This should fail as a bad password has been provided.");
@@ -192,7 +205,8 @@ public class SegueLocalAuthenticatorTest {
     @Test
     public final void segueLocalAuthenticator_authenticate_badEmailAndIncorrectPasswordProvided()
             throws SegueDatabaseException, IncorrectCredentialsProvidedException,
-            NoCredentialsAvailableException, InvalidKeySpecException, NoSuchAlgorithmException {
+            NoCredentialsAvailableException, InvalidKeySpecException, NoSuchAlgorithmException,
+            PasswordHashingCapacityExceededException {
         String someCorrectPasswordPlainText = "test5eguePassw0rd";
         String someCorrectPasswordHashFromDB = "NyACfIYjYUGK7EbtlMAV48+dgyXpa+DPUKHmR1IjY/nAI2xydZUuqtVYc/shQnJ9fhquDOu56C57NGUPsxJ52Q==";
         String someCorrectSecureSaltFromDB = "P77Fhqu2/SAVGDCtu9IkHg==";
@@ -210,7 +224,7 @@ public class SegueLocalAuthenticatorTest {
         replay(userDataManager);
 
         SegueLocalAuthenticator segueAuthenticator = new SegueLocalAuthenticator(this.userDataManager, this.passwordDataManager,
-                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm);
+                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm, passwordHashingExecutor);
         try {
             RegisteredUser authenticatedUser = segueAuthenticator.authenticate(someBadEmail, someIncorrectPassword);
             fail("This should fail as a bad email and password has been provided.");
@@ -231,7 +245,8 @@ public class SegueLocalAuthenticatorTest {
     @Test
     public final void segueLocalAuthenticator_setPasswordAndImmediateAuthenticate_correctEmailAndPasswordProvided()
             throws SegueDatabaseException, IncorrectCredentialsProvidedException,
-            NoCredentialsAvailableException, InvalidPasswordException, InvalidKeySpecException, NoSuchAlgorithmException {
+            NoCredentialsAvailableException, InvalidPasswordException, InvalidKeySpecException, NoSuchAlgorithmException,
+            PasswordHashingCapacityExceededException {
         String someCorrectPasswordPlainText = "test5eguePassw0rd";
         String usersEmailAddress = "test@test.com";
         String someCorrectPasswordHashFromDB = "NyACfIYjYUGK7EbtlMAV48+dgyXpa+DPUKHmR1IjY/nAI2xydZUuqtVYc/shQnJ9fhquDOu56C57NGUPsxJ52Q==";
@@ -253,7 +268,7 @@ public class SegueLocalAuthenticatorTest {
         replay(userDataManager, passwordDataManager);
 
         SegueLocalAuthenticator segueAuthenticator = new SegueLocalAuthenticator(this.userDataManager, this.passwordDataManager,
-                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm);
+                this.propertiesLoader, possibleAlgorithms, preferredAlgorithm, passwordHashingExecutor);
         try {
             // first try and mutate the user object using the the set method.
             // this should set the password and secure hash on the user object.
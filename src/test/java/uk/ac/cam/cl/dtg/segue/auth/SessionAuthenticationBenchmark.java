@@ -0,0 +1,84 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.cam.cl.dtg.segue.api.managers.UserAuthenticationManager;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of reading and verifying a session cookie, as happens for every authenticated request whose session
+ * has not been verified recently: the previous approach of Jackson deserialisation and a freshly initialised Mac,
+ * against the SessionCookieParser and a reused SessionSigner.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionAuthenticationBenchmark {
+    private static final String KEY = "benchmarkHmacSalt";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private SessionSigner signer;
+    private String cookieValue;
+
+    /**
+     * Build a signed session cookie as UserAuthenticationManager would.
+     *
+     * @throws IOException - if the cookie cannot be serialised.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        signer = new SessionSigner(KEY);
+        String hmac = signer.signSession("123456", "Mon, 19 Oct 2026 12:00:00 +0000", "3", Set.of());
+        Map<String, String> sessionInformation = ImmutableMap.of("id", "123456", "token", "3",
+                "DATE_EXPIRES", "Mon, 19 Oct 2026 12:00:00 +0000", "caveats", "[]", "hmac", hmac);
+        cookieValue = Base64.encodeBase64String(mapper.writeValueAsBytes(sessionInformation));
+    }
+
+    /**
+     * @return whether the cookie is valid, using the previous approach.
+     * @throws IOException - if the cookie cannot be read.
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public boolean jacksonAndNewMac() throws IOException {
+        Map<String, String> session = mapper.readValue(Base64.decodeBase64(cookieValue), HashMap.class);
+        Set<String> caveats = Set.copyOf(mapper.readValue(session.get("caveats"), java.util.List.class));
+        String ourHmac = UserAuthenticationManager.calculateSessionHMAC(KEY, session.get("id"),
+                session.get("DATE_EXPIRES"), session.get("token"), caveats);
+        return MessageDigest.isEqual(ourHmac.getBytes(), session.get("hmac").getBytes());
+    }
+
+    /**
+     * @return whether the cookie is valid, using the session cookie parser and reused signer.
+     * @throws IOException - if the cookie cannot be read.
+     */
+    @Benchmark
+    public boolean parserAndReusedSigner() throws IOException {
+        Map<String, String> session = SessionCookieParser.parseSessionCookie(cookieValue);
+        Set<String> caveats = Set.copyOf(SessionCookieParser.parseStringList(session.get("caveats")));
+        return signer.verifySession(session.get("id"), session.get("DATE_EXPIRES"), session.get("token"), caveats,
+                session.get("hmac"));
+    }
+}
@@ -0,0 +1,51 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test class for the SessionCookieParser class.
+ */
+public class SessionCookieParserTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Verify that a cookie written by Jackson, as session cookies are, is read back unchanged.
+     */
+    @Test
+    public final void parseSessionCookie_jacksonWrittenCookie_sameSessionInformation() throws Exception {
+        Map<String, String> sessionInformation = ImmutableMap.of(
+                "id", "1",
+                "token", "0",
+                "DATE_EXPIRES", "Mon, 19 Oct 2026 12:00:00 +0000",
+                "caveats", mapper.writeValueAsString(List.of("INCOMPLETE_MFA_CHALLENGE")),
+                "hmac", "c2lnbmF0dXJlLw==\n\t\"\\\u00e9");
+        String cookieValue = Base64.getEncoder().encodeToString(mapper.writeValueAsBytes(sessionInformation));
+
+        Map<String, String> parsed = SessionCookieParser.parseSessionCookie(cookieValue);
+
+        assertEquals(sessionInformation, parsed);
+        assertEquals(List.of("INCOMPLETE_MFA_CHALLENGE"), SessionCookieParser.parseStringList(parsed.get("caveats")));
+        assertEquals(List.of(), SessionCookieParser.parseStringList("[]"));
+    }
+
+    /**
+     * Verify that anything other than an object of strings is rejected.
+     */
+    @Test
+    public final void parseStringMap_malformedJson_exceptionThrown() {
+        assertThrows(IOException.class, () -> SessionCookieParser.parseStringMap("{\"id\":1}"));
+        assertThrows(IOException.class, () -> SessionCookieParser.parseStringMap("{\"id\":\"1\""));
+        assertThrows(IOException.class, () -> SessionCookieParser.parseStringMap("{\"id\":\"1\"}{}"));
+        assertThrows(IOException.class, () -> SessionCookieParser.parseSessionCookie("not=base64="));
+    }
+}
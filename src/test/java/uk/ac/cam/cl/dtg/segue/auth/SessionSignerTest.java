@@ -0,0 +1,47 @@
+package uk.ac.cam.cl.dtg.segue.auth;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.segue.api.managers.UserAuthenticationManager;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the SessionSigner class.
+ */
+public class SessionSignerTest {
+    private static final String KEY = "BOB";
+
+    /**
+     * Verify that the signer produces the same signatures as the static HMAC methods, so existing cookies stay valid.
+     */
+    @Test
+    public final void signSession_sameFields_matchesStaticCalculation() {
+        SessionSigner signer = new SessionSigner(KEY);
+        Set<String> caveats = Set.of("INCOMPLETE_MFA_CHALLENGE", "A_CAVEAT");
+
+        assertEquals(UserAuthenticationManager.calculateSessionHMAC(KEY, "1", "date", "0", caveats),
+                signer.signSession("1", "date", "0", caveats));
+        assertEquals(UserAuthenticationManager.calculateHMAC(KEY, "someone@example.com"),
+                signer.sign("someone@example.com"));
+    }
+
+    /**
+     * Verify that only the correct signature for the exact fields is accepted.
+     */
+    @Test
+    public final void verifySession_tamperedOrMalformed_rejected() {
+        SessionSigner signer = new SessionSigner(KEY);
+        String signature = signer.signSession("1", "date", "0", Set.of());
+
+        assertTrue(signer.verifySession("1", "date", "0", Set.of(), signature));
+        assertFalse(signer.verifySession("2", "date", "0", Set.of(), signature));
+        assertFalse(signer.verifySession("1", "date", "0", Set.of("INCOMPLETE_MFA_CHALLENGE"), signature));
+        assertFalse(signer.verifySession("1", "date", "0", Set.of(), new SessionSigner("ALICE").signSession("1", "date", "0", Set.of())));
+        assertFalse(signer.verifySession("1", "date", "0", Set.of(), "not base64!"));
+        assertFalse(signer.verifySession("1", "date", "0", Set.of(), null));
+    }
+}
@@ -0,0 +1,241 @@
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.LogEvent;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Date;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.startsWith;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_TYPE_COUNT_FAILURES;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENTS_DROPPED;
+
+public class AsyncLogEventWriterTest {
+    private static final String DATA_ERROR_SQL_STATE = "22P02";
+    private static final String CONNECTION_ERROR_SQL_STATE = "08006";
+
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private PreparedStatement dummyEventStatement;
+
+    @BeforeEach
+    public final void setUp() throws SQLException {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        Connection dummyConnection = createNiceMock(Connection.class);
+        this.dummyEventStatement = createNiceMock(PreparedStatement.class);
+        PreparedStatement dummyCountStatement = createNiceMock(PreparedStatement.class);
+
+        expect(dummyPostgresSqlDb.getDatabaseConnection("AsyncLogEventWriter.write")).andStubReturn(dummyConnection);
+        expect(dummyConnection.prepareStatement(startsWith("INSERT INTO logged_events(")))
+                .andStubReturn(dummyEventStatement);
+        expect(dummyConnection.prepareStatement(startsWith("INSERT INTO logged_event_type_counts")))
+                .andStubReturn(dummyCountStatement);
+        replay(dummyPostgresSqlDb, dummyConnection, dummyCountStatement);
+    }
+
+    @Test
+    public void enqueue_dropOldestAndQueueFull_oldestEventDropped() throws Exception {
+        // Arrange
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(dummyPostgresSqlDb, 2,
+                AsyncLogEventWriter.OverflowPolicy.DROP_OLDEST, false);
+        double droppedBefore = LOG_EVENTS_DROPPED.labels("queue_full").get();
+        dummyEventStatement.setString(1, "user-2");
+        expectLastCall().once();
+        dummyEventStatement.setString(8, "user-3");
+        expectLastCall().once();
+        expect(dummyEventStatement.executeUpdate()).andReturn(2).once();
+        replay(dummyEventStatement);
+
+        // Act
+        writer.enqueue(logEvent("user-1"), "{}");
+        writer.enqueue(logEvent("user-2"), "{}");
+        writer.enqueue(logEvent("user-3"), "{}");
+
+        // Assert
+        assertEquals(2, writer.getQueueDepth());
+        assertEquals(1, LOG_EVENTS_DROPPED.labels("queue_full").get() - droppedBefore);
+        writer.flush();
+        verify(dummyEventStatement);
+    }
+
+    @Test
+    public void enqueue_sampleAndQueueFull_excessEventsDropped() {
+        // Arrange
+        int capacity = 4;
+        int eventCount = 10;
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(dummyPostgresSqlDb, capacity,
+                AsyncLogEventWriter.OverflowPolicy.SAMPLE, false);
+        double droppedBefore = LOG_EVENTS_DROPPED.labels("sampled").get()
+                + LOG_EVENTS_DROPPED.labels("queue_full").get();
+
+        // Act
+        for (int i = 0; i < eventCount; i++) {
+            writer.enqueue(logEvent("user-" + i), "{}");
+        }
+
+        // Assert: events are always kept until the queue is half full, and never beyond its capacity
+        int queueDepth = writer.getQueueDepth();
+        assertTrue(queueDepth >= capacity / 2 && queueDepth <= capacity);
+        double droppedAfter = LOG_EVENTS_DROPPED.labels("sampled").get()
+                + LOG_EVENTS_DROPPED.labels("queue_full").get();
+        assertEquals(eventCount - queueDepth, droppedAfter - droppedBefore);
+    }
+
+    @Test
+    public void enqueue_blockAndQueueHasSpace_eventQueued() {
+        // Arrange
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(dummyPostgresSqlDb, 1,
+                AsyncLogEventWriter.OverflowPolicy.BLOCK, false);
+
+        // Act
+        writer.enqueue(logEvent("user-1"), "{}");
+
+        // Assert
+        assertEquals(1, writer.getQueueDepth());
+    }
+
+    @Test
+    public void flush_batchRejectedForInvalidEvent_otherEventsWrittenIndividually() throws Exception {
+        // Arrange
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(dummyPostgresSqlDb, 10,
+                AsyncLogEventWriter.OverflowPolicy.DROP_OLDEST, false);
+        double droppedBefore = LOG_EVENTS_DROPPED.labels("invalid_event").get();
+        expect(dummyEventStatement.executeUpdate())
+                .andThrow(new SQLException("invalid input syntax", DATA_ERROR_SQL_STATE))
+                .andReturn(1)
+                .andThrow(new SQLException("invalid input syntax", DATA_ERROR_SQL_STATE));
+        replay(dummyEventStatement);
+        writer.enqueue(logEvent("user-1"), "{}");
+        writer.enqueue(logEvent("user-2"), "{}");
+
+        // Act
+        writer.flush();
+
+        // Assert
+        verify(dummyEventStatement);
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(1, LOG_EVENTS_DROPPED.labels("invalid_event").get() - droppedBefore);
+    }
+
+    @Test
+    public void writeNextBatch_databaseUnavailable_batchRequeuedAndRetried() throws Exception {
+        // Arrange
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(dummyPostgresSqlDb, 10,
+                AsyncLogEventWriter.OverflowPolicy.DROP_OLDEST, false);
+        double droppedBefore = LOG_EVENTS_DROPPED.labels("write_failed").get();
+        expect(dummyEventStatement.executeUpdate())
+                .andThrow(new SQLException("connection refused", CONNECTION_ERROR_SQL_STATE))
+                .andReturn(2);
+        replay(dummyEventStatement);
+        writer.enqueue(logEvent("user-1"), "{}");
+        writer.enqueue(logEvent("user-2"), "{}");
+
+        // Act
+        boolean firstAttemptSucceeded = writer.writeNextBatch();
+        int queueDepthAfterFailure = writer.getQueueDepth();
+        boolean secondAttemptSucceeded = writer.writeNextBatch();
+
+        // Assert
+        verify(dummyEventStatement);
+        assertFalse(firstAttemptSucceeded);
+        assertEquals(2, queueDepthAfterFailure);
+        assertTrue(secondAttemptSucceeded);
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(0, LOG_EVENTS_DROPPED.labels("write_failed").get() - droppedBefore);
+    }
+
+    @Test
+    public void flush_databaseUnavailable_eventsCountedAsDropped() throws Exception {
+        // Arrange
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(dummyPostgresSqlDb, 10,
+                AsyncLogEventWriter.OverflowPolicy.DROP_OLDEST, false);
+        double droppedBefore = LOG_EVENTS_DROPPED.labels("write_failed").get();
+        expect(dummyEventStatement.executeUpdate())
+                .andThrow(new SQLException("connection refused", CONNECTION_ERROR_SQL_STATE)).once();
+        replay(dummyEventStatement);
+        writer.enqueue(logEvent("user-1"), "{}");
+        writer.enqueue(logEvent("user-2"), "{}");
+
+        // Act
+        writer.flush();
+
+        // Assert
+        verify(dummyEventStatement);
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(2, LOG_EVENTS_DROPPED.labels("write_failed").get() - droppedBefore);
+    }
+
+    @Test
+    public void contextDestroyed_eventsQueued_eventsWrittenBeforeShutdown() throws Exception {
+        // Arrange
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(dummyPostgresSqlDb, 10,
+                AsyncLogEventWriter.OverflowPolicy.DROP_OLDEST, false);
+        expect(dummyEventStatement.executeUpdate()).andReturn(1).once();
+        replay(dummyEventStatement);
+        writer.enqueue(logEvent("user-1"), "{}");
+
+        // Act
+        writer.contextDestroyed(null);
+
+        // Assert
+        verify(dummyEventStatement);
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    @Test
+    public void flush_eventTypeTotalsUpdateFails_eventsStillCommitted() throws Exception {
+        // Arrange
+        PostgresSqlDb postgresSqlDb = createMock(PostgresSqlDb.class);
+        Connection connection = createMock(Connection.class);
+        PreparedStatement eventStatement = createNiceMock(PreparedStatement.class);
+        PreparedStatement countStatement = createNiceMock(PreparedStatement.class);
+        Savepoint savepoint = createMock(Savepoint.class);
+        AsyncLogEventWriter writer = new AsyncLogEventWriter(postgresSqlDb, 10,
+                AsyncLogEventWriter.OverflowPolicy.DROP_OLDEST, false);
+        double failuresBefore = LOG_EVENT_TYPE_COUNT_FAILURES.get();
+        double droppedBefore = LOG_EVENTS_DROPPED.labels("write_failed").get();
+
+        expect(postgresSqlDb.getDatabaseConnection("AsyncLogEventWriter.write")).andReturn(connection);
+        connection.setAutoCommit(false);
+        expect(connection.prepareStatement(startsWith("INSERT INTO logged_events("))).andReturn(eventStatement);
+        expect(eventStatement.executeUpdate()).andReturn(1).once();
+        expect(connection.setSavepoint()).andReturn(savepoint);
+        expect(connection.prepareStatement(startsWith("INSERT INTO logged_event_type_counts")))
+                .andReturn(countStatement);
+        expect(countStatement.executeUpdate()).andThrow(new SQLException("deadlock detected", "40P01"));
+        connection.rollback(savepoint);
+        expectLastCall().once();
+        connection.commit();
+        expectLastCall().once();
+        connection.setAutoCommit(true);
+        connection.close();
+        replay(postgresSqlDb, connection, eventStatement, countStatement, savepoint);
+        writer.enqueue(logEvent("user-1"), "{}");
+
+        // Act
+        writer.flush();
+
+        // Assert
+        verify(connection, eventStatement);
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(1, LOG_EVENT_TYPE_COUNT_FAILURES.get() - failuresBefore);
+        assertEquals(0, LOG_EVENTS_DROPPED.labels("write_failed").get() - droppedBefore);
+    }
+
+    private static LogEvent logEvent(final String userId) {
+        return new LogEvent("VIEW_QUESTION", "", null, userId, false, "127.0.0.1", new Date());
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.ILocationHistory;
+import uk.ac.cam.cl.dtg.util.locations.Address;
+import uk.ac.cam.cl.dtg.util.locations.IPLocationResolver;
+import uk.ac.cam.cl.dtg.util.locations.Location;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+public class LocationManagerTest {
+    private static final String IP_ADDRESS = "203.0.113.7";
+
+    private ILocationHistory dummyLocationHistory;
+    private IPLocationResolver dummyLocationResolver;
+    private LocationManager locationManager;
+    private Location location;
+
+    @BeforeEach
+    public final void setUp() {
+        this.dummyLocationHistory = createMock(ILocationHistory.class);
+        this.dummyLocationResolver = createMock(IPLocationResolver.class);
+        this.locationManager = new LocationManager(dummyLocationHistory, dummyLocationResolver);
+        this.location = new Location(new Address(null, null, "Cambridge", null, "CB3", "GB"), 52.2, 0.1);
+    }
+
+    @AfterEach
+    public final void tearDown() {
+        locationManager.contextDestroyed(null);
+    }
+
+    @Test
+    public void processPendingLocations_ipAddressSeenRepeatedly_resolvedAndStoredOnce() throws Exception {
+        // Arrange
+        expect(dummyLocationHistory.getLatestByIPAddresses(anyObject())).andReturn(Collections.emptyMap()).once();
+        expect(dummyLocationResolver.resolveAllLocationInformation(IP_ADDRESS)).andReturn(location).once();
+        dummyLocationHistory.storeLocationUpdates(eq(Collections.emptyList()), eq(Collections.emptyList()),
+                eq(Map.of(IP_ADDRESS, location)));
+        expectLastCall().once();
+        replay(dummyLocationHistory, dummyLocationResolver);
+
+        // Act
+        locationManager.refreshLocation(IP_ADDRESS);
+        locationManager.refreshLocation(IP_ADDRESS);
+        locationManager.processPendingLocations();
+        locationManager.refreshLocation(IP_ADDRESS);
+        locationManager.processPendingLocations();
+
+        // Assert
+        verify(dummyLocationHistory, dummyLocationResolver);
+    }
+
+    @Test
+    public void refreshLocation_localOrPrivateIpAddresses_notQueued() {
+        // Arrange
+        replay(dummyLocationHistory, dummyLocationResolver);
+
+        // Act
+        locationManager.refreshLocation("127.0.0.1");
+        locationManager.refreshLocation("0:0:0:0:0:0:0:1");
+        locationManager.refreshLocation("10.1.2.3");
+        locationManager.refreshLocation("172.16.0.1");
+        locationManager.refreshLocation("192.168.0.1");
+        locationManager.refreshLocation("");
+        locationManager.processPendingLocations();
+
+        // Assert
+        verify(dummyLocationHistory, dummyLocationResolver);
+    }
+
+    @Test
+    public void processPendingLocations_storingBatchFails_ipAddressRetriedInNextBatch() throws Exception {
+        // Arrange
+        expect(dummyLocationHistory.getLatestByIPAddresses(anyObject())).andReturn(Collections.emptyMap()).times(2);
+        expect(dummyLocationResolver.resolveAllLocationInformation(IP_ADDRESS)).andReturn(location).times(2);
+        dummyLocationHistory.storeLocationUpdates(eq(Collections.emptyList()), eq(Collections.emptyList()),
+                eq(Map.of(IP_ADDRESS, location)));
+        expectLastCall().andThrow(new SegueDatabaseException("Database unavailable")).andVoid();
+        replay(dummyLocationHistory, dummyLocationResolver);
+        locationManager.refreshLocation(IP_ADDRESS);
+
+        // Act
+        locationManager.processPendingLocations();
+        locationManager.processPendingLocations();
+        locationManager.processPendingLocations();
+
+        // Assert
+        verify(dummyLocationHistory, dummyLocationResolver);
+    }
+}
@@ -0,0 +1,84 @@
+package uk.ac.cam.cl.dtg.segue.dao.schools;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.users.School;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for the SchoolDirectory class.
+ */
+public class SchoolDirectoryTest {
+    private SchoolDirectory directory;
+
+    /**
+     * Build a small directory of schools.
+     */
+    @BeforeEach
+    public final void setUp() {
+        directory = new SchoolDirectory(ImmutableList.of(
+                school("100001", "GB-ENG", "Parkside Community College", "CB1 1EH", false, false),
+                school("100002", "GB-ENG", "Park Lane Academy", "M1 2AB", false, false),
+                school("100003", "GB-WLS", "Ysgol Gyfun Gŵyr", "SA4 3GW", false, false),
+                school("100004", "GB-ENG", "Parkside Closed School", "CB1 9ZZ", false, true),
+                school("100005", "GB-SCT", "Parkhead Academy", "G31 4EE", false, false)
+        ));
+    }
+
+    /**
+     * Verify that each word of the query only has to be the start of a word in the name.
+     */
+    @Test
+    public final void search_wordPrefixes_matchingOpenSchoolsReturnedInNameOrder() {
+        assertEquals(ImmutableList.of("100002", "100005", "100001"), ids(directory.search("park", null, 10)));
+        assertEquals(ImmutableList.of("100001"), ids(directory.search("comm park", null, 10)));
+        assertTrue(directory.search("parkway", null, 10).isEmpty());
+    }
+
+    /**
+     * Verify that postcodes match with or without their space, and that the country filter is applied.
+     */
+    @Test
+    public final void search_postcodeAndCountry_filteredMatchesReturned() {
+        assertEquals(ImmutableList.of("100001"), ids(directory.search("cb11eh", null, 10)));
+        assertEquals(ImmutableList.of("100001"), ids(directory.search("CB1 1", "GB-ENG", 10)));
+        assertEquals(ImmutableList.of("100005"), ids(directory.search("park", "GB-SCT", 10)));
+    }
+
+    /**
+     * Verify that accents are ignored and that an exact id is matched.
+     */
+    @Test
+    public final void search_accentsAndIds_matched() {
+        assertEquals(ImmutableList.of("100003"), ids(directory.search("gwyr", null, 10)));
+        assertEquals(ImmutableList.of("100002"), ids(directory.search("100002", null, 10)));
+        assertEquals(1, directory.search("park", null, 1).size());
+    }
+
+    /**
+     * Verify that closed schools cannot be searched for, but can still be found by id.
+     */
+    @Test
+    public final void findById_closedSchool_found() {
+        assertEquals("Parkside Closed School", directory.findById("100004").getSchoolName());
+        assertTrue(directory.search("closed", null, 10).isEmpty());
+        assertNull(directory.findById("999999"));
+    }
+
+    private static List<String> ids(final List<School> schools) {
+        return schools.stream().map(School::getSchoolId).collect(Collectors.toList());
+    }
+
+    private static School school(final String id, final String countryCode, final String name, final String postcode,
+                                 final boolean excluded, final boolean closed) {
+        return new School(id, countryCode, name, "Town", postcode, excluded, closed,
+                School.SchoolDataSource.GOVERNMENT_UK);
+    }
+}
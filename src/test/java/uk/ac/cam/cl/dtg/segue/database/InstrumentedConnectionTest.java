@@ -0,0 +1,70 @@
+package uk.ac.cam.cl.dtg.segue.database;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+import uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class InstrumentedConnectionTest {
+
+    @Test
+    public void deriveQueryName_variousStatements_nameFromVerbAndFirstTable() {
+        assertEquals("select:question_attempts", InstrumentedConnection.deriveQueryName(
+                "SELECT id FROM question_attempts WHERE user_id = ?"));
+        assertEquals("insert:logged_events", InstrumentedConnection.deriveQueryName(
+                "INSERT INTO logged_events(user_id) VALUES (?)"));
+        assertEquals("update:users", InstrumentedConnection.deriveQueryName("UPDATE \"users\" SET email = ?"));
+        assertEquals("set", InstrumentedConnection.deriveQueryName("SET LOCAL lock_timeout = '1s';"));
+        assertEquals("unknown", InstrumentedConnection.deriveQueryName(null));
+    }
+
+    @Test
+    public void redactSql_stringLiterals_replaced() {
+        assertEquals("SELECT * FROM users WHERE email = '?' AND id = ?",
+                InstrumentedConnection.redactSql("SELECT * FROM users WHERE email = 'a''b@example.com' AND id = ?"));
+    }
+
+    @Test
+    public void preparedStatement_executed_delegatesAndRecordsTiming() throws Exception {
+        // Arrange
+        Connection connection = createMock(Connection.class);
+        PreparedStatement statement = createMock(PreparedStatement.class);
+        String sql = "UPDATE users SET email = ? WHERE id = ?";
+        expect(connection.prepareStatement(sql)).andReturn(statement);
+        statement.setString(1, "secret@example.com");
+        statement.setLong(2, 7L);
+        expect(statement.executeUpdate()).andReturn(1);
+        replay(connection, statement);
+        double executionsBefore = countExecutions("InstrumentedConnectionTest.update");
+
+        // Act
+        Connection wrapped = InstrumentedConnection.wrap(connection, "InstrumentedConnectionTest.update");
+        PreparedStatement wrappedStatement = wrapped.prepareStatement(sql);
+        wrappedStatement.setString(1, "secret@example.com");
+        wrappedStatement.setLong(2, 7L);
+        RequestTimings.begin();
+        int updated = wrappedStatement.executeUpdate();
+        RequestTimings timings = RequestTimings.end();
+
+        // Assert
+        verify(connection, statement);
+        assertEquals(1, updated);
+        assertSame(wrapped, wrappedStatement.getConnection());
+        assertEquals(executionsBefore + 1, countExecutions("InstrumentedConnectionTest.update"));
+        assertEquals(1, timings.getCount(RequestTimings.Stage.DATABASE));
+    }
+
+    private static double countExecutions(final String queryName) {
+        double[] cumulativeBuckets = SegueMetrics.DATABASE_QUERY_LATENCY_HISTOGRAM.labels(queryName).get().buckets;
+        return cumulativeBuckets[cumulativeBuckets.length - 1];
+    }
+}
@@ -0,0 +1,209 @@
+package uk.ac.cam.cl.dtg.segue.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.ResultsWrapper;
+import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.util.AbstractConfigLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.SEARCH_LATENCY_HISTOGRAM;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.SEARCH_MAX_RESULT_WINDOW_EXCEEDED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.SEARCH_RESULT_SIZE_HISTOGRAM;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.SEARCH_SLOW_QUERIES;
+
+public class ElasticSearchProviderTest {
+    private static final String INDEX_BASE = "test";
+    private static final String INDEX_TYPE = "content";
+    private static final String SEARCH = "search";
+
+    private ElasticsearchClient dummyClient;
+
+    @BeforeEach
+    public final void setUp() {
+        this.dummyClient = createMock(ElasticsearchClient.class);
+    }
+
+    @Test
+    public void nestedMatchSearch_resultsReturned_latencyAndResultSizeRecorded() throws Exception {
+        // Arrange
+        expect(dummyClient.search(anyObject(SearchRequest.class), eq(ObjectNode.class)))
+                .andReturn(searchResponse(2));
+        replay(dummyClient);
+        ElasticSearchProvider provider = new ElasticSearchProvider(dummyClient);
+        double searchesBefore = countSearches();
+        double resultsBefore = SEARCH_RESULT_SIZE_HISTOGRAM.labels(INDEX_TYPE, SEARCH).get().sum;
+
+        // Act
+        ResultsWrapper<String> results = search(provider);
+
+        // Assert
+        verify(dummyClient);
+        assertEquals(2, results.getResults().size());
+        assertEquals(1, countSearches() - searchesBefore);
+        assertEquals(2, SEARCH_RESULT_SIZE_HISTOGRAM.labels(INDEX_TYPE, SEARCH).get().sum - resultsBefore);
+    }
+
+    @Test
+    public void nestedMatchSearch_resultWindowTooLarge_counted() throws Exception {
+        // Arrange
+        expect(dummyClient.search(anyObject(SearchRequest.class), eq(ObjectNode.class)))
+                .andThrow(searchException("Result window is too large, from + size must be less than or equal to:"
+                        + " [10000] but was [10010]."));
+        replay(dummyClient);
+        ElasticSearchProvider provider = new ElasticSearchProvider(dummyClient);
+        double searchesBefore = countSearches();
+        double exceededBefore = SEARCH_MAX_RESULT_WINDOW_EXCEEDED.labels(INDEX_TYPE).get();
+
+        // Act & Assert
+        assertThrows(SegueSearchException.class, () -> search(provider));
+        verify(dummyClient);
+        assertEquals(1, countSearches() - searchesBefore);
+        assertEquals(1, SEARCH_MAX_RESULT_WINDOW_EXCEEDED.labels(INDEX_TYPE).get() - exceededBefore);
+    }
+
+    @Test
+    public void nestedMatchSearch_otherSearchError_notCountedAsResultWindowTooLarge() throws Exception {
+        // Arrange
+        expect(dummyClient.search(anyObject(SearchRequest.class), eq(ObjectNode.class)))
+                .andThrow(searchException("No mapping found for [title] in order to sort on"));
+        replay(dummyClient);
+        ElasticSearchProvider provider = new ElasticSearchProvider(dummyClient);
+        double exceededBefore = SEARCH_MAX_RESULT_WINDOW_EXCEEDED.labels(INDEX_TYPE).get();
+
+        // Act & Assert
+        assertThrows(SegueSearchException.class, () -> search(provider));
+        verify(dummyClient);
+        assertEquals(0, SEARCH_MAX_RESULT_WINDOW_EXCEEDED.labels(INDEX_TYPE).get() - exceededBefore);
+    }
+
+    @Test
+    public void nestedMatchSearch_slowSearchSampled_queryLogged() throws Exception {
+        // Arrange: reading the client's JSON mapper is how the query is serialised for the log
+        expect(dummyClient.search(anyObject(SearchRequest.class), eq(ObjectNode.class)))
+                .andReturn(searchResponse(0));
+        expect(dummyClient._jsonpMapper()).andReturn(new JacksonJsonpMapper()).once();
+        replay(dummyClient);
+        ElasticSearchProvider provider = new ElasticSearchProvider(dummyClient, 0L, 1.0);
+        double slowBefore = SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get();
+
+        // Act
+        search(provider);
+
+        // Assert
+        verify(dummyClient);
+        assertEquals(1, SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get() - slowBefore);
+    }
+
+    @Test
+    public void nestedMatchSearch_slowSearchNotSampled_countedButNotLogged() throws Exception {
+        // Arrange
+        expect(dummyClient.search(anyObject(SearchRequest.class), eq(ObjectNode.class)))
+                .andReturn(searchResponse(0));
+        replay(dummyClient);
+        ElasticSearchProvider provider = new ElasticSearchProvider(dummyClient, 0L, 0.0);
+        double slowBefore = SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get();
+
+        // Act
+        search(provider);
+
+        // Assert
+        verify(dummyClient);
+        assertEquals(1, SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get() - slowBefore);
+    }
+
+    @Test
+    public void constructor_invalidSlowQuerySettings_captureDisabled() throws Exception {
+        // Arrange
+        AbstractConfigLoader properties = createMock(AbstractConfigLoader.class);
+        expect(properties.getProperty(Constants.SEARCH_SLOW_QUERY_THRESHOLD_MILLISECONDS)).andReturn("fast");
+        expect(properties.getProperty(Constants.SEARCH_SLOW_QUERY_SAMPLE_RATE)).andReturn("2");
+        expect(dummyClient.search(anyObject(SearchRequest.class), eq(ObjectNode.class)))
+                .andReturn(searchResponse(0));
+        replay(properties, dummyClient);
+        double slowBefore = SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get();
+
+        // Act
+        ElasticSearchProvider provider = new ElasticSearchProvider(dummyClient, properties);
+        search(provider);
+
+        // Assert
+        verify(dummyClient);
+        assertEquals(0, SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get() - slowBefore);
+    }
+
+    @Test
+    public void constructor_invalidSampleRate_slowSearchCountedButNotLogged() throws Exception {
+        // Arrange
+        AbstractConfigLoader properties = createMock(AbstractConfigLoader.class);
+        expect(properties.getProperty(Constants.SEARCH_SLOW_QUERY_THRESHOLD_MILLISECONDS)).andReturn("0");
+        expect(properties.getProperty(Constants.SEARCH_SLOW_QUERY_SAMPLE_RATE)).andReturn("often");
+        expect(dummyClient.search(anyObject(SearchRequest.class), eq(ObjectNode.class)))
+                .andReturn(searchResponse(0));
+        replay(properties, dummyClient);
+        double slowBefore = SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get();
+
+        // Act
+        ElasticSearchProvider provider = new ElasticSearchProvider(dummyClient, properties);
+        search(provider);
+
+        // Assert
+        verify(dummyClient);
+        assertEquals(1, SEARCH_SLOW_QUERIES.labels(INDEX_TYPE, SEARCH).get() - slowBefore);
+    }
+
+    private static ResultsWrapper<String> search(final ElasticSearchProvider provider) throws SegueSearchException {
+        return provider.nestedMatchSearch(INDEX_BASE, INDEX_TYPE, 0, 10, new BooleanInstruction(), null, null);
+    }
+
+    private static double countSearches() {
+        double[] cumulativeBuckets = SEARCH_LATENCY_HISTOGRAM.labels(INDEX_TYPE, SEARCH).get().buckets;
+        return cumulativeBuckets[cumulativeBuckets.length - 1];
+    }
+
+    private static SearchResponse<ObjectNode> searchResponse(final int hitCount) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Hit<ObjectNode>> hits = new ArrayList<>();
+        for (int i = 0; i < hitCount; i++) {
+            hits.add(new Hit.Builder<ObjectNode>().index(INDEX_BASE + "_" + INDEX_TYPE).id(String.valueOf(i))
+                    .source(objectMapper.createObjectNode().put("id", i)).build());
+        }
+        return new SearchResponse.Builder<ObjectNode>()
+                .took(1)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.total(t -> t.value(hitCount).relation(TotalHitsRelation.Eq)).hits(hits))
+                .build();
+    }
+
+    /**
+     * @param rootCauseReason - why the search failed on the shards.
+     * @return the error the client throws for a failed search, whose own reason does not say why it failed.
+     */
+    private static ElasticsearchException searchException(final String rootCauseReason) {
+        return new ElasticsearchException("es/search", ErrorResponse.of(r -> r
+                .status(400)
+                .error(e -> e.type("search_phase_execution_exception").reason("all shards failed")
+                        .rootCause(c -> c.type("illegal_argument_exception").reason(rootCauseReason)))));
+    }
+}
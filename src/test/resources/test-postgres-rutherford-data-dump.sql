@@ -227,6 +227,20 @@ COPY public.user_alerts (id, user_id, message, link, created, seen, clicked, dis
 \.
 
 
+--
+-- Data for Name: user_assignment_inbox; Type: TABLE DATA; Schema: public; Owner: rutherford
+--
+
+COPY public.user_assignment_inbox (user_id, assignment_id, group_id, created) FROM stdin;
+7	2	1	2022-08-03 12:14:50.134+00
+8	2	1	2022-08-03 12:14:50.134+00
+8	3	2	2023-01-27 12:14:50.134+00
+9	3	2	2023-01-27 12:14:50.134+00
+7	4	5	2024-04-18 14:55:54.915+00
+8	4	5	2024-04-18 14:55:54.915+00
+\.
+
+
 --
 -- Data for Name: user_associations; Type: TABLE DATA; Schema: public; Owner: rutherford
 --